@@ -0,0 +1,61 @@
+package alipsa.sieparser.benchmark;
+
+import alipsa.sieparser.SieDocument;
+import alipsa.sieparser.SieGenerator;
+import alipsa.sieparser.sie5.Sie5Entry;
+import alipsa.sieparser.sie5.Sie5Generator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Synthetic, seeded SIE data for the benchmarks, made by the test fixture generators. Sizes are given
+ * as the number of #TRANS rows, which are spread over vouchers of {@link #ROWS_PER_VOUCHER} balanced rows each.
+ */
+final class BenchmarkData {
+
+    static final int ROWS_PER_VOUCHER = 4;
+    private static final int ACCOUNTS = 200;
+    private static final int OBJECTS = 50;
+
+    private BenchmarkData() {}
+
+    /** Creates a SIE 4 document holding the given number of #TRANS rows. */
+    static SieDocument document(int rows) {
+        return generator(rows).generate();
+    }
+
+    /**
+     * Writes a SIE 4 file with the given number of #TRANS rows to a temporary file.
+     * Vouchers are generated and written in batches, so memory use does not depend on the size.
+     */
+    static Path writeSieFile(int rows) throws IOException {
+        return generator(rows).writeTempFile();
+    }
+
+    /** Creates a SIE 5 entry document with the given number of ledger entries. */
+    static Sie5Entry sie5Entry(int rows) {
+        Sie5Generator generator = new Sie5Generator();
+        generator.setAccounts(ACCOUNTS);
+        generator.setDimensions(1);
+        generator.setObjectsPerDimension(OBJECTS);
+        generator.setVouchers(voucherCount(rows));
+        generator.setRowsPerVoucher(ROWS_PER_VOUCHER);
+        return generator.generateEntry();
+    }
+
+    private static SieGenerator generator(int rows) {
+        SieGenerator generator = new SieGenerator(SieGenerator.Format.SIE4E);
+        generator.setAccounts(ACCOUNTS);
+        generator.setDimensions(1);
+        generator.setObjectsPerDimension(OBJECTS);
+        generator.setVouchers(voucherCount(rows));
+        generator.setRowsPerVoucher(ROWS_PER_VOUCHER);
+        generator.setPeriodBalanceDensity(0);
+        return generator;
+    }
+
+    private static int voucherCount(int rows) {
+        return Math.max(1, rows / ROWS_PER_VOUCHER);
+    }
+}
@@ -0,0 +1,52 @@
+package alipsa.sieparser.benchmark;
+
+import alipsa.sieparser.sie5.Sie5DocumentReader;
+import alipsa.sieparser.sie5.Sie5DocumentWriter;
+import alipsa.sieparser.sie5.Sie5Entry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Sie5DocumentReader#readEntry} and {@link Sie5DocumentWriter#writeEntry}
+ * on generated SIE 5 entry documents.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class Sie5Benchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private Sie5Entry entry;
+    private byte[] xml;
+
+    @Setup
+    public void setUp() {
+        entry = BenchmarkData.sie5Entry(rows);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Sie5DocumentWriter().writeEntry(entry, out);
+        xml = out.toByteArray();
+    }
+
+    @Benchmark
+    public Sie5Entry readEntry() {
+        return new Sie5DocumentReader().readEntry(new ByteArrayInputStream(xml));
+    }
+
+    @Benchmark
+    public void writeEntry() {
+        new Sie5DocumentWriter().writeEntry(entry, OutputStream.nullOutputStream());
+    }
+}
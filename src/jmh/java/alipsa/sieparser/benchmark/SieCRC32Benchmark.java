@@ -0,0 +1,57 @@
+package alipsa.sieparser.benchmark;
+
+import alipsa.sieparser.Encoding;
+import alipsa.sieparser.SieCRC32;
+import alipsa.sieparser.SieDataItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures #KSUMMA checksum calculation with {@link SieCRC32#addData} over the lines of a generated file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SieCRC32Benchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private List<SieDataItem> items;
+
+    @Setup
+    public void setUp() throws IOException {
+        Path file = BenchmarkData.writeSieFile(rows);
+        try {
+            items = new ArrayList<>();
+            for (String line : Files.readAllLines(file, Encoding.getCharset())) {
+                items.add(new SieDataItem(line, null, null));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Benchmark
+    public long addData() {
+        SieCRC32 crc = new SieCRC32();
+        crc.start();
+        for (SieDataItem item : items) {
+            crc.addData(item);
+        }
+        return crc.checksum();
+    }
+}
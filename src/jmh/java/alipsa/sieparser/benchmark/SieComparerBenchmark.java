@@ -0,0 +1,47 @@
+package alipsa.sieparser.benchmark;
+
+import alipsa.sieparser.SieDocument;
+import alipsa.sieparser.SieDocumentComparer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link SieDocumentComparer#compare} and {@link SieDocumentComparer#compareParallel} on two equal
+ * generated documents.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SieComparerBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    private SieDocument docA;
+    private SieDocument docB;
+
+    @Setup
+    public void setUp() {
+        docA = BenchmarkData.document(rows);
+        docB = BenchmarkData.document(rows);
+    }
+
+    @Benchmark
+    public List<String> compare() {
+        return SieDocumentComparer.compare(docA, docB);
+    }
+
+    @Benchmark
+    public List<String> compareParallel() {
+        return SieDocumentComparer.compareParallel(docA, docB);
+    }
+}
@@ -0,0 +1,57 @@
+package alipsa.sieparser.benchmark;
+
+import alipsa.sieparser.Encoding;
+import alipsa.sieparser.SieDataItem;
+import alipsa.sieparser.SieTokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures line splitting: {@link SieDataItem} (which runs splitLine on a decoded String)
+ * versus {@link SieTokenizer} working on the encoded bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SieDataItemBenchmark {
+
+    private static final String[] LINES = {
+        "#VER \"A\" \"1234\" 20240105 \"Inköp av kontorsmaterial\" 20240106 \"Anna\"",
+        "#TRANS 4010 {1 \"100\" 6 \"P-17\"} 1234.50 20240105 \"Kontorsmaterial\" 1 \"Anna\"",
+        "#TRANS 2640 {} 308.63",
+        "#TRANS 1930 {} -1543.13 20240105 \"Betalning \\\"kort\\\"\"",
+        "#KONTO 1930 \"Företagskonto / checkkonto\"",
+        "#PSALDO 0 202401 3010 {1 \"100\"} -98000.00 -12"
+    };
+
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setUp() {
+        buffer = ByteBuffer.wrap(Encoding.getBytes(String.join("\n", LINES) + "\n"));
+    }
+
+    @Benchmark
+    public void splitLine(Blackhole bh) {
+        for (String line : LINES) {
+            bh.consume(new SieDataItem(line, null, null).getData());
+        }
+    }
+
+    @Benchmark
+    public void tokenize(Blackhole bh) {
+        SieTokenizer tokenizer = new SieTokenizer(buffer);
+        while (tokenizer.next()) {
+            bh.consume(tokenizer.getFields());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package alipsa.sieparser.benchmark;
+
+import alipsa.sieparser.SieDocument;
+import alipsa.sieparser.SieDocumentReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link SieDocumentReader#readDocument(String)} on generated SIE 4 files
+ * in its buffered, memory mapped and parallel modes. The parallel mode runs on the common pool,
+ * so it is also measured with the pool fixed at 1, 2 and 4 workers to show how it scales with
+ * cores; on a machine with fewer cores than workers the extra workers only add overhead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SieReaderBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int rows;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = BenchmarkData.writeSieFile(rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public SieDocument readBuffered() throws IOException {
+        return new SieDocumentReader().readDocument(file.toString());
+    }
+
+    @Benchmark
+    public SieDocument readMemoryMapped() throws IOException {
+        SieDocumentReader reader = new SieDocumentReader();
+        reader.setMemoryMapped(true);
+        return reader.readDocument(file.toString());
+    }
+
+    @Benchmark
+    public SieDocument readParallel() throws IOException {
+        return readParallelOnCommonPool();
+    }
+
+    @Benchmark
+    @Fork(jvmArgsAppend = "-Djava.util.concurrent.ForkJoinPool.common.parallelism=1")
+    public SieDocument readParallel1Worker() throws IOException {
+        return readParallelOnCommonPool();
+    }
+
+    @Benchmark
+    @Fork(jvmArgsAppend = "-Djava.util.concurrent.ForkJoinPool.common.parallelism=2")
+    public SieDocument readParallel2Workers() throws IOException {
+        return readParallelOnCommonPool();
+    }
+
+    @Benchmark
+    @Fork(jvmArgsAppend = "-Djava.util.concurrent.ForkJoinPool.common.parallelism=4")
+    public SieDocument readParallel4Workers() throws IOException {
+        return readParallelOnCommonPool();
+    }
+
+    private SieDocument readParallelOnCommonPool() throws IOException {
+        SieDocumentReader reader = new SieDocumentReader();
+        reader.setParallel(true);
+        return reader.readDocument(file.toString());
+    }
+}
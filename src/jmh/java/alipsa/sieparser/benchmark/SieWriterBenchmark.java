@@ -0,0 +1,49 @@
+package alipsa.sieparser.benchmark;
+
+import alipsa.sieparser.SieDocument;
+import alipsa.sieparser.SieDocumentWriter;
+import alipsa.sieparser.WriteOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link SieDocumentWriter#write(OutputStream)}, with and without #KSUMMA,
+ * writing to a stream that discards its output.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SieWriterBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private SieDocument document;
+
+    @Setup
+    public void setUp() {
+        document = BenchmarkData.document(rows);
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        new SieDocumentWriter(document).write(OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public void writeWithKsumma() throws IOException {
+        WriteOptions options = new WriteOptions();
+        options.setWriteKSUMMA(true);
+        new SieDocumentWriter(document, options).write(OutputStream.nullOutputStream());
+    }
+}
@@ -26,6 +26,7 @@ SOFTWARE.
 package alipsa.sieparser;
 
 import java.nio.charset.Charset;
+import java.util.Arrays;
 
 /**
  * Handles character encoding for SIE files.
@@ -36,6 +37,21 @@ public class Encoding {
     private Encoding() {}
 
     private static final Charset defaultCharset = Charset.forName("IBM437");
+    private static final char[] HIGH_CHARS = new char[128];
+    private static final byte[] HIGH_BYTES = new byte[128];
+
+    static {
+        byte[] high = new byte[128];
+        for (int i = 0; i < 128; i++) high[i] = (byte) (128 + i);
+        char[] chars = new String(high, defaultCharset).toCharArray();
+        Integer[] order = new Integer[128];
+        for (int i = 0; i < 128; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Character.compare(chars[a], chars[b]));
+        for (int i = 0; i < 128; i++) {
+            HIGH_CHARS[i] = chars[order[i]];
+            HIGH_BYTES[i] = high[order[i]];
+        }
+    }
 
     /**
      * Returns the charset used for SIE file encoding (IBM437).
@@ -55,4 +71,18 @@ public class Encoding {
     public static byte[] getBytes(String value) {
         return value.getBytes(getCharset());
     }
+
+    /**
+     * Encodes a single character with the SIE charset, without allocating. Like
+     * {@link #getBytes(String)}, characters that the charset cannot represent become {@code '?'}.
+     * Surrogate pairs must be handled by the caller, they encode to a single {@code '?'}.
+     *
+     * @param c the character to encode
+     * @return the IBM437 byte for the character
+     */
+    static byte encode(char c) {
+        if (c < 0x80) return (byte) c;
+        int i = Arrays.binarySearch(HIGH_CHARS, c);
+        return i >= 0 ? HIGH_BYTES[i] : (byte) '?';
+    }
 }
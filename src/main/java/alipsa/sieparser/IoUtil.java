@@ -29,7 +29,7 @@ import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 
 /**
- * Centralized place for creating Readers and Writers using the SIE charset (IBM437).
+ * Centralized place for creating Readers, Writers and streams for SIE files using the SIE charset (IBM437).
  */
 public class IoUtil {
 
@@ -58,4 +58,18 @@ public class IoUtil {
         return Files.newBufferedWriter(Paths.get(fileName), Encoding.getCharset(),
                 StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
     }
+
+    /**
+     * Creates an {@link OutputStream} for writing an encoded SIE file.
+     * If the file already exists it will be overwritten; otherwise a new file is created.
+     * The stream is not buffered.
+     *
+     * @param fileName the path to the file to write
+     * @return an output stream for the file
+     * @throws IOException if the file cannot be opened or created
+     */
+    public static OutputStream getOutputStream(String fileName) throws IOException {
+        return Files.newOutputStream(Paths.get(fileName),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
 }
@@ -0,0 +1,173 @@
+/*
+MIT License
+
+Copyright (c) 2015 Johan Idstam
+Modifications by Per Nyfelt Copyright (c) 2016 Alipsa HB
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package alipsa.sieparser;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-point amounts held as a long of hundredths (öre), which covers every amount SIE allows
+ * since amounts have at most two decimals. An amount is kept together with its scale, the number
+ * of decimals it was written with, so that {@code 100}, {@code 100.0} and {@code 100.00} convert
+ * back to the same {@link BigDecimal} and are written back the same way.
+ * <p>
+ * Amounts with more than two decimals, more than 16 digits or in any other notation than
+ * {@code -123.45} are not representable and yield {@link #NONE}; callers then fall back to
+ * {@link BigDecimal}.
+ * </p>
+ */
+final class SieAmount {
+
+    /** Marks an amount that has no fixed-point representation. */
+    static final long NONE = Long.MIN_VALUE;
+
+    private static final int MAX_DIGITS = 16;
+    private static final long[] TO_HUNDREDTHS = {100, 10, 1};
+
+    private SieAmount() {}
+
+    /**
+     * Parses an amount in plain notation.
+     * @return the amount in hundredths, or {@link #NONE}
+     */
+    static long parse(CharSequence value) {
+        int from = 0;
+        int to = value.length();
+        while (from < to && value.charAt(from) <= ' ') from++;
+        while (to > from && value.charAt(to - 1) <= ' ') to--;
+        boolean negative = from < to && value.charAt(from) == '-';
+        if (negative) from++;
+        long unscaled = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (c >= '0' && c <= '9') {
+                unscaled = unscaled * 10 + (c - '0');
+                digits++;
+                if (decimals >= 0) decimals++;
+            } else {
+                return NONE;
+            }
+        }
+        return toHundredths(negative, unscaled, digits, decimals);
+    }
+
+    /**
+     * Parses an amount in plain notation from IBM437 bytes.
+     * @return the amount in hundredths, or {@link #NONE}
+     * @see #parse(CharSequence)
+     */
+    static long parse(ByteBuffer buffer, int from, int to) {
+        while (from < to && (buffer.get(from) & 0xff) <= ' ') from++;
+        while (to > from && (buffer.get(to - 1) & 0xff) <= ' ') to--;
+        boolean negative = from < to && buffer.get(from) == '-';
+        if (negative) from++;
+        long unscaled = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (int i = from; i < to; i++) {
+            byte c = buffer.get(i);
+            if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (c >= '0' && c <= '9') {
+                unscaled = unscaled * 10 + (c - '0');
+                digits++;
+                if (decimals >= 0) decimals++;
+            } else {
+                return NONE;
+            }
+        }
+        return toHundredths(negative, unscaled, digits, decimals);
+    }
+
+    /**
+     * Returns the number of decimals of an amount in plain notation, i.e. the scale that
+     * {@link BigDecimal#BigDecimal(String)} would give it.
+     */
+    static int scale(CharSequence value) {
+        int to = value.length();
+        while (to > 0 && value.charAt(to - 1) <= ' ') to--;
+        for (int i = to - 1; i >= 0; i--) {
+            if (value.charAt(i) == '.') return to - 1 - i;
+        }
+        return 0;
+    }
+
+    /** @see #scale(CharSequence) */
+    static int scale(ByteBuffer buffer, int from, int to) {
+        while (to > from && (buffer.get(to - 1) & 0xff) <= ' ') to--;
+        for (int i = to - 1; i >= from; i--) {
+            if (buffer.get(i) == '.') return to - 1 - i;
+        }
+        return 0;
+    }
+
+    private static long toHundredths(boolean negative, long unscaled, int digits, int decimals) {
+        if (digits == 0 || digits > MAX_DIGITS || decimals > 2) return NONE;
+        long hundredths = unscaled * TO_HUNDREDTHS[Math.max(decimals, 0)];
+        return negative ? -hundredths : hundredths;
+    }
+
+    /**
+     * Converts a BigDecimal to hundredths.
+     * @return the amount in hundredths, or {@link #NONE} if it is null or not representable
+     */
+    static long of(BigDecimal value) {
+        if (value == null) return NONE;
+        int scale = value.scale();
+        if (scale < 0 || scale > 2 || value.precision() > MAX_DIGITS) return NONE;
+        return value.unscaledValue().longValue() * TO_HUNDREDTHS[scale];
+    }
+
+    /** Converts an amount in hundredths to a BigDecimal with the given scale (0 to 2). */
+    static BigDecimal toBigDecimal(long hundredths, int scale) {
+        return BigDecimal.valueOf(hundredths / TO_HUNDREDTHS[scale], scale);
+    }
+
+    /**
+     * Formats an amount in hundredths with the given number of decimals (0 to 2),
+     * exactly as {@link BigDecimal#toPlainString()} formats the equal BigDecimal.
+     */
+    static String toString(long hundredths, int scale) {
+        StringBuilder sb = new StringBuilder(24);
+        appendTo(sb, hundredths, scale);
+        return sb.toString();
+    }
+
+    /** @see #toString(long, int) */
+    static void appendTo(StringBuilder sb, long hundredths, int scale) {
+        if (hundredths < 0) sb.append('-');
+        long abs = Math.abs(hundredths);
+        sb.append(abs / 100);
+        if (scale == 0) return;
+        long cents = abs % 100;
+        sb.append('.').append((char) ('0' + cents / 10));
+        if (scale == 2) sb.append((char) ('0' + cents % 10));
+    }
+}
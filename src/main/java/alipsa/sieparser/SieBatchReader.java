@@ -0,0 +1,196 @@
+/*
+MIT License
+
+Copyright (c) 2015 Johan Idstam
+Modifications by Per Nyfelt Copyright (c) 2016 Alipsa HB
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+
+package alipsa.sieparser;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Reads many SIE files concurrently, each with its own {@link SieDocumentReader}.
+ * <p>
+ * A {@link SieDocumentReader} keeps the state of the file it is reading and must not be shared
+ * between threads. The batch reader therefore gets a new reader from the reader factory for every
+ * file, so settings, callbacks, validation exceptions and warnings never leak from one file into
+ * another. Errors are collected per file in a {@link SieBatchResult} and do not stop the batch.
+ * </p>
+ * <p>
+ * At most {@link #getConcurrency()} files are read at the same time. Unless an executor is set,
+ * each batch runs on its own pool of that many threads, which is shut down when the batch is done.
+ * On Java 21 and later, {@code Executors.newVirtualThreadPerTaskExecutor()} is a good choice of
+ * executor, since the concurrency limit still applies.
+ * </p>
+ */
+public class SieBatchReader {
+
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+    private Supplier<SieDocumentReader> readerFactory = SieDocumentReader::new;
+    private Executor executor;
+    private int concurrency = Runtime.getRuntime().availableProcessors();
+
+    /** Creates a batch reader with default readers, its own thread pools and one file per processor at a time. */
+    public SieBatchReader() {}
+
+    /**
+     * Reads all files and returns their results in the order of the files. Since the results hold
+     * the documents, use {@link #readAll(List, Consumer)} to process large batches in constant memory.
+     * @param files the files to read
+     * @return one result per file, in the same order
+     * @throws SieParseException if the calling thread is interrupted
+     */
+    public List<SieBatchResult> readAll(List<Path> files) {
+        SieBatchResult[] results = new SieBatchResult[files.size()];
+        readAll(files, result -> results[result.getIndex()] = result);
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Reads all files and hands each result to the consumer as soon as the file has been read, in
+     * the order the files complete. The consumer is called on the calling thread, one result at a
+     * time, so it does not need to be thread safe. No more files are started than the concurrency
+     * allows until earlier results have been consumed.
+     * @param files the files to read
+     * @param consumer receives the result of each file
+     * @throws SieParseException if the calling thread is interrupted
+     */
+    public void readAll(List<Path> files, Consumer<SieBatchResult> consumer) {
+        ExecutorService pool = executor == null ? newPool() : null;
+        CompletionService<SieBatchResult> completion = new ExecutorCompletionService<>(executor == null ? pool : executor);
+        int running = 0;
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                if (running == concurrency) {
+                    consumer.accept(next(completion));
+                    running--;
+                }
+                final int index = i;
+                final Path file = files.get(i);
+                completion.submit(() -> read(index, file));
+                running++;
+            }
+            for (; running > 0; running--) {
+                consumer.accept(next(completion));
+            }
+        } finally {
+            if (pool != null) pool.shutdownNow();
+        }
+    }
+
+    private SieBatchResult read(int index, Path file) {
+        long start = System.nanoTime();
+        SieDocumentReader reader = null;
+        SieDocument document = null;
+        Exception failure = null;
+        try {
+            reader = readerFactory.get();
+            document = reader.readDocument(file.toString());
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        }
+        List<Exception> validationExceptions = reader == null ? List.of() : reader.getValidationExceptions();
+        List<Exception> validationWarnings = reader == null ? List.of() : reader.getValidationWarnings();
+        return new SieBatchResult(index, file, document, validationExceptions, validationWarnings, failure,
+            Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private static SieBatchResult next(CompletionService<SieBatchResult> completion) {
+        try {
+            return completion.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SieParseException("Interrupted while reading files", e);
+        } catch (ExecutionException e) {
+            // read() catches all exceptions, so this is an Error
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new SieParseException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private ExecutorService newPool() {
+        String prefix = "sie-batch-" + POOL_NUMBER.incrementAndGet() + "-";
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(concurrency, task -> {
+            Thread thread = new Thread(task, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the factory that creates the reader for each file.
+     * @return the reader factory
+     */
+    public Supplier<SieDocumentReader> getReaderFactory() { return readerFactory; }
+
+    /**
+     * Sets the factory that creates the reader for each file, e.g. to change its settings or
+     * register callbacks. The factory is called concurrently and must return a new reader, with
+     * its own {@link SieCallbacks}, every time.
+     * @param readerFactory the reader factory
+     */
+    public void setReaderFactory(Supplier<SieDocumentReader> readerFactory) { this.readerFactory = readerFactory; }
+
+    /**
+     * Returns the executor that files are read on.
+     * @return the executor, or {@code null} if each batch uses its own thread pool
+     */
+    public Executor getExecutor() { return executor; }
+
+    /**
+     * Sets the executor that files are read on. It is not shut down by the batch reader.
+     * @param executor the executor, or {@code null} to use a new thread pool for each batch
+     */
+    public void setExecutor(Executor executor) { this.executor = executor; }
+
+    /**
+     * Returns the maximum number of files read at the same time.
+     * @return the concurrency limit
+     */
+    public int getConcurrency() { return concurrency; }
+
+    /**
+     * Sets the maximum number of files read at the same time, which also bounds the number of
+     * documents held in memory by {@link #readAll(List, Consumer)}.
+     * @param concurrency the concurrency limit, at least 1
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency <= 0) throw new IllegalArgumentException("Concurrency must be positive: " + concurrency);
+        this.concurrency = concurrency;
+    }
+}
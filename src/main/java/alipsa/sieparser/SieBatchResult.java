@@ -0,0 +1,109 @@
+/*
+MIT License
+
+Copyright (c) 2015 Johan Idstam
+Modifications by Per Nyfelt Copyright (c) 2016 Alipsa HB
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+
+package alipsa.sieparser;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The outcome of reading one file with a {@link SieBatchReader}.
+ */
+public class SieBatchResult {
+
+    private final int index;
+    private final Path file;
+    private final SieDocument document;
+    private final List<Exception> validationExceptions;
+    private final List<Exception> validationWarnings;
+    private final Exception failure;
+    private final Duration duration;
+
+    SieBatchResult(int index, Path file, SieDocument document, List<Exception> validationExceptions,
+                   List<Exception> validationWarnings, Exception failure, Duration duration) {
+        this.index = index;
+        this.file = file;
+        this.document = document;
+        this.validationExceptions = validationExceptions;
+        this.validationWarnings = validationWarnings;
+        this.failure = failure;
+        this.duration = duration;
+    }
+
+    int getIndex() { return index; }
+
+    /**
+     * Returns the file that was read.
+     * @return the file
+     */
+    public Path getFile() { return file; }
+
+    /**
+     * Returns the document read from the file.
+     * @return the document, or {@code null} if reading failed or the file is not a valid SIE file
+     */
+    public SieDocument getDocument() { return document; }
+
+    /**
+     * Returns the validation errors collected while reading the file, see
+     * {@link SieDocumentReader#getValidationExceptions()}.
+     * @return the validation exceptions
+     */
+    public List<Exception> getValidationExceptions() { return validationExceptions; }
+
+    /**
+     * Returns the validation warnings collected while reading the file, see
+     * {@link SieDocumentReader#getValidationWarnings()}.
+     * @return the validation warnings
+     */
+    public List<Exception> getValidationWarnings() { return validationWarnings; }
+
+    /**
+     * Returns the exception that stopped reading the file, e.g. an {@link java.io.IOException}
+     * or, when the reader throws errors, the first {@link SieException}.
+     * @return the exception, or {@code null} if the file was read to the end
+     */
+    public Exception getFailure() { return failure; }
+
+    /**
+     * Returns whether the file was read to the end into a document.
+     * @return {@code true} if there is a document and no failure
+     */
+    public boolean isSuccess() { return failure == null && document != null; }
+
+    /**
+     * Returns the time it took to read the file, including creating its reader.
+     * @return the duration
+     */
+    public Duration getDuration() { return duration; }
+
+    @Override
+    public String toString() {
+        return file + (isSuccess() ? " read" : " failed") + " in " + duration.toMillis() + " ms"
+            + (failure != null ? ": " + failure : "");
+    }
+}
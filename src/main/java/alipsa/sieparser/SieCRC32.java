@@ -23,22 +23,34 @@ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
 SOFTWARE.
 */
 
+
 package alipsa.sieparser;
 
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
 /**
  * Implementation of the CRC32 checksum algorithm as specified in the SIE file format (#KSUMMA).
  * Used to verify the integrity of SIE file data.
+ *
+ * <p>The checksum is the standard CRC-32 (as in {@link CRC32}) over the item type and the data
+ * fields of every record, without separators. Quotes, braces and whitespace are left out of object
+ * lists, and the <code>{</code> and <code>}</code> lines around voucher rows are not included.
+ * Only object-list style fields (containing <code>{</code> or <code>}</code>) are normalized,
+ * regular string fields such as company names with spaces are left unchanged.</p>
+ *
+ * <p>Each record is encoded and normalized in a reused byte array, so no strings or byte arrays
+ * are created per field. Records read by a {@link SieTokenizer} are copied straight from the
+ * input buffer.</p>
  */
 public class SieCRC32 {
     private boolean started = false;
-    private static long CRC32_POLYNOMIAL = 0xEDB88320;
-    private long[] CRCTable = new long[256];
-    private long crc;
+    private final CRC32 crc = new CRC32();
+    private byte[] scratch = new byte[256];
+    private int length;
 
-    /** Creates a new CRC32 instance and initializes the CRC table. */
-    public SieCRC32() {
-        createCrcTable();
-    }
+    /** Creates a new CRC32 instance. */
+    public SieCRC32() {}
 
     /**
      * Returns whether the CRC calculation has been started.
@@ -48,47 +60,60 @@ public class SieCRC32 {
         return started;
     }
 
-    private void createCrcTable() {
-        int i;
-        long j;
-        long crc;
-        for (i = 0; i <= 255; i++) {
-            crc = i;
-            for (j = 8; j > 0; j--) {
-                if ((crc & 1) == 1) {
-                    crc = (crc >> 1) ^ CRC32_POLYNOMIAL;
-                } else {
-                    crc >>= 1;
-                }
-            }
-            CRCTable[i] = crc;
-        }
-    }
-
     /** Resets and starts the CRC calculation. */
     public void start() {
-        crc = 0xFFFFFFFF;
+        crc.reset();
         started = true;
     }
 
+    /** Clears the checksum and marks the calculation as not started. */
+    void reset() {
+        crc.reset();
+        started = false;
+    }
+
     /**
      * Adds the data from a SIE data item to the running CRC calculation.
      * @param item the data item to include in the checksum
      */
     public void addData(SieDataItem item) {
-        crcAccumulate(Encoding.getBytes(item.getItemType()));
-        for (String d : item.getData()) {
-            String dataForCrc;
-            // Normalize only object-list style fields (containing '{' or '}'),
-            // leave regular string fields (e.g. company names with spaces) unchanged.
-            if (d.contains("{") || d.contains("}")) {
-                dataForCrc = d.replace("{", "").replace("}", "")
-                              .replace("\"", "").replace(" ", "").replace("\t", "");
-            } else {
-                dataForCrc = d;
+        String itemType = item.getItemType();
+        if ("{".equals(itemType) || "}".equals(itemType)) return;
+        length = 0;
+        SieTokenizer tokenizer = item.getTokenizer();
+        if (tokenizer != null) {
+            addRecord(tokenizer);
+        } else {
+            addText(itemType);
+            for (String d : item.getData()) {
+                addText(d);
             }
-            crcAccumulate(Encoding.getBytes(dataForCrc));
         }
+        crc.update(scratch, 0, length);
+    }
+
+    /**
+     * Adds a record whose item type and fields are already encoded and normalized, i.e. the
+     * bytes {@link #addData(SieDataItem)} would add for it.
+     */
+    void addNormalized(byte[] record, int offset, int length) {
+        crc.update(record, offset, length);
+    }
+
+    /**
+     * Encodes and normalizes the current record of a tokenizer into {@link #getNormalized()},
+     * i.e. the bytes {@link #addData(SieDataItem)} would add for it, without adding them.
+     * @return the number of bytes
+     */
+    int normalize(SieTokenizer tokenizer) {
+        length = 0;
+        addRecord(tokenizer);
+        return length;
+    }
+
+    /** Returns the bytes of the last {@link #normalize(SieTokenizer)}. */
+    byte[] getNormalized() {
+        return scratch;
     }
 
     /**
@@ -96,16 +121,69 @@ public class SieCRC32 {
      * @return the CRC32 checksum value
      */
     public long checksum() {
-        return (~crc);
+        return crc.getValue();
+    }
+
+    private void addRecord(SieTokenizer tokenizer) {
+        int tagStart = tokenizer.getTagStart();
+        int tagLength = tokenizer.getTagEnd() - tagStart;
+        ensureCapacity(tagLength);
+        tokenizer.getBuffer().get(tagStart, scratch, length, tagLength);
+        length += tagLength;
+        int count = tokenizer.getFieldCount();
+        for (int i = 0; i < count; i++) {
+            ensureCapacity(tokenizer.getFieldEnd(i) - tokenizer.getFieldStart(i));
+            int n = tokenizer.getFieldBytes(i, scratch, length);
+            length += n;
+            normalizeObjectList(length - n);
+        }
+    }
+
+    /**
+     * Removes braces, quotes and whitespace from the field starting at {@code from}, in place,
+     * if the field holds an object list.
+     */
+    private void normalizeObjectList(int from) {
+        boolean objectList = false;
+        for (int i = from; i < length; i++) {
+            if (scratch[i] == '{' || scratch[i] == '}') {
+                objectList = true;
+                break;
+            }
+        }
+        if (!objectList) return;
+        int n = from;
+        for (int i = from; i < length; i++) {
+            byte b = scratch[i];
+            if (!isObjectListSeparator(b)) scratch[n++] = b;
+        }
+        length = n;
+    }
+
+    private void addText(String text) {
+        int len = text.length();
+        ensureCapacity(len);
+        int from = length;
+        for (int i = 0; i < len; i++) {
+            char c = text.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(text.charAt(i + 1))) {
+                // a supplementary character encodes to a single '?'
+                i++;
+            }
+            scratch[length++] = Encoding.encode(c);
+        }
+        normalizeObjectList(from);
+    }
+
+    private static boolean isObjectListSeparator(byte b) {
+        return b == '{' || b == '}' || b == '"' || b == ' ' || b == '\t';
     }
 
-    private void crcAccumulate(byte[] buffer) {
-        long temp1;
-        long temp2;
-        for (byte p : buffer) {
-            temp1 = (crc >> 8) & 0x00FFFFFF;
-            temp2 = CRCTable[((int) crc ^ p) & 0xff];
-            crc = temp1 ^ temp2;
+    private void ensureCapacity(int extra) {
+        if (length + extra > scratch.length) {
+            byte[] grown = new byte[Math.max(length + extra, scratch.length * 2)];
+            System.arraycopy(scratch, 0, grown, 0, length);
+            scratch = grown;
         }
     }
 }
@@ -0,0 +1,339 @@
+/*
+MIT License
+
+Copyright (c) 2015 Johan Idstam
+Modifications by Per Nyfelt Copyright (c) 2016 Alipsa HB
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package alipsa.sieparser;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A list of vouchers that stores the vouchers and their rows column by column in primitive arrays
+ * instead of as objects. Accounts and objects are stored as handles into tables of the shared
+ * instances, amounts and quantities as longs of hundredths, and dates as epoch days.
+ * Used by {@link SieDocumentReader} when {@link SieDocumentReader#setColumnarVouchers(boolean)} is enabled.
+ * <p>
+ * {@link #get(int)} materializes a new {@link SieVoucher} with its rows on every call, so changes
+ * made to a returned voucher are not written back. Vouchers can only be appended; {@link #set},
+ * {@link #remove(int)} and inserting anywhere but at the end are not supported.
+ * </p>
+ */
+class SieColumnarVoucherList extends AbstractList<SieVoucher> implements RandomAccess {
+
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    /** Scale marking a null amount or quantity. */
+    private static final byte NULL_SCALE = -1;
+    /** Scale marking a value that does not fit a long of hundredths and is kept as a BigDecimal. */
+    private static final byte BIG_SCALE = -2;
+    private static final int MAX_SHARED_STRINGS = 4096;
+    private static final int MAX_SHARED_LENGTH = 40;
+
+    private int size;
+    private String[] series = new String[16];
+    private String[] number = new String[16];
+    private int[] voucherDate = new int[16];
+    private String[] text = new String[16];
+    private int[] createdDate = new int[16];
+    private String[] createdBy = new String[16];
+    private String[] token = new String[16];
+    private long[] fingerprint = new long[16];
+    private final BitSet fingerprinted = new BitSet();
+    private int[] firstRow = new int[17];
+
+    private int rowCount;
+    private int[] rowAccount = new int[64];
+    private long[] rowAmount = new long[64];
+    private byte[] rowAmountScale = new byte[64];
+    private int[] rowDate = new int[64];
+    private String[] rowText = new String[64];
+    private String[] rowCreatedBy = new String[64];
+    private byte[] rowToken = new byte[64];
+    private int[] objectOffset = new int[65];
+    private final BitSet nullObjects = new BitSet();
+    private long[] rowQuantity;
+    private byte[] rowQuantityScale;
+    private final Map<Long, BigDecimal> bigValues = new HashMap<>();
+
+    private int[] objectPool = new int[64];
+    private final List<SieAccount> accounts = new ArrayList<>();
+    private final Map<SieAccount, Integer> accountHandles = new IdentityHashMap<>();
+    private final List<SieObject> objects = new ArrayList<>();
+    private final Map<SieObject, Integer> objectHandles = new IdentityHashMap<>();
+    private final List<String> tokens = new ArrayList<>();
+    private final Map<String, String> sharedStrings = new HashMap<>();
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the total number of rows of all vouchers.
+     * @return the number of rows
+     */
+    int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public SieVoucher get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        SieVoucher v = new SieVoucher();
+        v.setSeries(series[index]);
+        v.setNumber(number[index]);
+        v.setVoucherDate(toDate(voucherDate[index]));
+        v.setText(text[index]);
+        v.setCreatedDate(toDate(createdDate[index]));
+        v.setCreatedBy(createdBy[index]);
+        v.setToken(token[index]);
+        if (fingerprinted.get(index)) v.setFingerprint(fingerprint[index]);
+        List<SieVoucherRow> rows = new ArrayList<>(firstRow[index + 1] - firstRow[index]);
+        for (int r = firstRow[index]; r < firstRow[index + 1]; r++) {
+            rows.add(row(r));
+        }
+        v.setRows(rows);
+        return v;
+    }
+
+    @Override
+    public void add(int index, SieVoucher v) {
+        if (index != size) throw new UnsupportedOperationException("Vouchers can only be appended");
+        ensureVoucherCapacity();
+        series[size] = v.getSeries();
+        number[size] = v.getNumber();
+        voucherDate[size] = fromDate(v.getVoucherDate());
+        text[size] = v.getText();
+        createdDate[size] = fromDate(v.getCreatedDate());
+        createdBy[size] = v.getCreatedBy();
+        token[size] = v.getToken();
+        fingerprinted.set(size, v.isFingerprinted());
+        if (v.isFingerprinted()) fingerprint[size] = v.getFingerprint();
+        if (v.getRows() != null) {
+            for (SieVoucherRow row : v.getRows()) addRow(row);
+        }
+        size++;
+        firstRow[size] = rowCount;
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(series, 0, size, null);
+        Arrays.fill(number, 0, size, null);
+        Arrays.fill(text, 0, size, null);
+        Arrays.fill(createdBy, 0, size, null);
+        Arrays.fill(token, 0, size, null);
+        Arrays.fill(rowText, 0, rowCount, null);
+        Arrays.fill(rowCreatedBy, 0, rowCount, null);
+        size = 0;
+        rowCount = 0;
+        nullObjects.clear();
+        fingerprinted.clear();
+        rowQuantity = null;
+        rowQuantityScale = null;
+        bigValues.clear();
+        accounts.clear();
+        accountHandles.clear();
+        objects.clear();
+        objectHandles.clear();
+        tokens.clear();
+        sharedStrings.clear();
+        modCount++;
+    }
+
+    private SieVoucherRow row(int r) {
+        SieVoucherRow row = new SieVoucherRow();
+        row.setAccount(rowAccount[r] < 0 ? null : accounts.get(rowAccount[r]));
+        if (!nullObjects.get(r)) {
+            List<SieObject> rowObjects = new ArrayList<>(objectOffset[r + 1] - objectOffset[r]);
+            for (int i = objectOffset[r]; i < objectOffset[r + 1]; i++) {
+                rowObjects.add(objects.get(objectPool[i]));
+            }
+            row.setObjects(rowObjects);
+        }
+        byte scale = rowAmountScale[r];
+        if (scale >= 0) {
+            row.setAmount(rowAmount[r], scale);
+        } else {
+            row.setAmount(toDecimal(rowAmount[r], scale, 2L * r));
+        }
+        row.setRowDate(toDate(rowDate[r]));
+        row.setText(rowText[r]);
+        row.setCreatedBy(rowCreatedBy[r]);
+        row.setToken(tokens.get(rowToken[r] & 0xff));
+        if (rowQuantity != null && r < rowQuantity.length) {
+            row.setQuantity(toDecimal(rowQuantity[r], rowQuantityScale[r], 2L * r + 1));
+        }
+        return row;
+    }
+
+    private void addRow(SieVoucherRow row) {
+        ensureRowCapacity();
+        int r = rowCount;
+        rowAccount[r] = row.getAccount() == null ? -1 : handle(row.getAccount(), accounts, accountHandles);
+        if (row.getAmountHundredths() != SieAmount.NONE) {
+            rowAmount[r] = row.getAmountHundredths();
+            rowAmountScale[r] = (byte) row.getAmountScale();
+        } else {
+            rowAmountScale[r] = fromDecimal(row.getAmount(), rowAmount, r, 2L * r);
+        }
+        rowDate[r] = fromDate(row.getRowDate());
+        rowText[r] = share(row.getText());
+        rowCreatedBy[r] = share(row.getCreatedBy());
+        rowToken[r] = tokenIndex(row.getToken());
+
+        int pool = objectOffset[r];
+        if (row.getObjects() == null) {
+            nullObjects.set(r);
+        } else {
+            nullObjects.clear(r);
+            if (objectPool.length < pool + row.getObjects().size()) {
+                objectPool = Arrays.copyOf(objectPool, Math.max(pool + row.getObjects().size(), objectPool.length * 3 / 2));
+            }
+            for (SieObject o : row.getObjects()) {
+                objectPool[pool++] = handle(o, objects, objectHandles);
+            }
+        }
+        objectOffset[r + 1] = pool;
+
+        if (row.getQuantity() != null || rowQuantity != null) {
+            ensureQuantityCapacity();
+            rowQuantityScale[r] = fromDecimal(row.getQuantity(), rowQuantity, r, 2L * r + 1);
+        }
+        rowCount++;
+    }
+
+    /**
+     * Stores a decimal as a long of hundredths.
+     * @return the scale of the value, or a marker for null and for values kept in {@link #bigValues}
+     */
+    private byte fromDecimal(BigDecimal value, long[] column, int r, long key) {
+        if (value == null) return NULL_SCALE;
+        long hundredths = SieAmount.of(value);
+        if (hundredths != SieAmount.NONE) {
+            column[r] = hundredths;
+            return (byte) value.scale();
+        }
+        bigValues.put(key, value);
+        return BIG_SCALE;
+    }
+
+    private BigDecimal toDecimal(long hundredths, byte scale, long key) {
+        if (scale == NULL_SCALE) return null;
+        if (scale == BIG_SCALE) return bigValues.get(key);
+        return SieAmount.toBigDecimal(hundredths, scale);
+    }
+
+    private static int fromDate(LocalDate date) {
+        return date == null ? NO_DATE : (int) date.toEpochDay();
+    }
+
+    private static LocalDate toDate(int epochDay) {
+        return epochDay == NO_DATE ? null : SieDate.toLocalDate(epochDay);
+    }
+
+    private static <T> int handle(T value, List<T> values, Map<T, Integer> handles) {
+        Integer handle = handles.get(value);
+        if (handle == null) {
+            handle = values.size();
+            values.add(value);
+            handles.put(value, handle);
+        }
+        return handle;
+    }
+
+    /**
+     * Returns an equal String seen before, since row texts and signatures tend to repeat.
+     * Only short strings are shared, and only up to a fixed number of distinct ones.
+     */
+    private String share(String value) {
+        if (value == null || value.length() > MAX_SHARED_LENGTH) return value;
+        String shared = sharedStrings.get(value);
+        if (shared != null) return shared;
+        if (sharedStrings.size() < MAX_SHARED_STRINGS) sharedStrings.put(value, value);
+        return value;
+    }
+
+    private byte tokenIndex(String rowToken) {
+        int i = tokens.indexOf(rowToken);
+        if (i < 0) {
+            if (tokens.size() == 256) throw new IllegalStateException("Too many distinct row tokens");
+            i = tokens.size();
+            tokens.add(rowToken);
+        }
+        return (byte) i;
+    }
+
+    private void ensureVoucherCapacity() {
+        if (size < series.length) return;
+        int capacity = series.length * 3 / 2;
+        series = Arrays.copyOf(series, capacity);
+        number = Arrays.copyOf(number, capacity);
+        voucherDate = Arrays.copyOf(voucherDate, capacity);
+        text = Arrays.copyOf(text, capacity);
+        createdDate = Arrays.copyOf(createdDate, capacity);
+        createdBy = Arrays.copyOf(createdBy, capacity);
+        token = Arrays.copyOf(token, capacity);
+        fingerprint = Arrays.copyOf(fingerprint, capacity);
+        firstRow = Arrays.copyOf(firstRow, capacity + 1);
+    }
+
+    private void ensureRowCapacity() {
+        if (rowCount < rowAccount.length) return;
+        int capacity = rowAccount.length * 3 / 2;
+        rowAccount = Arrays.copyOf(rowAccount, capacity);
+        rowAmount = Arrays.copyOf(rowAmount, capacity);
+        rowAmountScale = Arrays.copyOf(rowAmountScale, capacity);
+        rowDate = Arrays.copyOf(rowDate, capacity);
+        rowText = Arrays.copyOf(rowText, capacity);
+        rowCreatedBy = Arrays.copyOf(rowCreatedBy, capacity);
+        rowToken = Arrays.copyOf(rowToken, capacity);
+        objectOffset = Arrays.copyOf(objectOffset, capacity + 1);
+    }
+
+    /** Allocates the quantity columns when the first quantity arrives, earlier rows having none. */
+    private void ensureQuantityCapacity() {
+        if (rowQuantity == null) {
+            rowQuantity = new long[rowAccount.length];
+            rowQuantityScale = new byte[rowAccount.length];
+            Arrays.fill(rowQuantityScale, NULL_SCALE);
+        } else if (rowQuantity.length < rowAccount.length) {
+            int old = rowQuantity.length;
+            rowQuantity = Arrays.copyOf(rowQuantity, rowAccount.length);
+            rowQuantityScale = Arrays.copyOf(rowQuantityScale, rowAccount.length);
+            Arrays.fill(rowQuantityScale, old, rowQuantityScale.length, NULL_SCALE);
+        }
+    }
+}
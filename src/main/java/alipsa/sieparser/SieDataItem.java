@@ -41,6 +41,7 @@ public class SieDataItem {
     private String itemType;
     private List<String> data;
     private String rawData;
+    private SieTokenizer tokenizer;
 
     /**
      * Creates a new data item by parsing the given line.
@@ -63,6 +64,32 @@ public class SieDataItem {
         }
     }
 
+    /**
+     * Creates a data item for the current record of a tokenizer. Fields are read lazily from the
+     * tokenizer, so the item is only valid until the tokenizer advances to the next record.
+     * @param tokenizer the tokenizer positioned on the record
+     * @param documentReader the document reader context
+     * @param doc the document being populated
+     */
+    SieDataItem(SieTokenizer tokenizer, SieDocumentReader documentReader, SieDocument doc) {
+        this.tokenizer = tokenizer;
+        setDocumentReader(documentReader);
+        document = doc;
+        itemType = tokenizer.getItemType();
+    }
+
+    /**
+     * Moves a tokenizer backed item to the current record of the tokenizer, so that one item can
+     * serve every record of a document.
+     * @param tokenizer the tokenizer positioned on the record
+     */
+    void moveTo(SieTokenizer tokenizer) {
+        this.tokenizer = tokenizer;
+        itemType = tokenizer.getItemType();
+        data = null;
+        rawData = null;
+    }
+
     /**
      * Returns the document reader context.
      * @return the document reader
@@ -100,6 +127,7 @@ public class SieDataItem {
      * @return the list of data field strings
      */
     public List<String> getData() {
+        if (data == null && tokenizer != null) data = tokenizer.getFields();
         return data;
     }
 
@@ -109,6 +137,7 @@ public class SieDataItem {
      */
     public void setData(List<String> value) {
         data = value;
+        tokenizer = null;
     }
 
     /**
@@ -116,6 +145,7 @@ public class SieDataItem {
      * @return the raw data string
      */
     public String getRawData() {
+        if (rawData == null && tokenizer != null) rawData = tokenizer.getLine();
         return rawData;
     }
 
@@ -127,6 +157,32 @@ public class SieDataItem {
         rawData = value;
     }
 
+    /**
+     * Returns whether the raw line contains the given text, without decoding the line
+     * when the item is backed by a tokenizer.
+     */
+    boolean rawContains(String text) {
+        if (rawData == null && tokenizer != null) return tokenizer.lineContains(text);
+        return getRawData().contains(text);
+    }
+
+    /**
+     * Returns the tokenizer backing this item, or {@code null} when the fields are held as strings.
+     */
+    SieTokenizer getTokenizer() {
+        return tokenizer;
+    }
+
+    private int fieldCount() {
+        if (data == null && tokenizer != null) return tokenizer.getFieldCount();
+        return data.size();
+    }
+
+    private String field(int field) {
+        if (data == null && tokenizer != null) return tokenizer.getField(field);
+        return data.get(field);
+    }
+
     private int firstWhiteSpace(String str) {
         int a = str.indexOf(" ");
         int b = str.indexOf("\t");
@@ -136,7 +192,7 @@ public class SieDataItem {
         return Math.min(a, b);
     }
 
-    List<String> splitLine(String untrimmedData) {
+    static List<String> splitLine(String untrimmedData) {
         String data = untrimmedData.trim();
         List<String> ret = new ArrayList<>();
         int isInField = 0;
@@ -189,8 +245,8 @@ public class SieDataItem {
      * @return the long value
      */
     public long getLong(int field) {
-        if (getData().size() <= field) return 0;
-        return Long.parseLong(getData().get(field));
+        if (fieldCount() <= field) return 0;
+        return Long.parseLong(field(field));
     }
 
     /**
@@ -209,9 +265,10 @@ public class SieDataItem {
      * @return the Integer value, or {@code null}
      */
     public Integer getIntNull(int field) {
-        if (getData().size() <= field) return null;
+        if (fieldCount() <= field) return null;
+        if (data == null && tokenizer != null) return tokenizer.getIntNull(field);
         try {
-            return Integer.parseInt(getData().get(field));
+            return Integer.parseInt(field(field));
         } catch (NumberFormatException e) {
             return null;
         }
@@ -233,22 +290,44 @@ public class SieDataItem {
      * @return the BigDecimal value, or {@code null}
      */
     public BigDecimal getDecimalNull(int field) {
-        if (getData().size() <= field) return null;
+        if (fieldCount() <= field) return null;
+        long hundredths = getHundredths(field);
+        if (hundredths != SieAmount.NONE) return SieAmount.toBigDecimal(hundredths, getScale(field));
         try {
-            return new BigDecimal(getData().get(field));
+            return new BigDecimal(field(field));
         } catch (NumberFormatException e) {
             return null;
         }
     }
 
+    /**
+     * Returns the field at the given index as a fixed-point amount.
+     * @return the amount in hundredths, or {@link SieAmount#NONE} if the field does not exist
+     *         or is not a plain amount with at most two decimals
+     */
+    long getHundredths(int field) {
+        if (fieldCount() <= field) return SieAmount.NONE;
+        if (data == null && tokenizer != null) return tokenizer.getHundredths(field);
+        return SieAmount.parse(field(field));
+    }
+
+    /**
+     * Returns the number of decimals of the amount in the field at the given index.
+     * Only meaningful when {@link #getHundredths(int)} returned an amount.
+     */
+    int getScale(int field) {
+        if (data == null && tokenizer != null) return tokenizer.getScale(field);
+        return SieAmount.scale(field(field));
+    }
+
     /**
      * Returns the field at the given index as a trimmed string, or an empty string if the field does not exist.
      * @param field the zero-based field index
      * @return the string value
      */
     public String getString(int field) {
-        if (getData().size() <= field) return "";
-        String s = getData().get(field).trim();
+        if (fieldCount() <= field) return "";
+        String s = field(field).trim();
         s = StringUtil.trim(s, new char[]{'"'});
         return s;
     }
@@ -259,24 +338,15 @@ public class SieDataItem {
      * @return the LocalDate value, or {@code null}
      */
     public LocalDate getDate(int field) {
-        if (getData().size() <= field) return null;
-
-        String foo = getData().get(field).trim();
-        if (foo.isEmpty()) return null;
+        if (fieldCount() <= field) return null;
 
-        if (foo.length() != 8) {
-            getDocumentReader().getCallbacks().callbackException(new SieDateException(foo + " is not a valid date"));
-            return null;
-        }
-        try {
-            int y = Integer.parseInt(foo.substring(0, 4));
-            int m = Integer.parseInt(foo.substring(4, 6));
-            int d = Integer.parseInt(foo.substring(6, 8));
-            return LocalDate.of(y, m, d);
-        } catch (NumberFormatException | java.time.DateTimeException e) {
-            getDocumentReader().getCallbacks().callbackException(new SieDateException(foo + " is not a valid date"));
+        int epochDay = data == null && tokenizer != null ? tokenizer.getEpochDay(field) : SieDate.parse(field(field));
+        if (epochDay == SieDate.EMPTY) return null;
+        if (epochDay == SieDate.NONE) {
+            getDocumentReader().callbackException(new SieDateException(field(field).trim() + " is not a valid date"));
             return null;
         }
+        return SieDate.toLocalDate(epochDay);
     }
 
     /**
@@ -284,51 +354,6 @@ public class SieDataItem {
      * @return the list of SIE objects, or {@code null} if the object field is empty or missing
      */
     public List<SieObject> getObjects() {
-        String dimNumber;
-        String objectNumber;
-        List<SieObject> ret = new ArrayList<>();
-        if (getRawData().contains("{}")) return null;
-
-        String data = null;
-        for (String i : getData()) {
-            if (i.trim().startsWith("{")) {
-                data = i.trim().replace("{", "").replace("}", "");
-                break;
-            }
-        }
-        if (data == null) {
-            getDocumentReader().getCallbacks().callbackException(new SieMissingObjectException(getRawData()));
-            return null;
-        }
-
-        List<String> dimData = splitLine(data);
-        for (int i = 0; i < dimData.size(); i += 2) {
-            dimNumber = dimData.get(i);
-            // Look up UNDERDIM/TEMPDIM first, then fall back to DIM
-            if (!document.getDIM().containsKey(dimNumber)) {
-                if (document.getUNDERDIM().containsKey(dimNumber)) {
-                    SieDimension underDim = document.getUNDERDIM().get(dimNumber);
-                    document.getDIM().put(dimNumber, underDim);
-                } else {
-                    // Check TEMPDIM
-                    if (document.getTEMPDIM().containsKey(dimNumber)) {
-                        SieDimension tempDim = document.getTEMPDIM().get(dimNumber);
-                        document.getDIM().put(dimNumber, tempDim);
-                    } else {
-                        document.getDIM().put(dimNumber, new SieDimension(dimNumber, "[TEMP]"));
-                        document.getTEMPDIM().put(dimNumber, document.getDIM().get(dimNumber));
-                    }
-                }
-            }
-
-            SieDimension d = document.getDIM().get(dimNumber);
-            objectNumber = dimData.get(i + 1);
-            if (!d.getObjects().containsKey(objectNumber)) {
-                d.getObjects().put(objectNumber, new SieObject(d, objectNumber, "[TEMP]"));
-            }
-
-            ret.add(d.getObjects().get(objectNumber));
-        }
-        return ret;
+        return document.getSymbols().getObjects(this);
     }
 }
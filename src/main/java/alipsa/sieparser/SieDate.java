@@ -0,0 +1,179 @@
+/*
+MIT License
+
+Copyright (c) 2015 Johan Idstam
+Modifications by Per Nyfelt Copyright (c) 2016 Alipsa HB
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+
+package alipsa.sieparser;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Parses and formats SIE dates ({@code yyyyMMdd}) without going through substrings or a
+ * {@link DateTimeFormatter}. Dates are parsed into epoch days, and the {@link LocalDate} and
+ * formatted text of recently used dates are cached, since a ledger uses a few hundred distinct
+ * dates across all of its rows.
+ * <p>
+ * The cache is a fixed-size table indexed by epoch day, so consecutive dates never evict each
+ * other. Entries are immutable and may be shared between threads.
+ * </p>
+ */
+final class SieDate {
+
+    /** Marks a field that is not a valid date. */
+    static final int NONE = Integer.MIN_VALUE;
+    /** Marks a field that is empty or blank. */
+    static final int EMPTY = Integer.MAX_VALUE;
+
+    private static final int DAYS_0000_TO_1970 = 719528;
+    private static final int CACHE_SIZE = 2048;
+    private static final Entry[] CACHE = new Entry[CACHE_SIZE];
+    private static final DateTimeFormatter SIE_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private SieDate() {}
+
+    private static final class Entry {
+        final int epochDay;
+        final LocalDate date;
+        final String text;
+
+        Entry(int epochDay, LocalDate date, String text) {
+            this.epochDay = epochDay;
+            this.date = date;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Parses a date in {@code yyyyMMdd} format, ignoring surrounding whitespace.
+     * @return the epoch day, {@link #EMPTY} for a blank value or {@link #NONE} if it is not a valid date
+     */
+    static int parse(CharSequence value) {
+        int from = 0;
+        int to = value.length();
+        while (from < to && value.charAt(from) <= ' ') from++;
+        while (to > from && value.charAt(to - 1) <= ' ') to--;
+        if (from == to) return EMPTY;
+        if (to - from != 8) return NONE;
+        int digits = 0;
+        for (int i = from; i < to; i++) {
+            int d = value.charAt(i) - '0';
+            if (d < 0 || d > 9) return NONE;
+            digits = digits * 10 + d;
+        }
+        return epochDay(digits);
+    }
+
+    /**
+     * Parses a date in {@code yyyyMMdd} format from IBM437 bytes.
+     * @see #parse(CharSequence)
+     */
+    static int parse(ByteBuffer buffer, int from, int to) {
+        while (from < to && (buffer.get(from) & 0xff) <= ' ') from++;
+        while (to > from && (buffer.get(to - 1) & 0xff) <= ' ') to--;
+        if (from == to) return EMPTY;
+        if (to - from != 8) return NONE;
+        int digits = 0;
+        for (int i = from; i < to; i++) {
+            int d = buffer.get(i) - '0';
+            if (d < 0 || d > 9) return NONE;
+            digits = digits * 10 + d;
+        }
+        return epochDay(digits);
+    }
+
+    private static int epochDay(int yyyymmdd) {
+        int year = yyyymmdd / 10000;
+        int month = yyyymmdd / 100 % 100;
+        int day = yyyymmdd % 100;
+        if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) return NONE;
+        // same arithmetic as LocalDate.toEpochDay() for years 0 to 9999
+        int total = 365 * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367 * month - 362) / 12 + day - 1;
+        if (month > 2) total -= isLeap(year) ? 1 : 2;
+        return total - DAYS_0000_TO_1970;
+    }
+
+    private static boolean isLeap(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeap(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /** Returns the (possibly cached) LocalDate for an epoch day. */
+    static LocalDate toLocalDate(int epochDay) {
+        Entry entry = CACHE[epochDay & (CACHE_SIZE - 1)];
+        if (entry != null && entry.epochDay == epochDay) return entry.date;
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        CACHE[epochDay & (CACHE_SIZE - 1)] = new Entry(epochDay, date, null);
+        return date;
+    }
+
+    /** Formats a date as {@code yyyyMMdd}, reusing the text of recently formatted dates. */
+    static String toString(LocalDate date) {
+        long epochDay = date.toEpochDay();
+        int year = date.getYear();
+        if (year < 0 || year > 9999) return date.format(SIE_DATE_FORMAT);
+        int slot = (int) epochDay & (CACHE_SIZE - 1);
+        Entry entry = CACHE[slot];
+        if (entry != null && entry.epochDay == epochDay && entry.text != null) return entry.text;
+        StringBuilder sb = new StringBuilder(8);
+        appendTo(sb, date);
+        String text = sb.toString();
+        LocalDate cached = entry != null && entry.epochDay == epochDay ? entry.date : date;
+        CACHE[slot] = new Entry((int) epochDay, cached, text);
+        return text;
+    }
+
+    /** Appends a date as {@code yyyyMMdd}. */
+    static void appendTo(StringBuilder sb, LocalDate date) {
+        int year = date.getYear();
+        if (year < 0 || year > 9999) {
+            sb.append(date.format(SIE_DATE_FORMAT));
+            return;
+        }
+        appendDigits(sb, year, 1000);
+        appendDigits(sb, date.getMonthValue(), 10);
+        appendDigits(sb, date.getDayOfMonth(), 10);
+    }
+
+    private static void appendDigits(StringBuilder sb, int value, int divisor) {
+        for (; divisor > 0; divisor /= 10) {
+            sb.append((char) ('0' + value / divisor % 10));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+MIT License
+
+Copyright (c) 2015 Johan Idstam
+Modifications by Per Nyfelt Copyright (c) 2016 Alipsa HB
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package alipsa.sieparser;
+
+/**
+ * One difference between two documents found by {@link SieDocumentComparer}.
+ * <p>
+ * A difference is about one record, identified by its record type, e.g. {@link SIE#VER} or
+ * {@link SIE#KONTO}, and a key within that type, e.g. {@code "A 12"} for a voucher or the
+ * account number for an account. The old value is the one in the first document and the new
+ * value the one in the second, so an {@link Kind#ADDED} record only has a new value and a
+ * {@link Kind#REMOVED} record only an old one.
+ * </p>
+ */
+public class SieDifference {
+
+    /** The kind of difference. */
+    public enum Kind {
+        /** The record is only in the second document. */
+        ADDED,
+        /** The record is only in the first document. */
+        REMOVED,
+        /** The record is in both documents but differs. */
+        CHANGED
+    }
+
+    private final Kind kind;
+    private final String recordType;
+    private final String key;
+    private final String field;
+    private final Object oldValue;
+    private final Object newValue;
+    private final String message;
+
+    SieDifference(Kind kind, String recordType, String key, String field, Object oldValue, Object newValue, String message) {
+        this.kind = kind;
+        this.recordType = recordType;
+        this.key = key;
+        this.field = field;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+        this.message = message;
+    }
+
+    /**
+     * Returns whether the record was added, removed or changed.
+     * @return the kind of difference
+     */
+    public Kind getKind() { return kind; }
+
+    /**
+     * Returns the label of the record that differs, e.g. {@link SIE#VER}, {@link SIE#IB} or {@link SIE#FLAGGA}.
+     * @return the record type
+     */
+    public String getRecordType() { return recordType; }
+
+    /**
+     * Returns what identifies the record within its type: series and number for vouchers, the
+     * account number for accounts, the account, year, period and objects for period values,
+     * the dimension number, the booking year id or the position in #PROGRAM.
+     * @return the key, or {@code null} for records that occur once per document
+     */
+    public String getKey() { return key; }
+
+    /**
+     * Returns the field that differs in a changed record, e.g. {@code "Name"}, {@code "Rows"} or {@code "Amount"}.
+     * @return the field, or {@code null} if the whole record differs or it was added or removed
+     */
+    public String getField() { return field; }
+
+    /**
+     * Returns the value in the first document: the field value for a changed field, otherwise
+     * the record itself, e.g. a {@link SieVoucher} or {@link SiePeriodValue}.
+     * @return the old value, or {@code null} for an added record
+     */
+    public Object getOldValue() { return oldValue; }
+
+    /**
+     * Returns the value in the second document: the field value for a changed field, otherwise
+     * the record itself.
+     * @return the new value, or {@code null} for a removed record
+     */
+    public Object getNewValue() { return newValue; }
+
+    /**
+     * Returns the description of the difference, as listed by {@link SieDocumentComparer#compare(SieDocument, SieDocument)}.
+     * @return the message
+     */
+    public String getMessage() { return message; }
+
+    @Override
+    public String toString() {
+        return message;
+    }
+}
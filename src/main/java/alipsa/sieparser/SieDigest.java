@@ -0,0 +1,215 @@
+/*
+MIT License
+
+Copyright (c) 2015 Johan Idstam
+Modifications by Per Nyfelt Copyright (c) 2016 Alipsa HB
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package alipsa.sieparser;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * A compact stand-in for a voucher or period value, used by {@link SieFileComparer} to compare
+ * files without keeping their records. A digest holds the key of the record, a {@link SieHash}
+ * of everything {@link SieDocumentComparer} compares, and the few fields needed to describe a
+ * difference. Digests sort by section, key and hash, and can be written to and read from a
+ * run file.
+ */
+final class SieDigest implements Comparable<SieDigest> {
+
+    /** The record types digested, in the order {@link SieDocumentComparer} compares them. */
+    static final String[] SECTIONS = {SIE.IB, SIE.UB, SIE.OIB, SIE.OUB, SIE.PBUDGET, SIE.PSALDO, SIE.RES, SIE.VER};
+
+    static final int VOUCHER = SECTIONS.length - 1;
+
+    private static final char KEY_SEPARATOR = '\u0000';
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    final int section;
+    /** The key with its parts separated by NUL, so that keys of different parts never compare equal. */
+    final String key;
+    /** The key as the comparer describes it in its messages. */
+    final String label;
+    final long hash;
+    final String text;
+    final String token;
+    final long date;
+    final int rows;
+    final String amount;
+    final String quantity;
+
+    private SieDigest(int section, String key, String label, long hash, String text, String token, long date, int rows,
+                      String amount, String quantity) {
+        this.section = section;
+        this.key = key;
+        this.label = label;
+        this.hash = hash;
+        this.text = text;
+        this.token = token;
+        this.date = date;
+        this.rows = rows;
+        this.amount = amount;
+        this.quantity = quantity;
+    }
+
+    /**
+     * Returns the section of a record type.
+     * @return the index in {@link #SECTIONS}, or -1 if records of the type are not digested
+     */
+    static int section(String itemType) {
+        for (int i = 0; i < SECTIONS.length; i++) {
+            if (SECTIONS[i].equals(itemType)) return i;
+        }
+        return -1;
+    }
+
+    static SieDigest of(SieVoucher v) {
+        long rowsHash = 0;
+        for (SieVoucherRow r : v.getRows()) {
+            long h = SieHash.add(SieHash.SEED, r.getAccount() == null ? null : r.getAccount().getNumber());
+            h = SieHash.addAmount(h, r.getAmountHundredths(), r.getAmount());
+            h = SieHash.add(h, r.getCreatedBy());
+            h = SieHash.add(h, r.getRowDate());
+            h = SieHash.addAmount(h, r.getQuantity());
+            rowsHash += SieHash.addObjects(h, r.getObjects(), true);
+        }
+        long h = SieHash.add(SieHash.SEED, v.getSeries());
+        h = SieHash.add(h, v.getNumber());
+        h = SieHash.add(h, v.getText());
+        h = SieHash.add(h, v.getToken());
+        h = SieHash.add(h, v.getVoucherDate());
+        h = SieHash.add(h, v.getRows().size());
+        h = SieHash.add(h, rowsHash);
+        LocalDate date = v.getVoucherDate();
+        return new SieDigest(VOUCHER, v.getSeries() + KEY_SEPARATOR + v.getNumber(), v.getSeries() + ", " + v.getNumber(), h,
+            v.getText(), v.getToken(), date == null ? NO_DATE : date.toEpochDay(), v.getRows().size(), null, null);
+    }
+
+    static SieDigest of(int section, SiePeriodValue p) {
+        String account = p.getAccount() == null ? null : p.getAccount().getNumber();
+        StringBuilder key = new StringBuilder();
+        key.append(account).append(KEY_SEPARATOR).append(p.getYearNr()).append(KEY_SEPARATOR).append(p.getPeriod());
+        List<SieObject> objects = p.getObjects();
+        if (objects != null) {
+            key.append(KEY_SEPARATOR).append('{');
+            for (int i = 0; i < objects.size(); i++) {
+                if (i > 0) key.append(KEY_SEPARATOR);
+                key.append(objects.get(i).getDimension().getNumber()).append(KEY_SEPARATOR).append(objects.get(i).getNumber());
+            }
+            key.append('}');
+        }
+        long h = SieHash.add(SieHash.SEED, key.toString());
+        h = SieHash.add(h, p.getToken());
+        h = SieHash.addAmount(h, p.getAmount());
+        h = SieHash.addAmount(h, p.getQuantity());
+        h = SieHash.addObjects(h, objects, true);
+        String label = "Account=" + account + ", Year=" + p.getYearNr() + ", Period=" + p.getPeriod();
+        return new SieDigest(section, key.toString(), label, h, null, p.getToken(), NO_DATE, 0,
+            plain(p.getAmount()), plain(p.getQuantity()));
+    }
+
+    private static String plain(BigDecimal value) {
+        return value == null ? null : value.toPlainString();
+    }
+
+    String getRecordType() {
+        return SECTIONS[section];
+    }
+
+    /** Returns the key as reported in a {@link SieDifference}. */
+    String getKey() {
+        return key.replace(KEY_SEPARATOR, ' ');
+    }
+
+    boolean sameKey(SieDigest other) {
+        return other != null && section == other.section && key.equals(other.key);
+    }
+
+    LocalDate getDate() {
+        return date == NO_DATE ? null : LocalDate.ofEpochDay(date);
+    }
+
+    BigDecimal getAmount() {
+        return amount == null ? null : new BigDecimal(amount);
+    }
+
+    BigDecimal getQuantity() {
+        return quantity == null ? null : new BigDecimal(quantity);
+    }
+
+    /** Returns roughly how many bytes of heap the digest takes. */
+    long estimatedSize() {
+        return 112 + size(key) + size(label) + size(text) + size(token) + size(amount) + size(quantity);
+    }
+
+    private static long size(String s) {
+        return s == null ? 0 : 48 + s.length();
+    }
+
+    @Override
+    public int compareTo(SieDigest other) {
+        if (section != other.section) return Integer.compare(section, other.section);
+        int c = key.compareTo(other.key);
+        if (c != 0) return c;
+        return Long.compare(hash, other.hash);
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeByte(section);
+        writeString(out, key);
+        writeString(out, label);
+        out.writeLong(hash);
+        writeString(out, text);
+        writeString(out, token);
+        out.writeLong(date);
+        out.writeInt(rows);
+        writeString(out, amount);
+        writeString(out, quantity);
+    }
+
+    static SieDigest read(DataInput in) throws IOException {
+        return new SieDigest(in.readByte(), readString(in), readString(in), in.readLong(), readString(in), readString(in),
+            in.readLong(), in.readInt(), readString(in), readString(in));
+    }
+
+    private static void writeString(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(s.length());
+        out.writeChars(s);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) chars[i] = in.readChar();
+        return new String(chars);
+    }
+}
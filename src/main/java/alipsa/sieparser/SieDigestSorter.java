@@ -0,0 +1,207 @@
+/*
+MIT License
+
+Copyright (c) 2015 Johan Idstam
+Modifications by Per Nyfelt Copyright (c) 2016 Alipsa HB
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package alipsa.sieparser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts digests with an external merge sort. Digests are collected in memory until their
+ * estimated size exceeds the memory budget, then sorted and written to a run file in the temp
+ * directory. {@link #sorted()} merges the runs, and the digests still in memory, in one pass.
+ * Run files are deleted when the sorter is closed.
+ */
+final class SieDigestSorter implements Closeable {
+
+    private static final int RUN_BUFFER_SIZE = 64 * 1024;
+
+    private final long memoryBudget;
+    private final Path tempDirectory;
+    private final List<SieDigest> buffer = new ArrayList<>();
+    private final List<Path> runFiles = new ArrayList<>();
+    private final List<DataInputStream> openRuns = new ArrayList<>();
+    private long bufferSize;
+    private long count;
+
+    /**
+     * @param memoryBudget the estimated number of bytes of digests to hold in memory
+     * @param tempDirectory the directory to write run files to, or {@code null} for the default temp directory
+     */
+    SieDigestSorter(long memoryBudget, Path tempDirectory) {
+        this.memoryBudget = memoryBudget;
+        this.tempDirectory = tempDirectory;
+    }
+
+    void add(SieDigest digest) throws IOException {
+        buffer.add(digest);
+        bufferSize += digest.estimatedSize();
+        count++;
+        if (bufferSize >= memoryBudget) spill();
+    }
+
+    /** Returns the number of digests added. */
+    long size() {
+        return count;
+    }
+
+    /** Returns the number of run files written so far. */
+    int getRunCount() {
+        return runFiles.size();
+    }
+
+    /**
+     * Sorts and writes the digests held in memory to a run file, if any were spilled before, so
+     * that the memory is free while another file is read.
+     */
+    void finish() throws IOException {
+        if (!runFiles.isEmpty() && !buffer.isEmpty()) spill();
+    }
+
+    /**
+     * Returns the digests added, in order. Reading a run file that fails throws an {@link UncheckedIOException}.
+     * @return an iterator over all digests
+     */
+    Iterator<SieDigest> sorted() throws IOException {
+        Collections.sort(buffer);
+        if (runFiles.isEmpty()) return buffer.iterator();
+
+        PriorityQueue<Run> heads = new PriorityQueue<>();
+        if (!buffer.isEmpty()) heads.add(new Run(buffer.iterator()));
+        for (Path file : runFiles) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), RUN_BUFFER_SIZE));
+            openRuns.add(in);
+            Run run = new Run(in, in.readLong());
+            if (run.head != null) heads.add(run);
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public SieDigest next() {
+                Run run = heads.poll();
+                if (run == null) throw new NoSuchElementException();
+                SieDigest digest = run.head;
+                if (run.advance()) heads.add(run);
+                return digest;
+            }
+        };
+    }
+
+    private void spill() throws IOException {
+        Collections.sort(buffer);
+        Path file = tempDirectory == null
+            ? Files.createTempFile("sie-digests", ".run")
+            : Files.createTempFile(tempDirectory, "sie-digests", ".run");
+        runFiles.add(file);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), RUN_BUFFER_SIZE))) {
+            out.writeLong(buffer.size());
+            for (SieDigest digest : buffer) digest.write(out);
+        }
+        buffer.clear();
+        bufferSize = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (DataInputStream in : openRuns) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        for (Path file : runFiles) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        openRuns.clear();
+        runFiles.clear();
+        buffer.clear();
+        if (failure != null) throw failure;
+    }
+
+    /** The next digest of a run file or of the digests held in memory. */
+    private static final class Run implements Comparable<Run> {
+        private final Iterator<SieDigest> memory;
+        private final DataInputStream in;
+        private long remaining;
+        private SieDigest head;
+
+        Run(Iterator<SieDigest> memory) {
+            this.memory = memory;
+            this.in = null;
+            advance();
+        }
+
+        Run(DataInputStream in, long count) {
+            this.memory = null;
+            this.in = in;
+            this.remaining = count;
+            advance();
+        }
+
+        boolean advance() {
+            if (memory != null) {
+                head = memory.hasNext() ? memory.next() : null;
+            } else if (remaining > 0) {
+                remaining--;
+                try {
+                    head = SieDigest.read(in);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            } else {
+                head = null;
+            }
+            return head != null;
+        }
+
+        @Override
+        public int compareTo(Run other) {
+            return head.compareTo(other.head);
+        }
+    }
+}
@@ -38,6 +38,11 @@ import java.util.Map;
  */
 public class SieDocument {
 
+    /** The sections that have fingerprints, in the order they are combined into the document fingerprint. */
+    private static final String[] FINGERPRINT_SECTIONS = {
+        SIE.IB, SIE.UB, SIE.OIB, SIE.OUB, SIE.RES, SIE.PSALDO, SIE.PBUDGET, SIE.VER
+    };
+
     private Map<String, SieDimension> dim;
     private Map<String, SieDimension> underDim;
     private Map<String, SieDimension> tempDim;
@@ -64,6 +69,9 @@ public class SieDocument {
     private List<SiePeriodValue> ub;
     private String valuta;
     private List<SieVoucher> ver;
+    private SieSymbolTable symbols;
+    private long[] fingerprintSums;
+    private long[] fingerprintCounts;
 
     /** Creates a new empty SIE document with default dimensions initialized. */
     public SieDocument() {
@@ -100,6 +108,7 @@ public class SieDocument {
      */
     public void setDIM(Map<String, SieDimension> value) {
         dim = value;
+        symbols = null;
     }
 
     /**
@@ -116,6 +125,7 @@ public class SieDocument {
      */
     public void setUNDERDIM(Map<String, SieDimension> value) {
         underDim = value;
+        symbols = null;
     }
 
     /**
@@ -132,6 +142,7 @@ public class SieDocument {
      */
     public void setTEMPDIM(Map<String, SieDimension> value) {
         tempDim = value;
+        symbols = null;
     }
 
     /**
@@ -244,6 +255,7 @@ public class SieDocument {
      */
     public void setKONTO(Map<String, SieAccount> value) {
         konto = value;
+        symbols = null;
     }
 
     /**
@@ -503,6 +515,101 @@ public class SieDocument {
         ver = value;
     }
 
+    /**
+     * Returns a stable 64-bit fingerprint of one section of this document: the vouchers ({@code #VER})
+     * or the period values of one kind ({@code #IB}, {@code #UB}, {@code #OIB}, {@code #OUB},
+     * {@code #RES}, {@code #PSALDO} or {@code #PBUDGET}). It combines the fingerprints of the entries
+     * without regard to their order, so two files with the same vouchers in another order have the
+     * same {@code #VER} fingerprint.
+     * <p>
+     * For a document read with {@link SieDocumentReader#setFingerprints(boolean)} enabled, the section
+     * fingerprints are summed up while the file is parsed. They describe the file as read, also when
+     * the reader does not keep the vouchers and values, e.g. when reading with callbacks or records,
+     * and they do not follow later changes to the lists. For other documents they are computed from
+     * the lists on every call.
+     * </p>
+     * @param section the SIE label of the section, e.g. {@link SIE#VER}
+     * @return the fingerprint of the section
+     * @throws IllegalArgumentException if the section has no fingerprint
+     * @see SieVoucher#getFingerprint()
+     * @see SiePeriodValue#getFingerprint()
+     */
+    public long getFingerprint(String section) {
+        int index = fingerprintSection(section);
+        if (index < 0) throw new IllegalArgumentException("No fingerprint for section " + section);
+        if (fingerprintSums != null) {
+            return SieHash.add(SieHash.add(SieHash.SEED, fingerprintSums[index]), fingerprintCounts[index]);
+        }
+        long sum = 0;
+        List<?> entries = SIE.VER.equals(section) ? getVER() : periodValues(section);
+        for (Object entry : entries) {
+            sum += entry instanceof SieVoucher v ? v.getFingerprint() : ((SiePeriodValue) entry).getFingerprint();
+        }
+        return SieHash.add(SieHash.add(SieHash.SEED, sum), entries.size());
+    }
+
+    /**
+     * Returns a stable 64-bit fingerprint of the vouchers and period values of this document,
+     * combined from the fingerprints of all sections.
+     * @return the fingerprint of the document content
+     * @see #getFingerprint(String)
+     */
+    public long getFingerprint() {
+        long h = SieHash.SEED;
+        for (String section : FINGERPRINT_SECTIONS) {
+            h = SieHash.add(h, getFingerprint(section));
+        }
+        return h;
+    }
+
+    /** Adds the fingerprint of a voucher or period value read into the given section. */
+    void addFingerprint(String section, long fingerprint) {
+        int index = fingerprintSection(section);
+        if (index < 0) return;
+        if (fingerprintSums == null) {
+            fingerprintSums = new long[FINGERPRINT_SECTIONS.length];
+            fingerprintCounts = new long[FINGERPRINT_SECTIONS.length];
+        }
+        fingerprintSums[index] += fingerprint;
+        fingerprintCounts[index]++;
+    }
+
+    private static int fingerprintSection(String section) {
+        if (section == null) return -1;
+        return switch (section) {
+            case SIE.IB -> 0;
+            case SIE.UB -> 1;
+            case SIE.OIB -> 2;
+            case SIE.OUB -> 3;
+            case SIE.RES -> 4;
+            case SIE.PSALDO -> 5;
+            case SIE.PBUDGET -> 6;
+            case SIE.VER -> 7;
+            default -> -1;
+        };
+    }
+
+    private List<SiePeriodValue> periodValues(String section) {
+        return switch (section) {
+            case SIE.IB -> getIB();
+            case SIE.UB -> getUB();
+            case SIE.OIB -> getOIB();
+            case SIE.OUB -> getOUB();
+            case SIE.RES -> getRES();
+            case SIE.PSALDO -> getPSALDO();
+            default -> getPBUDGET();
+        };
+    }
+
+    /**
+     * Returns the table that interns the accounts, dimensions and objects referred to by the rows
+     * of this document, creating it on first use.
+     */
+    SieSymbolTable getSymbols() {
+        if (symbols == null) symbols = new SieSymbolTable(this);
+        return symbols;
+    }
+
     private void initializeDimensions() {
         getDIM().put("1", new SieDimension("1", "Resultatenhet", true));
         getDIM().put("2", new SieDimension("2", "Kostnadsbärare", true));
@@ -25,23 +25,65 @@ SOFTWARE.
 
 package alipsa.sieparser;
 
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 
 /**
  * Compares two {@link SieDocument} instances and reports all differences.
  * Useful for verifying that a read-write round-trip preserves all data.
+ * <p>
+ * The static {@code compare} methods return the differences as a list of descriptions. A
+ * comparer instance instead passes each difference as a {@link SieDifference} to a listener as
+ * soon as it is found, and can stop after a number of differences, e.g. after the first one when
+ * only equality matters. A record that is in both documents with different content is reported
+ * once, as changed; the rows of a changed voucher are reported as the rows that are only in one
+ * of the documents. The descriptions returned by {@code compare} keep their original form, where
+ * such a record is described once from each document.
+ * </p>
+ * <p>
+ * Vouchers, period values and the rows of large vouchers are looked up through hash indexes
+ * over their compared fields, so comparing two documents takes time linear in their size.
+ * </p>
+ * <p>
+ * With a {@link ForkJoinPool}, the vouchers and period values are split into shards of
+ * consecutive entries that are hashed and compared on the pool. The differences of the shards
+ * are joined in list order, so they are reported in the same order as when comparing sequentially.
+ * </p>
  */
 public class SieDocumentComparer {
+    /** Vouchers with more rows than this have their rows matched through a hash index. */
+    private static final int ROW_INDEX_THRESHOLD = 16;
+
+    /** Number of vouchers or period values per shard when comparing in parallel. */
+    static final int SHARD_SIZE = 4096;
+
+    private static final LimitReached LIMIT_REACHED = new LimitReached();
+
+    private Consumer<SieDifference> listener;
+    private int maxDifferences = Integer.MAX_VALUE;
+    private ForkJoinPool pool;
+
     private SieDocument docA;
     private SieDocument docB;
-    private List<String> errors;
+    private int count;
+    private volatile boolean stopped;
+    /** Also reports changed records from the second document, for the descriptions of {@code compare}. */
+    private boolean mirrorChanges;
 
-    private SieDocumentComparer(SieDocument docA, SieDocument docB) {
-        this.docA = docA;
-        this.docB = docB;
-        errors = new ArrayList<>();
+    /** Creates a comparer that compares sequentially and reports all differences. */
+    public SieDocumentComparer() {}
+
+    /** Sets whether changed records are also reported from the second document, as the descriptions of {@code compare} are. */
+    void setMirrorChanges(boolean mirrorChanges) {
+        this.mirrorChanges = mirrorChanges;
     }
 
     /**
@@ -51,9 +93,112 @@ public class SieDocumentComparer {
      * @return a list of difference descriptions, empty if the documents are equal
      */
     public static List<String> compare(SieDocument docA, SieDocument docB) {
-        SieDocumentComparer comp = new SieDocumentComparer(docA, docB);
-        comp.doCompare();
-        return comp.errors;
+        return compare(docA, docB, (ForkJoinPool) null);
+    }
+
+    /**
+     * Compares two SIE documents on the common {@link ForkJoinPool}.
+     * @param docA the first document
+     * @param docB the second document
+     * @return a list of difference descriptions in the same order as {@link #compare(SieDocument, SieDocument)}
+     */
+    public static List<String> compareParallel(SieDocument docA, SieDocument docB) {
+        return compare(docA, docB, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Compares two SIE documents, hashing and comparing vouchers and period values in shards on the given pool.
+     * The documents must not be modified during the comparison.
+     * @param docA the first document
+     * @param docB the second document
+     * @param pool the pool to compare on, or {@code null} to compare sequentially
+     * @return a list of difference descriptions in the same order as {@link #compare(SieDocument, SieDocument)}
+     */
+    public static List<String> compare(SieDocument docA, SieDocument docB, ForkJoinPool pool) {
+        List<String> errors = new ArrayList<>();
+        SieDocumentComparer comparer = new SieDocumentComparer();
+        comparer.setPool(pool);
+        comparer.setMirrorChanges(true);
+        comparer.setListener(d -> errors.add(d.getMessage()));
+        comparer.compareDocuments(docA, docB);
+        return errors;
+    }
+
+    /**
+     * Checks whether two SIE documents are equal, stopping at the first difference.
+     * @param docA the first document
+     * @param docB the second document
+     * @return {@code true} if {@link #compare(SieDocument, SieDocument)} would find no differences
+     */
+    public static boolean isEqual(SieDocument docA, SieDocument docB) {
+        SieDocumentComparer comparer = new SieDocumentComparer();
+        comparer.setMaxDifferences(1);
+        return comparer.compareDocuments(docA, docB) == 0;
+    }
+
+    /**
+     * Returns the listener that differences are passed to.
+     * @return the listener, or {@code null} if differences are only counted
+     */
+    public Consumer<SieDifference> getListener() { return listener; }
+
+    /**
+     * Sets the listener that each difference is passed to when it is found. The listener is
+     * called on the thread that calls {@link #compareDocuments}, also when comparing on a pool.
+     * @param listener the listener, or {@code null} to only count differences
+     */
+    public void setListener(Consumer<SieDifference> listener) { this.listener = listener; }
+
+    /**
+     * Returns the number of differences after which the comparison stops.
+     * @return the maximum number of differences reported
+     */
+    public int getMaxDifferences() { return maxDifferences; }
+
+    /**
+     * Sets the number of differences after which the comparison stops. Default is no limit.
+     * @param maxDifferences the maximum number of differences to report, at least 1
+     */
+    public void setMaxDifferences(int maxDifferences) {
+        if (maxDifferences < 1) throw new IllegalArgumentException("Max differences must be positive: " + maxDifferences);
+        this.maxDifferences = maxDifferences;
+    }
+
+    /**
+     * Returns the pool that vouchers and period values are compared on.
+     * @return the pool, or {@code null} when comparing sequentially
+     */
+    public ForkJoinPool getPool() { return pool; }
+
+    /**
+     * Sets the pool that vouchers and period values are compared on. The documents must not be
+     * modified during the comparison.
+     * @param pool the pool, or {@code null} to compare sequentially
+     */
+    public void setPool(ForkJoinPool pool) { this.pool = pool; }
+
+    /**
+     * Compares two SIE documents, passing each difference to the listener until the maximum
+     * number of differences is reached.
+     * @param docA the first document
+     * @param docB the second document
+     * @return the number of differences reported
+     */
+    public int compareDocuments(SieDocument docA, SieDocument docB) {
+        this.docA = docA;
+        this.docB = docB;
+        count = 0;
+        stopped = false;
+        try {
+            doCompare();
+        } catch (LimitReached e) {
+            // the maximum number of differences has been reported
+        } finally {
+            stopped = true;
+            this.docA = null;
+            this.docB = null;
+        }
+        return count;
     }
 
     private void doCompare() {
@@ -61,98 +206,197 @@ public class SieDocumentComparer {
         compareProgram();
         compareDIM(docA, docB, "First", "Second");
         compareDIM(docB, docA, "Second", "First");
-        comparePeriodValueList(docA.getIB(), docB.getIB(), "IB", "First", "Second");
-        comparePeriodValueList(docB.getIB(), docA.getIB(), "IB", "Second", "First");
-        comparePeriodValueList(docA.getUB(), docB.getUB(), "UB", "First", "Second");
-        comparePeriodValueList(docB.getUB(), docA.getUB(), "UB", "Second", "First");
-        comparePeriodValueList(docA.getOIB(), docB.getOIB(), "OIB", "First", "Second");
-        comparePeriodValueList(docB.getOIB(), docA.getOIB(), "OIB", "Second", "First");
-        comparePeriodValueList(docA.getOUB(), docB.getOUB(), "OUB", "First", "Second");
-        comparePeriodValueList(docB.getOUB(), docA.getOUB(), "OUB", "Second", "First");
-        comparePeriodValueList(docA.getPBUDGET(), docB.getPBUDGET(), "PBUDGET", "First", "Second");
-        comparePeriodValueList(docB.getPBUDGET(), docA.getPBUDGET(), "PBUDGET", "Second", "First");
-        comparePeriodValueList(docA.getPSALDO(), docB.getPSALDO(), "PSALDO", "First", "Second");
-        comparePeriodValueList(docB.getPSALDO(), docA.getPSALDO(), "PSALDO", "Second", "First");
-        comparePeriodValueList(docA.getRES(), docB.getRES(), "RES", "First", "Second");
-        comparePeriodValueList(docB.getRES(), docA.getRES(), "RES", "Second", "First");
+        comparePeriodValueLists(docA.getIB(), docB.getIB(), SIE.IB);
+        comparePeriodValueLists(docA.getUB(), docB.getUB(), SIE.UB);
+        comparePeriodValueLists(docA.getOIB(), docB.getOIB(), SIE.OIB);
+        comparePeriodValueLists(docA.getOUB(), docB.getOUB(), SIE.OUB);
+        comparePeriodValueLists(docA.getPBUDGET(), docB.getPBUDGET(), SIE.PBUDGET);
+        comparePeriodValueLists(docA.getPSALDO(), docB.getPSALDO(), SIE.PSALDO);
+        comparePeriodValueLists(docA.getRES(), docB.getRES(), SIE.RES);
         compareKONTO(docA, docB, "First", "Second");
         compareKONTO(docB, docA, "Second", "First");
         compareRAR(docA, docB, "First", "Second");
         compareRAR(docB, docA, "Second", "First");
-        compareVER(docA, docB, "First", "Second");
-        compareVER(docB, docA, "Second", "First");
+        compareVER();
+    }
+
+    private void report(SieDifference difference) {
+        count++;
+        if (listener != null) listener.accept(difference);
+        if (count >= maxDifferences) throw LIMIT_REACHED;
+    }
+
+    private void changed(String recordType, String key, String field, Object oldValue, Object newValue, String message) {
+        report(new SieDifference(SieDifference.Kind.CHANGED, recordType, key, field, oldValue, newValue, message));
+    }
+
+    /**
+     * Returns whether the changed fields of records found by iterating document A, named {@code nameA},
+     * have already been reported, i.e. when iterating the second document without mirrored changes.
+     */
+    private boolean changesReported(String nameA) {
+        return !isFirst(nameA) && !mirrorChanges;
+    }
+
+    /** Reports a field that differs in a record found by iterating document A, named {@code nameA}. */
+    private void fieldChanged(String nameA, String recordType, String key, String field, Object valueA, Object valueB, String message) {
+        if (isFirst(nameA)) {
+            changed(recordType, key, field, valueA, valueB, message);
+        } else {
+            changed(recordType, key, field, valueB, valueA, message);
+        }
+    }
+
+    /** Creates the difference for a record found by iterating document A that is missing in document B, named {@code nameB}. */
+    private static SieDifference missing(String nameB, String recordType, String key, Object value, String message) {
+        if (isFirst(nameB)) {
+            return new SieDifference(SieDifference.Kind.ADDED, recordType, key, null, null, value, message);
+        }
+        return new SieDifference(SieDifference.Kind.REMOVED, recordType, key, null, value, null, message);
+    }
+
+    private static boolean isFirst(String name) {
+        return "First".equals(name);
     }
 
     private void compareNonListItems() {
         if (docA.getFLAGGA() != docB.getFLAGGA())
-            errors.add("FLAGGA differs First, Second: '" + docA.getFLAGGA() + "' , '" + docB.getFLAGGA() + "'");
+            changed(SIE.FLAGGA, null, null, docA.getFLAGGA(), docB.getFLAGGA(),
+                "FLAGGA differs First, Second: '" + docA.getFLAGGA() + "' , '" + docB.getFLAGGA() + "'");
 
         if (!docA.getFORMAT().equals(docB.getFORMAT()))
-            errors.add("FORMAT differs First, Second: '" + docA.getFORMAT() + "' , '" + docB.getFORMAT() + "'");
+            changed(SIE.FORMAT, null, null, docA.getFORMAT(), docB.getFORMAT(),
+                "FORMAT differs First, Second: '" + docA.getFORMAT() + "' , '" + docB.getFORMAT() + "'");
 
         compareFNAMN();
 
         // Fix: use Objects.equals for null-safe comparison
         if (!Objects.equals(docA.getGEN_DATE(), docB.getGEN_DATE())) {
-            errors.add("GEN_DATE differs");
+            changed(SIE.GEN, null, "Date", docA.getGEN_DATE(), docB.getGEN_DATE(), "GEN_DATE differs");
         }
 
         if (!Objects.equals(docA.getOMFATTN(), docB.getOMFATTN())) {
-            errors.add("OMFATTN differs");
+            changed(SIE.OMFATTN, null, null, docA.getOMFATTN(), docB.getOMFATTN(), "OMFATTN differs");
         }
 
         if (!StringUtil.equals(docA.getGEN_NAMN(), docB.getGEN_NAMN()))
-            errors.add("GEN_NAMN differs First, Second: '" + docA.getGEN_NAMN() + "' , '" + docB.getGEN_NAMN() + "'");
+            changed(SIE.GEN, null, "Name", docA.getGEN_NAMN(), docB.getGEN_NAMN(),
+                "GEN_NAMN differs First, Second: '" + docA.getGEN_NAMN() + "' , '" + docB.getGEN_NAMN() + "'");
 
         if (docA.getKPTYP() != null && !docA.getKPTYP().equals(docB.getKPTYP()))
-            errors.add("KPTYP differs First, Second: '" + docA.getKPTYP() + "' , '" + docB.getKPTYP() + "'");
+            changed(SIE.KPTYP, null, null, docA.getKPTYP(), docB.getKPTYP(),
+                "KPTYP differs First, Second: '" + docA.getKPTYP() + "' , '" + docB.getKPTYP() + "'");
 
-        if (docA.getKSUMMA() != docB.getKSUMMA()) errors.add("KSUMMA differs First, Second: '" + docA.getKSUMMA() + "', '" + docB.getKSUMMA() + "'");
+        if (docA.getKSUMMA() != docB.getKSUMMA())
+            changed(SIE.KSUMMA, null, null, docA.getKSUMMA(), docB.getKSUMMA(),
+                "KSUMMA differs First, Second: '" + docA.getKSUMMA() + "', '" + docB.getKSUMMA() + "'");
 
         String a = docA.getPROSA() != null ? docA.getPROSA() : "";
         String b = docB.getPROSA() != null ? docB.getPROSA() : "";
         if (!a.equals(b))
-            errors.add("PROSA differs First, Second: '" + a + "' , '" + b + "'");
+            changed(SIE.PROSA, null, null, a, b, "PROSA differs First, Second: '" + a + "' , '" + b + "'");
 
         if (docA.getSIETYP() != docB.getSIETYP())
-            errors.add("SIETYP differs First, Second: '" + docA.getSIETYP() + "' , '" + docB.getSIETYP() + "'");
+            changed(SIE.SIETYP, null, null, docA.getSIETYP(), docB.getSIETYP(),
+                "SIETYP differs First, Second: '" + docA.getSIETYP() + "' , '" + docB.getSIETYP() + "'");
 
         if (docA.getTAXAR() != docB.getTAXAR())
-            errors.add("TAXAR differs First, Second: '" + docA.getTAXAR() + "' , '" + docB.getTAXAR() + "'");
+            changed(SIE.TAXAR, null, null, docA.getTAXAR(), docB.getTAXAR(),
+                "TAXAR differs First, Second: '" + docA.getTAXAR() + "' , '" + docB.getTAXAR() + "'");
 
         if (!StringUtil.equals(docA.getVALUTA(), docB.getVALUTA()))
-            errors.add("VALUTA differs First, Second: '" + docA.getVALUTA() + "' , '" + docB.getVALUTA() + "'");
+            changed(SIE.VALUTA, null, null, docA.getVALUTA(), docB.getVALUTA(),
+                "VALUTA differs First, Second: '" + docA.getVALUTA() + "' , '" + docB.getVALUTA() + "'");
     }
 
     private void compareProgram() {
         List<String> progA = docA.getPROGRAM();
         List<String> progB = docB.getPROGRAM();
         if (progA.size() != progB.size()) {
-            errors.add("PROGRAM differs First has " + progA.size() + " entries, Second has " + progB.size());
+            changed(SIE.PROGRAM, null, null, progA, progB,
+                "PROGRAM differs First has " + progA.size() + " entries, Second has " + progB.size());
             return;
         }
         for (int i = 0; i < progA.size(); i++) {
             if (!StringUtil.equals(progA.get(i), progB.get(i))) {
-                errors.add("PROGRAM[" + i + "] differs First, Second: '" + progA.get(i) + "' , '" + progB.get(i) + "'");
+                changed(SIE.PROGRAM, String.valueOf(i), null, progA.get(i), progB.get(i),
+                    "PROGRAM[" + i + "] differs First, Second: '" + progA.get(i) + "' , '" + progB.get(i) + "'");
             }
         }
     }
 
-    private void comparePeriodValueList(List<SiePeriodValue> listA, List<SiePeriodValue> listB, String listName, String nameA, String nameB) {
-        for (SiePeriodValue pA : listA) {
-            boolean foundIt = false;
-            for (SiePeriodValue pB : listB) {
-                if (periodValueComparer(pA, pB)) {
-                    foundIt = true;
-                    break;
+    private void comparePeriodValueLists(List<SiePeriodValue> listA, List<SiePeriodValue> listB, String recordType) {
+        listA = randomAccess(listA);
+        listB = randomAccess(listB);
+        HashIndex indexA = periodValueIndex(listA);
+        HashIndex indexB = periodValueIndex(listB);
+        boolean[] changedB = new boolean[listB.size()];
+        comparePeriodValueList(listA, listB, indexA, indexB, recordType, "Second", changedB);
+        comparePeriodValueList(listB, listA, indexB, indexA, recordType, "First", changedB);
+    }
+
+    /**
+     * Reports the period values of list A that are not in list B. In the first pass, from the first
+     * document, a value with the same key in B is reported as changed and marked in {@code changedB};
+     * in the second pass the marked values have been reported and are skipped.
+     */
+    private void comparePeriodValueList(List<SiePeriodValue> listA, List<SiePeriodValue> listB, HashIndex indexA, HashIndex indexB,
+                                        String recordType, String nameB, boolean[] changedB) {
+        boolean firstPass = !isFirst(nameB);
+        inShards(listA.size(), (from, to, out) -> {
+            for (int j = from; j < to; j++) {
+                SiePeriodValue pA = listA.get(j);
+                int sameKey = -1;
+                boolean foundIt = false;
+                for (int i = indexB.first(indexA.hashes[j]); i >= 0; i = indexB.next(i)) {
+                    SiePeriodValue pB = listB.get(i);
+                    if (periodValueComparer(pA, pB)) {
+                        foundIt = true;
+                        break;
+                    }
+                    if (sameKey < 0 && periodValueKeyEquals(pA, pB)) sameKey = i;
                 }
-            }
-            if (!foundIt) {
-                errors.add(listName + " differs account, YearNo, period not found or different in " + nameB + ": " +
+                if (foundIt || !firstPass && changedB[j] && !mirrorChanges) continue;
+                String message = recordType.substring(1) + " differs account, YearNo, period not found or different in " + nameB + ": " +
                         "Account=" + pA.getAccount().getNumber() + ", Year=" + pA.getYearNr() + ", Period=" +
-                        pA.getPeriod());
+                        pA.getPeriod();
+                String key = periodValueKey(pA);
+                if (sameKey >= 0 && (firstPass || changedB[j])) {
+                    if (firstPass) changedB[sameKey] = true;
+                    out.accept(periodValueChange(firstPass ? "First" : "Second", recordType, key, pA, listB.get(sameKey), message));
+                } else {
+                    out.accept(missing(nameB, recordType, key, pA, message));
+                }
             }
+        });
+    }
+
+    private static SieDifference periodValueChange(String nameA, String recordType, String key, SiePeriodValue pA, SiePeriodValue pB,
+                                                   String message) {
+        String field;
+        Object valueA;
+        Object valueB;
+        if (differs(pA.getAmount(), pB.getAmount())) {
+            field = "Amount";
+            valueA = pA.getAmount();
+            valueB = pB.getAmount();
+        } else if (differs(pA.getQuantity(), pB.getQuantity())) {
+            field = "Quantity";
+            valueA = pA.getQuantity();
+            valueB = pB.getQuantity();
+        } else {
+            field = "Token";
+            valueA = pA.getToken();
+            valueB = pB.getToken();
         }
+        return isFirst(nameA)
+            ? new SieDifference(SieDifference.Kind.CHANGED, recordType, key, field, valueA, valueB, message)
+            : new SieDifference(SieDifference.Kind.CHANGED, recordType, key, field, valueB, valueA, message);
+    }
+
+    private static boolean differs(BigDecimal a, BigDecimal b) {
+        if (a == null || b == null) return a != b;
+        return a.compareTo(b) != 0;
     }
 
     private boolean periodValueComparer(SiePeriodValue a, SiePeriodValue b) {
@@ -180,6 +424,28 @@ public class SieDocumentComparer {
         return true;
     }
 
+    private boolean periodValueKeyEquals(SiePeriodValue a, SiePeriodValue b) {
+        return a.getAccount().getNumber().equals(b.getAccount().getNumber())
+            && a.getYearNr() == b.getYearNr()
+            && a.getPeriod() == b.getPeriod()
+            && compareObjects(a.getObjects(), b.getObjects());
+    }
+
+    private static String periodValueKey(SiePeriodValue p) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(p.getAccount().getNumber()).append(' ').append(p.getYearNr()).append(' ').append(p.getPeriod());
+        if (p.getObjects() != null) {
+            sb.append(" {");
+            for (int i = 0; i < p.getObjects().size(); i++) {
+                SieObject o = p.getObjects().get(i);
+                if (i > 0) sb.append(' ');
+                sb.append(o.getDimension().getNumber()).append(' ').append(o.getNumber());
+            }
+            sb.append('}');
+        }
+        return sb.toString();
+    }
+
     private boolean compareObjects(List<SieObject> a, List<SieObject> b) {
         if (a != null && b == null)
             return false;
@@ -207,126 +473,229 @@ public class SieDocumentComparer {
     }
 
     private void compareFNAMN() {
-        if (docA.getFNAMN() != null && docB.getFNAMN() != null) {
-            if (!StringUtil.equals(docA.getFNAMN().getCode(), docB.getFNAMN().getCode()))
-                errors.add("FNAMN.Code differs First, Second: '" + docA.getFNAMN().getCode() + "' , '" + docB.getFNAMN().getCode() + "'");
-
-            if (!StringUtil.equals(docA.getFNAMN().getContact(), docB.getFNAMN().getContact()))
-                errors.add("ADRESS.Contact differs First, Second: '" + docA.getFNAMN().getContact() + "' , '" + docB.getFNAMN().getContact() + "'");
-
-            if (!StringUtil.equals(docA.getFNAMN().getName(), docB.getFNAMN().getName()))
-                errors.add("FNAMN.Name differs First, Second: '" + docA.getFNAMN().getName() + "' , '" + docB.getFNAMN().getName() + "'");
-
-            if (!StringUtil.equals(docA.getFNAMN().getOrgIdentifier(), docB.getFNAMN().getOrgIdentifier()))
-                errors.add("ORGNR.OrgIdentifier (#FNAMN) differs First, Second: '" + docA.getFNAMN().getOrgIdentifier()
-                        + "', '" + docB.getFNAMN().getOrgIdentifier() + "'");
-
-            if (!StringUtil.equals(docA.getFNAMN().getOrgType(), docB.getFNAMN().getOrgType()))
-                errors.add("FTYP differs First, Second: '" + docA.getFNAMN().getOrgType() + "' , '" + docB.getFNAMN().getOrgType() + "'");
-
-            if (!StringUtil.equals(docA.getFNAMN().getPhone(), docB.getFNAMN().getPhone()))
-                errors.add("ADRESS.Phone differs First, Second: '" + docA.getFNAMN().getPhone() + "' , '" + docB.getFNAMN().getPhone() + "'");
-
-            if (docA.getFNAMN().getSni() != docB.getFNAMN().getSni())
-                errors.add("FNAMN.SNI differs First, Second: '" + docA.getFNAMN().getSni() + "' , '" + docB.getFNAMN().getSni() + "'");
-
-            if (!StringUtil.equals(docA.getFNAMN().getStreet(), docB.getFNAMN().getStreet()))
-                errors.add("ADRESS.Street differs First, Second: '" + docA.getFNAMN().getStreet() + "' , '" + docB.getFNAMN().getStreet() + "'");
-
-            if (!StringUtil.equals(docA.getFNAMN().getZipCity(), docB.getFNAMN().getZipCity()))
-                errors.add("ADRESS.ZipCity differs First, Second: '" + docA.getFNAMN().getZipCity() + "' , '" + docB.getFNAMN().getZipCity() + "'");
+        SieCompany a = docA.getFNAMN();
+        SieCompany b = docB.getFNAMN();
+        if (a != null && b != null) {
+            if (!StringUtil.equals(a.getCode(), b.getCode()))
+                changed(SIE.FNR, null, null, a.getCode(), b.getCode(),
+                    "FNAMN.Code differs First, Second: '" + a.getCode() + "' , '" + b.getCode() + "'");
+
+            if (!StringUtil.equals(a.getContact(), b.getContact()))
+                changed(SIE.ADRESS, null, "Contact", a.getContact(), b.getContact(),
+                    "ADRESS.Contact differs First, Second: '" + a.getContact() + "' , '" + b.getContact() + "'");
+
+            if (!StringUtil.equals(a.getName(), b.getName()))
+                changed(SIE.FNAMN, null, null, a.getName(), b.getName(),
+                    "FNAMN.Name differs First, Second: '" + a.getName() + "' , '" + b.getName() + "'");
+
+            if (!StringUtil.equals(a.getOrgIdentifier(), b.getOrgIdentifier()))
+                changed(SIE.ORGNR, null, null, a.getOrgIdentifier(), b.getOrgIdentifier(),
+                    "ORGNR.OrgIdentifier (#FNAMN) differs First, Second: '" + a.getOrgIdentifier()
+                        + "', '" + b.getOrgIdentifier() + "'");
+
+            if (!StringUtil.equals(a.getOrgType(), b.getOrgType()))
+                changed(SIE.FTYP, null, null, a.getOrgType(), b.getOrgType(),
+                    "FTYP differs First, Second: '" + a.getOrgType() + "' , '" + b.getOrgType() + "'");
+
+            if (!StringUtil.equals(a.getPhone(), b.getPhone()))
+                changed(SIE.ADRESS, null, "Phone", a.getPhone(), b.getPhone(),
+                    "ADRESS.Phone differs First, Second: '" + a.getPhone() + "' , '" + b.getPhone() + "'");
+
+            if (a.getSni() != b.getSni())
+                changed(SIE.BKOD, null, null, a.getSni(), b.getSni(),
+                    "FNAMN.SNI differs First, Second: '" + a.getSni() + "' , '" + b.getSni() + "'");
+
+            if (!StringUtil.equals(a.getStreet(), b.getStreet()))
+                changed(SIE.ADRESS, null, "Street", a.getStreet(), b.getStreet(),
+                    "ADRESS.Street differs First, Second: '" + a.getStreet() + "' , '" + b.getStreet() + "'");
+
+            if (!StringUtil.equals(a.getZipCity(), b.getZipCity()))
+                changed(SIE.ADRESS, null, "ZipCity", a.getZipCity(), b.getZipCity(),
+                    "ADRESS.ZipCity differs First, Second: '" + a.getZipCity() + "' , '" + b.getZipCity() + "'");
 
         } else {
-            errors.add("FNAMN differs.");
+            changed(SIE.FNAMN, null, null, a, b, "FNAMN differs.");
         }
     }
 
     private void compareKONTO(SieDocument docA, SieDocument docB, String nameA, String nameB) {
+        boolean changesReported = changesReported(nameA);
         for (SieAccount kA : docA.getKONTO().values()) {
             if (docB.getKONTO().containsKey(kA.getNumber())) {
+                if (changesReported) continue;
                 SieAccount kB = docB.getKONTO().get(kA.getNumber());
                 if (!kA.getName().equals(kB.getName()))
-                    errors.add("KONTO.Name differ  " + kA.getNumber());
+                    fieldChanged(nameA, SIE.KONTO, kA.getNumber(), "Name", kA.getName(), kB.getName(), "KONTO.Name differ  " + kA.getNumber());
 
                 if (!StringUtil.equals(kA.getType(), kB.getType()))
-                    errors.add("KONTO.Type differ " + kA.getNumber());
+                    fieldChanged(nameA, SIE.KONTO, kA.getNumber(), "Type", kA.getType(), kB.getType(), "KONTO.Type differ " + kA.getNumber());
 
                 if (!StringUtil.equals(kA.getUnit(), kB.getUnit()))
-                    errors.add("KONTO.Unit differ " + kA.getNumber());
-
-                if (kA.getSRU().size() == kB.getSRU().size()) {
-                    for (int i = 0; i < kA.getSRU().size(); i++) {
-                        if (!kA.getSRU().get(i).equalsIgnoreCase(kB.getSRU().get(i))) {
-                            errors.add("KONTO.SRU differ " + kA.getNumber());
-                            break;
-                        }
-                    }
-                } else {
-                    errors.add("KONTO.SRU differ " + kA.getNumber());
+                    fieldChanged(nameA, SIE.KONTO, kA.getNumber(), "Unit", kA.getUnit(), kB.getUnit(), "KONTO.Unit differ " + kA.getNumber());
+
+                boolean sruDiffers = kA.getSRU().size() != kB.getSRU().size();
+                for (int i = 0; !sruDiffers && i < kA.getSRU().size(); i++) {
+                    sruDiffers = !kA.getSRU().get(i).equalsIgnoreCase(kB.getSRU().get(i));
                 }
+                if (sruDiffers)
+                    fieldChanged(nameA, SIE.KONTO, kA.getNumber(), "SRU", kA.getSRU(), kB.getSRU(), "KONTO.SRU differ " + kA.getNumber());
             } else {
-                errors.add(nameB + " is missing KONTO: " + kA.getNumber());
+                report(missing(nameB, SIE.KONTO, kA.getNumber(), kA, nameB + " is missing KONTO: " + kA.getNumber()));
             }
         }
     }
 
     private void compareDIM(SieDocument docA, SieDocument docB, String nameA, String nameB) {
+        boolean changesReported = changesReported(nameA);
         for (String dimKey : docA.getDIM().keySet()) {
+            SieDimension dimA = docA.getDIM().get(dimKey);
+            SieDimension dimB = docB.getDIM().get(dimKey);
             if (docB.getDIM().containsKey(dimKey)) {
-                if (!docA.getDIM().get(dimKey).getName().equals(docB.getDIM().get(dimKey).getName()))
-                    errors.add("DIM " + dimKey + " Name differ " + nameA + "," + nameB + ":" + docA.getDIM().get(dimKey).getName() + " , " + docB.getDIM().get(dimKey).getName());
-
-                if (!docA.getDIM().get(dimKey).getNumber().equals(docB.getDIM().get(dimKey).getNumber()))
-                    errors.add("DIM " + dimKey + " Number differ " + nameA + "," + nameB + ":" + docA.getDIM().get(dimKey).getNumber() + " , " + docB.getDIM().get(dimKey).getNumber());
-
-                if (docA.getDIM().get(dimKey).getSuperDim() != null && docB.getDIM().get(dimKey).getSuperDim() == null)
-                    errors.add("DIM " + dimKey + " SuberDim differ " + nameA + " has DIM ," + nameB + " is NULL, ");
-
-                if (docA.getDIM().get(dimKey).getSuperDim() != null && docB.getDIM().get(dimKey).getSuperDim() != null) {
-                    if (!docA.getDIM().get(dimKey).getSuperDim().getName().equals(docB.getDIM().get(dimKey).getSuperDim().getName()))
-                        errors.add("DIM " + dimKey + " SuperDim.Name differ " + nameA + "," + nameB + ":" + docA.getDIM().get(dimKey).getSuperDim().getName() + " , " + docB.getDIM().get(dimKey).getSuperDim().getName());
-
-                    if (!docA.getDIM().get(dimKey).getSuperDim().getNumber().equals(docB.getDIM().get(dimKey).getSuperDim().getNumber()))
-                        errors.add("DIM " + dimKey + " SuperDim.Number differ " + nameA + "," + nameB + ":" + docA.getDIM().get(dimKey).getSuperDim().getNumber() + " , " + docB.getDIM().get(dimKey).getSuperDim().getNumber());
+                if (!changesReported && !dimA.getName().equals(dimB.getName()))
+                    fieldChanged(nameA, SIE.DIM, dimKey, "Name", dimA.getName(), dimB.getName(),
+                        "DIM " + dimKey + " Name differ " + nameA + "," + nameB + ":" + dimA.getName() + " , " + dimB.getName());
+
+                if (!changesReported && !dimA.getNumber().equals(dimB.getNumber()))
+                    fieldChanged(nameA, SIE.DIM, dimKey, "Number", dimA.getNumber(), dimB.getNumber(),
+                        "DIM " + dimKey + " Number differ " + nameA + "," + nameB + ":" + dimA.getNumber() + " , " + dimB.getNumber());
+
+                // A super dimension only in document B is not seen from document A, so it is reported from B
+                if (dimA.getSuperDim() != null && dimB.getSuperDim() == null)
+                    fieldChanged(nameA, SIE.DIM, dimKey, "SuperDim", dimA.getSuperDim(), null,
+                        "DIM " + dimKey + " SuberDim differ " + nameA + " has DIM ," + nameB + " is NULL, ");
+
+                if (!changesReported && dimA.getSuperDim() != null && dimB.getSuperDim() != null) {
+                    SieDimension superA = dimA.getSuperDim();
+                    SieDimension superB = dimB.getSuperDim();
+                    if (!superA.getName().equals(superB.getName()))
+                        fieldChanged(nameA, SIE.DIM, dimKey, "SuperDim.Name", superA.getName(), superB.getName(),
+                            "DIM " + dimKey + " SuperDim.Name differ " + nameA + "," + nameB + ":" + superA.getName() + " , " + superB.getName());
+
+                    if (!superA.getNumber().equals(superB.getNumber()))
+                        fieldChanged(nameA, SIE.DIM, dimKey, "SuperDim.Number", superA.getNumber(), superB.getNumber(),
+                            "DIM " + dimKey + " SuperDim.Number differ " + nameA + "," + nameB + ":" + superA.getNumber() + " , " + superB.getNumber());
                 }
 
             } else {
-                errors.add(nameB + " DIM is missing " + dimKey);
+                report(missing(nameB, SIE.DIM, dimKey, dimA, nameB + " DIM is missing " + dimKey));
             }
         }
     }
 
     private void compareRAR(SieDocument docA, SieDocument docB, String nameA, String nameB) {
+        boolean changesReported = changesReported(nameA);
         for (SieBookingYear rarA : docA.getRars().values()) {
+            String key = String.valueOf(rarA.getId());
             if (docB.getRars().containsKey(rarA.getId())) {
                 SieBookingYear rarB = docB.getRars().get(rarA.getId());
-                if (rarA.getStart() != null && !rarA.getStart().equals(rarB.getStart()))
-                    errors.add(nameB + " RAR differs: id=" + rarA.getId() + " " + nameA + ".start='" + rarA.getStart() +
+                // A date missing in document A is only seen from document B
+                if (rarA.getStart() != null && !rarA.getStart().equals(rarB.getStart())
+                        && (!changesReported || rarB.getStart() == null))
+                    fieldChanged(nameA, SIE.RAR, key, "Start", rarA.getStart(), rarB.getStart(),
+                        nameB + " RAR differs: id=" + rarA.getId() + " " + nameA + ".start='" + rarA.getStart() +
                             "' " + nameB + ".start='" + rarB.getStart() + "'");
 
-                if (rarA.getEnd() != null && !rarA.getEnd().equals(rarB.getEnd()))
-                    errors.add(nameB + " RAR differs " + rarA.getId() + " " + nameA + ".end='" + rarA.getEnd() +
+                if (rarA.getEnd() != null && !rarA.getEnd().equals(rarB.getEnd())
+                        && (!changesReported || rarB.getEnd() == null))
+                    fieldChanged(nameA, SIE.RAR, key, "End", rarA.getEnd(), rarB.getEnd(),
+                        nameB + " RAR differs " + rarA.getId() + " " + nameA + ".end='" + rarA.getEnd() +
                             "' " + nameB + ".end='" + rarB.getEnd() + "'");
 
             } else {
-                errors.add(nameB + " RAR is missing " + rarA.getId());
+                report(missing(nameB, SIE.RAR, key, rarA, nameB + " RAR is missing " + rarA.getId()));
             }
         }
     }
 
-    private void compareVER(SieDocument docA, SieDocument docB, String nameA, String nameB) {
-        for (SieVoucher vA : docA.getVER()) {
-            boolean foundIt = false;
-            for (SieVoucher vB : docB.getVER()) {
-                if (voucherComparer(vA, vB)) {
-                    foundIt = true;
-                    break;
+    private void compareVER() {
+        List<SieVoucher> listA = randomAccess(docA.getVER());
+        List<SieVoucher> listB = randomAccess(docB.getVER());
+        VoucherIndex indexA = voucherIndex(listA);
+        VoucherIndex indexB = voucherIndex(listB);
+        boolean[] changedB = new boolean[listB.size()];
+        compareVER(listA, listB, indexA, indexB, "Second", changedB);
+        compareVER(listB, listA, indexB, indexA, "First", changedB);
+    }
+
+    /** Reports the vouchers of list A that are not in list B, see {@link #comparePeriodValueList}. */
+    private void compareVER(List<SieVoucher> listA, List<SieVoucher> listB, VoucherIndex indexA, VoucherIndex indexB, String nameB,
+                            boolean[] changedB) {
+        boolean firstPass = !isFirst(nameB);
+        inShards(listA.size(), (from, to, out) -> {
+            for (int j = from; j < to; j++) {
+                boolean foundIt = false;
+                SieVoucher vA = null;
+                for (int i = indexB.content.first(indexA.content.hashes[j]); i >= 0; i = indexB.content.next(i)) {
+                    if (vA == null) vA = listA.get(j);
+                    if (voucherComparer(vA, listB.get(i))) {
+                        foundIt = true;
+                        break;
+                    }
                 }
+                if (foundIt || !firstPass && changedB[j] && !mirrorChanges) continue;
+                if (vA == null) vA = listA.get(j);
+                String message = "Vouchers differs Series, Number not found or different in " + nameB + ": " + vA.getSeries() + ", " + vA.getNumber();
+                int sameKey = -1;
+                for (int i = indexB.keys.first(indexA.keys.hashes[j]); i >= 0 && sameKey < 0; i = indexB.keys.next(i)) {
+                    SieVoucher vB = listB.get(i);
+                    if (Objects.equals(vA.getSeries(), vB.getSeries()) && Objects.equals(vA.getNumber(), vB.getNumber())) sameKey = i;
+                }
+                String key = vA.getSeries() + " " + vA.getNumber();
+                if (sameKey >= 0 && (firstPass || changedB[j])) {
+                    if (firstPass) changedB[sameKey] = true;
+                    out.accept(voucherChange(firstPass ? "First" : "Second", key, vA, listB.get(sameKey), message));
+                } else {
+                    out.accept(missing(nameB, SIE.VER, key, vA, message));
+                }
+            }
+        });
+    }
+
+    private SieDifference voucherChange(String nameA, String key, SieVoucher vA, SieVoucher vB, String message) {
+        String field;
+        Object valueA;
+        Object valueB;
+        if (!Objects.equals(vA.getText(), vB.getText())) {
+            field = "Text";
+            valueA = vA.getText();
+            valueB = vB.getText();
+        } else if (!Objects.equals(vA.getVoucherDate(), vB.getVoucherDate())) {
+            field = "Date";
+            valueA = vA.getVoucherDate();
+            valueB = vB.getVoucherDate();
+        } else if (!Objects.equals(vA.getToken(), vB.getToken())) {
+            field = "Token";
+            valueA = vA.getToken();
+            valueB = vB.getToken();
+        } else {
+            field = "Rows";
+            valueA = unmatchedRows(vA.getRows(), vB.getRows());
+            valueB = unmatchedRows(vB.getRows(), vA.getRows());
+        }
+        return isFirst(nameA)
+            ? new SieDifference(SieDifference.Kind.CHANGED, SIE.VER, key, field, valueA, valueB, message)
+            : new SieDifference(SieDifference.Kind.CHANGED, SIE.VER, key, field, valueB, valueA, message);
+    }
+
+    /** Returns the rows that have no matching row in the other list, each row of the other list matching at most once. */
+    private List<SieVoucherRow> unmatchedRows(List<SieVoucherRow> rows, List<SieVoucherRow> others) {
+        long[] hashes = new long[others.size()];
+        for (int i = 0; i < hashes.length; i++) hashes[i] = rowHash(others.get(i));
+        HashIndex index = new HashIndex(hashes);
+        boolean[] used = new boolean[hashes.length];
+        List<SieVoucherRow> unmatched = new ArrayList<>();
+        for (SieVoucherRow row : rows) {
+            int match = -1;
+            for (int i = index.first(rowHash(row)); i >= 0 && match < 0; i = index.next(i)) {
+                if (!used[i] && rowMatches(row, others.get(i))) match = i;
             }
-            if (!foundIt) {
-                errors.add("Vouchers differs Series, Number not found or different in " + nameB + ": " + vA.getSeries() + ", " + vA.getNumber());
+            if (match < 0) {
+                unmatched.add(row);
+            } else {
+                used[match] = true;
             }
         }
+        return unmatched;
     }
 
     private boolean voucherComparer(SieVoucher vA, SieVoucher vB) {
@@ -349,27 +718,47 @@ public class SieDocumentComparer {
             return false;
         }
 
-        // Fix: properly track match state
+        List<SieVoucherRow> rowsB = vB.getRows();
+        HashIndex indexB = null;
+        if (rowsB.size() > ROW_INDEX_THRESHOLD) {
+            long[] hashes = new long[rowsB.size()];
+            for (int i = 0; i < hashes.length; i++) hashes[i] = rowHash(rowsB.get(i));
+            indexB = new HashIndex(hashes);
+        }
         for (SieVoucherRow rA : vA.getRows()) {
-            boolean foundRow = false;
-            for (SieVoucherRow rB : vB.getRows()) {
-                if (rowMatches(rA, rB)) {
-                    foundRow = true;
-                    break;
-                }
-            }
-            if (!foundRow) {
+            if (!containsRow(rowsB, indexB, rA)) {
                 return false;
             }
         }
         return true;
     }
 
+    private boolean containsRow(List<SieVoucherRow> rows, HashIndex index, SieVoucherRow row) {
+        if (index == null) {
+            for (SieVoucherRow r : rows) {
+                if (rowMatches(row, r)) return true;
+            }
+            return false;
+        }
+        long hash = rowHash(row);
+        for (int i = index.first(hash); i >= 0; i = index.next(i)) {
+            if (rowMatches(row, rows.get(i))) return true;
+        }
+        return false;
+    }
+
+    private static boolean amountEquals(SieVoucherRow rA, SieVoucherRow rB) {
+        long a = rA.getAmountHundredths();
+        long b = rB.getAmountHundredths();
+        if (a != SieAmount.NONE && b != SieAmount.NONE) return a == b;
+        return rA.getAmount().compareTo(rB.getAmount()) == 0;
+    }
+
     private boolean rowMatches(SieVoucherRow rA, SieVoucherRow rB) {
         if (!rA.getAccount().getNumber().equals(rB.getAccount().getNumber()))
             return false;
 
-        if (rA.getAmount().compareTo(rB.getAmount()) != 0)
+        if (!amountEquals(rA, rB))
             return false;
 
         if (!StringUtil.equals(rA.getCreatedBy(), rB.getCreatedBy()))
@@ -378,7 +767,7 @@ public class SieDocumentComparer {
         if (!Objects.equals(rA.getRowDate(), rB.getRowDate()))
             return false;
 
-        if (!Objects.equals(rA.getQuantity(), rB.getQuantity()))
+        if (differs(rA.getQuantity(), rB.getQuantity()))
             return false;
 
         if (!compareObjects(rA.getObjects(), rB.getObjects()))
@@ -386,4 +775,201 @@ public class SieDocumentComparer {
 
         return true;
     }
+
+
+    /**
+     * Runs a check over the entries of a list, in shards on the pool when comparing in parallel.
+     * Differences are reported in list order. Only a few shards per thread are submitted ahead of
+     * the one being reported, so that the differences waiting to be reported stay bounded. A shard
+     * stops once it has found as many differences as may still be reported.
+     */
+    private void inShards(int size, ShardCheck check) {
+        if (pool == null || size <= SHARD_SIZE) {
+            check.check(0, size, this::report);
+            return;
+        }
+        int maxPending = 2 * pool.getParallelism() + 1;
+        ArrayDeque<ForkJoinTask<List<SieDifference>>> pending = new ArrayDeque<>();
+        try {
+            int from = 0;
+            while (from < size || !pending.isEmpty()) {
+                while (from < size && pending.size() < maxPending) {
+                    pending.add(pool.submit(shard(check, from, Math.min(size, from + SHARD_SIZE), maxDifferences - count)));
+                    from += SHARD_SIZE;
+                }
+                for (SieDifference d : pending.poll().join()) report(d);
+            }
+        } catch (LimitReached e) {
+            stopped = true;
+            throw e;
+        } finally {
+            for (ForkJoinTask<List<SieDifference>> task : pending) task.cancel(false);
+        }
+    }
+
+    private Callable<List<SieDifference>> shard(ShardCheck check, int from, int to, int limit) {
+        return () -> {
+            List<SieDifference> out = new ArrayList<>();
+            if (stopped) return out;
+            try {
+                check.check(from, to, d -> {
+                    out.add(d);
+                    if (out.size() >= limit || stopped) throw LIMIT_REACHED;
+                });
+            } catch (LimitReached e) {
+                // the rest of the shard is not needed
+            }
+            return out;
+        };
+    }
+
+    private HashIndex periodValueIndex(List<SiePeriodValue> list) {
+        long[] hashes = new long[list.size()];
+        inShards(hashes.length, (from, to, out) -> {
+            for (int i = from; i < to; i++) hashes[i] = periodValueHash(list.get(i));
+        });
+        return new HashIndex(hashes);
+    }
+
+    private VoucherIndex voucherIndex(List<SieVoucher> list) {
+        long[] keyHashes = new long[list.size()];
+        long[] hashes = new long[list.size()];
+        inShards(hashes.length, (from, to, out) -> {
+            for (int i = from; i < to; i++) {
+                SieVoucher v = list.get(i);
+                keyHashes[i] = voucherKeyHash(v);
+                hashes[i] = voucherHash(keyHashes[i], v);
+            }
+        });
+        return new VoucherIndex(new HashIndex(hashes), new HashIndex(keyHashes));
+    }
+
+    private static <T> List<T> randomAccess(List<T> list) {
+        return list instanceof RandomAccess ? list : new ArrayList<>(list);
+    }
+
+    @FunctionalInterface
+    private interface ShardCheck {
+        void check(int from, int to, Consumer<SieDifference> out);
+    }
+
+    /** Thrown to stop comparing once the maximum number of differences has been reported. */
+    private static final class LimitReached extends RuntimeException {
+        LimitReached() {
+            super(null, null, false, false);
+        }
+    }
+
+    /*
+     * Hashes over the fields that the comparers above test, built so that values they consider
+     * equal hash the same: amounts are compared numerically and hashed in a canonical form.
+     * Period values are hashed by their key only, so that a period value with the same key but
+     * another amount is found as changed.
+     */
+
+    private static long voucherKeyHash(SieVoucher v) {
+        return hash(hash(0, v.getSeries()), v.getNumber());
+    }
+
+    private static long voucherHash(long keyHash, SieVoucher v) {
+        long h = hash(keyHash, v.getText());
+        h = hash(h, v.getToken());
+        h = hash(h, Objects.hashCode(v.getVoucherDate()));
+        return hash(h, v.getRows().size());
+    }
+
+    private static long rowHash(SieVoucherRow r) {
+        long h = hash(0, r.getAccount() == null ? null : r.getAccount().getNumber());
+        long amount = r.getAmountHundredths();
+        h = hash(h, amount != SieAmount.NONE ? amount : amountHash(r.getAmount()));
+        h = hash(h, r.getCreatedBy());
+        h = hash(h, Objects.hashCode(r.getRowDate()));
+        h = hash(h, amountHash(r.getQuantity()));
+        return objectsHash(h, r.getObjects());
+    }
+
+    private static long periodValueHash(SiePeriodValue p) {
+        long h = hash(0, p.getAccount() == null ? null : p.getAccount().getNumber());
+        h = hash(h, p.getYearNr());
+        h = hash(h, p.getPeriod());
+        return objectsHash(h, p.getObjects());
+    }
+
+    private static long objectsHash(long h, List<SieObject> objects) {
+        if (objects == null) return hash(h, -1);
+        h = hash(h, objects.size());
+        for (SieObject o : objects) {
+            h = hash(h, o.getDimension() == null ? null : o.getDimension().getNumber());
+            h = hash(h, o.getName());
+            h = hash(h, o.getNumber());
+        }
+        return h;
+    }
+
+    /** Hashes an amount so that amounts equal by {@code compareTo} hash the same. */
+    private static long amountHash(BigDecimal amount) {
+        if (amount == null) return 0;
+        BigDecimal stripped = amount.stripTrailingZeros();
+        if (stripped.scale() < 0) stripped = stripped.setScale(0);
+        long hundredths = SieAmount.of(stripped);
+        return hundredths != SieAmount.NONE ? hundredths : stripped.hashCode();
+    }
+
+    private static long hash(long h, String value) {
+        return hash(h, value == null ? 0 : value.hashCode() + 1L);
+    }
+
+    private static long hash(long h, long value) {
+        h = (h ^ value) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    /**
+     * Positions of list entries by hash, chained through int arrays so that no entry is boxed.
+     */
+    private static final class HashIndex {
+        private final int[] heads;
+        private final int[] next;
+        private final long[] hashes;
+        private final int mask;
+
+        HashIndex(long[] hashes) {
+            int buckets = Integer.highestOneBit(Math.max(hashes.length, 1) * 2 - 1) << 1;
+            this.hashes = hashes;
+            heads = new int[buckets];
+            mask = buckets - 1;
+            next = new int[hashes.length];
+            for (int i = 0; i < hashes.length; i++) {
+                int bucket = (int) (hashes[i] ^ (hashes[i] >>> 32)) & mask;
+                next[i] = heads[bucket] - 1;
+                heads[bucket] = i + 1;
+            }
+        }
+
+        /** Returns the position of the last added entry with the hash, or -1. */
+        int first(long hash) {
+            return find(heads[(int) (hash ^ (hash >>> 32)) & mask] - 1, hash);
+        }
+
+        /** Returns the position of the next entry with the same hash as the one at {@code i}, or -1. */
+        int next(int i) {
+            return find(next[i], hashes[i]);
+        }
+
+        private int find(int i, long hash) {
+            while (i >= 0 && hashes[i] != hash) i = next[i];
+            return i;
+        }
+    }
+
+    /** Indexes of a voucher list by the compared fields and by series and number. */
+    private static final class VoucherIndex {
+        private final HashIndex content;
+        private final HashIndex keys;
+
+        VoucherIndex(HashIndex content, HashIndex keys) {
+            this.content = content;
+            this.keys = keys;
+        }
+    }
 }
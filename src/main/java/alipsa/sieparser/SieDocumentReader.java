@@ -28,8 +28,14 @@ package alipsa.sieparser;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -37,15 +43,29 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Reads and parses a SIE file into a {@link SieDocument}.
  * Supports SIE types 1 through 4 (including 4i).
  * Provides callback hooks via {@link SieCallbacks} for streaming processing.
+ * A reader can read one document after another but is not thread safe; use {@link SieBatchReader} or
+ * {@link SieReaderPool} to read many files in parallel.
  */
 public class SieDocumentReader {
 
+    private static final String BUFFER_NAME = "<buffer>";
+    /** Default size of each memory mapped window, well below the 2 GB limit of a single mapping. */
+    static final int DEFAULT_MAP_WINDOW_SIZE = 64 * 1024 * 1024;
+    /** Size of the blocks in which {@link #readHeader(String)} reads a file. */
+    static final int HEADER_BLOCK_SIZE = 8 * 1024;
+
+    private static final int NO_SKIPPED_BLOCK = 0;
+    private static final int BEFORE_SKIPPED_BLOCK = 1;
+    private static final int IN_SKIPPED_BLOCK = 2;
+
     private SieCallbacks callbacks = new SieCallbacks();
     private boolean ignoreBTRANS = false;
     private boolean ignoreMissingOMFATTNING = false;
@@ -55,16 +75,30 @@ public class SieDocumentReader {
     private boolean allowUnderDimensions = true;
     private boolean ignoreMissingDIM = false;
     private EnumSet<SieType> acceptSIETypes = null;
+    private Set<String> includeRecordTypes = null;
+    private Set<String> excludeRecordTypes = null;
     private SieDocument sieDocument;
     private List<Exception> validationExceptions;
     private boolean streamValues = false;
     private SieCRC32 CRC = new SieCRC32();
     private boolean throwErrors = true;
+    private boolean memoryMapped = false;
+    private int mapWindowSize = DEFAULT_MAP_WINDOW_SIZE;
+    private boolean parallel = false;
+    private boolean columnarVouchers = false;
+    private boolean fingerprints = false;
+    private int parallelChunkSize = SieParallelParser.DEFAULT_CHUNK_SIZE;
     private String fileName;
     private int parsingLineNumber = 0;
     private SieVoucher curVoucher;
     private String pendingRTRANSMirrorData;
     private boolean abortParsing;
+    private boolean firstLine;
+    private Consumer<SieRecord> recordSink;
+    private Object recordValue;
+    private List<String> curVoucherData;
+    private SieDataItem recordItem;
+    private int skippedBlock;
     private final Map<String, Consumer<SieDataItem>> handlers = new LinkedHashMap<>();
     private final Set<String> seenRecordTypes = new HashSet<>();
     private boolean sieTypSeen = false;
@@ -198,35 +232,195 @@ public class SieDocumentReader {
      */
     public void setThrowErrors(boolean throwErrors) { this.throwErrors = throwErrors; }
 
+    /**
+     * Returns whether files are read through a memory mapping instead of a buffered reader.
+     * @return true if files are memory mapped
+     */
+    public boolean isMemoryMapped() { return memoryMapped; }
+
+    /**
+     * Sets whether files are read through a memory mapping instead of a buffered reader.
+     * When enabled, {@link #readDocument(String)} maps the file with {@link FileChannel#map}
+     * and tokenizes the IBM437 bytes directly, avoiding the charset decoding of every line.
+     * Files larger than a single mapping are processed in consecutive windows.
+     * @param memoryMapped true to memory map files
+     */
+    public void setMemoryMapped(boolean memoryMapped) { this.memoryMapped = memoryMapped; }
+
+    /**
+     * Returns whether vouchers are parsed in parallel.
+     * @return true if parsing is done in parallel
+     */
+    public boolean isParallel() { return parallel; }
+
+    /**
+     * Sets whether vouchers are parsed in parallel. The header is read sequentially, after which
+     * the rest of the file is split into chunks at #VER boundaries, and the vouchers of each chunk are
+     * built on the common {@link java.util.concurrent.ForkJoinPool}. The vouchers are closed in file
+     * order, which is also when their accounts and objects are looked up, so the resulting document,
+     * callbacks and validation are the same as when reading sequentially.
+     * Files are memory mapped when read in parallel. This does not apply to {@link #readRecords(String)}.
+     * @param parallel true to parse in parallel
+     */
+    public void setParallel(boolean parallel) { this.parallel = parallel; }
+
+    /**
+     * Returns the record types that are read, or {@code null} if all record types are read.
+     * @return the included record types, e.g. {@code #IB} or {@code #VER}
+     */
+    public Set<String> getIncludeRecordTypes() { return includeRecordTypes; }
+
+    /**
+     * Sets the record types to read; all other records are skipped as soon as their label has been
+     * read, before any of their fields are split or decoded. Skipping {@code #VER} skips the whole
+     * voucher including its rows, which follow their #VER and cannot be selected on their own.
+     * {@code #FLAGGA}, {@code #SIETYP} and {@code #KSUMMA} are always read. Skipped records are
+     * still included in the #KSUMMA checksum; set {@link #setIgnoreKSUMMA(boolean)} as well to
+     * skip them entirely. Checks for missing records only apply to records that are read.
+     * @param includeRecordTypes the SIE labels to read, or {@code null} to read all
+     */
+    public void setIncludeRecordTypes(Set<String> includeRecordTypes) { this.includeRecordTypes = includeRecordTypes; }
+
+    /**
+     * Returns the record types that are skipped, or {@code null} if none are.
+     * @return the excluded record types
+     */
+    public Set<String> getExcludeRecordTypes() { return excludeRecordTypes; }
+
+    /**
+     * Sets record types to skip, with the same rules as {@link #setIncludeRecordTypes(Set)}.
+     * A record type that is both included and excluded is skipped.
+     * @param excludeRecordTypes the SIE labels to skip, or {@code null} to skip none
+     */
+    public void setExcludeRecordTypes(Set<String> excludeRecordTypes) { this.excludeRecordTypes = excludeRecordTypes; }
+
+    /**
+     * Returns whether records of the given type are skipped by the include and exclude settings.
+     */
+    boolean skipsRecordType(String itemType) {
+        if (includeRecordTypes == null && excludeRecordTypes == null) return false;
+        switch (itemType) {
+            case SIE.FLAGGA:
+            case SIE.SIETYP:
+            case SIE.KSUMMA:
+            case SIE.TRANS:
+            case SIE.BTRANS:
+            case SIE.RTRANS:
+            case "":
+            case "{":
+            case "}":
+                return false;
+            default:
+                return (includeRecordTypes != null && !includeRecordTypes.contains(itemType))
+                    || (excludeRecordTypes != null && excludeRecordTypes.contains(itemType));
+        }
+    }
+
+    /**
+     * Returns whether vouchers are stored column by column.
+     * @return true if vouchers are stored in columns
+     */
+    public boolean isColumnarVouchers() { return columnarVouchers; }
+
+    /**
+     * Sets whether the vouchers of the document are stored column by column in primitive arrays
+     * instead of as {@link SieVoucher} and {@link SieVoucherRow} objects, which takes a fraction of
+     * the memory for large files. {@link SieDocument#getVER()} then materializes a new voucher on
+     * every {@code get}, so changes to a returned voucher are not kept, and vouchers can only be
+     * appended to the list.
+     * @param columnarVouchers true to store vouchers in columns
+     */
+    public void setColumnarVouchers(boolean columnarVouchers) { this.columnarVouchers = columnarVouchers; }
+
+    /**
+     * Returns whether content fingerprints are computed while reading.
+     * @return true if fingerprints are computed while reading
+     */
+    public boolean isFingerprints() { return fingerprints; }
+
+    /**
+     * Sets whether the fingerprint of every voucher and period value is computed while it is read,
+     * and summed up per section in the document. The fingerprints then describe the file as read,
+     * also when the vouchers and values are not kept in the document, see
+     * {@link SieDocument#getFingerprint(String)}. Default is false, in which case fingerprints are
+     * computed from the content when they are asked for.
+     * @param fingerprints true to compute fingerprints while reading
+     */
+    public void setFingerprints(boolean fingerprints) { this.fingerprints = fingerprints; }
+
+    void setParallelChunkSize(int parallelChunkSize) {
+        if (parallelChunkSize <= 0) throw new IllegalArgumentException("Chunk size must be positive: " + parallelChunkSize);
+        this.parallelChunkSize = parallelChunkSize;
+    }
+
+    int getMapWindowSize() { return mapWindowSize; }
+
+    void setMapWindowSize(int mapWindowSize) {
+        if (mapWindowSize <= 0) throw new IllegalArgumentException("Map window size must be positive: " + mapWindowSize);
+        this.mapWindowSize = mapWindowSize;
+    }
+
     /**
      * Returns the SIE type version from a file without fully parsing it.
      * @param fileName the path to the SIE file
      * @return the SIE type (1-4), or -1 if no #SIETYP was found
      * @throws IOException if an I/O error occurs
+     * @see #readHeader(String)
      */
     public static int getSieVersion(String fileName) throws IOException {
-        int ret = -1;
-        try (BufferedReader reader = IoUtil.getReader(fileName)) {
-            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
-                if (line.startsWith(SIE.SIETYP)) {
-                    SieDataItem di = new SieDataItem(line, null, null);
-                    ret = di.getInt(0);
-                    break;
+        return readHeader(fileName).getSIETYP();
+    }
+
+    /**
+     * Reads the identification records at the start of a SIE file, such as #SIETYP, #FNAMN and
+     * #RAR, without parsing the rest of it. The file is read in small blocks and only up to the
+     * first #KONTO, #VER or balance record, and fields are only decoded for the records that are kept.
+     * @param fileName the path to the SIE file
+     * @return the header of the file
+     * @throws IOException if an I/O error occurs
+     */
+    public static SieHeader readHeader(String fileName) throws IOException {
+        SieHeader header = new SieHeader();
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_BLOCK_SIZE);
+            boolean end = false;
+            while (!end) {
+                if (!buffer.hasRemaining()) {
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+                }
+                end = channel.read(buffer) < 0;
+                buffer.flip();
+                SieTokenizer tokenizer = new SieTokenizer(buffer);
+                tokenizer.setEndOfInput(end);
+                while (tokenizer.next()) {
+                    if (!header.add(tokenizer)) return header;
                 }
+                buffer.position(tokenizer.position());
+                buffer.compact();
             }
         }
-        return ret;
+        return header;
+    }
+
+    /**
+     * Reads the identification records at the start of IBM437 encoded SIE content held in a buffer.
+     * The position and limit of the buffer are not changed.
+     * @param buffer the SIE content, from its position up to its limit
+     * @return the header of the content
+     * @see #readHeader(String)
+     */
+    public static SieHeader readHeader(ByteBuffer buffer) {
+        SieHeader header = new SieHeader();
+        SieTokenizer tokenizer = new SieTokenizer(buffer);
+        while (tokenizer.next()) {
+            if (!header.add(tokenizer)) break;
+        }
+        return header;
     }
 
     /** Creates a new document reader with default settings. */
     public SieDocumentReader() {
-        sieDocument = new SieDocument();
-        setValidationExceptions(new ArrayList<>());
-        validationWarnings = new ArrayList<>();
-        seenRecordTypes.clear();
-        sieTypSeen = false;
-        formatSeen = false;
-        lastVoucherNumberBySeries.clear();
+        reset();
         initHandlers();
     }
 
@@ -276,9 +470,203 @@ public class SieDocumentReader {
      * @throws IOException if an I/O error occurs
      */
     public SieDocument readDocument(String fileName) throws IOException {
-        this.fileName = fileName;
-        sieDocument = new SieDocument();
-        CRC = new SieCRC32();
+        if (memoryMapped || parallel) return readMapped(fileName);
+        startDocument(fileName);
+        try (BufferedReader reader = IoUtil.getReader(fileName)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (!parseLine(line)) return null;
+            }
+        }
+        return endDocument();
+    }
+
+    /**
+     * Reads and parses IBM437 encoded SIE content held in a buffer into a {@link SieDocument}.
+     * The content is tokenized directly from the buffer by a {@link SieTokenizer}, so only the
+     * fields that are actually used are decoded into Strings. The position and limit of the
+     * buffer are not changed.
+     * @param buffer the SIE content, from its position up to its limit
+     * @return the parsed document, or {@code null} if the content is invalid
+     */
+    public SieDocument readDocument(ByteBuffer buffer) {
+        startDocument(BUFFER_NAME);
+        SieTokenizer tokenizer = new SieTokenizer(buffer);
+        if (parallel) {
+            if (!newParallelParser().parse(tokenizer)) return null;
+        } else {
+            while (tokenizer.next()) {
+                if (!parseRecord(tokenizer)) return null;
+            }
+        }
+        return endDocument();
+    }
+
+    /**
+     * Reads a single voucher from a SIE file, using an index to parse only the header section and
+     * the block of that voucher.
+     * @param fileName the path to the SIE file
+     * @param index the index of the file, see {@link SieVoucherIndex#load(Path)}
+     * @param series the voucher series
+     * @param number the voucher number
+     * @return the voucher, or {@code null} if it is not in the index or the file is invalid
+     * @throws IOException if an I/O error occurs
+     * @see #readVouchers(String, SieVoucherIndex, List)
+     */
+    public SieVoucher readVoucher(String fileName, SieVoucherIndex index, String series, String number) throws IOException {
+        SieVoucherIndex.Entry entry = index.find(series, number);
+        if (entry == null) return null;
+        SieDocument doc = readVouchers(fileName, index, List.of(entry));
+        return doc == null || doc.getVER().isEmpty() ? null : doc.getVER().get(0);
+    }
+
+    /**
+     * Reads the vouchers dated within a range from a SIE file, using an index.
+     * @param fileName the path to the SIE file
+     * @param index the index of the file
+     * @param from the first voucher date, inclusive
+     * @param to the last voucher date, inclusive
+     * @return a document with the header section and the vouchers in the range, or {@code null} if the file is invalid
+     * @throws IOException if an I/O error occurs
+     * @see #readVouchers(String, SieVoucherIndex, List)
+     */
+    public SieDocument readVouchers(String fileName, SieVoucherIndex index, LocalDate from, LocalDate to) throws IOException {
+        return readVouchers(fileName, index, index.find(from, to));
+    }
+
+    /**
+     * Reads the given vouchers from a SIE file. Only the header section, with the accounts and
+     * dimensions that rows refer to, and the blocks of the given vouchers are parsed, in file order.
+     * Settings and callbacks apply as in {@link #readDocument(String)}, except that #KSUMMA cannot be
+     * verified from part of a file and is ignored. Line numbers in messages count the lines read.
+     * @param fileName the path to the SIE file
+     * @param index the index of the file
+     * @param vouchers entries of the index
+     * @return a document with the header section and the given vouchers, or {@code null} if the file is invalid
+     * @throws IOException if an I/O error occurs
+     * @throws SieParseException if the index was built for another version of the file
+     */
+    public SieDocument readVouchers(String fileName, SieVoucherIndex index, List<SieVoucherIndex.Entry> vouchers) throws IOException {
+        Path path = Paths.get(fileName);
+        if (!index.matches(path)) {
+            throw new SieParseException("The voucher index does not match " + fileName + ", which has changed since it was indexed");
+        }
+        List<SieVoucherIndex.Entry> blocks = new ArrayList<>(vouchers);
+        blocks.sort(Comparator.comparingLong(SieVoucherIndex.Entry::getOffset));
+        boolean ignoreKSUMMASetting = ignoreKSUMMA;
+        ignoreKSUMMA = true;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            startDocument(fileName);
+            if (!parseRange(channel, 0, index.getHeaderLength())) return null;
+            for (SieVoucherIndex.Entry block : blocks) {
+                if (!parseRange(channel, block.getOffset(), block.getLength())) return null;
+            }
+            return endDocument();
+        } finally {
+            ignoreKSUMMA = ignoreKSUMMASetting;
+        }
+    }
+
+    private boolean parseRange(FileChannel channel, long offset, long length) throws IOException {
+        SieTokenizer tokenizer = new SieTokenizer(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+        while (tokenizer.next()) {
+            if (!parseRecord(tokenizer)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Opens a SIE file for reading one record at a time. Records are parsed as they are requested,
+     * so the file is never held in memory as a whole. Vouchers are yielded as complete
+     * {@link SieVoucher} objects once their closing brace has been read.
+     * While iterating, vouchers and period values are not stored in the document, regardless of
+     * {@link #isStreamValues()}; the callbacks in {@link SieCallbacks} are still invoked.
+     * The reader must not be used for anything else until the iterator is exhausted or closed.
+     * @param fileName the path to the SIE file
+     * @return an iterator over the records of the file
+     * @throws IOException if the file cannot be opened
+     */
+    public SieRecordIterator readRecords(String fileName) throws IOException {
+        if (memoryMapped) {
+            SieMappedFile mappedFile = new SieMappedFile(Paths.get(fileName), mapWindowSize);
+            try {
+                return new SieRecordIterator(this, fileName, mappedFile, mappedFile.nextWindow());
+            } catch (IOException | RuntimeException e) {
+                try {
+                    mappedFile.close();
+                } catch (IOException closeFailure) {
+                    e.addSuppressed(closeFailure);
+                }
+                throw e;
+            }
+        }
+        return new SieRecordIterator(this, fileName, IoUtil.getReader(fileName));
+    }
+
+    /**
+     * Reads IBM437 encoded SIE content held in a buffer one record at a time.
+     * @param buffer the SIE content, from its position up to its limit
+     * @return an iterator over the records of the content
+     * @see #readRecords(String)
+     */
+    public SieRecordIterator readRecords(ByteBuffer buffer) {
+        return new SieRecordIterator(this, BUFFER_NAME, new SieTokenizer(buffer));
+    }
+
+    /**
+     * Opens a SIE file as a sequential stream of records. The stream must be closed,
+     * preferably with try-with-resources, to release the file.
+     * @param fileName the path to the SIE file
+     * @return a stream of the records of the file
+     * @throws IOException if the file cannot be opened
+     * @see #readRecords(String)
+     */
+    public Stream<SieRecord> streamRecords(String fileName) throws IOException {
+        return readRecords(fileName).stream();
+    }
+
+    /**
+     * Starts reading a SIE file that is still being appended to. Nothing is read until
+     * {@link SieTailReader#poll()} is called, which then parses the lines added since the
+     * previous poll. The reader must not be used for anything else while the tail reader is in use.
+     * @param fileName the path to the SIE file
+     * @return a tail reader for the file
+     */
+    public SieTailReader openTail(String fileName) {
+        return new SieTailReader(this, fileName, mapWindowSize);
+    }
+
+    private SieDocument readMapped(String fileName) throws IOException {
+        startDocument(fileName);
+        SieParallelParser parallelParser = parallel ? newParallelParser() : null;
+        try (SieMappedFile file = new SieMappedFile(Paths.get(fileName), mapWindowSize)) {
+            for (SieTokenizer tokenizer = file.nextWindow(); tokenizer != null; tokenizer = file.nextWindow()) {
+                if (parallelParser != null) {
+                    if (!parallelParser.parse(tokenizer)) return null;
+                } else {
+                    while (tokenizer.next()) {
+                        if (!parseRecord(tokenizer)) return null;
+                    }
+                }
+            }
+        }
+        return endDocument();
+    }
+
+    private SieParallelParser newParallelParser() {
+        return new SieParallelParser(this, sieDocument, ForkJoinPool.commonPool(), parallelChunkSize);
+    }
+
+    /**
+     * Clears the state of the last document read, so that the reader holds no reference to it.
+     * Settings and callbacks are kept. Every read starts with a reset, so calling this is only
+     * needed to release the last document, for instance before returning the reader to a
+     * {@link SieReaderPool}. The lists of validation exceptions and warnings are replaced rather
+     * than cleared, so lists obtained earlier still hold the results of their own document.
+     */
+    public void reset() {
+        fileName = null;
+        sieDocument = null;
+        CRC.reset();
         setValidationExceptions(new ArrayList<>());
         validationWarnings = new ArrayList<>();
         seenRecordTypes.clear();
@@ -288,66 +676,175 @@ public class SieDocumentReader {
         curVoucher = null;
         pendingRTRANSMirrorData = null;
         abortParsing = false;
+        firstLine = true;
+        parsingLineNumber = 0;
+        recordSink = null;
+        recordValue = null;
+        curVoucherData = null;
+        recordItem = null;
+        skippedBlock = NO_SKIPPED_BLOCK;
+    }
+
+    private void startDocument(String fileName) {
+        reset();
+        this.fileName = fileName;
+        sieDocument = new SieDocument();
+        if (columnarVouchers) sieDocument.setVER(new SieColumnarVoucherList());
+    }
+
+    /**
+     * Passes an exception to the exception callback and then, if {@link #isThrowErrors()} and a
+     * document is being read, throws it, wrapped in a {@link SieParseException} if it is checked.
+     */
+    void callbackException(Exception ex) {
+        callbacks.callbackException(ex);
+        if (!throwErrors || sieDocument == null) return;
+        if (ex instanceof RuntimeException) throw (RuntimeException) ex;
+        throw new SieParseException(ex.getMessage(), ex);
+    }
+
+    SieDocument startRecords(String fileName, Consumer<SieRecord> sink) {
+        startDocument(fileName);
+        recordSink = sink;
+        return sieDocument;
+    }
 
-        if (throwErrors) {
-            Consumer<Exception> existing = callbacks.getSieException();
-            callbacks.setSieException(ex -> {
-                if (existing != null) existing.accept(ex);
-                if (ex instanceof RuntimeException) throw (RuntimeException) ex;
-                throw new SieParseException(ex.getMessage(), ex);
-            });
+    SieDocument endDocument() {
+        if (!ignoreMissingDIM && reads(SIE.DIM) && !sieDocument.getTEMPDIM().isEmpty()) {
+            callbackException(new SieParseException(
+                "Unresolved temporary dimensions: " + sieDocument.getTEMPDIM().keySet()));
         }
 
-        boolean firstLine = true;
-        parsingLineNumber = 0;
+        validateDocument();
+        recordSink = null;
+        return sieDocument;
+    }
 
-        try (BufferedReader reader = IoUtil.getReader(fileName)) {
-            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
-                parsingLineNumber++;
-                callbacks.callbackLine(line);
-                SieDataItem di = new SieDataItem(line, this, sieDocument);
-                if (firstLine) {
-                    firstLine = false;
-                    if (!SIE.FLAGGA.equals(di.getItemType())) {
-                        callbacks.callbackException(new SieInvalidFileException(this.fileName));
-                        return null;
-                    }
-                }
+    boolean parseLine(String line) {
+        parsingLineNumber++;
+        callbacks.callbackLine(line);
+        return parseLine(new SieDataItem(line, this, sieDocument));
+    }
 
-                if (!ignoreKSUMMA && CRC.isStarted() && !SIE.KSUMMA.equals(di.getItemType()))
-                    CRC.addData(di);
+    boolean parseRecord(SieTokenizer tokenizer) {
+        parsingLineNumber++;
+        if (callbacks.getLine() != null) callbacks.callbackLine(tokenizer.getLine());
+        if (recordItem == null) {
+            recordItem = new SieDataItem(tokenizer, this, sieDocument);
+        } else {
+            recordItem.moveTo(tokenizer);
+        }
+        return parseLine(recordItem);
+    }
 
-                String itemType = di.getItemType();
-                if ("".equals(itemType) || "{".equals(itemType)) {
-                    // blank lines and opening braces are ignored
-                } else if ("}".equals(itemType)) {
-                    if (curVoucher != null) closeVoucher(curVoucher);
-                    curVoucher = null;
-                    pendingRTRANSMirrorData = null;
-                } else {
-                    // #RTRANS mirror rows only apply to the immediate next #TRANS row
-                    if (pendingRTRANSMirrorData != null && !SIE.TRANS.equals(itemType)) {
-                        pendingRTRANSMirrorData = null;
-                    }
-                    seenRecordTypes.add(itemType);
-                    Consumer<SieDataItem> handler = handlers.get(itemType);
-                    if (handler != null) {
-                        handler.accept(di);
-                        if (abortParsing) return null;
-                    } else {
-                        // Unknown labels are silently ignored per the SIE spec
-                    }
-                }
+    /**
+     * Returns whether vouchers built by a {@link SieParallelParser} can be applied with
+     * {@link #applyVoucher(SieParallelParser.Segment, byte[], byte[])}, which is not the case when every
+     * line has to be seen, i.e. with a line callback, a record sink or skipped vouchers.
+     */
+    boolean acceptsVouchers() {
+        return callbacks.getLine() == null && recordSink == null && !skipsRecordType(SIE.VER);
+    }
+
+    /** Returns whether the lines parsed are added to the #KSUMMA checksum. */
+    boolean isChecksumStarted() {
+        return !ignoreKSUMMA && CRC.isStarted();
+    }
+
+    /**
+     * Applies a voucher built by a {@link SieParallelParser} worker as if its lines had been parsed
+     * one at a time: the lines are counted and added to the checksum, the accounts and objects of
+     * the rows are looked up in row order and the voucher is closed.
+     * @param keys the bytes the key offsets of the segment refer to
+     * @param checksums the bytes the checksum offsets of the segment refer to
+     * @return {@code false} if the lines of the segment must be parsed one at a time instead
+     */
+    boolean applyVoucher(SieParallelParser.Segment segment, byte[] keys, byte[] checksums) {
+        boolean checksum = isChecksumStarted();
+        if (firstLine || skippedBlock != NO_SKIPPED_BLOCK || !acceptsVouchers()
+                || (checksum && segment.checksumEnd < 0)) {
+            return false;
+        }
+        parsingLineNumber += segment.lines;
+        if (checksum) CRC.addNormalized(checksums, segment.checksumStart, segment.checksumEnd - segment.checksumStart);
+        seenRecordTypes.add(SIE.VER);
+        for (int i = 0; i < SieParallelParser.ROW_TYPES.length; i++) {
+            if ((segment.rowTypes & 1 << i) != 0) seenRecordTypes.add(SieParallelParser.ROW_TYPES[i]);
+        }
+
+        SieSymbolTable symbols = sieDocument.getSymbols();
+        List<SieVoucherRow> rows = segment.voucher.getRows();
+        int[] refs = segment.keyRefs;
+        for (int i = 0, k = 0; i < rows.size(); i++, k += 4) {
+            SieVoucherRow row = rows.get(i);
+            row.setAccount(symbols.getAccount(keys, refs[k], refs[k + 1]));
+            if (refs[k + 3] >= 0) row.setObjects(symbols.getObjects(keys, refs[k + 2], refs[k + 3]));
+        }
+        curVoucher = null;
+        pendingRTRANSMirrorData = null;
+        recordValue = null;
+        closeVoucher(segment.voucher);
+        return true;
+    }
+
+    /**
+     * Applies one parsed line to the document.
+     * @return {@code false} if parsing should stop and {@code null} be returned
+     */
+    private boolean parseLine(SieDataItem di) {
+        if (firstLine) {
+            firstLine = false;
+            if (!SIE.FLAGGA.equals(di.getItemType())) {
+                callbackException(new SieInvalidFileException(this.fileName));
+                return false;
             }
         }
 
-        if (!ignoreMissingDIM && !sieDocument.getTEMPDIM().isEmpty()) {
-            callbacks.callbackException(new SieParseException(
-                "Unresolved temporary dimensions: " + sieDocument.getTEMPDIM().keySet()));
+        if (!ignoreKSUMMA && CRC.isStarted() && !SIE.KSUMMA.equals(di.getItemType()))
+            CRC.addData(di);
+
+        String itemType = di.getItemType();
+        if (skips(itemType)) return true;
+        if ("".equals(itemType) || "{".equals(itemType)) {
+            // blank lines and opening braces are ignored
+        } else if ("}".equals(itemType)) {
+            if (curVoucher != null) closeVoucher(curVoucher);
+            curVoucher = null;
+            pendingRTRANSMirrorData = null;
+        } else {
+            // #RTRANS mirror rows only apply to the immediate next #TRANS row
+            if (pendingRTRANSMirrorData != null && !SIE.TRANS.equals(itemType)) {
+                pendingRTRANSMirrorData = null;
+            }
+            seenRecordTypes.add(itemType);
+            Consumer<SieDataItem> handler = handlers.get(itemType);
+            recordValue = null;
+            if (handler != null) {
+                handler.accept(di);
+                if (abortParsing) return false;
+            } else {
+                // Unknown labels are silently ignored per the SIE spec
+            }
+            if (recordSink != null) emitRecord(di);
         }
+        return true;
+    }
 
-        validateDocument();
-        return sieDocument;
+    /**
+     * Tracks records skipped by the record type settings, including the block of a skipped #VER.
+     * @return {@code true} if the record is skipped
+     */
+    private boolean skips(String itemType) {
+        if (skippedBlock == BEFORE_SKIPPED_BLOCK) {
+            skippedBlock = "{".equals(itemType) ? IN_SKIPPED_BLOCK : NO_SKIPPED_BLOCK;
+            if (skippedBlock == IN_SKIPPED_BLOCK) return true;
+        } else if (skippedBlock == IN_SKIPPED_BLOCK) {
+            if ("}".equals(itemType)) skippedBlock = NO_SKIPPED_BLOCK;
+            return true;
+        }
+        if (!skipsRecordType(itemType)) return false;
+        if (SIE.VER.equals(itemType)) skippedBlock = BEFORE_SKIPPED_BLOCK;
+        return true;
     }
 
     private void initHandlers() {
@@ -386,7 +883,26 @@ public class SieDocumentReader {
         handlers.put(SIE.RES, this::parseRES);
         handlers.put(SIE.UNDERDIM, this::parseUnderDimension);
         handlers.put(SIE.VALUTA, di -> sieDocument.setVALUTA(di.getString(0)));
-        handlers.put(SIE.VER, di -> curVoucher = parseVER(di));
+        handlers.put(SIE.VER, this::handleVER);
+    }
+
+    private void emitRecord(SieDataItem di) {
+        String itemType = di.getItemType();
+        // Voucher lines are emitted as one record when the voucher is closed
+        if (SIE.VER.equals(itemType) || SIE.TRANS.equals(itemType)
+                || SIE.BTRANS.equals(itemType) || SIE.RTRANS.equals(itemType)) {
+            return;
+        }
+        recordSink.accept(new SieRecord(itemType, di.getData(), recordValue));
+    }
+
+    private boolean storeValues() {
+        return !streamValues && recordSink == null;
+    }
+
+    private void handleVER(SieDataItem di) {
+        curVoucher = parseVER(di);
+        if (recordSink != null) curVoucherData = di.getData();
     }
 
     private void handleADRESS(SieDataItem di) {
@@ -417,7 +933,7 @@ public class SieDocumentReader {
     private void handleBTRANS(SieDataItem di) {
         if (!ignoreBTRANS) {
             if (curVoucher == null) {
-                callbacks.callbackException(new SieParseException(
+                callbackException(new SieParseException(
                     "#BTRANS outside #VER block at line " + parsingLineNumber));
             } else {
                 parseTRANS(di, curVoucher);
@@ -428,7 +944,7 @@ public class SieDocumentReader {
     private void handleRTRANS(SieDataItem di) {
         if (!ignoreRTRANS) {
             if (curVoucher == null) {
-                callbacks.callbackException(new SieParseException(
+                callbackException(new SieParseException(
                     "#RTRANS outside #VER block at line " + parsingLineNumber));
             } else {
                 pendingRTRANSMirrorData = rowDataWithoutTag(di);
@@ -439,7 +955,7 @@ public class SieDocumentReader {
 
     private void handleTRANS(SieDataItem di) {
         if (curVoucher == null) {
-            callbacks.callbackException(new SieParseException(
+            callbackException(new SieParseException(
                 "#TRANS outside #VER block at line " + parsingLineNumber));
         } else {
             if (pendingRTRANSMirrorData != null) {
@@ -472,12 +988,12 @@ public class SieDocumentReader {
             try {
                 SieType parsed = SieType.fromValue(di.getInt(0));
                 if (!acceptSIETypes.contains(parsed)) {
-                    callbacks.callbackException(new SieInvalidFeatureException(
+                    callbackException(new SieInvalidFeatureException(
                         "SIE type " + di.getInt(0) + " is not accepted"));
                     abortParsing = true;
                 }
             } catch (IllegalArgumentException e) {
-                callbacks.callbackException(new SieInvalidFeatureException(
+                callbackException(new SieInvalidFeatureException(
                     "Unknown SIE type: " + di.getInt(0)));
             }
         }
@@ -485,29 +1001,37 @@ public class SieDocumentReader {
 
     private void handleOIB(SieDataItem di) {
         SiePeriodValue pv = parseOIB_OUB(di);
+        recordValue = pv;
+        fingerprint(pv);
         callbacks.callbackOIB(pv);
-        if (!streamValues) sieDocument.getOIB().add(pv);
+        if (storeValues()) sieDocument.getOIB().add(pv);
     }
 
     private void handleOUB(SieDataItem di) {
         SiePeriodValue pv = parseOIB_OUB(di);
+        recordValue = pv;
+        fingerprint(pv);
         callbacks.callbackOUB(pv);
-        if (!streamValues) sieDocument.getOUB().add(pv);
+        if (storeValues()) sieDocument.getOUB().add(pv);
     }
 
     private void handlePBUDGET(SieDataItem di) {
         SiePeriodValue pv = parsePBUDGET_PSALDO(di);
+        recordValue = pv;
         if (pv != null) {
+            fingerprint(pv);
             callbacks.callbackPBUDGET(pv);
-            if (!streamValues) sieDocument.getPBUDGET().add(pv);
+            if (storeValues()) sieDocument.getPBUDGET().add(pv);
         }
     }
 
     private void handlePSALDO(SieDataItem di) {
         SiePeriodValue pv = parsePBUDGET_PSALDO(di);
+        recordValue = pv;
         if (pv != null) {
+            fingerprint(pv);
             callbacks.callbackPSALDO(pv);
-            if (!streamValues) sieDocument.getPSALDO().add(pv);
+            if (storeValues()) sieDocument.getPSALDO().add(pv);
         }
     }
 
@@ -517,6 +1041,7 @@ public class SieDocumentReader {
         rar.setStart(di.getDate(1));
         rar.setEnd(di.getDate(2));
         sieDocument.getRars().put(rar.getId(), rar);
+        recordValue = rar;
     }
 
     private void parseDimension(SieDataItem di) {
@@ -529,11 +1054,12 @@ public class SieDocumentReader {
             sieDocument.getDIM().get(number).setName(name);
             sieDocument.getDIM().get(number).setDefault(false);
         }
+        recordValue = sieDocument.getDIM().get(number);
     }
 
     private void parseUnderDimension(SieDataItem di) {
         if (!allowUnderDimensions) {
-            callbacks.callbackException(new SieInvalidFeatureException(
+            callbackException(new SieInvalidFeatureException(
                 "#UNDERDIM is not allowed (allowUnderDimensions=false)"));
             return;
         }
@@ -561,33 +1087,27 @@ public class SieDocumentReader {
 
         // Remove from TEMPDIM if it was temporarily created
         sieDocument.getTEMPDIM().remove(number);
+        recordValue = dim;
     }
 
     private void parseENHET(SieDataItem di) {
-        if (!sieDocument.getKONTO().containsKey(di.getString(0))) {
-            SieAccount account = new SieAccount();
-            account.setNumber(di.getString(0));
-            sieDocument.getKONTO().put(di.getString(0), account);
-        }
-        sieDocument.getKONTO().get(di.getString(0)).setUnit(di.getString(1));
+        SieAccount account = sieDocument.getSymbols().getAccount(di, 0);
+        account.setUnit(di.getString(1));
+        recordValue = account;
     }
 
     private void parseIB(SieDataItem di) {
-        if (!sieDocument.getKONTO().containsKey(di.getString(1))) {
-            SieAccount account = new SieAccount();
-            account.setNumber(di.getString(1));
-            sieDocument.getKONTO().put(di.getString(1), account);
-        }
-
         SiePeriodValue v = new SiePeriodValue();
         v.setYearNr(di.getInt(0));
-        v.setAccount(sieDocument.getKONTO().get(di.getString(1)));
+        v.setAccount(sieDocument.getSymbols().getAccount(di, 1));
         v.setAmount(di.getDecimal(2));
         warnIfExcessDecimals(v.getAmount(), "#IB");
         v.setQuantity(di.getDecimal(3));
         v.setToken(di.getItemType());
+        recordValue = v;
+        fingerprint(v);
         callbacks.callbackIB(v);
-        if (!streamValues) sieDocument.getIB().add(v);
+        if (storeValues()) sieDocument.getIB().add(v);
     }
 
     private void parseKONTO(SieDataItem di) {
@@ -597,18 +1117,16 @@ public class SieDocumentReader {
             addSoftValidation(new SieParseException(
                 "Account number '" + number + "' is not numeric at line " + parsingLineNumber));
         }
-        if (sieDocument.getKONTO().containsKey(number)) {
-            sieDocument.getKONTO().get(number).setName(name);
-        } else {
-            sieDocument.getKONTO().put(number, new SieAccount(number, name));
-        }
+        SieAccount account = sieDocument.getSymbols().getAccount(number);
+        account.setName(name);
+        recordValue = account;
     }
 
     private void parseKSUMMA(SieDataItem di) {
         sieDocument.setKSUMMA(di.getLong(0));
         long checksum = CRC.checksum();
         if (sieDocument.getKSUMMA() != checksum) {
-            callbacks.callbackException(new SieInvalidChecksumException(fileName + "; expected: '" + sieDocument
+            callbackException(new SieInvalidChecksumException(fileName + "; expected: '" + sieDocument
                     .getKSUMMA() + "', found:'" + checksum + "'"));
         }
     }
@@ -616,10 +1134,9 @@ public class SieDocumentReader {
     private void parseKTYP(SieDataItem di) {
         String number = di.getString(0);
         String type = di.getString(1);
-        if (!sieDocument.getKONTO().containsKey(number)) {
-            sieDocument.getKONTO().put(number, new SieAccount(number));
-        }
-        sieDocument.getKONTO().get(number).setType(type);
+        SieAccount account = sieDocument.getSymbols().getAccount(number);
+        account.setType(type);
+        recordValue = account;
     }
 
     private void parseOBJEKT(SieDataItem di) {
@@ -633,25 +1150,24 @@ public class SieDocumentReader {
         SieDimension dim = sieDocument.getDIM().get(dimNumber);
         SieObject obj = new SieObject(dim, number, name);
         dim.getObjects().put(number, obj);
+        sieDocument.getSymbols().objectReplaced(dimNumber, obj);
+        recordValue = obj;
     }
 
     private SiePeriodValue parseOIB_OUB(SieDataItem di) {
-        String number = di.getString(1);
-        if (!sieDocument.getKONTO().containsKey(number)) {
-            sieDocument.getKONTO().put(number, new SieAccount(number));
-        }
+        SieAccount account = sieDocument.getSymbols().getAccount(di, 1);
 
         if (sieDocument.getSIETYP() < 3) {
-            callbacks.callbackException(new SieInvalidFeatureException("Neither OIB or OUB is part of SIE < 3"));
+            callbackException(new SieInvalidFeatureException("Neither OIB or OUB is part of SIE < 3"));
         }
 
         int objOffset = 0;
-        if (di.getRawData().contains("{")) objOffset = 1;
+        if (di.rawContains("{")) objOffset = 1;
 
         SiePeriodValue v = new SiePeriodValue();
         v.setYearNr(di.getInt(0));
         // OIB/OUB have no period field
-        v.setAccount(sieDocument.getKONTO().get(number));
+        v.setAccount(account);
         v.setAmount(di.getDecimal(2 + objOffset));
         v.setQuantity(di.getDecimal(3 + objOffset));
         v.setObjects(di.getObjects());
@@ -660,10 +1176,7 @@ public class SieDocumentReader {
     }
 
     private SiePeriodValue parsePBUDGET_PSALDO(SieDataItem di) {
-        String accountNum = di.getString(2);
-        if (!sieDocument.getKONTO().containsKey(accountNum)) {
-            sieDocument.getKONTO().put(accountNum, new SieAccount(accountNum));
-        }
+        SieAccount account = sieDocument.getSymbols().getAccount(di, 2);
 
         // Validate period format: should be YYYYMM (6 digits, month 01-12)
         String periodStr = di.getString(1);
@@ -681,71 +1194,70 @@ public class SieDocumentReader {
         }
 
         if (sieDocument.getSIETYP() == 1) {
-            callbacks.callbackException(new SieInvalidFeatureException("Neither PSALDO or PBUDGET is part of SIE 1"));
+            callbackException(new SieInvalidFeatureException("Neither PSALDO or PBUDGET is part of SIE 1"));
         }
 
-        if (sieDocument.getSIETYP() == 2 && di.getRawData().contains("{") && !di.getRawData().contains("{}")) {
+        if (sieDocument.getSIETYP() == 2 && di.rawContains("{") && !di.rawContains("{}")) {
             return null;
         }
 
         int objOffset = 0;
-        if (di.getRawData().contains("{")) objOffset = 1;
+        if (di.rawContains("{")) objOffset = 1;
 
         SiePeriodValue v = new SiePeriodValue();
         v.setYearNr(di.getInt(0));
         v.setPeriod(di.getInt(1));
-        v.setAccount(sieDocument.getKONTO().get(accountNum));
+        v.setAccount(account);
         v.setAmount(di.getDecimal(3 + objOffset));
         v.setQuantity(di.getDecimal(4 + objOffset));
         v.setToken(di.getItemType());
 
-        if (sieDocument.getSIETYP() != 2 && di.getRawData().contains("{")) v.setObjects(di.getObjects());
+        if (sieDocument.getSIETYP() != 2 && di.rawContains("{")) v.setObjects(di.getObjects());
 
         return v;
     }
 
     private void parseRES(SieDataItem di) {
-        String accountNum = di.getString(1);
-        if (!sieDocument.getKONTO().containsKey(accountNum)) {
-            sieDocument.getKONTO().put(accountNum, new SieAccount(accountNum));
-        }
+        SieAccount account = sieDocument.getSymbols().getAccount(di, 1);
 
         int objOffset = 0;
-        if (di.getRawData().contains("{")) objOffset = 1;
+        if (di.rawContains("{")) objOffset = 1;
 
         SiePeriodValue v = new SiePeriodValue();
         v.setYearNr(di.getInt(0));
-        v.setAccount(sieDocument.getKONTO().get(accountNum));
+        v.setAccount(account);
         v.setAmount(di.getDecimal(2 + objOffset));
         v.setQuantity(di.getDecimal(3 + objOffset));
         v.setToken(di.getItemType());
+        recordValue = v;
+        fingerprint(v);
 
         callbacks.callbackRES(v);
-        if (!streamValues) sieDocument.getRES().add(v);
+        if (storeValues()) sieDocument.getRES().add(v);
     }
 
     private void parseSRU(SieDataItem di) {
-        String number = di.getString(0);
-        if (!sieDocument.getKONTO().containsKey(number)) {
-            sieDocument.getKONTO().put(di.getString(0), new SieAccount(number));
-        }
-        sieDocument.getKONTO().get(number).getSRU().add(di.getString(1));
+        SieAccount account = sieDocument.getSymbols().getAccount(di, 0);
+        account.getSRU().add(di.getString(1));
+        recordValue = account;
     }
 
     private void parseTRANS(SieDataItem di, SieVoucher v) {
-        String number = di.getString(0);
-        if (!sieDocument.getKONTO().containsKey(number)) {
-            sieDocument.getKONTO().put(number, new SieAccount(number));
-        }
+        SieAccount account = sieDocument.getSymbols().getAccount(di, 0);
 
         int objOffset = 0;
-        if (di.getRawData().contains("{")) objOffset = 1;
+        if (di.rawContains("{")) objOffset = 1;
 
         SieVoucherRow vr = new SieVoucherRow();
-        vr.setAccount(sieDocument.getKONTO().get(number));
+        vr.setAccount(account);
         vr.setObjects(di.getObjects());
-        vr.setAmount(di.getDecimal(1 + objOffset));
-        warnIfExcessDecimals(vr.getAmount(), di.getItemType());
+        long amount = di.getHundredths(1 + objOffset);
+        if (amount != SieAmount.NONE) {
+            vr.setAmount(amount, di.getScale(1 + objOffset));
+        } else {
+            vr.setAmount(di.getDecimal(1 + objOffset));
+            warnIfExcessDecimals(vr.getAmount(), di.getItemType());
+        }
         if (di.getDate(2 + objOffset) != null) vr.setRowDate(di.getDate(2 + objOffset));
         else vr.setRowDate(v.getVoucherDate());
         vr.setText(di.getString(3 + objOffset));
@@ -757,26 +1269,23 @@ public class SieDocumentReader {
     }
 
     private void parseUB(SieDataItem di) {
-        String number = di.getString(1);
-        if (!sieDocument.getKONTO().containsKey(number)) {
-            sieDocument.getKONTO().put(number, new SieAccount(number));
-        }
-
         SiePeriodValue v = new SiePeriodValue();
         v.setYearNr(di.getInt(0));
-        v.setAccount(sieDocument.getKONTO().get(number));
+        v.setAccount(sieDocument.getSymbols().getAccount(di, 1));
         v.setAmount(di.getDecimal(2));
         warnIfExcessDecimals(v.getAmount(), "#UB");
         v.setQuantity(di.getDecimal(3));
         v.setToken(di.getItemType());
+        recordValue = v;
+        fingerprint(v);
         callbacks.callbackUB(v);
-        if (!streamValues) sieDocument.getUB().add(v);
+        if (storeValues()) sieDocument.getUB().add(v);
     }
 
     private SieVoucher parseVER(SieDataItem di) {
         LocalDate voucherDate = di.getDate(2);
         if (voucherDate == null) {
-            callbacks.callbackException(new MissingFieldException("Voucher date"));
+            callbackException(new MissingFieldException("Voucher date"));
             voucherDate = LocalDate.now();
         }
 
@@ -791,7 +1300,7 @@ public class SieDocumentReader {
         return v;
     }
 
-    private String rowDataWithoutTag(SieDataItem di) {
+    static String rowDataWithoutTag(SieDataItem di) {
         String raw = di.getRawData();
         if (raw == null) return "";
         raw = raw.trim();
@@ -808,7 +1317,7 @@ public class SieDocumentReader {
     }
 
     private void warnIfExcessDecimals(BigDecimal amount, String context) {
-        if (amount != null && amount.stripTrailingZeros().scale() > 2) {
+        if (amount != null && amount.scale() > 2 && amount.stripTrailingZeros().scale() > 2) {
             addSoftValidation(new SieParseException(
                 "Amount " + amount.toPlainString() + " has more than 2 decimal places in " + context
                 + " at line " + parsingLineNumber));
@@ -828,7 +1337,7 @@ public class SieDocumentReader {
     private void addValidationException(boolean isException, Exception ex) {
         if (isException) {
             getValidationExceptions().add(ex);
-            callbacks.callbackException(ex);
+            callbackException(ex);
         }
     }
 
@@ -858,6 +1367,37 @@ public class SieDocumentReader {
         return validationWarnings;
     }
 
+    /**
+     * Checks that the rows of a voucher sum to zero, in hundredths as long as every amount
+     * has a fixed-point representation and with BigDecimal otherwise.
+     */
+    private boolean isBalanced(SieVoucher v) {
+        long sum = 0;
+        for (SieVoucherRow r : v.getRows()) {
+            // Skip ignored row types when computing checksum
+            if (ignoreBTRANS && SIE.BTRANS.equals(r.getToken())) continue;
+            if (ignoreRTRANS && SIE.RTRANS.equals(r.getToken())) continue;
+            long amount = r.getAmountHundredths();
+            if (amount == SieAmount.NONE) return isBalancedDecimal(v);
+            try {
+                sum = Math.addExact(sum, amount);
+            } catch (ArithmeticException e) {
+                return isBalancedDecimal(v);
+            }
+        }
+        return sum == 0;
+    }
+
+    private boolean isBalancedDecimal(SieVoucher v) {
+        BigDecimal check = BigDecimal.ZERO;
+        for (SieVoucherRow r : v.getRows()) {
+            if (ignoreBTRANS && SIE.BTRANS.equals(r.getToken())) continue;
+            if (ignoreRTRANS && SIE.RTRANS.equals(r.getToken())) continue;
+            check = check.add(r.getAmount());
+        }
+        return check.compareTo(BigDecimal.ZERO) == 0;
+    }
+
     private void closeVoucher(SieVoucher v) {
         // Check voucher number ordering per series
         String series = v.getSeries() != null ? v.getSeries() : "";
@@ -877,27 +1417,36 @@ public class SieDocumentReader {
             }
         }
 
-        if (!allowUnbalancedVoucher) {
-            BigDecimal check = BigDecimal.ZERO;
-            for (SieVoucherRow r : v.getRows()) {
-                // Skip ignored row types when computing checksum
-                if (ignoreBTRANS && SIE.BTRANS.equals(r.getToken())) continue;
-                if (ignoreRTRANS && SIE.RTRANS.equals(r.getToken())) continue;
-                check = check.add(r.getAmount());
-            }
-            if (check.compareTo(BigDecimal.ZERO) != 0)
-                callbacks.callbackException(new SieVoucherMismatchException(
-                    v.getSeries() + "." + v.getNumber() + " Sum is not zero."));
+        if (!allowUnbalancedVoucher && !isBalanced(v)) {
+            callbackException(new SieVoucherMismatchException(
+                v.getSeries() + "." + v.getNumber() + " Sum is not zero."));
         }
 
+        if (fingerprints) {
+            long fingerprint = v.computeFingerprint();
+            v.setFingerprint(fingerprint);
+            sieDocument.addFingerprint(SIE.VER, fingerprint);
+        }
         callbacks.callbackVER(v);
-        if (!streamValues) sieDocument.getVER().add(v);
+        if (storeValues()) sieDocument.getVER().add(v);
+        if (recordSink != null) {
+            recordSink.accept(new SieRecord(v.getToken(), curVoucherData, v));
+            curVoucherData = null;
+        }
+    }
+
+    /** Keeps the fingerprint of a period value and adds it to the fingerprint of its section, if fingerprints are enabled. */
+    private void fingerprint(SiePeriodValue v) {
+        if (!fingerprints) return;
+        long fingerprint = v.computeFingerprint();
+        v.setFingerprint(fingerprint);
+        sieDocument.addFingerprint(v.getToken(), fingerprint);
     }
 
     private void validateDocument() {
-        addValidationException(sieDocument.getGEN_DATE() == null,
+        addValidationException(reads(SIE.GEN) && sieDocument.getGEN_DATE() == null,
                 new SieMissingMandatoryDateException("#GEN Date is missing in " + fileName));
-        if (!ignoreMissingOMFATTNING && (sieDocument.getSIETYP() == 2 || sieDocument.getSIETYP() == 3) && sieDocument
+        if (!ignoreMissingOMFATTNING && reads(SIE.OMFATTN) && (sieDocument.getSIETYP() == 2 || sieDocument.getSIETYP() == 3) && sieDocument
                 .getOMFATTN() == null) {
             addValidationException(sieDocument.getRES().size() > 0 || sieDocument.getUB().size() > 0 || sieDocument.getOUB().size() > 0,
                     new SieMissingMandatoryDateException("#OMFATTN is missing in " + fileName + ", SIE type=" +
@@ -910,17 +1459,17 @@ public class SieDocumentReader {
         }
 
         // Issue #8: Mandatory field validation (soft — added to list, not thrown)
-        addSoftValidation(sieDocument.getPROGRAM().isEmpty(),
+        addSoftValidation(reads(SIE.PROGRAM) && sieDocument.getPROGRAM().isEmpty(),
             new SieParseException("#PROGRAM is missing in " + fileName));
-        addSoftValidation(!formatSeen,
+        addSoftValidation(reads(SIE.FORMAT) && !formatSeen,
             new SieParseException("#FORMAT is missing in " + fileName));
-        addSoftValidation(sieDocument.getFNAMN().getName() == null || sieDocument.getFNAMN().getName().isEmpty(),
+        addSoftValidation(reads(SIE.FNAMN) && (sieDocument.getFNAMN().getName() == null || sieDocument.getFNAMN().getName().isEmpty()),
             new SieParseException("#FNAMN is missing or empty in " + fileName));
         addSoftValidation(!sieTypSeen,
             new SieParseException("#SIETYP is missing in " + fileName));
-        addSoftValidation(sieDocument.getKONTO().isEmpty(),
+        addSoftValidation(reads(SIE.KONTO) && sieDocument.getKONTO().isEmpty(),
             new SieParseException("#KONTO is missing in " + fileName));
-        addSoftValidation(sieDocument.getRars().isEmpty(),
+        addSoftValidation(reads(SIE.RAR) && sieDocument.getRars().isEmpty(),
             new SieParseException("#RAR is missing in " + fileName));
 
         // Issue #9: Forbidden record enforcement (soft)
@@ -936,4 +1485,8 @@ public class SieDocumentReader {
                 new SieInvalidFeatureException("#OMFATTN is not allowed in SIE type 1"));
         }
     }
+
+    private boolean reads(String itemType) {
+        return !skipsRecordType(itemType);
+    }
 }
@@ -28,9 +28,7 @@ package alipsa.sieparser;
 import java.io.*;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.nio.charset.Charset;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 import java.util.List;
 
 /**
@@ -38,10 +36,9 @@ import java.util.List;
  * Produces output conforming to the SIE file format specification using IBM437 encoding.
  */
 public class SieDocumentWriter {
-    private static final DateTimeFormatter SIE_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
 
     private SieDocument sieDoc;
-    private BufferedWriter writer;
+    private SieLineEncoder out;
     private WriteOptions options;
     private SieCRC32 activeCrc;
 
@@ -70,9 +67,10 @@ public class SieDocumentWriter {
      * @throws IOException if an I/O error occurs
      */
     public void write(String fileName) throws IOException {
-        try (BufferedWriter bw = IoUtil.getWriter(fileName)) {
-            writer = bw;
+        try (OutputStream os = IoUtil.getOutputStream(fileName)) {
+            out = new SieLineEncoder(os);
             writeContent();
+            out.flush();
         }
     }
 
@@ -83,11 +81,9 @@ public class SieDocumentWriter {
      * @throws IOException if an I/O error occurs
      */
     public void write(OutputStream outputStream) throws IOException {
-        Charset charset = Encoding.getCharset();
-        BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(outputStream, charset));
-        writer = bw;
+        out = new SieLineEncoder(outputStream);
         writeContent();
-        bw.flush();
+        out.flush();
     }
 
     /**
@@ -98,22 +94,69 @@ public class SieDocumentWriter {
      * @throws IOException if an I/O error occurs
      */
     public void addVouchers(OutputStream outputStream, List<SieVoucher> vouchers) throws IOException {
-        Charset charset = Encoding.getCharset();
-        BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(outputStream, charset));
-        writer = bw;
+        out = new SieLineEncoder(outputStream);
         for (SieVoucher v : vouchers) {
             writeVoucherEntry(v);
         }
-        bw.flush();
+        out.flush();
+    }
+
+    /**
+     * Writes the header of the SIE document to a file and returns a writer that takes the vouchers
+     * one at a time, so that they never need to be held in memory together. Vouchers already in the
+     * document are written right after the header. The file is completed, including the closing
+     * #KSUMMA if enabled, and closed when the returned writer is closed.
+     * <p>
+     * This writer must not be used for anything else until the returned writer is closed.
+     * </p>
+     * @param fileName the output file path
+     * @return the writer for the vouchers
+     * @throws IOException if an I/O error occurs
+     */
+    public SieVoucherWriter openVouchers(String fileName) throws IOException {
+        OutputStream os = IoUtil.getOutputStream(fileName);
+        try {
+            return openVouchers(os, true);
+        } catch (IOException | RuntimeException e) {
+            os.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the header of the SIE document to an output stream and returns a writer that takes the
+     * vouchers one at a time. The stream is flushed but not closed when the returned writer is closed.
+     * @param outputStream the output stream to write to
+     * @return the writer for the vouchers
+     * @throws IOException if an I/O error occurs
+     * @see #openVouchers(String)
+     */
+    public SieVoucherWriter openVouchers(OutputStream outputStream) throws IOException {
+        return openVouchers(outputStream, false);
+    }
+
+    private SieVoucherWriter openVouchers(OutputStream outputStream, boolean closeStream) throws IOException {
+        out = new SieLineEncoder(outputStream);
+        writeHeader();
+        writeVER();
+        return new SieVoucherWriter(this, out, outputStream, closeStream);
     }
 
     private void writeContent() throws IOException {
+        writeHeader();
+        writeVER();
+        writeFooter();
+    }
+
+    private void writeHeader() throws IOException {
         activeCrc = null;
+        out.setChecksum(null);
         writeLine(getFLAGGA());
         if (options.isWriteKSUMMA()) {
+            out.raw(SIE.KSUMMA);
             activeCrc = new SieCRC32();
             activeCrc.start();
-            writeLine(SIE.KSUMMA);
+            out.setChecksum(activeCrc);
         }
         writeLine(getPROGRAM());
         writeLine(getFORMAT());
@@ -154,11 +197,16 @@ public class SieDocumentWriter {
         }
 
         writePeriodValue(SIE.RES, sieDoc.getRES());
-        writeVER();
+    }
 
+    /**
+     * Writes the closing #KSUMMA, if enabled, after the last voucher.
+     */
+    void writeFooter() throws IOException {
         if (options.isWriteKSUMMA() && activeCrc != null) {
             long checksum = activeCrc.checksum();
-            writeLine(SIE.KSUMMA + " " + checksum);
+            out.setChecksum(null);
+            out.raw(SIE.KSUMMA + " " + checksum);
             activeCrc = null;
         }
     }
@@ -175,60 +223,60 @@ public class SieDocumentWriter {
         }
     }
 
-    private void writeVoucherEntry(SieVoucher v) throws IOException {
-        String createdBy = StringUtil.equals(v.getCreatedBy(), "") ? "" : " \"" + v.getCreatedBy() + "\"";
-        String createdDate = v.getCreatedDate() == null ? "" : makeSieDate(v.getCreatedDate());
-        writeLine(SIE.VER + " \"" + v.getSeries() + "\" \"" + v.getNumber() + "\" " + makeSieDate(v.getVoucherDate())
-                + " \"" + sieText(v.getText()) + "\" " + createdDate + createdBy);
-        writeLine("{");
+    void writeVoucherEntry(SieVoucher v) throws IOException {
+        boolean hasCreatedBy = !StringUtil.equals(v.getCreatedBy(), "");
+        out.begin(SIE.VER)
+            .quotedVerbatim(v.getSeries())
+            .quotedVerbatim(v.getNumber())
+            .date(v.getVoucherDate())
+            .quoted(v.getText());
+        if (v.getCreatedDate() != null) {
+            out.date(v.getCreatedDate());
+        } else {
+            out.space();
+        }
+        if (hasCreatedBy) out.quotedVerbatim(v.getCreatedBy());
+        out.end();
+        out.raw("{");
+        boolean withObjects = sieDoc.getSIETYP() >= 3;
         for (SieVoucherRow r : v.getRows()) {
-            String obj = getObjeklista(r.getObjects());
-            String quantity;
+            if (r.getAccount() == null) continue;
+            // Fix: use r.getToken() instead of hardcoding SIE.TRANS
+            out.begin(String.valueOf(r.getToken()))
+                .plain(r.getAccount().getNumber())
+                .objects(r.getObjects(), withObjects);
+            long amount = r.getAmountHundredths();
+            if (amount != SieAmount.NONE) {
+                out.amount(amount, r.getAmountScale());
+            } else {
+                out.plain(sieAmount(r.getAmount()));
+            }
+            out.date(r.getRowDate()).quoted(r.getText());
             if (r.getQuantity() != null) {
-                quantity = sieAmount(r.getQuantity());
+                out.plain(sieAmount(r.getQuantity()));
             } else if (!StringUtil.isNullOrEmpty(r.getCreatedBy())) {
                 // Write quoted empty string placeholder when createdBy follows
-                quantity = "\"\"";
+                out.quoted("");
             } else {
-                quantity = "";
-            }
-            String rowCreatedBy = StringUtil.equals(r.getCreatedBy(), "") ? "" : "\"" + r.getCreatedBy() + "\"";
-            if (r.getAccount() != null) {
-                // Fix: use r.getToken() instead of hardcoding SIE.TRANS
-                writeLine(r.getToken() + " " +
-                        r.getAccount().getNumber() + " " +
-                        obj + " " +
-                        sieAmount(r.getAmount()) + " " +
-                        makeSieDate(r.getRowDate()) + " \"" +
-                        sieText(r.getText()) + "\" " +
-                        quantity + " " +
-                        rowCreatedBy);
+                out.space();
             }
-        }
-        writeLine("}");
-    }
-
-    private String getObjeklista(List<SieObject> objects) {
-        if (sieDoc.getSIETYP() < 3) return "";
-
-        StringBuilder ret = new StringBuilder("{");
-        if (objects != null) {
-            for (SieObject o : objects) {
-                ret.append(o.getDimension().getNumber());
-                ret.append(" \"").append(o.getNumber()).append("\" ");
+            if (StringUtil.equals(r.getCreatedBy(), "")) {
+                out.space();
+            } else {
+                out.quotedVerbatim(r.getCreatedBy());
             }
+            out.end();
         }
-        ret.append("}");
-        return ret.toString();
+        out.raw("}");
     }
 
     private void writeDIM() throws IOException {
         for (SieDimension d : sieDoc.getDIM().values()) {
             if (d.isDefault() && d.getObjects().isEmpty()) continue;
-            writeLine(SIE.DIM + " " + d.getNumber() + " \"" + sieText(d.getName()) + "\"");
+            out.begin(SIE.DIM).plain(d.getNumber()).quoted(d.getName()).end();
             for (SieObject o : d.getObjects().values()) {
                 // Fix: quote object number
-                writeLine(SIE.OBJEKT + " " + d.getNumber() + " \"" + o.getNumber() + "\" \"" + sieText(o.getName()) + "\"");
+                out.begin(SIE.OBJEKT).plain(d.getNumber()).quotedVerbatim(o.getNumber()).quoted(o.getName()).end();
             }
         }
     }
@@ -241,42 +289,37 @@ public class SieDocumentWriter {
     }
 
     private void writePeriodValue(String name, List<SiePeriodValue> list) throws IOException {
+        boolean withObjects = sieDoc.getSIETYP() >= 3 && !(SIE.IB + SIE.UB + SIE.RES).contains(name);
         for (SiePeriodValue v : list) {
-            String objekt = getObjeklista(v.getObjects());
-            if ((SIE.IB + SIE.UB + SIE.RES).contains(name)) {
-                objekt = "";
-            }
             if (v.getAccount() != null) {
-                StringBuilder sb = new StringBuilder();
-                sb.append(name).append(" ")
-                  .append(v.getYearNr()).append(" ")
-                  .append(v.getAccount().getNumber()).append(" ")
-                  .append(objekt).append(" ")
-                  .append(sieAmount(v.getAmount()));
+                out.begin(name)
+                    .plain(v.getYearNr())
+                    .plain(v.getAccount().getNumber())
+                    .objects(v.getObjects(), withObjects)
+                    .plain(sieAmount(v.getAmount()));
                 if (v.getQuantity() != null && v.getQuantity().compareTo(BigDecimal.ZERO) != 0) {
-                    sb.append(" ").append(sieAmount(v.getQuantity()));
+                    out.plain(sieAmount(v.getQuantity()));
                 }
-                writeLine(sb.toString());
+                out.end();
             }
         }
     }
 
     private void writePeriodSaldo(String name, List<SiePeriodValue> list) throws IOException {
+        boolean withObjects = sieDoc.getSIETYP() >= 3;
         for (SiePeriodValue v : list) {
-            String objekt = getObjeklista(v.getObjects());
             if (v.getAccount() != null) {
-                StringBuilder sb = new StringBuilder();
-                sb.append(name).append(" ")
-                  .append(v.getYearNr()).append(" ")
-                  .append(v.getPeriod()).append(" ")
-                  .append(v.getAccount().getNumber()).append(" ")
-                  .append(objekt).append(" ")
-                  .append(sieAmount(v.getAmount()));
+                out.begin(name)
+                    .plain(v.getYearNr())
+                    .plain(v.getPeriod())
+                    .plain(v.getAccount().getNumber())
+                    .objects(v.getObjects(), withObjects)
+                    .plain(sieAmount(v.getAmount()));
                 // Write quantity when present
                 if (v.getQuantity() != null && v.getQuantity().compareTo(BigDecimal.ZERO) != 0) {
-                    sb.append(" ").append(sieAmount(v.getQuantity()));
+                    out.plain(sieAmount(v.getQuantity()));
                 }
-                writeLine(sb.toString());
+                out.end();
             }
         }
     }
@@ -289,7 +332,7 @@ public class SieDocumentWriter {
 
     private String sieDate(LocalDate date) {
         if (date != null) {
-            return date.format(SIE_DATE_FORMAT);
+            return SieDate.toString(date);
         } else {
             return "";
         }
@@ -304,17 +347,17 @@ public class SieDocumentWriter {
 
     private void writeKONTO() throws IOException {
         for (SieAccount k : sieDoc.getKONTO().values()) {
-            writeLine(SIE.KONTO + " " + k.getNumber() + " \"" + sieText(k.getName()) + "\"");
+            out.begin(SIE.KONTO).plain(k.getNumber()).quoted(k.getName()).end();
             if ((k.getUnit() != null) && !k.getUnit().trim().isEmpty()) {
-                writeLine(SIE.ENHET + " " + k.getNumber() + " \"" + k.getUnit() + "\"");
+                out.begin(SIE.ENHET).plain(k.getNumber()).quotedVerbatim(k.getUnit()).end();
             }
             if (k.getType() != null && !k.getType().trim().isEmpty()) {
-                writeLine(SIE.KTYP + " " + k.getNumber() + " " + k.getType());
+                out.begin(SIE.KTYP).plain(k.getNumber()).plain(k.getType()).end();
             }
         }
         for (SieAccount k : sieDoc.getKONTO().values()) {
             for (String s : k.getSRU()) {
-                writeLine(SIE.SRU + " " + k.getNumber() + " " + s);
+                out.begin(SIE.SRU).plain(k.getNumber()).plain(s).end();
             }
         }
     }
@@ -412,14 +455,7 @@ public class SieDocumentWriter {
     }
 
     private void writeLine(String line) throws IOException {
-        writer.write(line);
-        writer.newLine();
-        if (activeCrc != null) {
-            SieDataItem di = new SieDataItem(line, null, null);
-            if (!SIE.KSUMMA.equals(di.getItemType())) {
-                activeCrc.addData(di);
-            }
-        }
+        out.line(line);
     }
 
     private String makeField(String data) {
@@ -428,13 +464,13 @@ public class SieDocumentWriter {
             Integer.parseInt(data);
             return data;
         } catch (NumberFormatException e) {
-            return "\"" + data + "\"";
+            return "\"" + sieText(data) + "\"";
         }
     }
 
     private String makeSieDate(LocalDate date) {
         if (date != null) {
-            return date.format(SIE_DATE_FORMAT);
+            return SieDate.toString(date);
         } else {
             return "00000000";
         }
@@ -0,0 +1,349 @@
+/*
+MIT License
+
+Copyright (c) 2015 Johan Idstam
+Modifications by Per Nyfelt Copyright (c) 2016 Alipsa HB
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package alipsa.sieparser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Compares two SIE files without reading either into a complete {@link SieDocument}.
+ * <p>
+ * Each file is read once with {@link SieDocumentReader#readRecords(String)}. Every voucher and
+ * period value is reduced to a digest, its key and a 64-bit hash of the fields
+ * {@link SieDocumentComparer} compares, and digests are sorted with an external merge sort that
+ * writes sorted runs to temp files once the memory budget is used up. The sorted digests of the
+ * two files are then merged, so memory use does not grow with the size of the files. The header
+ * records, accounts, dimensions and booking years are kept as usual and compared with a
+ * {@link SieDocumentComparer}.
+ * </p>
+ * <p>
+ * Differences are reported in the same categories and with the same messages as
+ * {@link SieDocumentComparer}: first those of the header, then those of the period values and
+ * vouchers in order of record type and key rather than in file order. A changed record is reported
+ * once, and {@link #compare(String, String)} describes it from both files, as
+ * {@link SieDocumentComparer#compare(SieDocument, SieDocument)} does. The records themselves are
+ * not kept, so the old and new values of a difference are only set for changed fields of a
+ * voucher (text, date, token) or period value (amount, quantity, token). Rows of vouchers are
+ * compared regardless of their order.
+ * </p>
+ */
+public class SieFileComparer {
+
+    /** Default number of bytes of digests held in memory for both files together. */
+    public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+    private static final LimitReached LIMIT_REACHED = new LimitReached();
+
+    private Supplier<SieDocumentReader> readerFactory = SieDocumentReader::new;
+    private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+    private Path tempDirectory;
+    private Consumer<SieDifference> listener;
+    private int maxDifferences = Integer.MAX_VALUE;
+    private int count;
+    /** Also reports changed records from the second file, for the descriptions of {@link #compare(String, String)}. */
+    private boolean mirrorChanges;
+
+    /** Creates a file comparer with default settings. */
+    public SieFileComparer() {}
+
+    /**
+     * Compares two SIE files and returns a list of differences.
+     * @param fileA the path to the first file
+     * @param fileB the path to the second file
+     * @return a list of difference descriptions, empty if the files are equal
+     * @throws IOException if a file cannot be read or a temp file cannot be written
+     */
+    public static List<String> compare(String fileA, String fileB) throws IOException {
+        List<String> errors = new ArrayList<>();
+        SieFileComparer comparer = new SieFileComparer();
+        comparer.mirrorChanges = true;
+        comparer.setListener(d -> errors.add(d.getMessage()));
+        comparer.compareFiles(fileA, fileB);
+        return errors;
+    }
+
+    /**
+     * Compares two SIE files, passing each difference to the listener until the maximum number
+     * of differences is reached.
+     * @param fileA the path to the first file
+     * @param fileB the path to the second file
+     * @return the number of differences reported
+     * @throws IOException if a file cannot be read or a temp file cannot be written
+     */
+    public int compareFiles(String fileA, String fileB) throws IOException {
+        count = 0;
+        try (SieDigestSorter digestsA = new SieDigestSorter(memoryBudget / 2, tempDirectory);
+             SieDigestSorter digestsB = new SieDigestSorter(memoryBudget / 2, tempDirectory)) {
+            SieDocument headerA = digest(fileA, digestsA);
+            SieDocument headerB = digest(fileB, digestsB);
+
+            SieDocumentComparer headerComparer = new SieDocumentComparer();
+            headerComparer.setListener(listener);
+            headerComparer.setMaxDifferences(maxDifferences);
+            headerComparer.setMirrorChanges(mirrorChanges);
+            count = headerComparer.compareDocuments(headerA, headerB);
+            if (count < maxDifferences) compareDigests(digestsA.sorted(), digestsB.sorted());
+        } catch (LimitReached e) {
+            // the maximum number of differences has been reported
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return count;
+    }
+
+    /** Reads a file, adding the digests of its vouchers and period values to the sorter. */
+    private SieDocument digest(String fileName, SieDigestSorter digests) throws IOException {
+        SieDocument header;
+        try (SieRecordIterator records = readerFactory.get().readRecords(fileName)) {
+            while (records.hasNext()) {
+                SieRecord record = records.next();
+                if (record.getValue() instanceof SieVoucher) {
+                    digests.add(SieDigest.of((SieVoucher) record.getValue()));
+                } else if (record.getValue() instanceof SiePeriodValue) {
+                    int section = SieDigest.section(record.getItemType());
+                    if (section >= 0) digests.add(SieDigest.of(section, (SiePeriodValue) record.getValue()));
+                }
+            }
+            header = records.getDocument();
+        }
+        if (header == null) throw new SieInvalidFileException(fileName);
+        digests.finish();
+        return header;
+    }
+
+    /**
+     * Merges the sorted digests of both files. Within a key, digests are in hash order, and a
+     * digest is matched when the other file has one with the same hash, like
+     * {@link SieDocumentComparer} matches a record when the other document has an equal one.
+     * An unmatched digest of the first file is reported as changed against the first digest of the
+     * second file with that key, which is then not reported again; other unmatched digests of the
+     * second file are reported as added.
+     */
+    private void compareDigests(Iterator<SieDigest> a, Iterator<SieDigest> b) {
+        SieDigest da = next(a);
+        SieDigest db = next(b);
+        while (da != null || db != null) {
+            int order = da == null ? 1 : db == null ? -1 : compareKeys(da, db);
+            if (order < 0) {
+                report(missing(da, "Second"));
+                da = next(a);
+            } else if (order > 0) {
+                report(missing(db, "First"));
+                db = next(b);
+            } else {
+                SieDigest firstA = da;
+                SieDigest firstB = db;
+                boolean changedA = false;
+                boolean firstBUnmatched = false;
+                boolean inA = true;
+                boolean inB = true;
+                while (inA || inB) {
+                    if (inA && inB && da.hash == db.hash) {
+                        long hash = da.hash;
+                        while (da != null && da.sameKey(firstA) && da.hash == hash) da = next(a);
+                        while (db != null && db.sameKey(firstB) && db.hash == hash) db = next(b);
+                    } else if (inA && (!inB || da.hash < db.hash)) {
+                        report(changed(da, firstB, "Second"));
+                        changedA = true;
+                        da = next(a);
+                    } else {
+                        if (db == firstB) {
+                            firstBUnmatched = true;
+                        } else {
+                            report(missing(db, "First"));
+                        }
+                        db = next(b);
+                    }
+                    inA = da != null && da.sameKey(firstA);
+                    inB = db != null && db.sameKey(firstB);
+                }
+                if (firstBUnmatched && !changedA) {
+                    report(missing(firstB, "First"));
+                } else if (firstBUnmatched && mirrorChanges) {
+                    report(changed(firstB, firstA, "First"));
+                }
+            }
+        }
+    }
+
+    private static SieDigest next(Iterator<SieDigest> digests) {
+        return digests.hasNext() ? digests.next() : null;
+    }
+
+    private static int compareKeys(SieDigest a, SieDigest b) {
+        if (a.section != b.section) return Integer.compare(a.section, b.section);
+        return a.key.compareTo(b.key);
+    }
+
+    private void report(SieDifference difference) {
+        count++;
+        if (listener != null) listener.accept(difference);
+        if (count >= maxDifferences) throw LIMIT_REACHED;
+    }
+
+    private static String message(SieDigest d, String nameB) {
+        if (d.section == SieDigest.VOUCHER) {
+            return "Vouchers differs Series, Number not found or different in " + nameB + ": " + d.label;
+        }
+        return d.getRecordType().substring(1) + " differs account, YearNo, period not found or different in " + nameB + ": " + d.label;
+    }
+
+    /** Creates the difference for a record of one file, whose key is missing in the other file, named {@code nameB}. */
+    private static SieDifference missing(SieDigest d, String nameB) {
+        SieDifference.Kind kind = "First".equals(nameB) ? SieDifference.Kind.ADDED : SieDifference.Kind.REMOVED;
+        return new SieDifference(kind, d.getRecordType(), d.getKey(), null, null, null, message(d, nameB));
+    }
+
+    /** Creates the difference for a record of one file that differs from the record {@code other} with the same key in the other file. */
+    private static SieDifference changed(SieDigest d, SieDigest other, String nameB) {
+        String field;
+        Object value;
+        Object otherValue;
+        if (d.section == SieDigest.VOUCHER) {
+            if (!Objects.equals(d.text, other.text)) {
+                field = "Text";
+                value = d.text;
+                otherValue = other.text;
+            } else if (d.date != other.date) {
+                field = "Date";
+                value = d.getDate();
+                otherValue = other.getDate();
+            } else if (!Objects.equals(d.token, other.token)) {
+                field = "Token";
+                value = d.token;
+                otherValue = other.token;
+            } else {
+                field = "Rows";
+                value = null;
+                otherValue = null;
+            }
+        } else if (differs(d.getAmount(), other.getAmount())) {
+            field = "Amount";
+            value = d.getAmount();
+            otherValue = other.getAmount();
+        } else if (differs(d.getQuantity(), other.getQuantity())) {
+            field = "Quantity";
+            value = d.getQuantity();
+            otherValue = other.getQuantity();
+        } else {
+            field = "Token";
+            value = d.token;
+            otherValue = other.token;
+        }
+        boolean fromFirst = "Second".equals(nameB);
+        return new SieDifference(SieDifference.Kind.CHANGED, d.getRecordType(), d.getKey(), field,
+            fromFirst ? value : otherValue, fromFirst ? otherValue : value, message(d, nameB));
+    }
+
+    private static boolean differs(BigDecimal a, BigDecimal b) {
+        if (a == null || b == null) return a != b;
+        return a.compareTo(b) != 0;
+    }
+
+    /**
+     * Returns the factory that creates the reader for each file.
+     * @return the reader factory
+     */
+    public Supplier<SieDocumentReader> getReaderFactory() { return readerFactory; }
+
+    /**
+     * Sets the factory that creates the reader for each file, e.g. to read memory mapped or to
+     * set the reader flags. Vouchers and period values are never stored in the documents read.
+     * @param readerFactory the reader factory
+     */
+    public void setReaderFactory(Supplier<SieDocumentReader> readerFactory) { this.readerFactory = readerFactory; }
+
+    /**
+     * Returns the number of bytes of digests held in memory before they are written to temp files.
+     * @return the memory budget in bytes
+     */
+    public long getMemoryBudget() { return memoryBudget; }
+
+    /**
+     * Sets the number of bytes of digests held in memory, for both files together, before they
+     * are written to temp files. A digest takes about 200 bytes plus the length of the voucher text.
+     * Default is {@link #DEFAULT_MEMORY_BUDGET}.
+     * @param memoryBudget the memory budget in bytes
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        if (memoryBudget <= 0) throw new IllegalArgumentException("Memory budget must be positive: " + memoryBudget);
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Returns the directory that temp files are written to.
+     * @return the temp directory, or {@code null} for the default temp directory
+     */
+    public Path getTempDirectory() { return tempDirectory; }
+
+    /**
+     * Sets the directory that temp files are written to. They are deleted when the comparison ends.
+     * @param tempDirectory the temp directory, or {@code null} for the default temp directory
+     */
+    public void setTempDirectory(Path tempDirectory) { this.tempDirectory = tempDirectory; }
+
+    /**
+     * Returns the listener that differences are passed to.
+     * @return the listener, or {@code null} if differences are only counted
+     */
+    public Consumer<SieDifference> getListener() { return listener; }
+
+    /**
+     * Sets the listener that each difference is passed to when it is found.
+     * @param listener the listener, or {@code null} to only count differences
+     */
+    public void setListener(Consumer<SieDifference> listener) { this.listener = listener; }
+
+    /**
+     * Returns the number of differences after which the comparison stops.
+     * @return the maximum number of differences reported
+     */
+    public int getMaxDifferences() { return maxDifferences; }
+
+    /**
+     * Sets the number of differences after which the comparison stops. Default is no limit.
+     * @param maxDifferences the maximum number of differences to report, at least 1
+     */
+    public void setMaxDifferences(int maxDifferences) {
+        if (maxDifferences < 1) throw new IllegalArgumentException("Max differences must be positive: " + maxDifferences);
+        this.maxDifferences = maxDifferences;
+    }
+
+    /** Thrown to stop comparing once the maximum number of differences has been reported. */
+    private static final class LimitReached extends RuntimeException {
+        LimitReached() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+MIT License
+
+Copyright (c) 2015 Johan Idstam
+Modifications by Per Nyfelt Copyright (c) 2016 Alipsa HB
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package alipsa.sieparser;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Stable 64-bit hashing of field values, used where equal hashes are taken as equal content.
+ * Strings are hashed char by char (FNV-1a) rather than through {@link String#hashCode()}, and
+ * every value is folded in through the MurmurHash3 finalizer, so a hash depends on all bits of
+ * every field and on the order of the fields, and is the same in every JVM.
+ * <p>
+ * Amounts are hashed by numeric value, so {@code 100}, {@code 100.00} and {@code 1E+2} hash the
+ * same. Unordered content, such as the rows of a voucher, is combined by adding the hashes.
+ * </p>
+ */
+final class SieHash {
+
+    /** The hash of no fields. */
+    static final long SEED = 0x2545F4914F6CDD1DL;
+
+    private static final long NULL = 0x9E3779B97F4A7C15L;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private SieHash() {}
+
+    /** Folds a value into a hash. */
+    static long add(long h, long value) {
+        return mix(h + value * 0xC6A4A7935BD1E995L);
+    }
+
+    /** Folds a string, or null, into a hash. */
+    static long add(long h, String value) {
+        if (value == null) return add(h, NULL);
+        long s = FNV_OFFSET;
+        for (int i = 0; i < value.length(); i++) {
+            s = (s ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return add(add(h, s), value.length());
+    }
+
+    /** Folds a date, or null, into a hash. */
+    static long add(long h, LocalDate value) {
+        return add(h, value == null ? NULL : value.toEpochDay());
+    }
+
+    /** Folds an amount, or null, into a hash by its numeric value. */
+    static long addAmount(long h, BigDecimal value) {
+        if (value == null) return add(h, NULL);
+        BigDecimal stripped = value.stripTrailingZeros();
+        if (stripped.scale() < 0) stripped = stripped.setScale(0);
+        return addHundredths(h, SieAmount.of(stripped), stripped);
+    }
+
+    /**
+     * Folds an amount given in hundredths into a hash, the same way as {@link #addAmount(long, BigDecimal)}.
+     * @param value the amount, only used when the hundredths are {@link SieAmount#NONE}
+     */
+    static long addAmount(long h, long hundredths, BigDecimal value) {
+        if (hundredths == SieAmount.NONE) return addAmount(h, value);
+        return addHundredths(h, hundredths, null);
+    }
+
+    private static long addHundredths(long h, long hundredths, BigDecimal stripped) {
+        if (hundredths != SieAmount.NONE) return add(add(h, 1), hundredths);
+        return add(add(h, 2), stripped.toPlainString());
+    }
+
+    /** Folds the dimension and object numbers of an object list, or null, into a hash. */
+    static long addObjects(long h, List<SieObject> objects) {
+        return addObjects(h, objects, false);
+    }
+
+    /**
+     * Folds the dimension and object numbers of an object list, or null, into a hash, together
+     * with the object names if {@code names} is true.
+     */
+    static long addObjects(long h, List<SieObject> objects, boolean names) {
+        if (objects == null) return add(h, NULL);
+        h = add(h, objects.size());
+        for (SieObject o : objects) {
+            h = add(h, o.getDimension() == null ? null : o.getDimension().getNumber());
+            if (names) h = add(h, o.getName());
+            h = add(h, o.getNumber());
+        }
+        return h;
+    }
+
+    /** The MurmurHash3 64-bit finalizer. */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
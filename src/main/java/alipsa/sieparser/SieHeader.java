@@ -0,0 +1,189 @@
+/*
+MIT License
+
+Copyright (c) 2015 Johan Idstam
+Modifications by Per Nyfelt Copyright (c) 2016 Alipsa HB
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+
+package alipsa.sieparser;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The identification records at the start of a SIE 1-4 file, as read by
+ * {@link SieDocumentReader#readHeader(String)} without parsing the rest of the file.
+ * <p>
+ * Only {@code #FLAGGA}, {@code #KSUMMA}, {@code #PROGRAM}, {@code #FORMAT}, {@code #GEN},
+ * {@code #SIETYP}, {@code #ORGNR}, {@code #FNAMN} and {@code #RAR} are read; reading stops at the
+ * first {@code #KONTO}, {@code #VER} or balance record. Nothing is validated: missing records
+ * keep their defaults and fields that do not parse are {@code null}.
+ * </p>
+ */
+public class SieHeader {
+
+    private int flagga = -1;
+    private boolean ksumma;
+    private List<String> program = new ArrayList<>();
+    private String format;
+    private LocalDate genDate;
+    private String genNamn;
+    private int sieTyp = -1;
+    private final SieCompany fnamn = new SieCompany();
+    private final Map<Integer, SieBookingYear> rars = new HashMap<>();
+    private boolean complete;
+
+    SieHeader() {}
+
+    /**
+     * Returns the #FLAGGA value.
+     * @return the flag, or -1 if there is no #FLAGGA record
+     */
+    public int getFLAGGA() { return flagga; }
+
+    /**
+     * Returns whether the file starts a checksum with #KSUMMA.
+     * @return {@code true} if a #KSUMMA record was found in the header
+     */
+    public boolean hasKSUMMA() { return ksumma; }
+
+    /**
+     * Returns the #PROGRAM fields, i.e. program name and version.
+     * @return the program fields, empty if there is no #PROGRAM record
+     */
+    public List<String> getPROGRAM() { return program; }
+
+    /**
+     * Returns the file format (#FORMAT), normally PC8.
+     * @return the format, or {@code null}
+     */
+    public String getFORMAT() { return format; }
+
+    /**
+     * Returns the generation date (#GEN).
+     * @return the generation date, or {@code null}
+     */
+    public LocalDate getGEN_DATE() { return genDate; }
+
+    /**
+     * Returns the name of whoever generated the file (#GEN).
+     * @return the generator name, or {@code null}
+     */
+    public String getGEN_NAMN() { return genNamn; }
+
+    /**
+     * Returns the SIE type (#SIETYP).
+     * @return the SIE type (1-4), 0 if it is not a number, or -1 if there is no #SIETYP record
+     */
+    public int getSIETYP() { return sieTyp; }
+
+    /**
+     * Returns the company, with the name from #FNAMN and the organization number from #ORGNR.
+     * @return the company, never {@code null}
+     */
+    public SieCompany getFNAMN() { return fnamn; }
+
+    /**
+     * Returns the booking years (#RAR), keyed by year number.
+     * @return the booking years
+     */
+    public Map<Integer, SieBookingYear> getRars() { return rars; }
+
+    /**
+     * Returns whether the end of the header was found. If not, the file has no accounts, vouchers
+     * or balances and was read to its end.
+     * @return {@code true} if reading stopped at the first record after the header
+     */
+    public boolean isComplete() { return complete; }
+
+    /**
+     * Applies the current record of a tokenizer.
+     * @return {@code false} once the record is past the header
+     */
+    boolean add(SieTokenizer tokenizer) {
+        String itemType = tokenizer.getItemType();
+        SieDataItem di = new SieDataItem(tokenizer, null, null);
+        switch (itemType) {
+            case SIE.FLAGGA:
+                flagga = di.getInt(0);
+                break;
+            case SIE.KSUMMA:
+                ksumma = true;
+                break;
+            case SIE.PROGRAM:
+                program = di.getData();
+                break;
+            case SIE.FORMAT:
+                format = di.getString(0);
+                break;
+            case SIE.GEN:
+                genDate = date(tokenizer, 0);
+                genNamn = di.getString(1);
+                break;
+            case SIE.SIETYP:
+                sieTyp = di.getInt(0);
+                break;
+            case SIE.ORGNR:
+                String orgNr = di.getString(0);
+                fnamn.setOrgIdentifier(orgNr.isEmpty() ? null : orgNr);
+                break;
+            case SIE.FNAMN:
+                fnamn.setName(di.getString(0));
+                break;
+            case SIE.RAR:
+                SieBookingYear rar = new SieBookingYear();
+                rar.setId(di.getInt(0));
+                rar.setStart(date(tokenizer, 1));
+                rar.setEnd(date(tokenizer, 2));
+                rars.put(rar.getId(), rar);
+                break;
+            case SIE.KONTO:
+            case SIE.VER:
+            case SIE.IB:
+            case SIE.UB:
+            case SIE.OIB:
+            case SIE.OUB:
+            case SIE.RES:
+            case SIE.PSALDO:
+            case SIE.PBUDGET:
+                complete = true;
+                return false;
+            default:
+                break;
+        }
+        return true;
+    }
+
+    private static LocalDate date(SieTokenizer tokenizer, int field) {
+        int epochDay = tokenizer.getEpochDay(field);
+        return epochDay == SieDate.NONE || epochDay == SieDate.EMPTY ? null : SieDate.toLocalDate(epochDay);
+    }
+
+    @Override
+    public String toString() {
+        return "SieHeader{SIETYP=" + sieTyp + ", FORMAT=" + format + ", FNAMN=" + fnamn.getName()
+            + ", ORGNR=" + fnamn.getOrgIdentifier() + ", KSUMMA=" + ksumma + '}';
+    }
+}
@@ -0,0 +1,337 @@
+/*
+MIT License
+
+Copyright (c) 2015 Johan Idstam
+Modifications by Per Nyfelt Copyright (c) 2016 Alipsa HB
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+
+package alipsa.sieparser;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes SIE records field by field as IBM437 bytes into a reused buffer and writes them to an
+ * output stream, updating the #KSUMMA checksum from the same bytes.
+ * <p>
+ * Each field method appends a separating space and the field. While a field is encoded, the bytes it
+ * adds to the checksum (see {@link SieCRC32}) are collected as well, so a written record never has to
+ * be split into fields again. Only when a field holds bytes that the reader would unescape, trim or
+ * split differently, such as quotes, backslashes, braces or control characters in a text, is the
+ * encoded record parsed into a {@link SieDataItem} to find its checksum bytes, just like a record
+ * written with {@link #line(String)}.
+ * </p>
+ */
+final class SieLineEncoder {
+
+    private static final int FLUSH_SIZE = 8192;
+    private static final byte[] LINE_SEPARATOR = Encoding.getBytes(System.lineSeparator());
+
+    private final OutputStream out;
+    private byte[] buffer = new byte[FLUSH_SIZE * 2];
+    private int length;
+    private int lineStart;
+    private SieCRC32 crc;
+    private byte[] crcBytes = new byte[256];
+    private int crcLength;
+    private boolean parseRecord;
+
+    SieLineEncoder(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Sets the checksum that written records are added to.
+     * @param crc the checksum, or {@code null} to stop adding records
+     */
+    void setChecksum(SieCRC32 crc) {
+        this.crc = crc;
+    }
+
+    /** Starts a record with its item type. */
+    SieLineEncoder begin(String itemType) {
+        lineStart = length;
+        crcLength = 0;
+        parseRecord = false;
+        int from = length;
+        append(itemType);
+        addPlain(from);
+        return this;
+    }
+
+    /** Appends an unquoted field. An empty value only adds the separator. */
+    SieLineEncoder plain(String value) {
+        append(' ');
+        int from = length;
+        append(value);
+        addPlain(from);
+        return this;
+    }
+
+    /** Appends an unquoted integer field. */
+    SieLineEncoder plain(long value) {
+        append(' ');
+        ensureCapacity(20);
+        int from = length;
+        if (value < 0) {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        appendDigits(value);
+        addPlain(from);
+        return this;
+    }
+
+    /** Appends a quoted field, escaping quotes. {@code null} is written as {@code ""}. */
+    SieLineEncoder quoted(String value) {
+        append(' ');
+        append('"');
+        int from = length;
+        if (value != null) {
+            if (value.indexOf('"') >= 0) value = value.replace("\"", "\\\"");
+            append(value);
+        }
+        addQuoted(from);
+        append('"');
+        return this;
+    }
+
+    /** Appends a quoted field as is, without escaping quotes. {@code null} is written as {@code "null"}. */
+    SieLineEncoder quotedVerbatim(String value) {
+        append(' ');
+        append('"');
+        int from = length;
+        append(String.valueOf(value));
+        addQuoted(from);
+        append('"');
+        return this;
+    }
+
+    /** Appends a separator without a field. */
+    SieLineEncoder space() {
+        append(' ');
+        return this;
+    }
+
+    /** Appends an amount in hundredths with the given number of decimals. */
+    SieLineEncoder amount(long hundredths, int scale) {
+        append(' ');
+        ensureCapacity(24);
+        int from = length;
+        if (hundredths < 0) buffer[length++] = '-';
+        long abs = Math.abs(hundredths);
+        appendDigits(abs / 100);
+        if (scale > 0) {
+            long cents = abs % 100;
+            buffer[length++] = '.';
+            buffer[length++] = (byte) ('0' + cents / 10);
+            if (scale == 2) buffer[length++] = (byte) ('0' + cents % 10);
+        }
+        addPlain(from);
+        return this;
+    }
+
+    /** Appends a date as {@code yyyyMMdd}, or {@code 00000000} if it is {@code null}. */
+    SieLineEncoder date(LocalDate date) {
+        append(' ');
+        int year = date == null ? 0 : date.getYear();
+        if (year < 0 || year > 9999) {
+            int from = length;
+            append(SieDate.toString(date));
+            addPlain(from);
+            return this;
+        }
+        ensureCapacity(8);
+        int from = length;
+        if (date == null) {
+            Arrays.fill(buffer, length, length + 8, (byte) '0');
+            length += 8;
+        } else {
+            appendFixed(year, 4);
+            appendFixed(date.getMonthValue(), 2);
+            appendFixed(date.getDayOfMonth(), 2);
+        }
+        addPlain(from);
+        return this;
+    }
+
+    /**
+     * Appends an object list, {@code {dim "object" ...}}, or an empty field if {@code include}
+     * is false.
+     */
+    SieLineEncoder objects(List<SieObject> objects, boolean include) {
+        append(' ');
+        if (!include) return this;
+        append('{');
+        if (objects != null) {
+            for (SieObject o : objects) {
+                int from = length;
+                append(o.getDimension().getNumber());
+                addPlain(from);
+                append(' ');
+                append('"');
+                from = length;
+                append(o.getNumber());
+                addPlain(from);
+                append('"');
+                append(' ');
+            }
+        }
+        append('}');
+        return this;
+    }
+
+    /** Ends the record, adds it to the checksum and writes it once the buffer is full. */
+    void end() throws IOException {
+        if (crc != null) {
+            if (parseRecord) {
+                addParsed();
+            } else {
+                crc.addNormalized(crcBytes, 0, crcLength);
+            }
+        }
+        endLine();
+    }
+
+    /**
+     * Writes a complete record that was built as a string. It is parsed to add it to
+     * the checksum, which makes this suitable for the few header records only.
+     */
+    void line(String line) throws IOException {
+        lineStart = length;
+        append(line);
+        if (crc != null) addParsed();
+        endLine();
+    }
+
+    /** Writes a line that is not part of the checksum, such as a brace or #KSUMMA. */
+    void raw(String line) throws IOException {
+        lineStart = length;
+        append(line);
+        endLine();
+    }
+
+    /** Writes all buffered records to the output stream and flushes it. */
+    void flush() throws IOException {
+        out.write(buffer, 0, length);
+        length = 0;
+        out.flush();
+    }
+
+    private void endLine() throws IOException {
+        ensureCapacity(LINE_SEPARATOR.length);
+        System.arraycopy(LINE_SEPARATOR, 0, buffer, length, LINE_SEPARATOR.length);
+        length += LINE_SEPARATOR.length;
+        if (length >= FLUSH_SIZE) {
+            out.write(buffer, 0, length);
+            length = 0;
+        }
+    }
+
+    private void addParsed() {
+        String line = new String(buffer, lineStart, length - lineStart, Encoding.getCharset());
+        crc.addData(new SieDataItem(line, null, null));
+    }
+
+    /** Adds an unquoted field, which the reader only splits at whitespace and never unescapes. */
+    private void addPlain(int from) {
+        if (crc == null || parseRecord) return;
+        for (int i = from; i < length; i++) {
+            if (isSpecial(buffer[i])) {
+                parseRecord = true;
+                return;
+            }
+        }
+        addCrcBytes(from);
+    }
+
+    /** Adds the content of a quoted field, which the reader trims and unescapes. */
+    private void addQuoted(int from) {
+        if (crc == null || parseRecord) return;
+        if (length > from && ((buffer[from] & 0xff) <= ' ' || (buffer[length - 1] & 0xff) <= ' ')) {
+            parseRecord = true;
+            return;
+        }
+        for (int i = from; i < length; i++) {
+            byte b = buffer[i];
+            if (b != ' ' && isSpecial(b)) {
+                parseRecord = true;
+                return;
+            }
+        }
+        addCrcBytes(from);
+    }
+
+    private static boolean isSpecial(byte b) {
+        return (b & 0xff) <= ' ' || b == '"' || b == '\\' || b == '{' || b == '}';
+    }
+
+    private void addCrcBytes(int from) {
+        int n = length - from;
+        if (crcLength + n > crcBytes.length) {
+            crcBytes = Arrays.copyOf(crcBytes, Math.max(crcLength + n, crcBytes.length * 2));
+        }
+        System.arraycopy(buffer, from, crcBytes, crcLength, n);
+        crcLength += n;
+    }
+
+    private void append(char c) {
+        ensureCapacity(1);
+        buffer[length++] = Encoding.encode(c);
+    }
+
+    private void append(String value) {
+        int len = value.length();
+        ensureCapacity(len);
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(value.charAt(i + 1))) {
+                // a supplementary character encodes to a single '?'
+                i++;
+            }
+            buffer[length++] = Encoding.encode(c);
+        }
+    }
+
+    private void appendDigits(long value) {
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) digits++;
+        appendFixed(value, digits);
+    }
+
+    private void appendFixed(long value, int digits) {
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(length + extra, buffer.length * 2));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+MIT License
+
+Copyright (c) 2015 Johan Idstam
+Modifications by Per Nyfelt Copyright (c) 2016 Alipsa HB
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+
+package alipsa.sieparser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory maps a SIE file in consecutive windows and hands out a {@link SieTokenizer} per window.
+ * Each window starts at the first line not consumed from the previous one, so files larger than
+ * a single mapping (2 GB) can be read. A window is widened when a single line does not fit in it.
+ */
+class SieMappedFile implements Closeable {
+
+    private final FileChannel channel;
+    private final long size;
+    private long offset;
+    private int window;
+    private SieTokenizer tokenizer;
+
+    SieMappedFile(Path path, int windowSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.window = windowSize;
+    }
+
+    /**
+     * Maps the next window of the file, continuing after the last line returned by the
+     * tokenizer of the previous window.
+     * @return a tokenizer over the next window, or {@code null} when the whole file has been read
+     * @throws IOException if the file cannot be mapped
+     */
+    SieTokenizer nextWindow() throws IOException {
+        if (tokenizer != null) {
+            if (tokenizer.isEndOfInput()) return null;
+            if (tokenizer.position() == 0) {
+                if (window == Integer.MAX_VALUE) {
+                    throw new SieParseException("Line at byte offset " + offset + " is too long to be memory mapped");
+                }
+                window = (int) Math.min(2L * window, Integer.MAX_VALUE);
+            } else {
+                offset += tokenizer.position();
+            }
+        }
+        long length = Math.min(window, size - offset);
+        tokenizer = new SieTokenizer(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+        tokenizer.setEndOfInput(offset + length == size);
+        return tokenizer;
+    }
+
+    /** Returns the size of the file. */
+    long size() {
+        return size;
+    }
+
+    /** Returns the file offset at which the current window starts. */
+    long getWindowOffset() {
+        return offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,446 @@
+/*
+MIT License
+
+Copyright (c) 2015 Johan Idstam
+Modifications by Per Nyfelt Copyright (c) 2016 Alipsa HB
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+
+package alipsa.sieparser;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parallel parsing support for {@link SieDocumentReader}.
+ * <p>
+ * The header, i.e. everything before the first #VER, is parsed sequentially. The remainder is split
+ * into chunks that start at #VER lines, and the chunks are parsed on a {@link ForkJoinPool}: each
+ * #VER block is tokenized and built into a {@link SieVoucher} with its rows, amounts in hundredths
+ * and dates from epoch days, straight from the input buffer. The account and object keys of the
+ * rows and, when #KSUMMA is being verified, the checksum bytes of the lines are kept as bytes.
+ * </p>
+ * <p>
+ * The chunks are then applied to the document one at a time in file order. Only what depends on
+ * the order is done there: counting lines, adding to the checksum, looking up the accounts and
+ * objects, which may add them to the document, and closing the voucher, i.e. the balance and
+ * numbering checks, callbacks and {@link SieDocument#getVER()}. Lines outside #VER blocks, and
+ * blocks that would report an error or that the reader state does not allow to apply as a whole,
+ * are parsed one line at a time exactly as when reading sequentially.
+ * </p>
+ */
+class SieParallelParser {
+
+    /** Default number of bytes per chunk. */
+    static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    /** The row record types, in the order of their bits in {@link Segment#rowTypes}. */
+    static final String[] ROW_TYPES = {SIE.TRANS, SIE.BTRANS, SIE.RTRANS};
+
+    private final SieDocumentReader reader;
+    private final SieDocument document;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private final int maxPending;
+    private final ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+    private boolean inBody;
+
+    SieParallelParser(SieDocumentReader reader, SieDocument document, ForkJoinPool pool, int chunkSize) {
+        this.reader = reader;
+        this.document = document;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.maxPending = 2 * pool.getParallelism() + 1;
+    }
+
+    /**
+     * Parses all complete lines available to the tokenizer. When the tokenizer is not at the end
+     * of the input, its position is left at the first line that was not parsed.
+     * @return {@code false} if parsing was aborted
+     */
+    boolean parse(SieTokenizer tokenizer) {
+        int start = tokenizer.position();
+        if (!inBody) {
+            while (tokenizer.next()) {
+                if (tokenizer.isItemType(SIE.VER)) {
+                    inBody = true;
+                    start = tokenizer.getRecordStart();
+                    break;
+                }
+                if (!reader.parseRecord(tokenizer)) return false;
+            }
+            if (!inBody) return true;
+        }
+
+        ByteBuffer buffer = tokenizer.getBuffer();
+        int limit = tokenizer.limit();
+        int end = tokenizer.isEndOfInput() ? limit : lastLineEnd(buffer, start, limit);
+        boolean buildVouchers = reader.acceptsVouchers();
+        boolean checksum = reader.isChecksumStarted();
+        try {
+            int chunkStart = start;
+            while (chunkStart < end) {
+                int chunkEnd = nextChunkStart(buffer, chunkStart, end);
+                final int s = chunkStart;
+                pending.add(pool.submit(() -> parseChunk(buffer, s, chunkEnd, buildVouchers, checksum)));
+                chunkStart = chunkEnd;
+                if (pending.size() >= maxPending && !applyNext()) return false;
+            }
+            while (!pending.isEmpty()) {
+                if (!applyNext()) return false;
+            }
+        } finally {
+            for (Future<Chunk> f : pending) f.cancel(false);
+            pending.clear();
+        }
+        tokenizer.skipTo(end);
+        return true;
+    }
+
+    private boolean applyNext() {
+        Chunk chunk;
+        try {
+            chunk = pending.poll().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SieParseException("Interrupted while parsing in parallel", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new SieParseException(e.getCause().getMessage(), e.getCause());
+        }
+        for (Segment segment : chunk.segments) {
+            if (segment.voucher != null && reader.applyVoucher(segment, chunk.keys, chunk.checksums)) continue;
+            if (!parseLines(chunk.buffer, segment.start, segment.end)) return false;
+        }
+        return true;
+    }
+
+    /** Parses the lines in a range of the buffer one at a time. */
+    private boolean parseLines(ByteBuffer buffer, int start, int end) {
+        ByteBuffer lines = buffer.duplicate();
+        lines.limit(end).position(start);
+        SieTokenizer tokenizer = new SieTokenizer(lines);
+        while (tokenizer.next()) {
+            if (!reader.parseRecord(tokenizer)) return false;
+        }
+        return true;
+    }
+
+    private Chunk parseChunk(ByteBuffer buffer, int start, int end, boolean buildVouchers, boolean checksum) {
+        Chunk chunk = new Chunk(buffer, checksum);
+        if (!buildVouchers) {
+            chunk.addLines(start, end);
+            return chunk;
+        }
+        ByteBuffer range = buffer.duplicate();
+        range.limit(end).position(start);
+        SieTokenizer tokenizer = new SieTokenizer(range);
+        while (tokenizer.next()) {
+            int lineStart = tokenizer.getRecordStart();
+            if (!tokenizer.isItemType(SIE.VER) || !chunk.addVoucher(tokenizer)) {
+                chunk.addLines(lineStart, tokenizer.position());
+            }
+        }
+        return chunk;
+    }
+
+    /** Returns the index of a row record type in {@link #ROW_TYPES}, or -1 if it is not a row. */
+    private static int rowType(String itemType) {
+        for (int i = 0; i < ROW_TYPES.length; i++) {
+            if (ROW_TYPES[i].equals(itemType)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * A range of lines of a chunk, either a #VER block built into a voucher or lines that are
+     * parsed one at a time.
+     */
+    static final class Segment {
+        final int start;
+        int end;
+        /** The voucher built from the lines, or {@code null} if they are parsed one at a time. */
+        SieVoucher voucher;
+        int lines;
+        /** The row record types seen in the block, as bits in the order of {@link #ROW_TYPES}. */
+        int rowTypes;
+        /**
+         * The offset and length in the key bytes of the account number and the object list of each
+         * row, the length of the object list being -1 when the row has no objects.
+         */
+        int[] keyRefs;
+        int checksumStart;
+        /** The end of the checksum bytes of the lines, or -1 if they were not computed. */
+        int checksumEnd = -1;
+
+        Segment(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /** The segments of a chunk and the bytes they refer to, as built by one worker. */
+    private final class Chunk {
+        final ByteBuffer buffer;
+        final boolean checksum;
+        final List<Segment> segments = new ArrayList<>();
+        byte[] keys = new byte[4096];
+        int keysUsed;
+        byte[] checksums;
+        int checksumsUsed;
+        private SieDataItem item;
+        private SieCRC32 crc;
+
+        Chunk(ByteBuffer buffer, boolean checksum) {
+            this.buffer = buffer;
+            this.checksum = checksum;
+            if (checksum) {
+                checksums = new byte[4096];
+                crc = new SieCRC32();
+            }
+        }
+
+        /** Adds lines that are parsed one at a time, joining them to the previous such lines. */
+        void addLines(int start, int end) {
+            Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (last != null && last.voucher == null && last.end == start) {
+                last.end = end;
+            } else {
+                segments.add(new Segment(start, end));
+            }
+        }
+
+        /**
+         * Builds the #VER block starting at the current record of the tokenizer into a voucher,
+         * reading up to and including its closing brace.
+         * @return {@code false} if the lines read must be parsed one at a time, because the block
+         *         is incomplete, has other records or has fields that would report an error
+         */
+        boolean addVoucher(SieTokenizer tokenizer) {
+            int keysMark = keysUsed;
+            int checksumsMark = checksumsUsed;
+            if (buildVoucher(tokenizer)) return true;
+            keysUsed = keysMark;
+            checksumsUsed = checksumsMark;
+            return false;
+        }
+
+        private boolean buildVoucher(SieTokenizer tokenizer) {
+            Segment segment = new Segment(tokenizer.getRecordStart(), -1);
+            if (item == null) {
+                item = new SieDataItem(tokenizer, reader, document);
+            } else {
+                item.moveTo(tokenizer);
+            }
+            int date = tokenizer.getEpochDay(2);
+            int createdDate = tokenizer.getEpochDay(4);
+            if (date == SieDate.EMPTY || date == SieDate.NONE || createdDate == SieDate.NONE) return false;
+            SieVoucher v = new SieVoucher();
+            LocalDate voucherDate = SieDate.toLocalDate(date);
+            v.setSeries(item.getString(0));
+            v.setNumber(item.getString(1));
+            v.setVoucherDate(voucherDate);
+            v.setText(item.getString(3));
+            v.setCreatedDate(createdDate == SieDate.EMPTY ? null : SieDate.toLocalDate(createdDate));
+            v.setCreatedBy(item.getString(5));
+            v.setToken(item.getItemType());
+            segment.checksumStart = checksumsUsed;
+            addChecksum(tokenizer);
+
+            int[] refs = new int[16];
+            int lines = 1;
+            String pendingMirror = null;
+            while (tokenizer.next()) {
+                lines++;
+                String itemType = tokenizer.getItemType();
+                if ("}".equals(itemType)) {
+                    segment.end = tokenizer.position();
+                    segment.voucher = v;
+                    segment.lines = lines;
+                    segment.keyRefs = refs;
+                    if (checksum) segment.checksumEnd = checksumsUsed;
+                    segments.add(segment);
+                    return true;
+                }
+                if ("".equals(itemType) || "{".equals(itemType)) continue;
+                int rowType = rowType(itemType);
+                if (rowType < 0) return false;
+                segment.rowTypes |= 1 << rowType;
+                addChecksum(tokenizer);
+                item.moveTo(tokenizer);
+                // The #RTRANS mirror rule of SieDocumentReader, for the rows of one block
+                if (SIE.TRANS.equals(itemType)) {
+                    if (pendingMirror != null) {
+                        boolean mirror = pendingMirror.equals(SieDocumentReader.rowDataWithoutTag(item));
+                        pendingMirror = null;
+                        if (mirror) continue;
+                    }
+                } else {
+                    pendingMirror = null;
+                    if (SIE.BTRANS.equals(itemType) && reader.isIgnoreBTRANS()) continue;
+                    if (SIE.RTRANS.equals(itemType)) {
+                        if (reader.isIgnoreRTRANS()) continue;
+                        pendingMirror = SieDocumentReader.rowDataWithoutTag(item);
+                    }
+                }
+                int k = 4 * v.getRows().size();
+                if (k + 4 > refs.length) refs = Arrays.copyOf(refs, refs.length * 2);
+                SieVoucherRow row = buildRow(tokenizer, refs, k, date, voucherDate);
+                if (row == null) return false;
+                v.getRows().add(row);
+            }
+            return false;
+        }
+
+        /** Builds a row as SieDocumentReader does, except for its account and objects which are kept as keys. */
+        private SieVoucherRow buildRow(SieTokenizer tokenizer, int[] refs, int k, int voucherEpochDay, LocalDate voucherDate) {
+            addAccountKey(tokenizer, refs, k);
+            if (!addObjectsKey(tokenizer, refs, k)) return null;
+            int objOffset = tokenizer.lineContains("{") ? 1 : 0;
+            long amount = tokenizer.getHundredths(1 + objOffset);
+            int rowDate = tokenizer.getEpochDay(2 + objOffset);
+            // Amounts with more decimals warn and invalid dates are reported, by the sequential parser
+            if (amount == SieAmount.NONE || rowDate == SieDate.NONE) return null;
+
+            SieVoucherRow row = new SieVoucherRow();
+            row.setAmount(amount, tokenizer.getScale(1 + objOffset));
+            row.setRowDate(rowDate == SieDate.EMPTY || rowDate == voucherEpochDay
+                    ? voucherDate : SieDate.toLocalDate(rowDate));
+            row.setText(item.getString(3 + objOffset));
+            row.setQuantity(item.getDecimalNull(4 + objOffset));
+            row.setCreatedBy(item.getString(5 + objOffset));
+            row.setToken(item.getItemType());
+            return row;
+        }
+
+        /** Keeps the account number bytes, with the quotes removed as {@link SieSymbolTable} does. */
+        private void addAccountKey(SieTokenizer tokenizer, int[] refs, int k) {
+            int len = 0;
+            if (tokenizer.getFieldCount() > 0) {
+                ensureKeys(tokenizer.getFieldEnd(0) - tokenizer.getFieldStart(0));
+                len = tokenizer.getFieldBytes(0, keys, keysUsed);
+            }
+            int from = keysUsed;
+            int to = keysUsed + len;
+            while (from < to && keys[from] == '"') from++;
+            while (to > from && keys[to - 1] == '"') to--;
+            refs[k] = from;
+            refs[k + 1] = to - from;
+            keysUsed += len;
+        }
+
+        /**
+         * Keeps the bytes of the first field that is an object list, as {@link SieSymbolTable#getObjects(SieDataItem)}
+         * looks it up.
+         * @return {@code false} if the row has no object list, which is reported as a missing object
+         */
+        private boolean addObjectsKey(SieTokenizer tokenizer, int[] refs, int k) {
+            if (tokenizer.lineContains("{}")) {
+                refs[k + 3] = -1;
+                return true;
+            }
+            for (int f = 0; f < tokenizer.getFieldCount(); f++) {
+                ensureKeys(tokenizer.getFieldEnd(f) - tokenizer.getFieldStart(f));
+                int len = tokenizer.getFieldBytes(f, keys, keysUsed);
+                if (len > 0 && keys[keysUsed] == '{') {
+                    refs[k + 2] = keysUsed;
+                    refs[k + 3] = len;
+                    keysUsed += len;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void addChecksum(SieTokenizer tokenizer) {
+            if (!checksum) return;
+            int len = crc.normalize(tokenizer);
+            if (checksumsUsed + len > checksums.length) {
+                checksums = Arrays.copyOf(checksums, Math.max(checksumsUsed + len, checksums.length * 2));
+            }
+            System.arraycopy(crc.getNormalized(), 0, checksums, checksumsUsed, len);
+            checksumsUsed += len;
+        }
+
+        private void ensureKeys(int len) {
+            if (keysUsed + len > keys.length) keys = Arrays.copyOf(keys, Math.max(keysUsed + len, keys.length * 2));
+        }
+    }
+
+    /**
+     * Finds where the chunk starting at {@code start} ends: preferably at the first #VER line
+     * after the target chunk size, otherwise at the first line start after it.
+     */
+    private int nextChunkStart(ByteBuffer buffer, int start, int end) {
+        long target = (long) start + chunkSize;
+        if (target >= end) return end;
+        int fallback = -1;
+        int p = nextLineStart(buffer, (int) target, end);
+        long searchEnd = target + chunkSize;
+        while (p < end && p < searchEnd) {
+            if (fallback < 0) fallback = p;
+            if (isVerLine(buffer, p, end)) return p;
+            p = nextLineStart(buffer, p, end);
+        }
+        return fallback < 0 ? end : fallback;
+    }
+
+    private static int nextLineStart(ByteBuffer buffer, int from, int end) {
+        for (int i = from; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '\n') return i + 1;
+            if (b == '\r' && (i + 1 == end || buffer.get(i + 1) != '\n')) return i + 1;
+        }
+        return end;
+    }
+
+    private static boolean isVerLine(ByteBuffer buffer, int p, int end) {
+        while (p < end && (buffer.get(p) == ' ' || buffer.get(p) == '\t')) p++;
+        String tag = SIE.VER;
+        if (p + tag.length() > end) return false;
+        for (int i = 0; i < tag.length(); i++) {
+            if (buffer.get(p + i) != tag.charAt(i)) return false;
+        }
+        int after = p + tag.length();
+        if (after == end) return true;
+        byte b = buffer.get(after);
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    /**
+     * Returns the offset just after the last complete line in the range, or {@code start} if there is none.
+     * A trailing \r is not treated as a complete line ending since it may be followed by \n.
+     */
+    private static int lastLineEnd(ByteBuffer buffer, int start, int limit) {
+        for (int i = limit - 1; i >= start; i--) {
+            byte b = buffer.get(i);
+            if (b == '\n' || (b == '\r' && i + 1 < limit)) return i + 1;
+        }
+        return start;
+    }
+}
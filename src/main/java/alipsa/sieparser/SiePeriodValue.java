@@ -44,6 +44,8 @@ public class SiePeriodValue {
     private BigDecimal quantity;
     private List<SieObject> objects;
     private String token;
+    private long fingerprint;
+    private boolean fingerprinted;
 
     /**
      * Returns the account associated with this period value.
@@ -170,4 +172,39 @@ public class SiePeriodValue {
     public void setToken(String token) {
         this.token = token;
     }
+
+    /**
+     * Returns a stable 64-bit fingerprint of the content of this value. A value read with
+     * {@link SieDocumentReader#setFingerprints(boolean)} enabled gets its fingerprint while it is
+     * parsed, so this is the fingerprint of the value as read and does not follow later changes;
+     * for other values it is computed on every call.
+     *
+     * @return the fingerprint
+     * @see #computeFingerprint()
+     */
+    public long getFingerprint() {
+        return fingerprinted ? fingerprint : computeFingerprint();
+    }
+
+    /**
+     * Computes the fingerprint of the current content of this value: year, period, account number,
+     * object numbers, amount and quantity, with amounts hashed by numeric value. The token is not
+     * included, since a value belongs to the section of its token.
+     *
+     * @return the fingerprint
+     */
+    public long computeFingerprint() {
+        long h = SieHash.add(SieHash.SEED, yearNr);
+        h = SieHash.add(h, period);
+        h = SieHash.add(h, account == null ? null : account.getNumber());
+        h = SieHash.addObjects(h, objects);
+        h = SieHash.addAmount(h, amount);
+        return SieHash.addAmount(h, quantity);
+    }
+
+    /** Keeps the fingerprint of the value as read. */
+    void setFingerprint(long value) {
+        fingerprint = value;
+        fingerprinted = true;
+    }
 }
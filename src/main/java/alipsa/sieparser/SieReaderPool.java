@@ -0,0 +1,151 @@
+/*
+MIT License
+
+Copyright (c) 2015 Johan Idstam
+Modifications by Per Nyfelt Copyright (c) 2016 Alipsa HB
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+
+package alipsa.sieparser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * A pool of {@link SieDocumentReader}s and input buffers for services that read many small SIE
+ * files, such as uploads, from several threads.
+ * <p>
+ * Each read borrows a reader and a byte buffer, reads the whole stream into the buffer and parses
+ * it with {@link SieDocumentReader#readDocument(ByteBuffer)}. Afterwards the reader is
+ * {@linkplain SieDocumentReader#reset() reset} and both are returned to the pool, so that a steady
+ * stream of reads allocates little more than the documents themselves. Pooled readers come from
+ * the reader factory and keep its settings and callbacks. The pool holds at most
+ * {@link #getCapacity()} idle readers and buffers; when it is empty, new ones are created, and
+ * buffers larger than {@link #MAX_POOLED_BUFFER_SIZE} are not kept.
+ * </p>
+ * <p>
+ * The pool is thread safe. A borrowed reader must only be used by the thread that borrowed it.
+ * </p>
+ */
+public class SieReaderPool {
+
+    /** Buffers grown beyond this size, in bytes, are left to the garbage collector. */
+    public static final int MAX_POOLED_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final Supplier<SieDocumentReader> readerFactory;
+    private final int capacity;
+    private final BlockingQueue<SieDocumentReader> readers;
+    private final BlockingQueue<byte[]> buffers;
+
+    /** Creates a pool of default readers, keeping up to one idle reader per processor. */
+    public SieReaderPool() {
+        this(SieDocumentReader::new, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a pool of readers made by the given factory.
+     * @param readerFactory creates a configured reader whenever the pool is empty
+     * @param capacity the number of idle readers and buffers to keep
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public SieReaderPool(Supplier<SieDocumentReader> readerFactory, int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        this.readerFactory = readerFactory;
+        this.capacity = capacity;
+        readers = new ArrayBlockingQueue<>(capacity);
+        buffers = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Returns the maximum number of idle readers, and of idle buffers, that the pool keeps.
+     * @return the capacity
+     */
+    public int getCapacity() { return capacity; }
+
+    /**
+     * Borrows a reader from the pool, or creates one if none is idle.
+     * Give it back with {@link #release(SieDocumentReader)} when done.
+     * @return a reader with no document state
+     */
+    public SieDocumentReader acquire() {
+        SieDocumentReader reader = readers.poll();
+        return reader != null ? reader : readerFactory.get();
+    }
+
+    /**
+     * Resets a reader and returns it to the pool. The reader must not be used afterwards.
+     * @param reader a reader obtained from {@link #acquire()}
+     */
+    public void release(SieDocumentReader reader) {
+        reader.reset();
+        readers.offer(reader);
+    }
+
+    /**
+     * Reads a SIE document from a stream with a pooled reader. The stream is read to its end but
+     * not closed.
+     * @param in the IBM437 encoded SIE content
+     * @return the parsed document, or {@code null} if the content is invalid
+     * @throws IOException if the stream cannot be read
+     */
+    public SieDocument readDocument(InputStream in) throws IOException {
+        return read(in, (reader, document) -> document);
+    }
+
+    /**
+     * Reads a SIE document from a stream with a pooled reader and hands the reader and the
+     * document to a handler before the reader goes back to the pool. The handler can thus look at
+     * {@link SieDocumentReader#getValidationExceptions()} and
+     * {@link SieDocumentReader#getValidationWarnings()}. The stream is read to its end but not closed.
+     * @param in the IBM437 encoded SIE content
+     * @param handler receives the reader and the parsed document, which is {@code null} if the content is invalid
+     * @param <T> the type of the handler's result
+     * @return the result of the handler
+     * @throws IOException if the stream cannot be read
+     */
+    public <T> T read(InputStream in, BiFunction<SieDocumentReader, SieDocument, T> handler) throws IOException {
+        byte[] buffer = buffers.poll();
+        if (buffer == null) buffer = new byte[INITIAL_BUFFER_SIZE];
+        try {
+            int length = 0;
+            for (int n; (n = in.read(buffer, length, buffer.length - length)) != -1; ) {
+                length += n;
+                if (length == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            SieDocumentReader reader = acquire();
+            try {
+                return handler.apply(reader, reader.readDocument(ByteBuffer.wrap(buffer, 0, length)));
+            } finally {
+                release(reader);
+            }
+        } finally {
+            if (buffer.length <= MAX_POOLED_BUFFER_SIZE) buffers.offer(buffer);
+        }
+    }
+}
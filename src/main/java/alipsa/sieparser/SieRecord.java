@@ -0,0 +1,114 @@
+/*
+MIT License
+
+Copyright (c) 2015 Johan Idstam
+Modifications by Per Nyfelt Copyright (c) 2016 Alipsa HB
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+
+package alipsa.sieparser;
+
+import java.util.List;
+
+/**
+ * A single record yielded by the pull based reading API of {@link SieDocumentReader}.
+ * <p>
+ * Every label line of the file becomes one record, except for the lines that make up a voucher:
+ * a #VER line together with its #TRANS, #BTRANS and #RTRANS rows is yielded as one record
+ * holding the complete {@link SieVoucher} once the closing brace has been read.
+ * </p>
+ * The value of a record is the model object the line produced:
+ * <ul>
+ *     <li>{@link SieVoucher} for #VER</li>
+ *     <li>{@link SiePeriodValue} for #IB, #UB, #OIB, #OUB, #PSALDO, #PBUDGET and #RES</li>
+ *     <li>{@link SieAccount} for #KONTO, #KTYP, #ENHET and #SRU</li>
+ *     <li>{@link SieDimension} for #DIM and #UNDERDIM</li>
+ *     <li>{@link SieObject} for #OBJEKT</li>
+ *     <li>{@link SieBookingYear} for #RAR</li>
+ * </ul>
+ * Other records, such as #FNAMN or unknown labels, have no value; their content is available
+ * through {@link #getFields()}.
+ */
+public class SieRecord {
+
+    private final String itemType;
+    private final List<String> fields;
+    private final Object value;
+
+    /**
+     * Creates a new record.
+     * @param itemType the item type (e.g. "#KONTO")
+     * @param fields the data fields of the line
+     * @param value the model object produced by the line, or {@code null}
+     */
+    public SieRecord(String itemType, List<String> fields, Object value) {
+        this.itemType = itemType;
+        this.fields = fields;
+        this.value = value;
+    }
+
+    /**
+     * Returns the item type of this record.
+     * @return the item type (e.g. "#KONTO", "#VER")
+     */
+    public String getItemType() {
+        return itemType;
+    }
+
+    /**
+     * Returns the data fields of the line. For a voucher, these are the fields of the #VER line.
+     * @return the data fields
+     */
+    public List<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * Returns the model object produced by this record.
+     * @return the value, or {@code null} if the record has no typed value
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the model object produced by this record if it is of the given type.
+     * @param type the expected type
+     * @param <T> the expected type
+     * @return the value, or {@code null} if there is no value of the given type
+     */
+    public <T> T getValue(Class<T> type) {
+        return type.isInstance(value) ? type.cast(value) : null;
+    }
+
+    /**
+     * Returns whether this record is a complete voucher.
+     * @return true if the value is a {@link SieVoucher}
+     */
+    public boolean isVoucher() {
+        return value instanceof SieVoucher;
+    }
+
+    @Override
+    public String toString() {
+        return itemType + " " + fields;
+    }
+}
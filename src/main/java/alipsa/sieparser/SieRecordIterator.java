@@ -0,0 +1,163 @@
+/*
+MIT License
+
+Copyright (c) 2015 Johan Idstam
+Modifications by Per Nyfelt Copyright (c) 2016 Alipsa HB
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+
+package alipsa.sieparser;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Pull based iterator over the records of a SIE file, created by
+ * {@link SieDocumentReader#readRecords(String)} or {@link SieDocumentReader#readRecords(java.nio.ByteBuffer)}.
+ * <p>
+ * Input is only read as records are requested, and vouchers and period values are handed to the
+ * caller instead of being collected in a document, so memory use does not grow with the number of
+ * vouchers. Header data (company, accounts, dimensions, objects and booking years) is still kept in
+ * the document returned by {@link #getDocument()} since vouchers and balances refer to it.
+ * </p>
+ * The iterator must be closed when not read to the end, preferably with try-with-resources.
+ * Reading errors are reported the same way as by {@link SieDocumentReader#readDocument(String)};
+ * I/O errors are rethrown as {@link UncheckedIOException}.
+ */
+public class SieRecordIterator implements Iterator<SieRecord>, Closeable {
+
+    private final SieDocumentReader reader;
+    private final BufferedReader lines;
+    private final SieMappedFile mappedFile;
+    private SieTokenizer tokenizer;
+    private SieDocument document;
+    private final ArrayDeque<SieRecord> pending = new ArrayDeque<>();
+    private boolean finished;
+
+    SieRecordIterator(SieDocumentReader reader, String name, BufferedReader lines) {
+        this(reader, name, lines, null, null);
+    }
+
+    SieRecordIterator(SieDocumentReader reader, String name, SieMappedFile mappedFile, SieTokenizer firstWindow) {
+        this(reader, name, null, mappedFile, firstWindow);
+    }
+
+    SieRecordIterator(SieDocumentReader reader, String name, SieTokenizer tokenizer) {
+        this(reader, name, null, null, tokenizer);
+    }
+
+    private SieRecordIterator(SieDocumentReader reader, String name, BufferedReader lines,
+                              SieMappedFile mappedFile, SieTokenizer tokenizer) {
+        this.reader = reader;
+        this.lines = lines;
+        this.mappedFile = mappedFile;
+        this.tokenizer = tokenizer;
+        this.document = reader.startRecords(name, pending::add);
+    }
+
+    /**
+     * Returns the document holding the header data read so far. Vouchers and period values are
+     * not stored in it.
+     * @return the header document, or {@code null} if reading was aborted because the input is invalid
+     */
+    public SieDocument getDocument() {
+        return document;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while (pending.isEmpty() && !finished) {
+                advance();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return !pending.isEmpty();
+    }
+
+    @Override
+    public SieRecord next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return pending.poll();
+    }
+
+    /**
+     * Returns a sequential stream of the remaining records. Closing the stream closes this iterator.
+     * @return a stream of records
+     */
+    public Stream<SieRecord> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+                        Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    private void advance() throws IOException {
+        if (lines != null) {
+            String line = lines.readLine();
+            if (line != null) {
+                if (!reader.parseLine(line)) abort();
+                return;
+            }
+        } else {
+            while (tokenizer != null) {
+                if (tokenizer.next()) {
+                    if (!reader.parseRecord(tokenizer)) abort();
+                    return;
+                }
+                tokenizer = mappedFile != null ? mappedFile.nextWindow() : null;
+            }
+        }
+        finished = true;
+        close();
+        reader.endDocument();
+    }
+
+    private void abort() throws IOException {
+        finished = true;
+        document = null;
+        pending.clear();
+        close();
+    }
+
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        tokenizer = null;
+        if (lines != null) lines.close();
+        if (mappedFile != null) mappedFile.close();
+    }
+}
@@ -0,0 +1,488 @@
+/*
+MIT License
+
+Copyright (c) 2015 Johan Idstam
+Modifications by Per Nyfelt Copyright (c) 2016 Alipsa HB
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package alipsa.sieparser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns the account numbers, dimension numbers and object numbers of a {@link SieDocument}
+ * into dense int handles, so that rows referring to the same account or object share one
+ * {@link SieAccount} or {@link SieObject} instance without looking it up by String every time.
+ * <p>
+ * Keys are held as IBM437 bytes. Fields of a tokenizer backed {@link SieDataItem} are looked up
+ * straight from the input buffer, so no String is created for accounts and objects that have
+ * been seen before. When a key is seen for the first time it is resolved against the maps of the
+ * document exactly as the reader has always done, creating the account, or a temporary dimension
+ * or object, when it does not exist. The table only knows about changes made through it; replacing
+ * one of the maps of the document discards it.
+ * </p>
+ */
+final class SieSymbolTable {
+
+    private final SieDocument document;
+    private final Symbols<SieAccount> accounts = new Symbols<>();
+    private final Symbols<SieDimension> dimensions = new Symbols<>();
+    private final Symbols<SieObject> objects = new Symbols<>();
+    private byte[] scratch = new byte[64];
+    private byte[] objectKey = new byte[64];
+    private int[] idStart = new int[8];
+    private int[] idEnd = new int[8];
+
+    SieSymbolTable(SieDocument document) {
+        this.document = document;
+    }
+
+    /**
+     * Returns the handle of the account number held in a field, as returned by
+     * {@link SieDataItem#getString(int)}, adding the account to the document if it is missing.
+     */
+    int accountHandle(SieDataItem di, int field) {
+        SieTokenizer tokenizer = di.getTokenizer();
+        if (tokenizer == null) return accountHandle(di.getString(field));
+        int len = stringBytes(tokenizer, field);
+        int handle = accounts.find(scratch, 0, len);
+        if (handle >= 0) return handle;
+        return accounts.add(scratch, 0, len, account(decode(scratch, 0, len)));
+    }
+
+    /** Returns the handle of an account number, adding the account to the document if it is missing. */
+    int accountHandle(String number) {
+        int len = encode(number);
+        if (len < 0) {
+            int handle = accounts.findOther(number);
+            return handle >= 0 ? handle : accounts.addOther(number, account(number));
+        }
+        int handle = accounts.find(scratch, 0, len);
+        return handle >= 0 ? handle : accounts.add(scratch, 0, len, account(number));
+    }
+
+    SieAccount getAccount(int handle) {
+        return accounts.get(handle);
+    }
+
+    SieAccount getAccount(SieDataItem di, int field) {
+        return accounts.get(accountHandle(di, field));
+    }
+
+    SieAccount getAccount(String number) {
+        return accounts.get(accountHandle(number));
+    }
+
+    /**
+     * Returns the account whose number is held in the given bytes, encoded and with the quotes
+     * removed as for {@link #accountHandle(SieDataItem, int)}, adding the account to the document
+     * if it is missing.
+     */
+    SieAccount getAccount(byte[] key, int from, int len) {
+        int handle = accounts.find(key, from, len);
+        if (handle < 0) handle = accounts.add(key, from, len, account(decode(key, from, len)));
+        return accounts.get(handle);
+    }
+
+    int getAccountCount() {
+        return accounts.size();
+    }
+
+    /**
+     * Returns the handle of an object in a dimension, creating a temporary dimension or object
+     * if either is missing, as {@link SieDataItem#getObjects()} does.
+     */
+    int objectHandle(String dimNumber, String objectNumber) {
+        return objectHandle(dimensionHandle(dimNumber), objectNumber);
+    }
+
+    private int objectHandle(int dim, String objectNumber) {
+        int len = encode(objectNumber);
+        if (len < 0) {
+            String key = dim + ":" + objectNumber;
+            int handle = objects.findOther(key);
+            return handle >= 0 ? handle : objects.addOther(key, object(dim, objectNumber));
+        }
+        int keyLen = objectKey(dim, scratch, 0, len);
+        int handle = objects.find(objectKey, 0, keyLen);
+        return handle >= 0 ? handle : objects.add(objectKey, 0, keyLen, object(dim, objectNumber));
+    }
+
+    SieObject getObject(int handle) {
+        return objects.get(handle);
+    }
+
+    int getObjectCount() {
+        return objects.size();
+    }
+
+    /**
+     * Makes the table refer to an object that has replaced an earlier instance in its dimension,
+     * as happens when #OBJEKT follows a row that created a temporary object.
+     */
+    void objectReplaced(String dimNumber, SieObject object) {
+        int dimLen = encode(dimNumber);
+        int dim = dimLen < 0 ? dimensions.findOther(dimNumber) : dimensions.find(scratch, 0, dimLen);
+        if (dim < 0) return;
+        int len = encode(object.getNumber());
+        int handle;
+        if (len < 0) {
+            handle = objects.findOther(dim + ":" + object.getNumber());
+        } else {
+            int keyLen = objectKey(dim, scratch, 0, len);
+            handle = objects.find(objectKey, 0, keyLen);
+        }
+        if (handle >= 0) objects.set(handle, object);
+    }
+
+    /**
+     * Returns the objects of the object list of a data item.
+     * @see SieDataItem#getObjects()
+     */
+    List<SieObject> getObjects(SieDataItem di) {
+        if (di.rawContains("{}")) return null;
+        SieTokenizer tokenizer = di.getTokenizer();
+        if (tokenizer != null) {
+            for (int f = 0; f < tokenizer.getFieldCount(); f++) {
+                ensureCapacity(tokenizer.getFieldEnd(f) - tokenizer.getFieldStart(f));
+                int len = tokenizer.getFieldBytes(f, scratch, 0);
+                if (len > 0 && scratch[0] == '{') return objects(len);
+            }
+        } else {
+            for (String field : di.getData()) {
+                String i = field.trim();
+                if (i.startsWith("{")) return objects(i.replace("{", "").replace("}", ""));
+            }
+        }
+        di.getDocumentReader().callbackException(new SieMissingObjectException(di.getRawData()));
+        return null;
+    }
+
+    /**
+     * Returns the objects of an object list field held in the given bytes, as copied by
+     * {@link SieTokenizer#getFieldBytes(int, byte[], int)}.
+     * @see #getObjects(SieDataItem)
+     */
+    List<SieObject> getObjects(byte[] field, int from, int len) {
+        ensureCapacity(len);
+        System.arraycopy(field, from, scratch, 0, len);
+        return objects(len);
+    }
+
+    /**
+     * Resolves the object list held in the first {@code len} bytes of the scratch buffer. Lists of
+     * plain or simply quoted ids are resolved from the bytes, anything else, such as escapes, is
+     * split as a String by {@link SieDataItem#splitLine(String)}.
+     */
+    private List<SieObject> objects(int len) {
+        int n = 0;
+        for (int i = 0; i < len; i++) {
+            if (scratch[i] != '{' && scratch[i] != '}') scratch[n++] = scratch[i];
+        }
+        int ids = splitIds(n);
+        if (ids < 0 || ids % 2 != 0) return objects(decode(scratch, 0, n));
+
+        List<SieObject> ret = new ArrayList<>(ids / 2);
+        for (int i = 0; i < ids; i += 2) {
+            int dimStart = idStart[i];
+            int dimLen = idEnd[i] - dimStart;
+            int dim = dimensions.find(scratch, dimStart, dimLen);
+            if (dim < 0) {
+                dim = dimensions.add(scratch, dimStart, dimLen, dimension(decode(scratch, dimStart, dimLen)));
+            }
+            int objStart = idStart[i + 1];
+            int objLen = idEnd[i + 1] - objStart;
+            int keyLen = objectKey(dim, scratch, objStart, objLen);
+            int handle = objects.find(objectKey, 0, keyLen);
+            if (handle < 0) {
+                handle = objects.add(objectKey, 0, keyLen, object(dim, decode(scratch, objStart, objLen)));
+            }
+            ret.add(objects.get(handle));
+        }
+        return ret;
+    }
+
+    /**
+     * Splits the first {@code n} bytes of the scratch buffer into ids as {@link SieDataItem#splitLine(String)}
+     * would, recording their ranges in {@link #idStart} and {@link #idEnd}.
+     * @return the number of ids, or -1 if the bytes need the full splitting rules
+     */
+    private int splitIds(int n) {
+        int ids = 0;
+        int p = 0;
+        while (true) {
+            while (p < n && isSeparator(scratch[p])) p++;
+            if (p == n) return ids;
+            int start;
+            int end;
+            if (scratch[p] == '"') {
+                start = ++p;
+                while (p < n && scratch[p] != '"') {
+                    if (needsFullSplit(scratch[p])) return -1;
+                    p++;
+                }
+                if (p == n) return -1;
+                end = p++;
+                if (p < n && !isSeparator(scratch[p])) return -1;
+                while (start < end && isSeparator(scratch[start])) start++;
+                while (end > start && isSeparator(scratch[end - 1])) end--;
+            } else {
+                start = p;
+                while (p < n && !isSeparator(scratch[p])) {
+                    if (scratch[p] == '"' || needsFullSplit(scratch[p])) return -1;
+                    p++;
+                }
+                end = p;
+            }
+            if (ids == idStart.length) {
+                idStart = Arrays.copyOf(idStart, ids * 2);
+                idEnd = Arrays.copyOf(idEnd, ids * 2);
+            }
+            idStart[ids] = start;
+            idEnd[ids] = end;
+            ids++;
+        }
+    }
+
+    private static boolean isSeparator(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static boolean needsFullSplit(byte b) {
+        return b == '\\' || (b & 0xff) < ' ' && b != '\t';
+    }
+
+    private List<SieObject> objects(String data) {
+        List<SieObject> ret = new ArrayList<>();
+        List<String> dimData = SieDataItem.splitLine(data);
+        for (int i = 0; i < dimData.size(); i += 2) {
+            int dim = dimensionHandle(dimData.get(i));
+            ret.add(objects.get(objectHandle(dim, dimData.get(i + 1))));
+        }
+        return ret;
+    }
+
+    private int dimensionHandle(String dimNumber) {
+        int len = encode(dimNumber);
+        if (len < 0) {
+            int handle = dimensions.findOther(dimNumber);
+            return handle >= 0 ? handle : dimensions.addOther(dimNumber, dimension(dimNumber));
+        }
+        int handle = dimensions.find(scratch, 0, len);
+        return handle >= 0 ? handle : dimensions.add(scratch, 0, len, dimension(dimNumber));
+    }
+
+    private SieAccount account(String number) {
+        SieAccount account = document.getKONTO().get(number);
+        if (account == null) {
+            account = new SieAccount(number);
+            document.getKONTO().put(number, account);
+        }
+        return account;
+    }
+
+    private SieDimension dimension(String dimNumber) {
+        // Look up UNDERDIM/TEMPDIM first, then fall back to DIM
+        if (!document.getDIM().containsKey(dimNumber)) {
+            if (document.getUNDERDIM().containsKey(dimNumber)) {
+                document.getDIM().put(dimNumber, document.getUNDERDIM().get(dimNumber));
+            } else if (document.getTEMPDIM().containsKey(dimNumber)) {
+                document.getDIM().put(dimNumber, document.getTEMPDIM().get(dimNumber));
+            } else {
+                SieDimension temp = new SieDimension(dimNumber, "[TEMP]");
+                document.getDIM().put(dimNumber, temp);
+                document.getTEMPDIM().put(dimNumber, temp);
+            }
+        }
+        return document.getDIM().get(dimNumber);
+    }
+
+    private SieObject object(int dimHandle, String objectNumber) {
+        SieDimension d = dimensions.get(dimHandle);
+        SieObject object = d.getObjects().get(objectNumber);
+        if (object == null) {
+            object = new SieObject(d, objectNumber, "[TEMP]");
+            d.getObjects().put(objectNumber, object);
+        }
+        return object;
+    }
+
+    /** Builds the key of an object, its dimension handle followed by its number, in {@link #objectKey}. */
+    private int objectKey(int dimHandle, byte[] src, int from, int len) {
+        if (objectKey.length < len + 4) objectKey = new byte[Math.max(len + 4, objectKey.length * 2)];
+        objectKey[0] = (byte) (dimHandle >>> 24);
+        objectKey[1] = (byte) (dimHandle >>> 16);
+        objectKey[2] = (byte) (dimHandle >>> 8);
+        objectKey[3] = (byte) dimHandle;
+        System.arraycopy(src, from, objectKey, 4, len);
+        return len + 4;
+    }
+
+    /**
+     * Copies a field of the current record to the scratch buffer with the surrounding quotes
+     * removed, as {@link SieDataItem#getString(int)} does.
+     */
+    private int stringBytes(SieTokenizer tokenizer, int field) {
+        if (tokenizer.getFieldCount() <= field) return 0;
+        ensureCapacity(tokenizer.getFieldEnd(field) - tokenizer.getFieldStart(field));
+        int len = tokenizer.getFieldBytes(field, scratch, 0);
+        int from = 0;
+        while (from < len && scratch[from] == '"') from++;
+        while (len > from && scratch[len - 1] == '"') len--;
+        if (from > 0) System.arraycopy(scratch, from, scratch, 0, len - from);
+        return len - from;
+    }
+
+    /**
+     * Encodes a String key into the scratch buffer.
+     * @return the number of bytes, or -1 if the key has characters that IBM437 cannot represent
+     */
+    private int encode(String value) {
+        int len = value.length();
+        ensureCapacity(len);
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            byte b = Encoding.encode(c);
+            if (b == '?' && c != '?') return -1;
+            scratch[i] = b;
+        }
+        return len;
+    }
+
+    private static String decode(byte[] bytes, int from, int len) {
+        return new String(bytes, from, len, Encoding.getCharset());
+    }
+
+    private void ensureCapacity(int len) {
+        if (scratch.length < len) scratch = new byte[Math.max(len, scratch.length * 2)];
+    }
+
+    /**
+     * Open addressing hash table from byte keys to dense handles, with the values held in an array
+     * indexed by handle. Keys that are not representable as IBM437 bytes are kept in a separate map
+     * that shares the same handle space.
+     */
+    private static final class Symbols<T> {
+        private byte[] keyBytes = new byte[1024];
+        private int keyBytesUsed;
+        private int[] keyStart = new int[64];
+        private int[] keyLength = new int[64];
+        private int[] hashes = new int[64];
+        private Object[] values = new Object[64];
+        private int size;
+        private int[] slots = new int[128];
+        private Map<String, Integer> otherKeys;
+
+        int find(byte[] key, int from, int len) {
+            int hash = hash(key, from, len);
+            int mask = slots.length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                int slot = slots[i];
+                if (slot == 0) return -1;
+                int handle = slot - 1;
+                if (hashes[handle] == hash && keyLength[handle] == len
+                    && Arrays.equals(keyBytes, keyStart[handle], keyStart[handle] + len, key, from, from + len)) {
+                    return handle;
+                }
+            }
+        }
+
+        int add(byte[] key, int from, int len, T value) {
+            if (keyBytesUsed + len > keyBytes.length) {
+                keyBytes = Arrays.copyOf(keyBytes, Math.max(keyBytesUsed + len, keyBytes.length * 2));
+            }
+            System.arraycopy(key, from, keyBytes, keyBytesUsed, len);
+            int handle = newHandle(value);
+            keyStart[handle] = keyBytesUsed;
+            keyLength[handle] = len;
+            hashes[handle] = hash(key, from, len);
+            keyBytesUsed += len;
+            insert(handle);
+            return handle;
+        }
+
+        int findOther(String key) {
+            if (otherKeys == null) return -1;
+            Integer handle = otherKeys.get(key);
+            return handle != null ? handle : -1;
+        }
+
+        int addOther(String key, T value) {
+            if (otherKeys == null) otherKeys = new HashMap<>();
+            int handle = newHandle(value);
+            keyLength[handle] = -1;
+            otherKeys.put(key, handle);
+            return handle;
+        }
+
+        @SuppressWarnings("unchecked")
+        T get(int handle) {
+            return (T) values[handle];
+        }
+
+        void set(int handle, T value) {
+            values[handle] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private int newHandle(T value) {
+            if (size == values.length) {
+                int capacity = size * 2;
+                keyStart = Arrays.copyOf(keyStart, capacity);
+                keyLength = Arrays.copyOf(keyLength, capacity);
+                hashes = Arrays.copyOf(hashes, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            values[size] = value;
+            return size++;
+        }
+
+        private void insert(int handle) {
+            if (size * 2 > slots.length) {
+                slots = new int[slots.length * 2];
+                for (int h = 0; h < size; h++) {
+                    if (keyLength[h] >= 0 && h != handle) place(h);
+                }
+            }
+            place(handle);
+        }
+
+        private void place(int handle) {
+            int mask = slots.length - 1;
+            int i = hashes[handle] & mask;
+            while (slots[i] != 0) i = (i + 1) & mask;
+            slots[i] = handle + 1;
+        }
+
+        private static int hash(byte[] key, int from, int len) {
+            int h = 0;
+            for (int i = from; i < from + len; i++) h = 31 * h + key[i];
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+MIT License
+
+Copyright (c) 2015 Johan Idstam
+Modifications by Per Nyfelt Copyright (c) 2016 Alipsa HB
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+
+package alipsa.sieparser;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a SIE file that is being appended to, such as a file that vouchers are added to with
+ * {@link SieDocumentWriter#addVouchers(java.io.OutputStream, List)}, created by
+ * {@link SieDocumentReader#openTail(String)}.
+ * <p>
+ * Each {@link #poll()} parses only the complete lines written since the previous poll and returns
+ * the vouchers whose closing brace has been read. The reader keeps all parser state between polls:
+ * the byte offset, a voucher whose rows are still being written, the header data, the last voucher
+ * number per series and the running #KSUMMA checksum. As with {@link SieRecordIterator}, vouchers and
+ * period values are handed over rather than collected, so memory use does not grow over the day.
+ * Period values are available through the callbacks of the reader.
+ * </p>
+ * <p>
+ * The file is only open during a poll. Checks that need the end of the file, such as missing
+ * mandatory records, are not made. The {@link SieDocumentReader} must not be used for anything
+ * else while its tail reader is in use.
+ * </p>
+ */
+public class SieTailReader {
+
+    private final SieDocumentReader reader;
+    private final Path file;
+    private final int mapWindowSize;
+    private final List<SieVoucher> polled = new ArrayList<>();
+    private SieDocument document;
+    private long offset;
+
+    SieTailReader(SieDocumentReader reader, String fileName, int mapWindowSize) {
+        this.reader = reader;
+        this.file = Paths.get(fileName);
+        this.mapWindowSize = mapWindowSize;
+        this.document = reader.startRecords(fileName, record -> {
+            if (record.isVoucher()) polled.add(record.getValue(SieVoucher.class));
+        });
+    }
+
+    /**
+     * Parses the lines appended since the last poll. A line that is not yet terminated is left for
+     * the next poll, so a voucher that is being written is returned once it is complete.
+     * @return the vouchers completed since the last poll, in file order
+     * @throws IOException if the file cannot be read
+     * @throws SieParseException if the file is shorter than what has already been read
+     */
+    public List<SieVoucher> poll() throws IOException {
+        polled.clear();
+        if (document == null) return new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < offset) {
+                throw new SieParseException(file + " is shorter than the " + offset + " bytes already read");
+            }
+            int window = mapWindowSize;
+            while (offset < size) {
+                long length = Math.min(window, size - offset);
+                SieTokenizer tokenizer = new SieTokenizer(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+                tokenizer.setEndOfInput(false);
+                while (tokenizer.next()) {
+                    if (!reader.parseRecord(tokenizer)) {
+                        document = null;
+                        return new ArrayList<>(polled);
+                    }
+                }
+                if (tokenizer.position() == 0) {
+                    // the last line is still being written
+                    if (length < window) break;
+                    if (window == Integer.MAX_VALUE) {
+                        throw new SieParseException("Line at byte offset " + offset + " is too long to be memory mapped");
+                    }
+                    window = (int) Math.min(2L * window, Integer.MAX_VALUE);
+                }
+                offset += tokenizer.position();
+            }
+        }
+        return new ArrayList<>(polled);
+    }
+
+    /**
+     * Returns the document holding the header data read so far. Vouchers and period values are
+     * not stored in it.
+     * @return the header document, or {@code null} if reading was aborted because the file is invalid
+     */
+    public SieDocument getDocument() {
+        return document;
+    }
+
+    /**
+     * Returns the number of bytes read so far, up to the end of the last complete line.
+     * @return the byte offset of the next line to read
+     */
+    public long getOffset() {
+        return offset;
+    }
+}
@@ -0,0 +1,621 @@
+/*
+MIT License
+
+Copyright (c) 2015 Johan Idstam
+Modifications by Per Nyfelt Copyright (c) 2016 Alipsa HB
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package alipsa.sieparser;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Byte-level tokenizer for SIE 1-4 files.
+ * Splits IBM437 encoded input held in a {@link ByteBuffer} (for example a
+ * {@link java.nio.MappedByteBuffer}) into records and fields without decoding the
+ * input into intermediate Strings. Field boundaries are only computed when a field is
+ * first accessed, and a field is only turned into a String when it is read.
+ *
+ * <p>The fields produced are identical to those of {@link SieDataItem}, including quoting,
+ * backslash escapes and {@code {}} object lists. The tokenizer never changes the position
+ * or limit of the buffer it reads from. Values returned for the current record are only
+ * valid until {@link #next()} is called again.</p>
+ */
+public class SieTokenizer {
+
+    private static final char[] DECODE = new char[256];
+    private static final String[] KNOWN_TAGS = {
+        SIE.ADRESS, SIE.BKOD, SIE.BTRANS, SIE.DIM, SIE.ENHET, SIE.FLAGGA, SIE.FNAMN, SIE.FNR,
+        SIE.FORMAT, SIE.FTYP, SIE.GEN, SIE.IB, SIE.KONTO, SIE.KPTYP, SIE.KSUMMA, SIE.KTYP,
+        SIE.OBJEKT, SIE.OIB, SIE.OMFATTN, SIE.ORGNR, SIE.OUB, SIE.PBUDGET, SIE.PROGRAM,
+        SIE.PROSA, SIE.PSALDO, SIE.RAR, SIE.RES, SIE.RTRANS, SIE.SIETYP, SIE.SRU, SIE.TAXAR,
+        SIE.TRANS, SIE.UB, SIE.UNDERDIM, SIE.VALUTA, SIE.VER, "{", "}"
+    };
+    private static final byte[][] KNOWN_TAG_BYTES = new byte[KNOWN_TAGS.length][];
+
+    static final byte KIND_PLAIN = 0;
+    static final byte KIND_QUOTED = 1;
+    static final byte KIND_COMPLEX = 2;
+
+    static {
+        byte[] all = new byte[256];
+        for (int i = 0; i < 256; i++) all[i] = (byte) i;
+        String decoded = new String(all, Encoding.getCharset());
+        for (int i = 0; i < 256; i++) DECODE[i] = decoded.charAt(i);
+        for (int i = 0; i < KNOWN_TAGS.length; i++) KNOWN_TAG_BYTES[i] = Encoding.getBytes(KNOWN_TAGS[i]);
+    }
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int position;
+    private boolean endOfInput = true;
+
+    private int lineStart;
+    private int lineEnd;
+    private int tagStart;
+    private int tagEnd;
+    private int dataStart;
+    private int dataEnd;
+    private String itemType;
+
+    private boolean fieldsSplit;
+    private int fieldCount;
+    private int[] fieldStart = new int[16];
+    private int[] fieldEnd = new int[16];
+    private byte[] fieldKind = new byte[16];
+    private char[] scratch = new char[256];
+
+    /**
+     * Creates a tokenizer over the remaining bytes of the given buffer,
+     * i.e. from its position up to its limit.
+     * @param buffer the IBM437 encoded SIE content
+     */
+    public SieTokenizer(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.position = buffer.position();
+        this.limit = buffer.limit();
+    }
+
+    /**
+     * Advances to the next record (line) of the input.
+     * @return {@code true} if a record is available, {@code false} at the end of the input
+     */
+    public boolean next() {
+        if (position >= limit) return false;
+        int end = position;
+        while (end < limit) {
+            byte b = buffer.get(end);
+            if (b == '\n' || b == '\r') break;
+            end++;
+        }
+        int nextPos;
+        if (end == limit) {
+            if (!endOfInput) return false;
+            nextPos = end;
+        } else if (buffer.get(end) == '\r') {
+            if (end + 1 == limit && !endOfInput) return false;
+            nextPos = end + 1 < limit && buffer.get(end + 1) == '\n' ? end + 2 : end + 1;
+        } else {
+            nextPos = end + 1;
+        }
+        lineStart = position;
+        lineEnd = end;
+        position = nextPos;
+        scanRecord();
+        return true;
+    }
+
+    private void scanRecord() {
+        int start = lineStart;
+        int end = lineEnd;
+        while (start < end && isTrimmable(buffer.get(start))) start++;
+        while (end > start && isTrimmable(buffer.get(end - 1))) end--;
+        int p = start;
+        while (p < end) {
+            byte b = buffer.get(p);
+            if (b == ' ' || b == '\t') break;
+            p++;
+        }
+        tagStart = start;
+        tagEnd = p;
+        if (p < end) {
+            int ds = p + 1;
+            while (ds < end && isTrimmable(buffer.get(ds))) ds++;
+            dataStart = ds;
+        } else {
+            dataStart = end;
+        }
+        dataEnd = end;
+        itemType = null;
+        fieldsSplit = false;
+        fieldCount = 0;
+    }
+
+    /**
+     * Returns the item type (e.g. "#KONTO", "#VER") of the current record.
+     * Known SIE labels are returned as the shared constants from {@link SIE}.
+     * @return the item type, or an empty string for blank lines
+     */
+    public String getItemType() {
+        if (itemType == null) itemType = resolveTag();
+        return itemType;
+    }
+
+    private String resolveTag() {
+        int len = tagEnd - tagStart;
+        if (len == 0) return "";
+        for (int i = 0; i < KNOWN_TAG_BYTES.length; i++) {
+            byte[] tag = KNOWN_TAG_BYTES[i];
+            if (tag.length == len && regionEquals(tagStart, tag)) return KNOWN_TAGS[i];
+        }
+        return decode(tagStart, tagEnd);
+    }
+
+    /**
+     * Returns whether the item type of the current record equals the given label,
+     * without creating a String for the item type.
+     * @param tag the label to compare with, e.g. {@link SIE#VER}
+     * @return {@code true} if the current record has the given item type
+     */
+    public boolean isItemType(String tag) {
+        if (itemType != null) return itemType.equals(tag);
+        int len = tagEnd - tagStart;
+        if (len != tag.length()) return false;
+        for (int i = 0; i < len; i++) {
+            if (DECODE[buffer.get(tagStart + i) & 0xff] != tag.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of data fields in the current record.
+     * @return the number of fields
+     */
+    public int getFieldCount() {
+        splitFields();
+        return fieldCount;
+    }
+
+    /**
+     * Returns the data field at the given index, decoded and unescaped exactly as
+     * {@link SieDataItem#getData()} would return it.
+     * @param field the zero-based field index
+     * @return the field value
+     * @throws IndexOutOfBoundsException if the field does not exist
+     */
+    public String getField(int field) {
+        splitFields();
+        if (field < 0 || field >= fieldCount) {
+            throw new IndexOutOfBoundsException("Field " + field + " out of bounds for length " + fieldCount);
+        }
+        int from = fieldStart[field];
+        int to = fieldEnd[field];
+        switch (fieldKind[field]) {
+            case KIND_PLAIN:
+                return decodeTrimmed(from, to);
+            case KIND_QUOTED:
+                return decodeTrimmed(from + 1, to - 1);
+            default:
+                return decodeComplex(from, to);
+        }
+    }
+
+    /**
+     * Copies the bytes of a data field, decoded and unescaped exactly as {@link #getField(int)}
+     * but without creating a String. The destination must have room for the raw field, i.e.
+     * {@code getFieldEnd(field) - getFieldStart(field)} bytes.
+     * @return the number of bytes copied
+     */
+    int getFieldBytes(int field, byte[] dst, int offset) {
+        splitFields();
+        int from = fieldStart[field];
+        int to = fieldEnd[field];
+        if (fieldKind[field] == KIND_COMPLEX) {
+            return complexBytes(from, to, dst, offset);
+        }
+        if (fieldKind[field] == KIND_QUOTED) {
+            from++;
+            to--;
+        }
+        while (from < to && isTrimmable(buffer.get(from))) from++;
+        while (to > from && isTrimmable(buffer.get(to - 1))) to--;
+        buffer.get(from, dst, offset, to - from);
+        return to - from;
+    }
+
+    /**
+     * Returns all data fields of the current record.
+     * @return a new list holding the field values
+     */
+    public List<String> getFields() {
+        splitFields();
+        List<String> ret = new ArrayList<>(fieldCount);
+        for (int i = 0; i < fieldCount; i++) ret.add(getField(i));
+        return ret;
+    }
+
+    /**
+     * Returns the raw text of the current record, without the line terminator.
+     * @return the decoded line
+     */
+    public String getLine() {
+        return decode(lineStart, lineEnd);
+    }
+
+    /**
+     * Returns the buffer offset where the current record starts.
+     * @return the absolute start offset of the record
+     */
+    public int getRecordStart() {
+        return lineStart;
+    }
+
+    /**
+     * Returns the buffer offset of the first byte after the current record,
+     * including its line terminator.
+     * @return the absolute offset following the record
+     */
+    public int getRecordEnd() {
+        return position;
+    }
+
+    /**
+     * Returns the buffer offset where the tokenizer continues on the next call to {@link #next()}.
+     * @return the absolute read position
+     */
+    public int position() {
+        return position;
+    }
+
+    /**
+     * Returns whether the end of the buffer is the end of the input. When {@code false},
+     * a trailing line without terminator is treated as incomplete and is not returned.
+     * @return {@code true} if the buffer holds the end of the input
+     */
+    int limit() {
+        return limit;
+    }
+
+    /**
+     * Moves the read position, e.g. to leave the rest of the buffer unread.
+     */
+    void skipTo(int position) {
+        this.position = position;
+    }
+
+    boolean isEndOfInput() {
+        return endOfInput;
+    }
+
+    void setEndOfInput(boolean endOfInput) {
+        this.endOfInput = endOfInput;
+    }
+
+    int getTagStart() {
+        return tagStart;
+    }
+
+    int getTagEnd() {
+        return tagEnd;
+    }
+
+    int getFieldStart(int field) {
+        return fieldStart[field];
+    }
+
+    int getFieldEnd(int field) {
+        return fieldEnd[field];
+    }
+
+    byte getFieldKind(int field) {
+        return fieldKind[field];
+    }
+
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns whether the raw line contains the given ASCII text.
+     */
+    boolean lineContains(String text) {
+        int len = text.length();
+        outer:
+        for (int i = lineStart; i <= lineEnd - len; i++) {
+            for (int j = 0; j < len; j++) {
+                if (buffer.get(i + j) != text.charAt(j)) continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Parses the field at the given index as an int without decoding it,
+     * falling back to {@link Integer#parseInt(String)} for anything but plain digits.
+     */
+    Integer getIntNull(int field) {
+        splitFields();
+        if (field >= fieldCount) return null;
+        if (fieldKind[field] == KIND_PLAIN) {
+            int from = fieldStart[field];
+            int to = fieldEnd[field];
+            boolean negative = false;
+            if (from < to && buffer.get(from) == '-') {
+                negative = true;
+                from++;
+            }
+            int len = to - from;
+            if (len > 0 && len < 10) {
+                int value = 0;
+                int i = from;
+                for (; i < to; i++) {
+                    int d = buffer.get(i) - '0';
+                    if (d < 0 || d > 9) break;
+                    value = value * 10 + d;
+                }
+                if (i == to) return negative ? -value : value;
+            }
+        }
+        try {
+            return Integer.parseInt(getField(field));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses the field at the given index as a fixed-point amount, straight from the buffer
+     * when the field is plain.
+     * @return the amount in hundredths, or {@link SieAmount#NONE}
+     */
+    long getHundredths(int field) {
+        splitFields();
+        if (field >= fieldCount) return SieAmount.NONE;
+        if (fieldKind[field] == KIND_PLAIN) return SieAmount.parse(buffer, fieldStart[field], fieldEnd[field]);
+        return SieAmount.parse(getField(field));
+    }
+
+    /**
+     * Returns the number of decimals of the amount in the field at the given index.
+     */
+    int getScale(int field) {
+        splitFields();
+        if (fieldKind[field] == KIND_PLAIN) return SieAmount.scale(buffer, fieldStart[field], fieldEnd[field]);
+        return SieAmount.scale(getField(field));
+    }
+
+    /**
+     * Parses the field at the given index as a {@code yyyyMMdd} date, straight from the buffer
+     * unless the field has escapes.
+     * @return the epoch day, {@link SieDate#EMPTY} or {@link SieDate#NONE}
+     */
+    int getEpochDay(int field) {
+        splitFields();
+        if (field >= fieldCount) return SieDate.EMPTY;
+        switch (fieldKind[field]) {
+            case KIND_PLAIN:
+                return SieDate.parse(buffer, fieldStart[field], fieldEnd[field]);
+            case KIND_QUOTED:
+                return SieDate.parse(buffer, fieldStart[field] + 1, fieldEnd[field] - 1);
+            default:
+                return SieDate.parse(getField(field));
+        }
+    }
+
+    private void splitFields() {
+        if (fieldsSplit) return;
+        fieldsSplit = true;
+        fieldCount = 0;
+        int isInField = 0;
+        boolean isInObject = false;
+        boolean skipNext = false;
+        int rangeStart = dataStart;
+        boolean appended = false;
+        boolean hasContent = false;
+        boolean complex = false;
+        int quotes = 0;
+        int firstQuote = -1;
+        int lastQuote = -1;
+        for (int i = dataStart; i < dataEnd; i++) {
+            byte c = buffer.get(i);
+            if (skipNext && c == '"') {
+                skipNext = false;
+                appended = true;
+                hasContent = true;
+                continue;
+            }
+            skipNext = false;
+
+            if (c == '\\') {
+                skipNext = true;
+                complex = true;
+                continue;
+            }
+
+            if (c == '"' && !isInObject) {
+                isInField += 1;
+                quotes++;
+                if (firstQuote < 0) firstQuote = i;
+                lastQuote = i;
+                continue;
+            }
+
+            if (c == '{') isInObject = true;
+            if (c == '}') isInObject = false;
+
+            if ((c == ' ' || c == '\t') && (isInField != 1) && !isInObject) {
+                if (hasContent || isInField == 2) {
+                    addField(rangeStart, i, kindOf(rangeStart, i, complex, quotes, firstQuote, lastQuote));
+                    rangeStart = i + 1;
+                    appended = false;
+                    hasContent = false;
+                    complex = false;
+                    quotes = 0;
+                    firstQuote = -1;
+                    lastQuote = -1;
+                } else if (!appended) {
+                    // nothing is kept for the field yet, so it starts after this separator
+                    rangeStart = i + 1;
+                    complex = false;
+                    quotes = 0;
+                    firstQuote = -1;
+                    lastQuote = -1;
+                } else {
+                    // whitespace-only content is kept and the separator is swallowed
+                    complex = true;
+                }
+                isInField = 0;
+            } else {
+                appended = true;
+                if (!isTrimmable(c)) hasContent = true;
+            }
+        }
+        if (appended || isInField == 2) {
+            addField(rangeStart, dataEnd, kindOf(rangeStart, dataEnd, complex, quotes, firstQuote, lastQuote));
+        }
+    }
+
+    private static byte kindOf(int from, int to, boolean complex, int quotes, int firstQuote, int lastQuote) {
+        if (complex) return KIND_COMPLEX;
+        if (quotes == 0) return KIND_PLAIN;
+        if (quotes == 2 && firstQuote == from && lastQuote == to - 1) return KIND_QUOTED;
+        return KIND_COMPLEX;
+    }
+
+    private void addField(int from, int to, byte kind) {
+        if (fieldCount == fieldStart.length) {
+            int size = fieldCount * 2;
+            fieldStart = Arrays.copyOf(fieldStart, size);
+            fieldEnd = Arrays.copyOf(fieldEnd, size);
+            fieldKind = Arrays.copyOf(fieldKind, size);
+        }
+        fieldStart[fieldCount] = from;
+        fieldEnd[fieldCount] = to;
+        fieldKind[fieldCount] = kind;
+        fieldCount++;
+    }
+
+    /**
+     * Replays the field splitting rules of {@link SieDataItem} over a single field range,
+     * dropping quotes and backslashes and skipping separators that did not end the field.
+     */
+    private String decodeComplex(int from, int to) {
+        StringBuilder sb = new StringBuilder(to - from);
+        int isInField = 0;
+        boolean isInObject = false;
+        boolean skipNext = false;
+        for (int i = from; i < to; i++) {
+            char c = DECODE[buffer.get(i) & 0xff];
+            if (skipNext && c == '"') {
+                skipNext = false;
+                sb.append(c);
+                continue;
+            }
+            skipNext = false;
+            if (c == '\\') {
+                skipNext = true;
+                continue;
+            }
+            if (c == '"' && !isInObject) {
+                isInField += 1;
+                continue;
+            }
+            if (c == '{') isInObject = true;
+            if (c == '}') isInObject = false;
+            if ((c == ' ' || c == '\t') && (isInField != 1) && !isInObject) {
+                isInField = 0;
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString().trim();
+    }
+
+    /**
+     * The byte counterpart of {@link #decodeComplex(int, int)}.
+     */
+    private int complexBytes(int from, int to, byte[] dst, int offset) {
+        int n = offset;
+        int isInField = 0;
+        boolean isInObject = false;
+        boolean skipNext = false;
+        for (int i = from; i < to; i++) {
+            byte c = buffer.get(i);
+            if (skipNext && c == '"') {
+                skipNext = false;
+                dst[n++] = c;
+                continue;
+            }
+            skipNext = false;
+            if (c == '\\') {
+                skipNext = true;
+                continue;
+            }
+            if (c == '"' && !isInObject) {
+                isInField += 1;
+                continue;
+            }
+            if (c == '{') isInObject = true;
+            if (c == '}') isInObject = false;
+            if ((c == ' ' || c == '\t') && (isInField != 1) && !isInObject) {
+                isInField = 0;
+            } else {
+                dst[n++] = c;
+            }
+        }
+        int start = offset;
+        while (start < n && isTrimmable(dst[start])) start++;
+        while (n > start && isTrimmable(dst[n - 1])) n--;
+        if (start > offset) System.arraycopy(dst, start, dst, offset, n - start);
+        return n - start;
+    }
+
+    private String decodeTrimmed(int from, int to) {
+        while (from < to && isTrimmable(buffer.get(from))) from++;
+        while (to > from && isTrimmable(buffer.get(to - 1))) to--;
+        return decode(from, to);
+    }
+
+    private String decode(int from, int to) {
+        int len = to - from;
+        if (len <= 0) return "";
+        if (scratch.length < len) scratch = new char[Math.max(len, scratch.length * 2)];
+        for (int i = 0; i < len; i++) {
+            scratch[i] = DECODE[buffer.get(from + i) & 0xff];
+        }
+        return new String(scratch, 0, len);
+    }
+
+    private boolean regionEquals(int from, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(from + i) != bytes[i]) return false;
+        }
+        return true;
+    }
+
+    private static boolean isTrimmable(byte b) {
+        return (b & 0xff) <= ' ';
+    }
+}
@@ -43,6 +43,8 @@ public class SieVoucher {
     private String createdBy;
     private String token;
     private List<SieVoucherRow> rows;
+    private long fingerprint;
+    private boolean fingerprinted;
 
     /** Creates a new empty voucher with an empty row list. */
     public SieVoucher() {
@@ -176,4 +178,54 @@ public class SieVoucher {
     public void setRows(List<SieVoucherRow> value) {
         rows = value;
     }
+
+    /**
+     * Returns a stable 64-bit fingerprint of the content of this voucher, for detecting changed
+     * and duplicate vouchers across files. A voucher read with
+     * {@link SieDocumentReader#setFingerprints(boolean)} enabled gets its fingerprint while it is
+     * parsed, so this is the fingerprint of the voucher as read and does not follow later changes;
+     * for other vouchers it is computed on every call.
+     * @return the fingerprint
+     * @see #computeFingerprint()
+     */
+    public long getFingerprint() {
+        return fingerprinted ? fingerprint : computeFingerprint();
+    }
+
+    /**
+     * Computes the fingerprint of the current content of this voucher. It covers the series, number,
+     * date, text, creation date and signature, and every row with its token, account number, object
+     * numbers, amount, date, text, quantity and signature. Amounts are hashed by numeric value, so
+     * {@code 100} and {@code 100.00} give the same fingerprint, and the rows are combined without
+     * regard to their order. The fingerprint is the same in every JVM and every run.
+     * @return the fingerprint
+     */
+    public long computeFingerprint() {
+        long h = SieHash.add(SieHash.SEED, series);
+        h = SieHash.add(h, number);
+        h = SieHash.add(h, voucherDate);
+        h = SieHash.add(h, text);
+        h = SieHash.add(h, createdDate);
+        h = SieHash.add(h, createdBy);
+        long rowSum = 0;
+        int rowCount = 0;
+        if (rows != null) {
+            for (SieVoucherRow row : rows) {
+                rowSum += row.fingerprint();
+                rowCount++;
+            }
+        }
+        return SieHash.add(SieHash.add(h, rowSum), rowCount);
+    }
+
+    /** Returns whether the fingerprint of the voucher as read is kept. */
+    boolean isFingerprinted() {
+        return fingerprinted;
+    }
+
+    /** Keeps the fingerprint of the voucher as read. */
+    void setFingerprint(long value) {
+        fingerprint = value;
+        fingerprinted = true;
+    }
 }
@@ -0,0 +1,312 @@
+/*
+MIT License
+
+Copyright (c) 2015 Johan Idstam
+Modifications by Per Nyfelt Copyright (c) 2016 Alipsa HB
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+
+package alipsa.sieparser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Byte offsets of the vouchers in a SIE 4 file, for reading single vouchers or date ranges with
+ * {@link SieDocumentReader#readVoucher(String, SieVoucherIndex, String, String)} and
+ * {@link SieDocumentReader#readVouchers(String, SieVoucherIndex, LocalDate, LocalDate)}
+ * without parsing the whole file.
+ * <p>
+ * The index holds one {@link Entry} per #VER block, with its series, number and date, and the
+ * length of the header section, i.e. everything before the first #VER, which holds the accounts
+ * and dimensions that rows refer to. It can be stored in a sidecar file next to the SIE file, see
+ * {@link #load(Path)}. The size and modification time of the SIE file are recorded so that an
+ * index of an older version of the file is not used by mistake.
+ * </p>
+ */
+public class SieVoucherIndex {
+
+    /** File name suffix of the sidecar file used by {@link #load(Path)}. */
+    public static final String SIDECAR_SUFFIX = ".vix";
+
+    private static final int MAGIC = 0x53494558; // "SIEX"
+    private static final int VERSION = 1;
+
+    private final long fileSize;
+    private final long lastModified;
+    private final long headerLength;
+    private final List<Entry> entries;
+    private final Map<String, Entry> byKey;
+
+    private SieVoucherIndex(long fileSize, long lastModified, long headerLength, List<Entry> entries) {
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.headerLength = headerLength;
+        this.entries = Collections.unmodifiableList(entries);
+        byKey = new HashMap<>(entries.size() * 4 / 3 + 1);
+        for (Entry entry : entries) byKey.putIfAbsent(key(entry.series, entry.number), entry);
+    }
+
+    /**
+     * Scans a SIE file for #VER blocks. Only the series, number and date fields of each #VER are
+     * decoded; the file is memory mapped and nothing else is parsed.
+     * @param file the SIE file
+     * @return the index of the file
+     * @throws IOException if the file cannot be read
+     */
+    public static SieVoucherIndex build(Path file) throws IOException {
+        return build(file, SieDocumentReader.DEFAULT_MAP_WINDOW_SIZE);
+    }
+
+    static SieVoucherIndex build(Path file, int mapWindowSize) throws IOException {
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        List<Entry> entries = new ArrayList<>();
+        long headerLength = -1;
+        long fileSize;
+        try (SieMappedFile mapped = new SieMappedFile(file, mapWindowSize)) {
+            fileSize = mapped.size();
+            Entry open = null;
+            for (SieTokenizer tokenizer = mapped.nextWindow(); tokenizer != null; tokenizer = mapped.nextWindow()) {
+                long base = mapped.getWindowOffset();
+                while (tokenizer.next()) {
+                    if (tokenizer.isItemType(SIE.VER)) {
+                        long offset = base + tokenizer.getRecordStart();
+                        if (open != null) entries.add(open.end(offset));
+                        if (headerLength < 0) headerLength = offset;
+                        SieDataItem di = new SieDataItem(tokenizer, null, null);
+                        int epochDay = tokenizer.getEpochDay(2);
+                        open = new Entry(di.getString(0), di.getString(1),
+                            epochDay == SieDate.NONE || epochDay == SieDate.EMPTY ? SieDate.NONE : epochDay, offset);
+                    } else if (open != null && tokenizer.isItemType("}")) {
+                        entries.add(open.end(base + tokenizer.getRecordEnd()));
+                        open = null;
+                    }
+                }
+            }
+            if (open != null) entries.add(open.end(fileSize));
+        }
+        return new SieVoucherIndex(fileSize, lastModified, headerLength < 0 ? fileSize : headerLength, entries);
+    }
+
+    /**
+     * Returns the index of a SIE file from its sidecar file, which is the SIE file name followed by
+     * {@link #SIDECAR_SUFFIX}. If there is no sidecar file, or it was made for another version of
+     * the SIE file, the index is built and the sidecar file is (re)written.
+     * @param file the SIE file
+     * @return the index of the file
+     * @throws IOException if the SIE file cannot be read or the sidecar file cannot be written
+     */
+    public static SieVoucherIndex load(Path file) throws IOException {
+        Path sidecar = sidecar(file);
+        if (Files.exists(sidecar)) {
+            try {
+                SieVoucherIndex index = read(sidecar);
+                if (index.matches(file)) return index;
+            } catch (SieParseException | IOException e) {
+                // an unreadable sidecar file is rebuilt
+            }
+        }
+        SieVoucherIndex index = build(file);
+        index.write(sidecar);
+        return index;
+    }
+
+    /**
+     * Returns the sidecar file used by {@link #load(Path)} for a SIE file.
+     * @param file the SIE file
+     * @return the path of the sidecar file
+     */
+    public static Path sidecar(Path file) {
+        return file.resolveSibling(file.getFileName() + SIDECAR_SUFFIX);
+    }
+
+    /**
+     * Reads an index written by {@link #write(Path)}.
+     * @param indexFile the index file
+     * @return the index
+     * @throws IOException if the file cannot be read
+     * @throws SieParseException if the file is not a voucher index of a supported version
+     */
+    public static SieVoucherIndex read(Path indexFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new SieParseException(indexFile + " is not a SIE voucher index");
+            }
+            long fileSize = in.readLong();
+            long lastModified = in.readLong();
+            long headerLength = in.readLong();
+            int count = in.readInt();
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Entry entry = new Entry(in.readUTF(), in.readUTF(), in.readInt(), in.readLong());
+                entries.add(entry.end(entry.offset + in.readInt()));
+            }
+            return new SieVoucherIndex(fileSize, lastModified, headerLength, entries);
+        }
+    }
+
+    /**
+     * Writes the index to a file.
+     * @param indexFile the file to write, it is created or replaced
+     * @throws IOException if writing fails
+     */
+    public void write(Path indexFile) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fileSize);
+            out.writeLong(lastModified);
+            out.writeLong(headerLength);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                out.writeUTF(entry.series);
+                out.writeUTF(entry.number);
+                out.writeInt(entry.epochDay);
+                out.writeLong(entry.offset);
+                out.writeInt(entry.length);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the index was built from the current version of a file, judged by its size
+     * and modification time.
+     * @param file the SIE file
+     * @return {@code true} if the index matches the file
+     * @throws IOException if the file attributes cannot be read
+     */
+    public boolean matches(Path file) throws IOException {
+        return Files.size(file) == fileSize && Files.getLastModifiedTime(file).toMillis() == lastModified;
+    }
+
+    /**
+     * Returns the length in bytes of the header section, i.e. the offset of the first #VER.
+     * @return the header length, or the file size if the file has no vouchers
+     */
+    public long getHeaderLength() { return headerLength; }
+
+    /**
+     * Returns all vouchers of the file, in file order.
+     * @return the entries, unmodifiable
+     */
+    public List<Entry> getEntries() { return entries; }
+
+    /**
+     * Finds a voucher by series and number.
+     * @param series the voucher series
+     * @param number the voucher number
+     * @return the first voucher with that series and number, or {@code null}
+     */
+    public Entry find(String series, String number) {
+        return byKey.get(key(series, number));
+    }
+
+    /**
+     * Finds the vouchers dated within a range. Vouchers without a valid date are not included.
+     * @param from the first date, inclusive
+     * @param to the last date, inclusive
+     * @return the matching vouchers, in file order
+     */
+    public List<Entry> find(LocalDate from, LocalDate to) {
+        long first = from.toEpochDay();
+        long last = to.toEpochDay();
+        List<Entry> found = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.epochDay != SieDate.NONE && entry.epochDay >= first && entry.epochDay <= last) found.add(entry);
+        }
+        return found;
+    }
+
+    private static String key(String series, String number) {
+        return series + '\u0000' + number;
+    }
+
+    /** The location of one #VER block, from the #VER line up to and including its closing brace. */
+    public static final class Entry {
+        private final String series;
+        private final String number;
+        private final int epochDay;
+        private final long offset;
+        private int length;
+
+        private Entry(String series, String number, int epochDay, long offset) {
+            this.series = series;
+            this.number = number;
+            this.epochDay = epochDay;
+            this.offset = offset;
+        }
+
+        private Entry end(long end) {
+            long blockLength = end - offset;
+            if (blockLength > Integer.MAX_VALUE) {
+                throw new SieParseException("Voucher " + series + "." + number + " at byte offset " + offset + " is too long to index");
+            }
+            length = (int) blockLength;
+            return this;
+        }
+
+        /**
+         * Returns the voucher series.
+         * @return the series
+         */
+        public String getSeries() { return series; }
+
+        /**
+         * Returns the voucher number.
+         * @return the number
+         */
+        public String getNumber() { return number; }
+
+        /**
+         * Returns the voucher date.
+         * @return the date, or {@code null} if the #VER has no valid date
+         */
+        public LocalDate getDate() { return epochDay == SieDate.NONE ? null : SieDate.toLocalDate(epochDay); }
+
+        /**
+         * Returns the byte offset of the #VER line in the file.
+         * @return the offset
+         */
+        public long getOffset() { return offset; }
+
+        /**
+         * Returns the length in bytes of the block, including the line terminator of the closing brace.
+         * @return the length
+         */
+        public int getLength() { return length; }
+
+        @Override
+        public String toString() {
+            return series + "." + number + " @" + offset + "+" + length;
+        }
+    }
+}
@@ -42,6 +42,8 @@ public class SieVoucherRow {
     private SieAccount account;
     private List<SieObject> objects;
     private BigDecimal amount;
+    private long amountHundredths = SieAmount.NONE;
+    private int amountScale;
     private LocalDate rowDate;
     private String text;
     private String createdBy;
@@ -84,6 +86,9 @@ public class SieVoucherRow {
      * @return the amount
      */
     public BigDecimal getAmount() {
+        if (amount == null && amountHundredths != SieAmount.NONE) {
+            amount = SieAmount.toBigDecimal(amountHundredths, amountScale);
+        }
         return amount;
     }
 
@@ -93,6 +98,32 @@ public class SieVoucherRow {
      */
     public void setAmount(BigDecimal value) {
         amount = value;
+        amountHundredths = SieAmount.of(value);
+        amountScale = value == null ? 0 : value.scale();
+    }
+
+    /**
+     * Sets the amount as a fixed-point value, without creating a BigDecimal until {@link #getAmount()} is called.
+     * @param hundredths the amount in hundredths
+     * @param scale the number of decimals of the amount, 0 to 2
+     */
+    void setAmount(long hundredths, int scale) {
+        amount = null;
+        amountHundredths = hundredths;
+        amountScale = scale;
+    }
+
+    /**
+     * Returns the amount in hundredths, or {@link SieAmount#NONE} if it is missing or has no
+     * fixed-point representation.
+     */
+    long getAmountHundredths() {
+        return amountHundredths;
+    }
+
+    /** Returns the number of decimals of a fixed-point amount. */
+    int getAmountScale() {
+        return amountScale;
     }
 
     /**
@@ -174,4 +205,20 @@ public class SieVoucherRow {
     public void setQuantity(BigDecimal q) {
         quantity = q;
     }
+
+    /**
+     * Returns a 64-bit hash of the content of this row: token, account number, object numbers,
+     * amount, date, text, quantity and signature. Amounts and quantities are hashed by numeric value.
+     * @see SieVoucher#getFingerprint()
+     */
+    long fingerprint() {
+        long h = SieHash.add(SieHash.SEED, token);
+        h = SieHash.add(h, account == null ? null : account.getNumber());
+        h = SieHash.addObjects(h, objects);
+        h = SieHash.addAmount(h, amountHundredths, amount);
+        h = SieHash.add(h, rowDate);
+        h = SieHash.add(h, text);
+        h = SieHash.addAmount(h, quantity);
+        return SieHash.add(h, createdBy);
+    }
 }
@@ -0,0 +1,129 @@
+/*
+MIT License
+
+Copyright (c) 2015 Johan Idstam
+Modifications by Per Nyfelt Copyright (c) 2016 Alipsa HB
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+
+package alipsa.sieparser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Push based writer for the vouchers of a SIE file, created by
+ * {@link SieDocumentWriter#openVouchers(String)} or {@link SieDocumentWriter#openVouchers(java.io.OutputStream)}
+ * after the header of the document has been written.
+ * <p>
+ * Each voucher is written as soon as it is handed over, so memory use does not grow with the
+ * number of vouchers, e.g. when exporting vouchers read from a database. The #KSUMMA checksum,
+ * if enabled in the {@link WriteOptions}, covers all written vouchers and is written on {@link #close()}.
+ * </p>
+ * The writer must be closed to complete the file, preferably with try-with-resources.
+ */
+public class SieVoucherWriter implements Closeable {
+
+    private final SieDocumentWriter documentWriter;
+    private final SieLineEncoder encoder;
+    private final OutputStream stream;
+    private final boolean closeStream;
+    private long count;
+    private boolean closed;
+
+    SieVoucherWriter(SieDocumentWriter documentWriter, SieLineEncoder encoder, OutputStream stream, boolean closeStream) {
+        this.documentWriter = documentWriter;
+        this.encoder = encoder;
+        this.stream = stream;
+        this.closeStream = closeStream;
+    }
+
+    /**
+     * Writes a voucher.
+     * @param voucher the voucher to write
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalStateException if the writer is closed
+     */
+    public void write(SieVoucher voucher) throws IOException {
+        if (closed) throw new IllegalStateException("The voucher writer is closed");
+        documentWriter.writeVoucherEntry(voucher);
+        count++;
+    }
+
+    /**
+     * Writes all remaining vouchers of an iterator, pulling them one at a time.
+     * @param vouchers the vouchers to write
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeAll(Iterator<? extends SieVoucher> vouchers) throws IOException {
+        while (vouchers.hasNext()) {
+            write(vouchers.next());
+        }
+    }
+
+    /**
+     * Writes all vouchers of a stream in encounter order. The stream is not closed.
+     * @param vouchers the vouchers to write
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeAll(Stream<? extends SieVoucher> vouchers) throws IOException {
+        try {
+            vouchers.forEachOrdered(v -> {
+                try {
+                    write(v);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Returns the number of vouchers written through this writer.
+     * @return the voucher count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Writes the closing #KSUMMA, if enabled, and flushes the output. The file is closed when the
+     * writer was opened on a file name; an output stream is left open. Closing twice has no effect.
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            documentWriter.writeFooter();
+            encoder.flush();
+        } finally {
+            if (closeStream) stream.close();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package alipsa.sieparser;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SieAmountTest {
+
+    @Test
+    public void plainAmountsMatchBigDecimal() {
+        String[] values = {"0", "-0", "100", "-100", "100.5", "100.50", "-0.01", "007.10", "1.", ".5", "-.25",
+            "1234567890123456", "12345678901234.56", " 42.00 "};
+        for (String value : values) {
+            BigDecimal expected = new BigDecimal(value.trim());
+            long hundredths = SieAmount.parse(value);
+            assertNotEquals(SieAmount.NONE, hundredths, value);
+            assertEquals(SieAmount.scale(value), expected.scale(), value);
+            assertEquals(expected, SieAmount.toBigDecimal(hundredths, SieAmount.scale(value)), value);
+            assertEquals(expected.toPlainString(), SieAmount.toString(hundredths, expected.scale()), value);
+            assertEquals(hundredths, SieAmount.of(expected), value);
+
+            ByteBuffer buffer = ByteBuffer.wrap(Encoding.getBytes("x" + value + "x"));
+            assertEquals(hundredths, SieAmount.parse(buffer, 1, buffer.limit() - 1), value);
+            assertEquals(expected.scale(), SieAmount.scale(buffer, 1, buffer.limit() - 1), value);
+        }
+    }
+
+    @Test
+    public void otherAmountsAreNotRepresentable() {
+        String[] values = {"", "-", ".", "1.234", "+1", "1e3", "1,5", "1.2.3", "12345678901234567", "abc"};
+        for (String value : values) {
+            assertEquals(SieAmount.NONE, SieAmount.parse(value), value);
+        }
+        assertEquals(SieAmount.NONE, SieAmount.of(null));
+        assertEquals(SieAmount.NONE, SieAmount.of(new BigDecimal("1.125")));
+        assertEquals(SieAmount.NONE, SieAmount.of(new BigDecimal("1E+3")));
+        assertEquals(SieAmount.NONE, SieAmount.of(new BigDecimal("12345678901234567890")));
+    }
+
+    @Test
+    public void randomAmountsRoundTrip() {
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            BigDecimal value = BigDecimal.valueOf(random.nextLong() % 100_000_000_000L, random.nextInt(3));
+            long hundredths = SieAmount.of(value);
+            assertEquals(value, SieAmount.toBigDecimal(hundredths, value.scale()));
+            assertEquals(value.toPlainString(), SieAmount.toString(hundredths, value.scale()));
+            assertEquals(hundredths, SieAmount.parse(value.toPlainString()));
+        }
+    }
+
+    @Test
+    public void voucherRowKeepsFixedPointAmount() {
+        SieVoucherRow row = new SieVoucherRow();
+        row.setAmount(-123450, 1);
+        assertEquals(new BigDecimal("-1234.5"), row.getAmount());
+        assertEquals(-123450, row.getAmountHundredths());
+
+        row.setAmount(new BigDecimal("0.125"));
+        assertEquals(SieAmount.NONE, row.getAmountHundredths());
+        assertEquals(new BigDecimal("0.125"), row.getAmount());
+
+        row.setAmount(new BigDecimal("10.00"));
+        assertEquals(1000, row.getAmountHundredths());
+        assertEquals(2, row.getAmountScale());
+    }
+}
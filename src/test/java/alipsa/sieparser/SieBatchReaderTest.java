@@ -0,0 +1,136 @@
+package alipsa.sieparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SieBatchReaderTest {
+
+    @Test
+    public void batchMatchesSequentialReads() throws IOException {
+        List<Path> files = TestSieDocument.sampleFiles().map(File::toPath).collect(Collectors.toList());
+        SieBatchReader batch = new SieBatchReader();
+        batch.setConcurrency(3);
+        batch.setReaderFactory(() -> {
+            SieDocumentReader reader = new SieDocumentReader();
+            reader.setThrowErrors(false);
+            return reader;
+        });
+        List<SieBatchResult> results = batch.readAll(files);
+
+        assertEquals(files.size(), results.size());
+        for (int i = 0; i < files.size(); i++) {
+            SieBatchResult result = results.get(i);
+            assertEquals(files.get(i), result.getFile());
+            SieDocumentReader reader = new SieDocumentReader();
+            reader.setThrowErrors(false);
+            SieDocument expected = reader.readDocument(files.get(i).toString());
+            assertEquals(expected == null, result.getDocument() == null, result.toString());
+            if (expected != null) {
+                assertTrue(SieDocumentComparer.compare(expected, result.getDocument()).isEmpty(), result.toString());
+            }
+            assertEquals(reader.getValidationExceptions().size(), result.getValidationExceptions().size(), result.toString());
+            assertNull(result.getFailure(), result.toString());
+            assertNotNull(result.getDuration());
+        }
+    }
+
+    @Test
+    public void failuresStayWithTheirFile(@TempDir Path tempDir) throws IOException {
+        Path valid = tempDir.resolve("valid.se");
+        new SieGenerator().write(valid);
+        Path unbalanced = tempDir.resolve("unbalanced.se");
+        Files.writeString(unbalanced, Files.readString(valid, Encoding.getCharset())
+            .replaceFirst("#TRANS (\\S+) (\\{[^}]*\\}) (-?[0-9.]+)", "#TRANS $1 $2 0.01"), Encoding.getCharset());
+        Path missing = tempDir.resolve("missing.se");
+
+        List<Exception> seen = new ArrayList<>();
+        SieBatchReader batch = new SieBatchReader();
+        batch.setReaderFactory(() -> {
+            SieDocumentReader reader = new SieDocumentReader();
+            reader.getCallbacks().setSieException(e -> {
+                synchronized (seen) {
+                    seen.add(e);
+                }
+            });
+            return reader;
+        });
+        List<SieBatchResult> results = batch.readAll(List.of(valid, unbalanced, missing, valid));
+
+        assertTrue(results.get(0).isSuccess(), results.get(0).toString());
+        assertTrue(results.get(0).getValidationExceptions().isEmpty());
+        assertInstanceOf(SieVoucherMismatchException.class, results.get(1).getFailure());
+        assertNull(results.get(1).getDocument());
+        assertInstanceOf(IOException.class, results.get(2).getFailure());
+        assertTrue(results.get(3).isSuccess(), results.get(3).toString());
+        assertEquals(1, seen.size(), seen.toString());
+    }
+
+    @Test
+    public void readerFactoryFailuresStayWithTheirFile(@TempDir Path tempDir) throws IOException {
+        Path valid = tempDir.resolve("valid.se");
+        new SieGenerator().write(valid);
+        AtomicInteger calls = new AtomicInteger();
+        SieBatchReader batch = new SieBatchReader();
+        batch.setConcurrency(1);
+        batch.setReaderFactory(() -> {
+            if (calls.incrementAndGet() == 2) throw new IllegalStateException("no reader");
+            return new SieDocumentReader();
+        });
+        List<SieBatchResult> results = batch.readAll(List.of(valid, valid, valid));
+
+        assertTrue(results.get(0).isSuccess(), results.get(0).toString());
+        assertInstanceOf(IllegalStateException.class, results.get(1).getFailure());
+        assertNull(results.get(1).getDocument());
+        assertTrue(results.get(1).getValidationExceptions().isEmpty());
+        assertTrue(results.get(2).isSuccess(), results.get(2).toString());
+    }
+
+    @Test
+    public void concurrencyIsBoundedOnAnyExecutor(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("small.se");
+        SieGenerator generator = new SieGenerator();
+        generator.setVouchers(200);
+        generator.write(file);
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 40; i++) files.add(file);
+
+        AtomicInteger started = new AtomicInteger();
+        AtomicInteger consumed = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            SieBatchReader batch = new SieBatchReader();
+            batch.setConcurrency(2);
+            batch.setExecutor(executor);
+            batch.setReaderFactory(() -> {
+                maxInFlight.accumulateAndGet(started.incrementAndGet() - consumed.get(), Math::max);
+                return new SieDocumentReader();
+            });
+            List<SieBatchResult> completed = new ArrayList<>();
+            batch.readAll(files, result -> {
+                consumed.incrementAndGet();
+                completed.add(result);
+            });
+
+            assertEquals(40, completed.size());
+            assertTrue(completed.stream().allMatch(SieBatchResult::isSuccess));
+            assertTrue(maxInFlight.get() <= 2, "max in flight " + maxInFlight.get());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThrows(IllegalArgumentException.class, () -> new SieBatchReader().setConcurrency(0));
+    }
+}
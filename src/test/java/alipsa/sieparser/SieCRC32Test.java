@@ -2,6 +2,14 @@ package alipsa.sieparser;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.zip.CRC32;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -58,4 +66,82 @@ public class SieCRC32Test {
         crc.addData(new SieDataItem("#FLAGGA 0", null, null));
         assertNotEquals(0, crc.checksum());
     }
+
+    @Test
+    public void matchesStandardCrc32() {
+        SieCRC32 crc = new SieCRC32();
+        crc.start();
+        crc.addData(new SieDataItem("#KONTO 1910 \"Kassa\"", null, null));
+        crc.addData(new SieDataItem("#TRANS 1910 {1 \"100\" 6 \"P 1\"} 500", null, null));
+        assertEquals(standardCrc("#KONTO1910Kassa#TRANS191011006P1500"), crc.checksum());
+    }
+
+    @Test
+    public void voucherBracesAreNotIncluded() {
+        SieCRC32 crc = new SieCRC32();
+        crc.start();
+        crc.addData(new SieDataItem("{", null, null));
+        crc.addData(new SieDataItem("#TRANS 1910 {} 500", null, null));
+        crc.addData(new SieDataItem("}", null, null));
+        assertEquals(standardCrc("#TRANS1910500"), crc.checksum());
+    }
+
+    @Test
+    public void escapedAndNonAsciiFieldsMatchCharsetEncoding() {
+        String[] lines = {
+            "#TRANS 1910 {1 \"Å 1\" 6 \"\\\"P\\\"\"} 500 \"Blåbär\"",
+            "#FNAMN \"Fåg\\\"el \u20ac \ud83d\ude00 AB\"",
+            "#OBJEKT 1 \"ÄÖ\" \"{Ü}\""
+        };
+        for (String line : lines) {
+            SieDataItem item = new SieDataItem(line, null, null);
+            CRC32 expected = new CRC32();
+            expected.update(Encoding.getBytes(item.getItemType()));
+            for (String d : item.getData()) {
+                if (d.contains("{") || d.contains("}")) {
+                    d = d.replace("{", "").replace("}", "").replace("\"", "").replace(" ", "").replace("\t", "");
+                }
+                expected.update(Encoding.getBytes(d));
+            }
+
+            SieCRC32 fromString = new SieCRC32();
+            fromString.start();
+            fromString.addData(item);
+            assertEquals(expected.getValue(), fromString.checksum(), line);
+
+            SieTokenizer tokenizer = new SieTokenizer(ByteBuffer.wrap(Encoding.getBytes(line)));
+            assertTrue(tokenizer.next());
+            SieCRC32 fromBytes = new SieCRC32();
+            fromBytes.start();
+            fromBytes.addData(new SieDataItem(tokenizer, null, null));
+            assertEquals(expected.getValue(), fromBytes.checksum(), line);
+        }
+    }
+
+    @Test
+    public void tokenizerItemsGiveSameChecksumAsStringItems() throws IOException {
+        URL url = Thread.currentThread().getContextClassLoader().getResource("samples");
+        assertNotNull(url);
+        for (File f : new File(url.getFile()).listFiles()) {
+            if (!f.isFile()) continue;
+            List<String> lines = Files.readAllLines(f.toPath(), Encoding.getCharset());
+            SieTokenizer tokenizer = new SieTokenizer(ByteBuffer.wrap(Files.readAllBytes(f.toPath())));
+            SieCRC32 fromStrings = new SieCRC32();
+            fromStrings.start();
+            SieCRC32 fromBytes = new SieCRC32();
+            fromBytes.start();
+            for (String line : lines) {
+                assertTrue(tokenizer.next(), f.getName());
+                fromStrings.addData(new SieDataItem(line, null, null));
+                fromBytes.addData(new SieDataItem(tokenizer, null, null));
+                assertEquals(fromStrings.checksum(), fromBytes.checksum(), f.getName() + ": " + line);
+            }
+        }
+    }
+
+    private static long standardCrc(String text) {
+        CRC32 crc = new CRC32();
+        crc.update(Encoding.getBytes(text));
+        return crc.getValue();
+    }
 }
@@ -0,0 +1,153 @@
+package alipsa.sieparser;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SieColumnarVoucherListTest {
+
+    @Test
+    public void columnarVouchersMatchSampleFiles() throws IOException {
+        for (File sample : (Iterable<File>) TestSieDocument.sampleFiles()::iterator) {
+            SieDocumentReader objectReader = new SieDocumentReader();
+            objectReader.setThrowErrors(false);
+            SieDocument expected = objectReader.readDocument(sample.getAbsolutePath());
+
+            SieDocumentReader columnarReader = new SieDocumentReader();
+            columnarReader.setThrowErrors(false);
+            columnarReader.setColumnarVouchers(true);
+            SieDocument actual = columnarReader.readDocument(sample.getAbsolutePath());
+            if (expected == null) {
+                assertNull(actual, sample.getName());
+                continue;
+            }
+
+            assertInstanceOf(SieColumnarVoucherList.class, actual.getVER());
+            assertEquals(expected.getVER().size(), actual.getVER().size(), sample.getName());
+            for (int i = 0; i < expected.getVER().size(); i++) {
+                assertVoucherEquals(expected.getVER().get(i), actual.getVER().get(i), sample.getName());
+            }
+            assertTrue(SieDocumentComparer.compare(expected, actual).isEmpty(), sample.getName());
+        }
+    }
+
+    @Test
+    public void unusualValuesRoundTrip() {
+        SieAccount account = new SieAccount("1910");
+        SieObject object = new SieObject(new SieDimension("1"), "10", "Ett");
+
+        SieVoucher v = new SieVoucher();
+        v.setSeries("A");
+        v.setNumber("1");
+        v.setToken(SIE.VER);
+        v.getRows().add(row(account, new BigDecimal("100"), null, null));
+        v.getRows().add(row(account, new BigDecimal("-0.5"), new BigDecimal("1.000"), new ArrayList<>()));
+        v.getRows().add(row(account, new BigDecimal("12345678901234567890.12"), new BigDecimal("2"), List.of(object, object)));
+        v.getRows().add(row(null, new BigDecimal("1.125"), null, List.of(object)));
+        v.getRows().add(row(account, new BigDecimal("1E+3"), null, null));
+        v.getRows().add(row(account, null, new BigDecimal("-7.25"), null));
+        v.getRows().get(0).setRowDate(LocalDate.of(2024, 2, 29));
+        v.getRows().get(1).setToken(SIE.BTRANS);
+        v.getRows().get(2).setToken("#CUSTOM");
+
+        SieColumnarVoucherList list = new SieColumnarVoucherList();
+        list.add(new SieVoucher());
+        list.add(v);
+        assertEquals(2, list.size());
+        assertEquals(6, list.getRowCount());
+        assertVoucherEquals(new SieVoucher(), list.get(0), "empty voucher");
+        assertVoucherEquals(v, list.get(1), "unusual values");
+        assertSame(account, list.get(1).getRows().get(0).getAccount());
+        assertSame(object, list.get(1).getRows().get(2).getObjects().get(1));
+        assertNotSame(list.get(1), list.get(1));
+    }
+
+    @Test
+    public void vouchersCanOnlyBeAppended() {
+        SieColumnarVoucherList list = new SieColumnarVoucherList();
+        list.add(new SieVoucher());
+        assertThrows(UnsupportedOperationException.class, () -> list.add(0, new SieVoucher()));
+        assertThrows(UnsupportedOperationException.class, () -> list.set(0, new SieVoucher()));
+        assertThrows(UnsupportedOperationException.class, () -> list.remove(0));
+        list.clear();
+        assertTrue(list.isEmpty());
+        assertEquals(0, list.getRowCount());
+    }
+
+    @Test
+    public void clearReleasesStrings() throws ReflectiveOperationException {
+        SieColumnarVoucherList list = new SieColumnarVoucherList();
+        SieVoucher v = new SieVoucher();
+        v.setSeries("A");
+        v.setNumber("1");
+        v.setText("text");
+        v.getRows().add(row(new SieAccount("1910"), BigDecimal.ONE, null, null));
+        list.add(v);
+        list.clear();
+        for (String column : new String[] {"series", "number", "text", "token", "rowText", "rowCreatedBy"}) {
+            Field field = SieColumnarVoucherList.class.getDeclaredField(column);
+            field.setAccessible(true);
+            for (Object value : (Object[]) field.get(list)) {
+                assertNull(value, column);
+            }
+        }
+        list.add(v);
+        assertVoucherEquals(v, list.get(0), "after clear");
+    }
+
+    private static SieVoucherRow row(SieAccount account, BigDecimal amount, BigDecimal quantity, List<SieObject> objects) {
+        SieVoucherRow row = new SieVoucherRow();
+        row.setAccount(account);
+        row.setAmount(amount);
+        row.setQuantity(quantity);
+        row.setObjects(objects);
+        row.setText("text");
+        row.setToken(SIE.TRANS);
+        return row;
+    }
+
+    private static void assertVoucherEquals(SieVoucher expected, SieVoucher actual, String message) {
+        assertEquals(expected.getSeries(), actual.getSeries(), message);
+        assertEquals(expected.getNumber(), actual.getNumber(), message);
+        assertEquals(expected.getVoucherDate(), actual.getVoucherDate(), message);
+        assertEquals(expected.getText(), actual.getText(), message);
+        assertEquals(expected.getCreatedDate(), actual.getCreatedDate(), message);
+        assertEquals(expected.getCreatedBy(), actual.getCreatedBy(), message);
+        assertEquals(expected.getToken(), actual.getToken(), message);
+        assertEquals(expected.getRows().size(), actual.getRows().size(), message);
+        for (int i = 0; i < expected.getRows().size(); i++) {
+            SieVoucherRow e = expected.getRows().get(i);
+            SieVoucherRow a = actual.getRows().get(i);
+            String rowMessage = message + " row " + i;
+            assertEquals(number(e.getAccount()), number(a.getAccount()), rowMessage);
+            assertEquals(e.getAmount(), a.getAmount(), rowMessage);
+            assertEquals(e.getQuantity(), a.getQuantity(), rowMessage);
+            assertEquals(e.getRowDate(), a.getRowDate(), rowMessage);
+            assertEquals(e.getText(), a.getText(), rowMessage);
+            assertEquals(e.getCreatedBy(), a.getCreatedBy(), rowMessage);
+            assertEquals(e.getToken(), a.getToken(), rowMessage);
+            assertEquals(describe(e.getObjects()), describe(a.getObjects()), rowMessage);
+        }
+    }
+
+    private static String number(SieAccount account) {
+        return account == null ? null : account.getNumber();
+    }
+
+    private static String describe(List<SieObject> objects) {
+        if (objects == null) return "null";
+        StringBuilder sb = new StringBuilder();
+        for (SieObject o : objects) {
+            sb.append(o.getDimension().getNumber()).append('=').append(o.getNumber()).append(' ');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,64 @@
+package alipsa.sieparser;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SieDateTest {
+
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    @Test
+    public void everyDayMatchesLocalDate() {
+        for (LocalDate date = LocalDate.of(1899, 12, 1); date.getYear() < 2101; date = date.plusDays(1)) {
+            String text = date.format(FORMAT);
+            assertEquals(date.toEpochDay(), SieDate.parse(text), text);
+            ByteBuffer buffer = ByteBuffer.wrap(Encoding.getBytes("\"" + text + "\""));
+            assertEquals(date.toEpochDay(), SieDate.parse(buffer, 1, buffer.limit() - 1), text);
+            assertEquals(date, SieDate.toLocalDate(SieDate.parse(text)), text);
+            assertEquals(text, SieDate.toString(date), text);
+        }
+        assertEquals(LocalDate.of(0, 1, 1).toEpochDay(), SieDate.parse("00000101"));
+        assertEquals(LocalDate.of(9999, 12, 31).toEpochDay(), SieDate.parse(" 99991231\t"));
+    }
+
+    @Test
+    public void invalidDatesAreRejected() {
+        String[] values = {"20230229", "20241301", "20240001", "20240100", "20240431", "2024011", "202401011",
+            "2024-1-1", "abcdefgh", "+0240101"};
+        for (String value : values) {
+            assertEquals(SieDate.NONE, SieDate.parse(value), value);
+        }
+        assertEquals(SieDate.EMPTY, SieDate.parse(""));
+        assertEquals(SieDate.EMPTY, SieDate.parse("  "));
+        assertEquals(SieDate.EMPTY, SieDate.parse(ByteBuffer.wrap(Encoding.getBytes("\"\"")), 1, 1));
+    }
+
+    @Test
+    public void recentDatesAreShared() {
+        int epochDay = SieDate.parse("20240315");
+        assertSame(SieDate.toLocalDate(epochDay), SieDate.toLocalDate(epochDay));
+        LocalDate date = LocalDate.of(2024, 3, 16);
+        assertSame(SieDate.toString(date), SieDate.toString(LocalDate.of(2024, 3, 16)));
+        assertEquals("+100000101", SieDate.toString(LocalDate.of(10000, 1, 1)));
+    }
+
+    @Test
+    public void readerReportsInvalidDates() {
+        SieDocumentReader reader = new SieDocumentReader();
+        reader.setThrowErrors(false);
+        StringBuilder errors = new StringBuilder();
+        reader.getCallbacks().setSieException(e -> errors.append(e.getMessage()).append('\n'));
+        SieDocument doc = reader.readDocument(ByteBuffer.wrap(Encoding.getBytes(
+            "#FLAGGA 0\n#FORMAT PC8\n#GEN 20240101\n#SIETYP 4\n#RAR 0 20240101 20241231\n#OMFATTN \"20241231\"\n"
+                + "#VER A 1 20240230 \"\"\n{\n#TRANS 1910 {} 100 \"\"\n#TRANS 3010 {} -100 20240105\n}\n")));
+
+        assertEquals(LocalDate.of(2024, 12, 31), doc.getOMFATTN());
+        assertTrue(errors.toString().contains("20240230 is not a valid date"), errors.toString());
+        assertEquals(LocalDate.of(2024, 1, 5), doc.getVER().get(0).getRows().get(1).getRowDate());
+    }
+}
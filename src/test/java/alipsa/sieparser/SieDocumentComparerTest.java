@@ -4,7 +4,9 @@ import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -102,6 +104,234 @@ public class SieDocumentComparerTest {
         assertTrue(diffs.stream().anyMatch(d -> d.contains("OMFATTN")));
     }
 
+    @Test
+    public void amountsAreComparedNumerically() {
+        SieDocument a = createDoc();
+        SieDocument b = createDoc();
+        a.getVER().add(createVoucher("A", "1", "100"));
+        b.getVER().add(createVoucher("A", "1", "1E+2"));
+        a.getIB().add(createBalance("1910", "250.5"));
+        b.getIB().add(createBalance("1910", "250.500"));
+        assertTrue(SieDocumentComparer.compare(a, b).isEmpty());
+
+        b.getIB().get(0).setAmount(new BigDecimal("250.51"));
+        List<String> diffs = SieDocumentComparer.compare(a, b);
+        assertEquals(2, diffs.size(), diffs.toString());
+        assertTrue(diffs.get(0).startsWith("IB differs") && diffs.get(0).endsWith("Second: Account=1910, Year=0, Period=0"));
+    }
+
+    @Test
+    public void rowQuantitiesAreComparedNumerically() {
+        SieDocument a = createDoc();
+        SieDocument b = createDoc();
+        a.getVER().add(createVoucher("A", "1", "100"));
+        b.getVER().add(createVoucher("A", "1", "100"));
+        a.getVER().get(0).getRows().get(0).setQuantity(new BigDecimal("1.0"));
+        b.getVER().get(0).getRows().get(0).setQuantity(new BigDecimal("1.00"));
+        assertTrue(SieDocumentComparer.compare(a, b).isEmpty());
+        assertTrue(SieDocumentComparer.isEqual(a, b));
+
+        b.getVER().get(0).getRows().get(0).setQuantity(new BigDecimal("1.01"));
+        List<String> diffs = SieDocumentComparer.compare(a, b);
+        assertEquals(2, diffs.size(), diffs.toString());
+    }
+
+    @Test
+    public void rowsOfLargeVouchersMatchInAnyOrder() {
+        SieDocument a = createDoc();
+        SieDocument b = createDoc();
+        SieVoucher vA = createVoucher("A", "1", "0");
+        SieVoucher vB = createVoucher("A", "1", "0");
+        for (int i = 1; i <= 50; i++) {
+            vA.getRows().add(createVoucher("A", "1", String.valueOf(i)).getRows().get(0));
+            vB.getRows().add(1, createVoucher("A", "1", String.valueOf(i) + ".00").getRows().get(0));
+        }
+        a.getVER().add(vA);
+        b.getVER().add(vB);
+        assertTrue(SieDocumentComparer.compare(a, b).isEmpty());
+
+        vB.getRows().get(10).setAmount(new BigDecimal("1000"));
+        List<String> diffs = SieDocumentComparer.compare(a, b);
+        assertEquals(List.of("Vouchers differs Series, Number not found or different in Second: A, 1",
+            "Vouchers differs Series, Number not found or different in First: A, 1"), diffs);
+    }
+
+    @Test
+    public void vouchersAreMatchedRegardlessOfOrder() {
+        SieDocument a = createDoc();
+        SieDocument b = createDoc();
+        for (int i = 1; i <= 1000; i++) {
+            a.getVER().add(createVoucher("A", String.valueOf(i), "100"));
+            b.getVER().add(0, createVoucher("A", String.valueOf(i), "100"));
+        }
+        b.getVER().add(createVoucher("B", "1", "100"));
+        assertEquals(List.of("Vouchers differs Series, Number not found or different in First: B, 1"),
+            SieDocumentComparer.compare(a, b));
+    }
+
+    @Test
+    public void parallelComparisonMatchesSequential() {
+        SieDocument a = createDoc();
+        SieDocument b = createDoc();
+        int count = 3 * SieDocumentComparer.SHARD_SIZE + 100;
+        for (int i = 0; i < count; i++) {
+            a.getVER().add(createVoucher("A", String.valueOf(i), "100"));
+            b.getVER().add(createVoucher("A", String.valueOf(i), i % 1000 == 7 ? "101" : "100"));
+            a.getUB().add(createBalance(String.valueOf(1000 + i), "5"));
+            b.getUB().add(createBalance(String.valueOf(1000 + i), i % 999 == 0 ? "6" : "5.00"));
+        }
+        List<String> expected = SieDocumentComparer.compare(a, b);
+        assertEquals(2 * (count / 1000 + 1) + 2 * (count / 999 + 1), expected.size());
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(expected, SieDocumentComparer.compare(a, b, pool));
+            List<String> sequential = new ArrayList<>();
+            SieDocumentComparer comparer = new SieDocumentComparer();
+            comparer.setListener(d -> sequential.add(d.getKind() + " " + d.getKey()));
+            assertEquals(expected.size() / 2, comparer.compareDocuments(a, b));
+            List<String> parallel = new ArrayList<>();
+            comparer.setPool(pool);
+            comparer.setListener(d -> parallel.add(d.getKind() + " " + d.getKey()));
+            comparer.compareDocuments(a, b);
+            assertEquals(sequential, parallel);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(expected, SieDocumentComparer.compareParallel(a, b));
+    }
+
+    @Test
+    public void differencesAreReportedAsStructuredRecords() {
+        SieDocument a = createDoc();
+        SieDocument b = createDoc();
+        a.getKONTO().put("1910", new SieAccount("1910", "Kassa"));
+        a.getVER().add(createVoucher("A", "1", "100"));
+        a.getVER().add(createVoucher("A", "2", "100"));
+        b.getVER().add(createVoucher("A", "1", "150"));
+        b.getVER().add(createVoucher("A", "3", "100"));
+        SieVoucherRow shared = createVoucher("A", "1", "-5").getRows().get(0);
+        a.getVER().get(0).getRows().add(shared);
+        b.getVER().get(0).getRows().add(0, shared);
+        a.getIB().add(createBalance("1910", "10"));
+        b.getIB().add(createBalance("1910", "12"));
+
+        List<SieDifference> differences = new ArrayList<>();
+        SieDocumentComparer comparer = new SieDocumentComparer();
+        comparer.setListener(differences::add);
+        assertEquals(5, comparer.compareDocuments(a, b));
+
+        SieDifference ib = differences.get(0);
+        assertEquals(SieDifference.Kind.CHANGED, ib.getKind());
+        assertEquals(SIE.IB, ib.getRecordType());
+        assertEquals("1910 0 0", ib.getKey());
+        assertEquals("Amount", ib.getField());
+        assertEquals(new BigDecimal("10"), ib.getOldValue());
+        assertEquals(new BigDecimal("12"), ib.getNewValue());
+
+        SieDifference konto = differences.get(1);
+        assertEquals(SieDifference.Kind.REMOVED, konto.getKind());
+        assertEquals("1910", konto.getKey());
+        assertSame(a.getKONTO().get("1910"), konto.getOldValue());
+        assertNull(konto.getNewValue());
+
+        SieDifference changed = differences.get(2);
+        assertEquals(SieDifference.Kind.CHANGED, changed.getKind());
+        assertEquals(SIE.VER, changed.getRecordType());
+        assertEquals("A 1", changed.getKey());
+        assertEquals("Rows", changed.getField());
+        assertEquals(List.of(a.getVER().get(0).getRows().get(0)), changed.getOldValue());
+        assertEquals(List.of(b.getVER().get(0).getRows().get(1)), changed.getNewValue());
+
+        assertEquals(SieDifference.Kind.REMOVED, differences.get(3).getKind());
+        assertEquals("A 2", differences.get(3).getKey());
+        assertEquals(SieDifference.Kind.ADDED, differences.get(4).getKind());
+        assertEquals("A 3", differences.get(4).getKey());
+        assertSame(b.getVER().get(1), differences.get(4).getNewValue());
+
+        List<String> descriptions = SieDocumentComparer.compare(a, b);
+        assertEquals(7, descriptions.size(), "changed records are described from both documents");
+        assertTrue(descriptions.containsAll(differences.stream().map(SieDifference::getMessage).toList()));
+    }
+
+    @Test
+    public void changedAccountsDimensionsAndYearsAreReportedOnce() {
+        SieDocument a = createDoc();
+        SieDocument b = createDoc();
+        a.getKONTO().put("1910", new SieAccount("1910", "Kassa"));
+        b.getKONTO().put("1910", new SieAccount("1910", "Kassan"));
+        a.getDIM().put("1", new SieDimension("1", "KS"));
+        b.getDIM().put("1", new SieDimension("1", "Kostnadsställe"));
+        a.getRars().put(0, bookingYear(0, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31)));
+        b.getRars().put(0, bookingYear(0, LocalDate.of(2024, 2, 1), LocalDate.of(2024, 12, 31)));
+        // a start only in the second document is only seen from that document
+        a.getRars().put(-1, bookingYear(-1, null, null));
+        b.getRars().put(-1, bookingYear(-1, LocalDate.of(2023, 1, 1), null));
+
+        List<SieDifference> differences = new ArrayList<>();
+        SieDocumentComparer comparer = new SieDocumentComparer();
+        comparer.setListener(differences::add);
+        assertEquals(4, comparer.compareDocuments(a, b), differences.toString());
+        List<String> changes = differences.stream()
+            .map(d -> d.getKind() + " " + d.getRecordType() + " " + d.getKey() + " " + d.getField()
+                + " " + d.getOldValue() + " -> " + d.getNewValue())
+            .toList();
+        assertEquals(List.of(
+            "CHANGED #DIM 1 Name KS -> Kostnadsställe",
+            "CHANGED #KONTO 1910 Name Kassa -> Kassan",
+            "CHANGED #RAR 0 Start 2024-01-01 -> 2024-02-01",
+            "CHANGED #RAR -1 Start null -> 2023-01-01"), changes);
+
+        assertEquals(7, SieDocumentComparer.compare(a, b).size(), "changed records are described from both documents");
+    }
+
+    @Test
+    public void comparisonStopsAtMaxDifferences() {
+        SieDocument a = createDoc();
+        SieDocument b = createDoc();
+        for (int i = 0; i < 3 * SieDocumentComparer.SHARD_SIZE; i++) {
+            a.getVER().add(createVoucher("A", String.valueOf(i), "100"));
+            b.getVER().add(createVoucher("A", String.valueOf(i), i % 2 == 0 ? "100" : "200"));
+        }
+        List<String> all = SieDocumentComparer.compare(a, b);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (ForkJoinPool p : new ForkJoinPool[] {null, pool}) {
+                List<String> first = new ArrayList<>();
+                SieDocumentComparer comparer = new SieDocumentComparer();
+                comparer.setPool(p);
+                comparer.setMaxDifferences(5);
+                comparer.setListener(d -> first.add(d.getMessage()));
+                assertEquals(5, comparer.compareDocuments(a, b));
+                assertEquals(all.subList(0, 5), first);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertFalse(SieDocumentComparer.isEqual(a, b));
+        assertTrue(SieDocumentComparer.isEqual(a, a));
+        assertThrows(IllegalArgumentException.class, () -> new SieDocumentComparer().setMaxDifferences(0));
+    }
+
+    private SiePeriodValue createBalance(String account, String amount) {
+        SiePeriodValue balance = new SiePeriodValue();
+        balance.setAccount(new SieAccount(account));
+        balance.setAmount(new BigDecimal(amount));
+        balance.setQuantity(BigDecimal.ZERO);
+        balance.setToken("#IB");
+        return balance;
+    }
+
+    private static SieBookingYear bookingYear(int id, LocalDate start, LocalDate end) {
+        SieBookingYear year = new SieBookingYear();
+        year.setId(id);
+        year.setStart(start);
+        year.setEnd(end);
+        return year;
+    }
+
     private SieDocument createDoc() {
         SieDocument doc = new SieDocument();
         doc.setFLAGGA(0);
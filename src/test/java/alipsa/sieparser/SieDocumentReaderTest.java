@@ -7,11 +7,13 @@ import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -493,4 +495,324 @@ public class SieDocumentReaderTest {
                 .noneMatch(e -> e.getMessage().contains("ORGNR")),
                 "Should not warn about valid ORGNR format");
     }
+
+    @Test
+    public void readFromByteBufferMatchesFile() throws IOException {
+        URL url = Thread.currentThread().getContextClassLoader().getResource("samples/3_BL0001_typ4.SE");
+        assertNotNull(url);
+        Path path = new File(url.getFile()).toPath();
+
+        SieDocument fromFile = new SieDocumentReader().readDocument(path.toString());
+        SieDocumentReader reader = new SieDocumentReader();
+        SieDocument fromBuffer = reader.readDocument(ByteBuffer.wrap(Files.readAllBytes(path)));
+
+        assertNotNull(fromBuffer);
+        assertTrue(reader.getParsingLineNumber() > 0, "Line number should be tracked");
+        List<String> diffs = SieDocumentComparer.compare(fromFile, fromBuffer);
+        assertTrue(diffs.isEmpty(), "Buffer and file parsing should agree: " + diffs);
+    }
+
+    @Test
+    public void readFromByteBufferRejectsInvalidContent() {
+        ByteBuffer buffer = ByteBuffer.wrap(Encoding.getBytes("This is not a SIE file\n"));
+        SieDocumentReader reader = new SieDocumentReader();
+        assertThrows(SieInvalidFileException.class, () -> reader.readDocument(buffer));
+    }
+
+    @Test
+    public void memoryMappedMatchesBufferedReading() throws IOException {
+        for (String sample : List.of("samples/3_BL0001_typ4.SE", "samples/8_Test4.SE")) {
+            URL url = Thread.currentThread().getContextClassLoader().getResource(sample);
+            assertNotNull(url);
+            String fileName = new File(url.getFile()).getAbsolutePath();
+
+            SieDocument buffered = new SieDocumentReader().readDocument(fileName);
+            SieDocumentReader reader = new SieDocumentReader();
+            reader.setMemoryMapped(true);
+            SieDocument mapped = reader.readDocument(fileName);
+
+            assertNotNull(mapped);
+            List<String> diffs = SieDocumentComparer.compare(buffered, mapped);
+            assertTrue(diffs.isEmpty(), sample + " should read the same when memory mapped: " + diffs);
+        }
+    }
+
+    @Test
+    public void checksumVerifiedInEveryReadMode() throws IOException {
+        for (String sample : List.of("samples/42_sie2.se", "samples/44_sie4.se")) {
+            URL url = Thread.currentThread().getContextClassLoader().getResource(sample);
+            assertNotNull(url);
+            String fileName = new File(url.getFile()).getAbsolutePath();
+            for (int mode = 0; mode < 3; mode++) {
+                SieDocumentReader reader = new SieDocumentReader();
+                reader.setMemoryMapped(mode == 1);
+                reader.setParallel(mode == 2);
+                SieDocument doc = reader.readDocument(fileName);
+                assertNotEquals(0, doc.getKSUMMA(), sample);
+                assertTrue(reader.getValidationExceptions().isEmpty(), sample + ": " + reader.getValidationExceptions());
+            }
+        }
+    }
+
+    @Test
+    public void memoryMappedAcrossSmallWindows(@TempDir Path tempDir) throws IOException {
+        URL url = Thread.currentThread().getContextClassLoader().getResource("samples/8_Test4.SE");
+        assertNotNull(url);
+        // Use CRLF line endings so that some window boundaries fall between \r and \n
+        String content = Files.readString(new File(url.getFile()).toPath(), Encoding.getCharset())
+                .replace("\r\n", "\n").replace("\n", "\r\n");
+        Path sieFile = tempDir.resolve("crlf.se");
+        Files.writeString(sieFile, content, Encoding.getCharset());
+
+        SieDocumentReader buffered = new SieDocumentReader();
+        SieDocument expected = buffered.readDocument(sieFile.toString());
+        for (int window : new int[] {7, 64, 101}) {
+            SieDocumentReader reader = new SieDocumentReader();
+            reader.setMemoryMapped(true);
+            reader.setMapWindowSize(window);
+            SieDocument mapped = reader.readDocument(sieFile.toString());
+            assertNotNull(mapped);
+            assertEquals(buffered.getParsingLineNumber(), reader.getParsingLineNumber(), "window " + window);
+            List<String> diffs = SieDocumentComparer.compare(expected, mapped);
+            assertTrue(diffs.isEmpty(), "window " + window + ": " + diffs);
+        }
+    }
+
+    @Test
+    public void memoryMappedEmptyFile(@TempDir Path tempDir) throws IOException {
+        Path sieFile = tempDir.resolve("empty.se");
+        Files.writeString(sieFile, "");
+        SieDocumentReader reader = new SieDocumentReader();
+        reader.setMemoryMapped(true);
+        reader.setThrowErrors(false);
+        SieDocument doc = reader.readDocument(sieFile.toString());
+        assertNotNull(doc);
+        assertEquals(0, reader.getParsingLineNumber());
+    }
+
+    @Test
+    public void parallelMatchesSequentialReading() throws IOException {
+        for (String sample : List.of("samples/8_Test4.SE", "samples/9_sie-gruppen-e-conomic.se", "samples/23_Sie4.si")) {
+            URL url = Thread.currentThread().getContextClassLoader().getResource(sample);
+            assertNotNull(url);
+            String fileName = new File(url.getFile()).getAbsolutePath();
+
+            SieDocumentReader sequential = new SieDocumentReader();
+            sequential.setThrowErrors(false);
+            List<String> expectedVouchers = new ArrayList<>();
+            sequential.getCallbacks().setVER(v -> expectedVouchers.add(v.getSeries() + v.getNumber()));
+            SieDocument expected = sequential.readDocument(fileName);
+
+            SieDocumentReader parallel = new SieDocumentReader();
+            parallel.setThrowErrors(false);
+            parallel.setParallel(true);
+            parallel.setParallelChunkSize(256);
+            List<String> vouchers = new ArrayList<>();
+            parallel.getCallbacks().setVER(v -> vouchers.add(v.getSeries() + v.getNumber()));
+            SieDocument actual = parallel.readDocument(fileName);
+
+            assertNotNull(actual);
+            assertEquals(expectedVouchers, vouchers, sample + ": vouchers should be closed in file order");
+            assertEquals(sequential.getParsingLineNumber(), parallel.getParsingLineNumber());
+            assertEquals(sequential.getValidationWarnings().size(), parallel.getValidationWarnings().size());
+            List<String> diffs = SieDocumentComparer.compare(expected, actual);
+            assertTrue(diffs.isEmpty(), sample + ": " + diffs);
+        }
+    }
+
+    @Test
+    public void parallelKeepsVoucherChecks(@TempDir Path tempDir) throws IOException {
+        StringBuilder content = new StringBuilder("#FLAGGA 0\n#SIETYP 4\n#GEN 20230101\n#KONTO 1910 \"Kassa\"\n");
+        for (int i = 1; i <= 50; i++) {
+            // Voucher 40 is out of order and voucher 45 does not balance
+            int number = i == 40 ? 1 : i;
+            String amount = i == 45 ? "99" : "100";
+            content.append("#VER A ").append(number).append(" 20230105 \"\"\n{\n")
+                    .append("#TRANS 1910 {} 100\n#TRANS 1910 {} -").append(amount).append("\n}\n");
+        }
+        Path sieFile = tempDir.resolve("checks.se");
+        Files.writeString(sieFile, content.toString(), Encoding.getCharset());
+
+        SieDocumentReader reader = new SieDocumentReader();
+        reader.setParallel(true);
+        reader.setParallelChunkSize(64);
+        reader.setThrowErrors(false);
+        List<Exception> errors = new ArrayList<>();
+        reader.getCallbacks().setSieException(errors::add);
+        SieDocument doc = reader.readDocument(sieFile.toString());
+
+        assertEquals(50, doc.getVER().size());
+        assertEquals("39", doc.getVER().get(38).getNumber(), "Vouchers should be in file order");
+        assertEquals("1", doc.getVER().get(39).getNumber(), "Vouchers should be in file order");
+        assertEquals(1, errors.stream().filter(e -> e instanceof SieVoucherMismatchException).count());
+        assertTrue(errors.get(0).getMessage().startsWith("A.45"));
+        assertTrue(reader.getValidationWarnings().stream()
+                .anyMatch(w -> w.getMessage().contains("is not in ascending order")));
+
+        SieDocumentReader throwing = new SieDocumentReader();
+        throwing.setParallel(true);
+        throwing.setParallelChunkSize(64);
+        assertThrows(SieVoucherMismatchException.class, () -> throwing.readDocument(sieFile.toString()));
+    }
+
+    @Test
+    public void parallelMatchesSequentialForUnusualVouchers(@TempDir Path tempDir) throws IOException {
+        String content = "#FLAGGA 0\n#KSUMMA\n#PROGRAM \"x\" 1\n#FORMAT PC8\n#GEN 20230101\n#SIETYP 4\n"
+                + "#KONTO 1910 \"Kassa\"\n#DIM 1 \"KS\"\n#OBJEKT 1 10 \"Tio\"\n"
+                // built by the workers: quoted keys, a new dimension, an #RTRANS mirror and a #BTRANS
+                + "#VER A 1 20230105 \"t\" 20230106 \"me\"\n{\n#TRANS 1910 {1 10} 100 20230107 \"r\" 2.5 \"u\"\n"
+                + "#TRANS \"2640\" {\"1\" \"11\" 6 \"x\"} -100\n}\n"
+                + "#VER A 2 20230105\n{\n#RTRANS 1930 {} 50\n#TRANS 1930 {} 50\n#BTRANS 1940 {} 7\n#TRANS 1950 {} -50\n}\n"
+                // parsed one line at a time: an invalid date, excess decimals, a missing date and a missing brace
+                + "#VER A 3 2023010X\n{\n#TRANS 1910 {} 1\n#TRANS 1910 {} -1\n}\n"
+                + "#VER A 4 20230105\n{\n#TRANS 1910 {} 1.005\n#TRANS 1910 {} -1.005\n}\n"
+                + "#VER A 5\n{\n#TRANS 1910 {} 1\n#TRANS 1910 {} -1\n}\n"
+                + "#VER A 6 20230105\n#TRANS 1910 {} 1\n"
+                + "#VER A 7 20230105\n{\n#TRANS 3000 {} 5\n#TRANS 1910 {} -5\n}\n"
+                + "#KSUMMA 1\n";
+        Path sieFile = tempDir.resolve("unusual.se");
+        Files.writeString(sieFile, content, Encoding.getCharset());
+
+        for (int chunkSize : new int[] {1, 60, 1 << 20}) {
+            SieDocumentReader sequential = new SieDocumentReader();
+            sequential.setThrowErrors(false);
+            List<String> expectedEvents = new ArrayList<>();
+            sequential.getCallbacks().setSieException(e -> expectedEvents.add(e.getClass().getSimpleName()));
+            sequential.getCallbacks().setVER(v -> expectedEvents.add(v.getSeries() + v.getNumber()));
+            SieDocument expected = sequential.readDocument(sieFile.toString());
+
+            SieDocumentReader parallel = new SieDocumentReader();
+            parallel.setThrowErrors(false);
+            parallel.setParallel(true);
+            parallel.setParallelChunkSize(chunkSize);
+            List<String> events = new ArrayList<>();
+            parallel.getCallbacks().setSieException(e -> events.add(e.getClass().getSimpleName()));
+            parallel.getCallbacks().setVER(v -> events.add(v.getSeries() + v.getNumber()));
+            SieDocument actual = parallel.readDocument(sieFile.toString());
+
+            assertEquals(expectedEvents, events, "chunk size " + chunkSize);
+            assertEquals(sequential.getParsingLineNumber(), parallel.getParsingLineNumber());
+            assertEquals(sequential.getValidationWarnings().toString(), parallel.getValidationWarnings().toString());
+            assertEquals(sequential.getValidationExceptions().toString(), parallel.getValidationExceptions().toString());
+            assertEquals(new ArrayList<>(expected.getKONTO().keySet()), new ArrayList<>(actual.getKONTO().keySet()));
+            assertEquals(expected.getDIM().get("6").getObjects().keySet(), actual.getDIM().get("6").getObjects().keySet());
+            assertSame(actual.getKONTO().get("2640"), actual.getVER().get(0).getRows().get(1).getAccount());
+            assertEquals(3, actual.getVER().get(1).getRows().size(), "the #RTRANS mirror row should be skipped");
+            List<String> diffs = SieDocumentComparer.compare(expected, actual);
+            assertTrue(diffs.isEmpty(), "chunk size " + chunkSize + ": " + diffs);
+        }
+    }
+
+    @Test
+    public void readerCanBeReused(@TempDir Path tempDir) throws IOException {
+        Path invalid = tempDir.resolve("invalid.se");
+        Files.writeString(invalid, "This is not a SIE file\n");
+        List<File> samples = new ArrayList<>();
+        TestSieDocument.sampleFiles().forEach(samples::add);
+
+        SieDocumentReader reused = new SieDocumentReader();
+        reused.setThrowErrors(false);
+        assertNull(reused.readDocument(invalid.toString()));
+        List<Exception> invalidExceptions = reused.getValidationExceptions();
+        for (File sample : samples) {
+            SieDocumentReader fresh = new SieDocumentReader();
+            fresh.setThrowErrors(false);
+            SieDocument expected = fresh.readDocument(sample.getAbsolutePath());
+            SieDocument actual = reused.readDocument(sample.getAbsolutePath());
+            assertEquals(expected == null, actual == null, sample.getName());
+            if (expected != null) {
+                assertTrue(SieDocumentComparer.compare(expected, actual).isEmpty(), sample.getName());
+            }
+            assertEquals(fresh.getValidationExceptions().size(), reused.getValidationExceptions().size(), sample.getName());
+            assertEquals(fresh.getValidationWarnings().size(), reused.getValidationWarnings().size(), sample.getName());
+            assertEquals(fresh.getCRC().checksum(), reused.getCRC().checksum(), sample.getName());
+        }
+        assertNotSame(invalidExceptions, reused.getValidationExceptions());
+
+        reused.reset();
+        assertEquals(0, reused.getParsingLineNumber());
+        assertTrue(reused.getValidationExceptions().isEmpty());
+        assertFalse(reused.getCRC().isStarted());
+    }
+
+    @Test
+    public void exceptionCallbackIsNotWrapped(@TempDir Path tempDir) throws IOException {
+        Path invalid = tempDir.resolve("invalid.se");
+        Files.writeString(invalid, "This is not a SIE file\n");
+        AtomicInteger calls = new AtomicInteger();
+        java.util.function.Consumer<Exception> handler = e -> calls.incrementAndGet();
+
+        SieDocumentReader reader = new SieDocumentReader();
+        reader.getCallbacks().setSieException(handler);
+        for (int i = 1; i <= 3; i++) {
+            assertThrows(SieInvalidFileException.class, () -> reader.readDocument(invalid.toString()));
+            assertEquals(i, calls.get());
+            assertSame(handler, reader.getCallbacks().getSieException());
+        }
+
+        reader.setThrowErrors(false);
+        assertNull(reader.readDocument(invalid.toString()));
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    public void includeRecordTypesReadsOnlyThoseRecords(@TempDir Path tempDir) throws IOException {
+        SieGenerator generator = new SieGenerator();
+        generator.setVouchers(300);
+        Path file = tempDir.resolve("balances.se");
+        generator.write(file);
+        SieDocument full = new SieDocumentReader().readDocument(file.toString());
+
+        for (boolean mapped : new boolean[]{false, true}) {
+            SieDocumentReader reader = new SieDocumentReader();
+            reader.setMemoryMapped(mapped);
+            reader.setIncludeRecordTypes(Set.of(SIE.IB, SIE.UB, SIE.RES));
+            SieDocument doc = reader.readDocument(file.toString());
+
+            assertTrue(doc.getVER().isEmpty());
+            assertTrue(doc.getKONTO().values().stream().allMatch(account -> account.getName().isEmpty()));
+            assertNull(doc.getGEN_DATE());
+            assertEquals(full.getSIETYP(), doc.getSIETYP());
+            assertEquals(full.getIB().size(), doc.getIB().size());
+            assertEquals(full.getUB().size(), doc.getUB().size());
+            assertEquals(full.getRES().size(), doc.getRES().size());
+            for (int i = 0; i < full.getUB().size(); i++) {
+                assertEquals(full.getUB().get(i).getAmount(), doc.getUB().get(i).getAmount());
+                assertEquals(full.getUB().get(i).getAccount().getNumber(), doc.getUB().get(i).getAccount().getNumber());
+            }
+            assertTrue(reader.getValidationExceptions().isEmpty(), reader.getValidationExceptions().toString());
+            assertTrue(reader.getValidationWarnings().isEmpty(), reader.getValidationWarnings().toString());
+        }
+
+        SieDocumentReader records = new SieDocumentReader();
+        records.setExcludeRecordTypes(Set.of(SIE.VER, SIE.KONTO));
+        try (java.util.stream.Stream<SieRecord> stream = records.streamRecords(file.toString())) {
+            assertTrue(stream.noneMatch(r -> r.isVoucher() || SIE.KONTO.equals(r.getItemType())));
+        }
+    }
+
+    @Test
+    public void skippedVouchersStillCountTowardsKSUMMA(@TempDir Path tempDir) throws IOException {
+        SieGenerator generator = new SieGenerator();
+        generator.setVouchers(50);
+        WriteOptions options = new WriteOptions();
+        options.setWriteKSUMMA(true);
+        Path file = tempDir.resolve("checksummed.se");
+        new SieDocumentWriter(generator.generate(), options).write(file.toString());
+
+        SieDocumentReader reader = new SieDocumentReader();
+        reader.setExcludeRecordTypes(Set.of(SIE.VER));
+        SieDocument doc = reader.readDocument(file.toString());
+        assertTrue(doc.getVER().isEmpty());
+        assertFalse(doc.getKONTO().isEmpty());
+
+        String content = Files.readString(file, Encoding.getCharset());
+        int row = content.indexOf("#TRANS ");
+        Files.writeString(file, content.substring(0, row) + "#TRANS 9999" + content.substring(content.indexOf(' ', row + 7)),
+            Encoding.getCharset());
+        assertThrows(SieInvalidChecksumException.class, () -> reader.readDocument(file.toString()));
+
+        reader.setIgnoreKSUMMA(true);
+        assertTrue(reader.readDocument(ByteBuffer.wrap(Files.readAllBytes(file))).getVER().isEmpty());
+    }
 }
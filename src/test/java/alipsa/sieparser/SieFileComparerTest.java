@@ -0,0 +1,139 @@
+package alipsa.sieparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SieFileComparerTest {
+
+    @Test
+    public void identicalFilesHaveNoDifferences(@TempDir Path tempDir) throws IOException {
+        String a = write(tempDir, "a.se", generate());
+        String b = write(tempDir, "b.se", generate());
+        assertTrue(SieFileComparer.compare(a, b).isEmpty());
+    }
+
+    @Test
+    public void differencesMatchDocumentComparer(@TempDir Path tempDir) throws IOException {
+        SieDocument docB = generate();
+        List<SieVoucher> vouchers = docB.getVER();
+        vouchers.get(3).setText("Changed");
+        Collections.reverse(vouchers.get(5).getRows());
+        SieVoucherRow first = vouchers.get(7).getRows().get(0);
+        SieVoucherRow second = vouchers.get(7).getRows().get(1);
+        first.setAmount(first.getAmount().add(BigDecimal.ONE));
+        second.setAmount(second.getAmount().subtract(BigDecimal.ONE));
+        vouchers.remove(11);
+        docB.getUB().remove(0);
+        SiePeriodValue balance = docB.getIB().get(0);
+        balance.setAmount(balance.getAmount().add(BigDecimal.TEN));
+
+        SieVoucherRow withQuantity = vouchers.get(9).getRows().get(0);
+        withQuantity.setQuantity(new BigDecimal("1.00"));
+
+        SieDocument docA = generate();
+        docA.getVER().get(9).getRows().get(0).setQuantity(new BigDecimal("1.0"));
+        String a = write(tempDir, "a.se", docA);
+        String b = write(tempDir, "b.se", docB);
+        SieDocument readA = new SieDocumentReader().readDocument(a);
+        SieDocument readB = new SieDocumentReader().readDocument(b);
+        List<String> descriptions = new ArrayList<>(SieDocumentComparer.compare(readA, readB));
+        Collections.sort(descriptions);
+        List<String> legacy = new ArrayList<>(SieFileComparer.compare(a, b));
+        Collections.sort(legacy);
+        assertEquals(descriptions, legacy);
+
+        List<String> expected = new ArrayList<>();
+        SieDocumentComparer documentComparer = new SieDocumentComparer();
+        documentComparer.setListener(d -> expected.add(describe(d)));
+        documentComparer.compareDocuments(readA, readB);
+        Collections.sort(expected);
+        assertEquals(5, expected.size(), expected.toString());
+
+        for (long budget : new long[] {SieFileComparer.DEFAULT_MEMORY_BUDGET, 4096}) {
+            Path runs = Files.createDirectory(tempDir.resolve("runs" + budget));
+            SieFileComparer comparer = new SieFileComparer();
+            comparer.setMemoryBudget(budget);
+            comparer.setTempDirectory(runs);
+            List<String> actual = new ArrayList<>();
+            comparer.setListener(d -> actual.add(describe(d)));
+            assertEquals(expected.size(), comparer.compareFiles(a, b));
+            Collections.sort(actual);
+            assertEquals(expected, actual, "budget " + budget);
+            try (Stream<Path> files = Files.list(runs)) {
+                assertEquals(0, files.count(), "run files should be deleted");
+            }
+        }
+    }
+
+    @Test
+    public void objectNameChangesAreReported(@TempDir Path tempDir) throws IOException {
+        String header = "#FLAGGA 0\n#PROGRAM \"Test\" 1.0\n#FORMAT PC8\n#GEN 20230101\n#SIETYP 4\n"
+            + "#RAR 0 20230101 20231231\n#KONTO 1910 \"Kassa\"\n#KONTO 3000 \"Intakter\"\n#DIM 1 \"Resultatenhet\"\n";
+        String body = "#OIB 0 1910 {1 \"100\"} 10.00\n"
+            + "#VER A 1 20230105 \"Sale\"\n{\n#TRANS 1910 {1 \"100\"} 50.00\n#TRANS 3000 {} -50.00\n}\n";
+        Path a = tempDir.resolve("a.se");
+        Path b = tempDir.resolve("b.se");
+        Files.writeString(a, header + "#OBJEKT 1 \"100\" \"Stockholm\"\n" + body, Encoding.getCharset());
+        Files.writeString(b, header + "#OBJEKT 1 \"100\" \"Goteborg\"\n" + body, Encoding.getCharset());
+
+        SieDocument docA = new SieDocumentReader().readDocument(a.toString());
+        SieDocument docB = new SieDocumentReader().readDocument(b.toString());
+        List<String> expected = new ArrayList<>(SieDocumentComparer.compare(docA, docB));
+        assertFalse(expected.isEmpty());
+        List<String> actual = new ArrayList<>(SieFileComparer.compare(a.toString(), b.toString()));
+        Collections.sort(expected);
+        Collections.sort(actual);
+        assertEquals(expected, actual);
+        assertTrue(actual.stream().anyMatch(d -> d.contains("A, 1")), actual.toString());
+    }
+
+    @Test
+    public void comparisonStopsAtMaxDifferences(@TempDir Path tempDir) throws IOException {
+        SieDocument docB = generate();
+        for (SieVoucher v : docB.getVER()) {
+            v.setText(v.getText() + " x");
+        }
+        String a = write(tempDir, "a.se", generate());
+        String b = write(tempDir, "b.se", docB);
+
+        SieFileComparer comparer = new SieFileComparer();
+        comparer.setMaxDifferences(3);
+        List<SieDifference> differences = new ArrayList<>();
+        comparer.setListener(differences::add);
+        assertEquals(3, comparer.compareFiles(a, b));
+        assertEquals(3, differences.size());
+        assertEquals(SieDifference.Kind.CHANGED, differences.get(0).getKind());
+        assertEquals(SIE.VER, differences.get(0).getRecordType());
+        assertEquals("Text", differences.get(0).getField());
+        assertThrows(IllegalArgumentException.class, () -> comparer.setMaxDifferences(0));
+        assertThrows(IllegalArgumentException.class, () -> comparer.setMemoryBudget(0));
+    }
+
+    private static String describe(SieDifference d) {
+        return d.getKind() + " " + d.getRecordType() + " " + d.getKey() + " " + d.getField() + " " + d.getMessage();
+    }
+
+    private static SieDocument generate() {
+        SieGenerator generator = new SieGenerator();
+        generator.setVouchers(50);
+        generator.setSeed(42);
+        return generator.generate();
+    }
+
+    private static String write(Path dir, String name, SieDocument doc) throws IOException {
+        String file = dir.resolve(name).toString();
+        new SieDocumentWriter(doc).write(file);
+        return file;
+    }
+}
@@ -0,0 +1,177 @@
+package alipsa.sieparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SieFingerprintTest {
+
+    private static final String[] SECTIONS = {
+        SIE.VER, SIE.IB, SIE.UB, SIE.OIB, SIE.OUB, SIE.RES, SIE.PSALDO, SIE.PBUDGET
+    };
+
+    @Test
+    public void fingerprintsReadMatchFingerprintsComputed() throws IOException {
+        for (File sample : (Iterable<File>) TestSieDocument.sampleFiles()::iterator) {
+            SieDocument doc = read(sample, new SieDocumentReader());
+            if (doc == null) continue;
+            SieDocumentReader plain = new SieDocumentReader();
+            plain.setThrowErrors(false);
+            SieDocument computed = plain.readDocument(sample.getAbsolutePath());
+            assertEquals(doc.getFingerprint(), computed.getFingerprint(), sample.getName());
+            for (SieVoucher v : computed.getVER()) {
+                assertFalse(v.isFingerprinted(), sample.getName());
+            }
+            SieDocument copy = copy(doc);
+            for (String section : SECTIONS) {
+                assertEquals(copy.getFingerprint(section), doc.getFingerprint(section), sample.getName() + " " + section);
+            }
+            assertEquals(copy.getFingerprint(), doc.getFingerprint(), sample.getName());
+            for (SieVoucher v : doc.getVER()) {
+                assertEquals(v.computeFingerprint(), v.getFingerprint(), sample.getName());
+            }
+
+            SieDocumentReader columnar = new SieDocumentReader();
+            columnar.setColumnarVouchers(true);
+            SieDocument columnarDoc = read(sample, columnar);
+            assertEquals(doc.getFingerprint(), columnarDoc.getFingerprint(), sample.getName());
+            for (int i = 0; i < doc.getVER().size(); i++) {
+                assertEquals(doc.getVER().get(i).getFingerprint(), columnarDoc.getVER().get(i).getFingerprint(), sample.getName());
+            }
+
+            SieDocumentReader parallel = new SieDocumentReader();
+            parallel.setParallel(true);
+            assertEquals(doc.getFingerprint(), read(sample, parallel).getFingerprint(), sample.getName());
+
+            SieDocumentReader streaming = new SieDocumentReader();
+            streaming.setStreamValues(true);
+            SieDocument streamed = read(sample, streaming);
+            assertTrue(streamed.getVER().isEmpty());
+            assertEquals(doc.getFingerprint(), streamed.getFingerprint(), sample.getName());
+        }
+    }
+
+    @Test
+    public void fingerprintsSurviveRewritingAndReordering(@TempDir Path tempDir) throws IOException {
+        SieGenerator generator = new SieGenerator();
+        generator.setVouchers(40);
+        generator.setSeed(3);
+        SieDocument original = generator.generate();
+        String file = tempDir.resolve("a.se").toString();
+        new SieDocumentWriter(original).write(file);
+        SieDocument first = fingerprintingReader().readDocument(file);
+
+        SieDocument reordered = generator.generate();
+        Collections.reverse(reordered.getVER());
+        Collections.reverse(reordered.getVER().get(0).getRows());
+        Collections.reverse(reordered.getUB());
+        new SieDocumentWriter(reordered).write(file);
+        SieDocument second = fingerprintingReader().readDocument(file);
+
+        assertEquals(first.getFingerprint(), second.getFingerprint());
+        assertEquals(first.getVER().get(0).getFingerprint(), second.getVER().get(39).getFingerprint());
+        assertNotEquals(first.getVER().get(0).getFingerprint(), first.getVER().get(1).getFingerprint());
+    }
+
+    @Test
+    public void changesAreDetected() {
+        SieVoucher a = voucher("100");
+        SieVoucher b = voucher("100.00");
+        assertEquals(a.getFingerprint(), b.getFingerprint(), "amounts are compared by value");
+
+        b.getRows().get(0).setText("Other text");
+        assertNotEquals(a.getFingerprint(), b.getFingerprint());
+        b = voucher("100");
+        b.getRows().get(0).setToken(SIE.BTRANS);
+        assertNotEquals(a.getFingerprint(), b.getFingerprint());
+        b = voucher("100");
+        b.setText("Other");
+        assertNotEquals(a.getFingerprint(), b.getFingerprint());
+
+        SieDocument docA = new SieDocument();
+        SieDocument docB = new SieDocument();
+        docA.getVER().add(a);
+        docB.getVER().add(voucher("100"));
+        assertEquals(docA.getFingerprint(SIE.VER), docB.getFingerprint(SIE.VER));
+        docB.getVER().add(voucher("100"));
+        assertNotEquals(docA.getFingerprint(SIE.VER), docB.getFingerprint(SIE.VER), "duplicates count");
+        assertEquals(docA.getFingerprint(SIE.IB), docB.getFingerprint(SIE.IB));
+        assertThrows(IllegalArgumentException.class, () -> docA.getFingerprint(SIE.KONTO));
+    }
+
+    @Test
+    public void readFingerprintIsThatOfTheVoucherAsRead() {
+        String content = "#FLAGGA 0\n#FORMAT PC8\n#GEN 20240101\n#SIETYP 4\n#RAR 0 20240101 20241231\n#KONTO 1910 \"Kassa\"\n#KONTO 3010 \"Försäljning\"\n"
+            + "#IB 0 1910 100.00\n#VER A 1 20240101 \"Sale\"\n{\n#TRANS 1910 {} 100\n#TRANS 3010 {} -100\n}\n";
+        SieDocument lazy = new SieDocumentReader().readDocument(ByteBuffer.wrap(Encoding.getBytes(content)));
+        long before = lazy.getVER().get(0).getFingerprint();
+        lazy.getVER().get(0).setText("Changed");
+        assertNotEquals(before, lazy.getVER().get(0).getFingerprint(), "without the setting, fingerprints follow changes");
+
+        SieDocument doc = fingerprintingReader().readDocument(ByteBuffer.wrap(Encoding.getBytes(content)));
+        SieVoucher v = doc.getVER().get(0);
+        long asRead = v.getFingerprint();
+        long section = doc.getFingerprint(SIE.VER);
+        v.setText("Changed");
+        assertEquals(asRead, v.getFingerprint());
+        assertNotEquals(asRead, v.computeFingerprint());
+        assertEquals(section, doc.getFingerprint(SIE.VER));
+        assertEquals(doc.getIB().get(0).computeFingerprint(), doc.getIB().get(0).getFingerprint());
+    }
+
+    private static SieDocumentReader fingerprintingReader() {
+        SieDocumentReader reader = new SieDocumentReader();
+        reader.setFingerprints(true);
+        return reader;
+    }
+
+    private static SieDocument read(File sample, SieDocumentReader reader) throws IOException {
+        reader.setThrowErrors(false);
+        reader.setFingerprints(true);
+        return reader.readDocument(sample.getAbsolutePath());
+    }
+
+    private static SieDocument copy(SieDocument doc) {
+        SieDocument copy = new SieDocument();
+        copy.setVER(new ArrayList<>(doc.getVER()));
+        copy.setIB(doc.getIB());
+        copy.setUB(doc.getUB());
+        copy.setOIB(doc.getOIB());
+        copy.setOUB(doc.getOUB());
+        copy.setRES(doc.getRES());
+        copy.setPSALDO(doc.getPSALDO());
+        copy.setPBUDGET(doc.getPBUDGET());
+        return copy;
+    }
+
+    private static SieVoucher voucher(String amount) {
+        SieAccount cash = new SieAccount("1910");
+        SieAccount sales = new SieAccount("3010");
+        SieVoucher v = new SieVoucher();
+        v.setSeries("A");
+        v.setNumber("1");
+        v.setText("Sale");
+        v.getRows().add(row(cash, new BigDecimal(amount)));
+        v.getRows().add(row(sales, new BigDecimal(amount).negate()));
+        return v;
+    }
+
+    private static SieVoucherRow row(SieAccount account, BigDecimal amount) {
+        SieVoucherRow row = new SieVoucherRow();
+        row.setAccount(account);
+        row.setAmount(amount);
+        row.setToken(SIE.TRANS);
+        row.setObjects(List.of());
+        return row;
+    }
+}
@@ -0,0 +1,81 @@
+package alipsa.sieparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SieGeneratorTest {
+
+    @Test
+    public void generatedFilesReadBackWithoutErrors(@TempDir Path tempDir) throws IOException {
+        for (SieGenerator.Format format : SieGenerator.Format.values()) {
+            SieGenerator generator = new SieGenerator(format);
+            generator.setAccounts(50);
+            generator.setDimensions(3);
+            generator.setObjectsPerDimension(5);
+            generator.setVouchers(25_000);
+            generator.setRowsPerVoucher(3);
+            generator.setPeriodBalanceDensity(0.5);
+            Path file = tempDir.resolve(format.name() + ".se");
+            generator.write(file);
+
+            SieDocumentReader reader = new SieDocumentReader();
+            SieDocument doc = reader.readDocument(file.toString());
+            assertTrue(reader.getValidationExceptions().isEmpty(), format + ": " + reader.getValidationExceptions());
+            assertTrue(reader.getValidationWarnings().isEmpty(), format + ": " + reader.getValidationWarnings());
+
+            SieDocument expected = generator.generate();
+            assertEquals(format.getSieType(), doc.getSIETYP(), format.name());
+            assertEquals(50, doc.getKONTO().size(), format.name());
+            assertEquals(expected.getVER().size(), doc.getVER().size(), format.name());
+            assertEquals(expected.getIB().size(), doc.getIB().size(), format.name());
+            assertEquals(expected.getRES().size(), doc.getRES().size(), format.name());
+            assertEquals(expected.getPSALDO().size(), doc.getPSALDO().size(), format.name());
+            assertEquals(expected.getOIB().size(), doc.getOIB().size(), format.name());
+            List<String> diffs = SieDocumentComparer.compare(expected, doc);
+            assertTrue(diffs.isEmpty(), format + ": " + diffs.subList(0, Math.min(5, diffs.size())));
+        }
+    }
+
+    @Test
+    public void contentDependsOnFormat() {
+        SieDocument sie1 = new SieGenerator(SieGenerator.Format.SIE1).generate();
+        assertFalse(sie1.getIB().isEmpty());
+        assertTrue(sie1.getPSALDO().isEmpty());
+        assertTrue(sie1.getVER().isEmpty());
+        assertNull(sie1.getOMFATTN());
+
+        SieDocument sie3 = new SieGenerator(SieGenerator.Format.SIE3).generate();
+        assertFalse(sie3.getPSALDO().isEmpty());
+        assertFalse(sie3.getOIB().isEmpty());
+        assertEquals(20, sie3.getDIM().get("2").getObjects().size());
+        assertTrue(sie3.getVER().isEmpty());
+
+        SieDocument sie4i = new SieGenerator(SieGenerator.Format.SIE4I).generate();
+        assertTrue(sie4i.getIB().isEmpty());
+        assertTrue(sie4i.getPSALDO().isEmpty());
+        assertEquals(1000, sie4i.getVER().size());
+        assertEquals(4, sie4i.getVER().get(0).getRows().size());
+    }
+
+    @Test
+    public void sameSeedGivesSameOutput() throws IOException {
+        assertArrayEquals(bytes(42), bytes(42));
+        assertFalse(Arrays.equals(bytes(42), bytes(43)));
+    }
+
+    private static byte[] bytes(long seed) throws IOException {
+        SieGenerator generator = new SieGenerator();
+        generator.setSeed(seed);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        generator.write(out);
+        return out.toByteArray();
+    }
+}
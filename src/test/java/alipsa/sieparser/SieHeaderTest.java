@@ -0,0 +1,82 @@
+package alipsa.sieparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SieHeaderTest {
+
+    @Test
+    public void headerMatchesFullRead() throws IOException {
+        for (File sample : (Iterable<File>) TestSieDocument.sampleFiles()::iterator) {
+            SieDocumentReader reader = new SieDocumentReader();
+            reader.setThrowErrors(false);
+            SieDocument doc = reader.readDocument(sample.getAbsolutePath());
+            if (doc == null) continue;
+            String name = sample.getName();
+
+            SieHeader header = SieDocumentReader.readHeader(sample.getAbsolutePath());
+            assertEquals(doc.getFLAGGA(), header.getFLAGGA(), name);
+            assertEquals(doc.getSIETYP(), header.getSIETYP(), name);
+            assertEquals(doc.getFORMAT(), header.getFORMAT(), name);
+            assertEquals(doc.getGEN_DATE(), header.getGEN_DATE(), name);
+            assertEquals(doc.getGEN_NAMN(), header.getGEN_NAMN(), name);
+            assertEquals(doc.getPROGRAM(), header.getPROGRAM(), name);
+            assertEquals(doc.getFNAMN().getName(), header.getFNAMN().getName(), name);
+            assertEquals(doc.getFNAMN().getOrgIdentifier(), header.getFNAMN().getOrgIdentifier(), name);
+            assertEquals(doc.getRars().keySet(), header.getRars().keySet(), name);
+            for (Integer year : doc.getRars().keySet()) {
+                assertEquals(doc.getRars().get(year).getStart(), header.getRars().get(year).getStart(), name);
+                assertEquals(doc.getRars().get(year).getEnd(), header.getRars().get(year).getEnd(), name);
+            }
+            assertEquals(doc.getKSUMMA() != 0, header.hasKSUMMA(), name);
+            assertTrue(header.isComplete(), name);
+            assertEquals(header.getSIETYP(), SieDocumentReader.readHeader(ByteBuffer.wrap(Files.readAllBytes(sample.toPath()))).getSIETYP(), name);
+        }
+    }
+
+    @Test
+    public void headerSpanningSeveralBlocks(@TempDir Path tempDir) throws IOException {
+        String prosa = "x".repeat(3 * SieDocumentReader.HEADER_BLOCK_SIZE);
+        String content = "#FLAGGA 0\r\n#KSUMMA\r\n#PROSA \"" + prosa + "\"\r\n#SIETYP 4\r\n#FNAMN \"Företaget AB\"\r\n"
+            + "#ORGNR 555555-5555\r\n#RAR 0 20240101 20241231\r\n#RAR -1 20230101 20231231\r\n#KONTO 1910 \"Kassa\"\r\n#SIETYP 2\r\n";
+        Path file = tempDir.resolve("long.se");
+        Files.write(file, Encoding.getBytes(content));
+
+        SieHeader header = SieDocumentReader.readHeader(file.toString());
+        assertEquals(0, header.getFLAGGA());
+        assertTrue(header.hasKSUMMA());
+        assertEquals(4, header.getSIETYP());
+        assertEquals("Företaget AB", header.getFNAMN().getName());
+        assertEquals("555555-5555", header.getFNAMN().getOrgIdentifier());
+        assertEquals(LocalDate.of(2023, 12, 31), header.getRars().get(-1).getEnd());
+        assertTrue(header.isComplete());
+        assertEquals(4, SieDocumentReader.getSieVersion(file.toString()));
+    }
+
+    @Test
+    public void incompleteHeader(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("short.se");
+        Files.write(file, Encoding.getBytes("#FLAGGA 1\n#GEN 2024023 Kalle\n#SIETYP"));
+
+        SieHeader header = SieDocumentReader.readHeader(file.toString());
+        assertEquals(1, header.getFLAGGA());
+        assertNull(header.getGEN_DATE());
+        assertEquals("Kalle", header.getGEN_NAMN());
+        assertEquals(0, header.getSIETYP());
+        assertNull(header.getFORMAT());
+        assertFalse(header.hasKSUMMA());
+        assertFalse(header.isComplete());
+
+        Files.write(file, new byte[0]);
+        assertEquals(-1, SieDocumentReader.getSieVersion(file.toString()));
+    }
+}
@@ -0,0 +1,65 @@
+package alipsa.sieparser;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SieLineEncoderTest {
+
+    private static final String[] VALUES = {"", "1910", "Kassa och bank", " lead", "trail ", "a\"b", "a\\b", "{x}",
+        "tab\there", "ctrl\u0001", "åäö", "€", "😀", "\uD83D"};
+
+    @Test
+    public void checksumMatchesParsedRecords() throws IOException {
+        SieDimension dim = new SieDimension("1");
+        for (String value : VALUES) {
+            SieObject object = new SieObject(dim, value, "");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            SieLineEncoder encoder = new SieLineEncoder(out);
+            SieCRC32 actual = new SieCRC32();
+            actual.start();
+            encoder.setChecksum(actual);
+            encoder.begin(SIE.TRANS).plain(value).objects(List.of(object), true).amount(-12345, 2)
+                .date(LocalDate.of(2024, 2, 29)).quoted(value).quotedVerbatim(value).plain(-1).end();
+            encoder.flush();
+
+            String line = out.toString(Encoding.getCharset()).stripTrailing();
+            SieCRC32 expected = new SieCRC32();
+            expected.start();
+            expected.addData(new SieDataItem(line, null, null));
+            assertEquals(expected.checksum(), actual.checksum(), line);
+        }
+    }
+
+    @Test
+    public void fieldsAreEncodedLikeTheWriter() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SieLineEncoder encoder = new SieLineEncoder(out);
+        encoder.begin(SIE.TRANS).plain("1910").objects(null, true).amount(-50, 1).date(null)
+            .quoted("a \"b\"").space().quotedVerbatim(null).end();
+        encoder.begin(SIE.PSALDO).plain(0).plain(202401).plain("3010").objects(null, false).amount(100, 0).end();
+        encoder.raw("}");
+        encoder.flush();
+        String nl = System.lineSeparator();
+        assertEquals("#TRANS 1910 {} -0.5 00000000 \"a \\\"b\\\"\"  \"null\"" + nl
+            + "#PSALDO 0 202401 3010  1" + nl + "}" + nl, out.toString(Encoding.getCharset()));
+    }
+
+    @Test
+    public void largeOutputIsWrittenInOrder() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SieLineEncoder encoder = new SieLineEncoder(out);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            encoder.begin(SIE.KONTO).plain(i).quoted("Konto " + i).end();
+            expected.append("#KONTO ").append(i).append(" \"Konto ").append(i).append('"').append(System.lineSeparator());
+        }
+        encoder.flush();
+        assertEquals(expected.toString(), out.toString(Encoding.getCharset()));
+    }
+}
@@ -0,0 +1,101 @@
+package alipsa.sieparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SieReaderPoolTest {
+
+    @Test
+    public void pooledReadsMatchFreshReaders() throws IOException {
+        SieReaderPool pool = new SieReaderPool(SieReaderPoolTest::lenientReader, 1);
+        for (File sample : (Iterable<File>) TestSieDocument.sampleFiles()::iterator) {
+            byte[] content = Files.readAllBytes(sample.toPath());
+            SieDocumentReader fresh = lenientReader();
+            SieDocument expected = fresh.readDocument(ByteBuffer.wrap(content));
+
+            int exceptions = pool.read(new ByteArrayInputStream(content), (reader, actual) -> {
+                assertEquals(expected == null, actual == null, sample.getName());
+                if (expected != null) {
+                    assertTrue(SieDocumentComparer.compare(expected, actual).isEmpty(), sample.getName());
+                }
+                return reader.getValidationExceptions().size();
+            });
+            assertEquals(fresh.getValidationExceptions().size(), exceptions, sample.getName());
+        }
+    }
+
+    @Test
+    public void readersAndBuffersAreReused(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("large.se");
+        SieGenerator generator = new SieGenerator();
+        generator.setVouchers(2_000);
+        generator.write(file);
+        SieReaderPool pool = new SieReaderPool(SieDocumentReader::new, 2);
+
+        SieDocumentReader first = pool.acquire();
+        pool.release(first);
+        List<SieDocumentReader> used = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            try (InputStream in = Files.newInputStream(file)) {
+                SieDocument doc = pool.read(in, (reader, d) -> {
+                    used.add(reader);
+                    return d;
+                });
+                assertEquals(2_000, doc.getVER().size());
+            }
+        }
+        assertTrue(used.stream().allMatch(reader -> reader == first));
+        assertEquals(2, pool.getCapacity());
+        assertThrows(IllegalArgumentException.class, () -> new SieReaderPool(SieDocumentReader::new, 0));
+    }
+
+    @Test
+    public void concurrentReadsGetTheirOwnDocument(@TempDir Path tempDir) throws Exception {
+        List<byte[]> contents = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            Path file = tempDir.resolve(i + ".se");
+            SieGenerator generator = new SieGenerator();
+            generator.setSeed(i);
+            generator.setVouchers(50 * i);
+            generator.write(file);
+            contents.add(Files.readAllBytes(file));
+        }
+        SieReaderPool pool = new SieReaderPool(SieDocumentReader::new, 2);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> sizes = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                byte[] content = contents.get(i % 4);
+                sizes.add(executor.submit(() -> pool.readDocument(new ByteArrayInputStream(content)).getVER().size()));
+            }
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < 40; i++) expected.add(50 * (i % 4 + 1));
+            List<Integer> actual = new ArrayList<>();
+            for (Future<Integer> size : sizes) actual.add(size.get());
+            assertEquals(expected, actual);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static SieDocumentReader lenientReader() {
+        SieDocumentReader reader = new SieDocumentReader();
+        reader.setThrowErrors(false);
+        return reader;
+    }
+}
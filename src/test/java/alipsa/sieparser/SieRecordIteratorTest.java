@@ -0,0 +1,144 @@
+package alipsa.sieparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SieRecordIteratorTest {
+
+    private static String sample(String name) {
+        URL url = Thread.currentThread().getContextClassLoader().getResource("samples/" + name);
+        assertNotNull(url);
+        return new File(url.getFile()).getAbsolutePath();
+    }
+
+    @Test
+    public void yieldsCompleteVouchers() throws IOException {
+        String fileName = sample("8_Test4.SE");
+        SieDocument doc = new SieDocumentReader().readDocument(fileName);
+
+        List<SieVoucher> vouchers = new ArrayList<>();
+        SieDocument header;
+        try (SieRecordIterator it = new SieDocumentReader().readRecords(fileName)) {
+            while (it.hasNext()) {
+                SieRecord record = it.next();
+                if (record.isVoucher()) vouchers.add(record.getValue(SieVoucher.class));
+            }
+            header = it.getDocument();
+        }
+
+        assertEquals(doc.getVER().size(), vouchers.size());
+        for (int i = 0; i < vouchers.size(); i++) {
+            SieVoucher expected = doc.getVER().get(i);
+            SieVoucher actual = vouchers.get(i);
+            assertEquals(expected.getSeries(), actual.getSeries());
+            assertEquals(expected.getNumber(), actual.getNumber());
+            assertEquals(expected.getVoucherDate(), actual.getVoucherDate());
+            assertEquals(expected.getRows().size(), actual.getRows().size());
+        }
+        assertTrue(header.getVER().isEmpty(), "Vouchers should not be kept in the document");
+        assertEquals(doc.getKONTO().keySet(), header.getKONTO().keySet());
+        assertEquals(doc.getFNAMN().getName(), header.getFNAMN().getName());
+    }
+
+    @Test
+    public void yieldsTypedRecords() throws IOException {
+        String fileName = sample("3_BL0001_typ4.SE");
+        SieDocument doc = new SieDocumentReader().readDocument(fileName);
+
+        try (Stream<SieRecord> records = new SieDocumentReader().streamRecords(fileName)) {
+            List<SieRecord> all = records.collect(Collectors.toList());
+            List<SiePeriodValue> ib = all.stream()
+                    .filter(r -> SIE.IB.equals(r.getItemType()))
+                    .map(r -> r.getValue(SiePeriodValue.class))
+                    .collect(Collectors.toList());
+            assertEquals(doc.getIB().size(), ib.size());
+            for (int i = 0; i < ib.size(); i++) {
+                assertEquals(doc.getIB().get(i).getAmount(), ib.get(i).getAmount());
+                assertEquals(doc.getIB().get(i).getAccount().getNumber(), ib.get(i).getAccount().getNumber());
+            }
+
+            SieRecord konto = all.stream().filter(r -> SIE.KONTO.equals(r.getItemType())).findFirst().orElseThrow();
+            assertNotNull(konto.getValue(SieAccount.class));
+            assertEquals(konto.getFields().get(0), konto.getValue(SieAccount.class).getNumber());
+            assertNull(konto.getValue(SieVoucher.class));
+
+            SieRecord fnamn = all.stream().filter(r -> SIE.FNAMN.equals(r.getItemType())).findFirst().orElseThrow();
+            assertNull(fnamn.getValue());
+            assertEquals(doc.getFNAMN().getName(), fnamn.getFields().get(0));
+        }
+    }
+
+    @Test
+    public void pullsOneRecordAtATime() throws IOException {
+        SieDocumentReader reader = new SieDocumentReader();
+        try (SieRecordIterator it = reader.readRecords(sample("8_Test4.SE"))) {
+            assertTrue(it.hasNext());
+            assertEquals(SIE.FLAGGA, it.next().getItemType());
+            assertEquals(1, reader.getParsingLineNumber(), "Only the first line should have been read");
+        }
+    }
+
+    @Test
+    public void memoryMappedAndBufferSourcesAgree() throws IOException {
+        String fileName = sample("8_Test4.SE");
+        List<String> expected = recordTypes(new SieDocumentReader().readRecords(fileName));
+
+        SieDocumentReader mapped = new SieDocumentReader();
+        mapped.setMemoryMapped(true);
+        mapped.setMapWindowSize(128);
+        assertEquals(expected, recordTypes(mapped.readRecords(fileName)));
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(Path.of(fileName)));
+        assertEquals(expected, recordTypes(new SieDocumentReader().readRecords(buffer)));
+    }
+
+    @Test
+    public void invalidFileEndsIteration(@TempDir Path tempDir) throws IOException {
+        Path badFile = tempDir.resolve("bad.SE");
+        Files.writeString(badFile, "This is not a SIE file\n");
+
+        SieDocumentReader reader = new SieDocumentReader();
+        reader.setThrowErrors(false);
+        try (SieRecordIterator it = reader.readRecords(badFile.toString())) {
+            assertFalse(it.hasNext());
+            assertNull(it.getDocument());
+            assertThrows(NoSuchElementException.class, it::next);
+        }
+    }
+
+    @Test
+    public void readerCanBeReusedAfterIterating() throws IOException {
+        String fileName = sample("8_Test4.SE");
+        SieDocumentReader reader = new SieDocumentReader();
+        try (Stream<SieRecord> records = reader.streamRecords(fileName)) {
+            assertTrue(records.anyMatch(SieRecord::isVoucher));
+        }
+        SieDocument doc = reader.readDocument(fileName);
+        assertFalse(doc.getVER().isEmpty(), "Vouchers should be stored again by readDocument");
+    }
+
+    private static List<String> recordTypes(SieRecordIterator it) throws IOException {
+        List<String> types = new ArrayList<>();
+        try (it) {
+            while (it.hasNext()) {
+                SieRecord r = it.next();
+                types.add(r.getItemType() + " " + r.getFields());
+            }
+        }
+        return types;
+    }
+}
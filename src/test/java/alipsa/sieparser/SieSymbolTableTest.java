@@ -0,0 +1,97 @@
+package alipsa.sieparser;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SieSymbolTableTest {
+
+    private static final String[] OBJECT_LINES = {
+        "#TRANS 1910 {1 10 6 \"P 1\"} 100",
+        "#TRANS 1910 { 1  10\t6 20 } 100",
+        "#TRANS 1910 {\"1\" \"10\"} 100",
+        "#TRANS 1910 \"{1 10}\" 100",
+        "#TRANS 1910 {1 \\\"10\\\"} 100",
+        "#TRANS 1910 {1 Ärende} 100",
+        "#TRANS 1910 { } 100",
+        "#TRANS 1910 1 100",
+    };
+
+    @Test
+    public void rowsShareAccountsAndObjects() {
+        SieDocument doc = new SieDocumentReader().readDocument(buffer(
+            "#FLAGGA 0\n#FORMAT PC8\n#GEN 20240101\n#SIETYP 4\n#RAR 0 20240101 20241231\n#KONTO 1910 \"Kassa\"\n#DIM 1 \"Resultatenhet\"\n#OBJEKT 1 10 \"Ett\"\n"
+                + "#VER A 1 20240101 \"\"\n{\n#TRANS 1910 {1 10} 100\n#TRANS 3010 {1 10} -100\n}\n"
+                + "#VER A 2 20240102 \"\"\n{\n#TRANS \"1910\" {\"1\" \"10\"} 50\n#TRANS 3010 {} -50\n}\n"));
+
+        SieVoucherRow first = doc.getVER().get(0).getRows().get(0);
+        SieVoucherRow third = doc.getVER().get(1).getRows().get(0);
+        assertSame(doc.getKONTO().get("1910"), first.getAccount());
+        assertSame(first.getAccount(), third.getAccount());
+        assertSame(doc.getKONTO().get("3010"), doc.getVER().get(1).getRows().get(1).getAccount());
+        assertEquals("Kassa", third.getAccount().getName());
+        assertSame(doc.getDIM().get("1").getObjects().get("10"), first.getObjects().get(0));
+        assertSame(first.getObjects().get(0), third.getObjects().get(0));
+        assertEquals(2, doc.getSymbols().getAccountCount());
+        assertSame(doc.getKONTO().get("3010"), doc.getSymbols().getAccount(doc.getSymbols().accountHandle("3010")));
+    }
+
+    @Test
+    public void tokenizerAndStringItemsResolveTheSameObjects() {
+        for (String line : OBJECT_LINES) {
+            SieDocument fromString = new SieDocument();
+            List<SieObject> expected = item(line, fromString).getObjects();
+
+            SieDocument fromBytes = new SieDocument();
+            SieTokenizer tokenizer = new SieTokenizer(buffer(line));
+            assertTrue(tokenizer.next());
+            List<SieObject> actual = new SieDataItem(tokenizer, new SieDocumentReader(), fromBytes).getObjects();
+
+            assertEquals(describe(expected), describe(actual), line);
+            assertEquals(fromString.getTEMPDIM().keySet(), fromBytes.getTEMPDIM().keySet(), line);
+        }
+    }
+
+    @Test
+    public void laterRowsUseObjectsDeclaredAfterFirstUse() {
+        SieDocument doc = new SieDocument();
+        SieObject temp = item("#TRANS 1910 {1 10} 100", doc).getObjects().get(0);
+        assertEquals("[TEMP]", temp.getName());
+
+        SieObject declared = new SieObject(doc.getDIM().get("1"), "10", "Ett");
+        doc.getDIM().get("1").getObjects().put("10", declared);
+        doc.getSymbols().objectReplaced("1", declared);
+        assertSame(declared, item("#TRANS 1910 {1 10} 100", doc).getObjects().get(0));
+    }
+
+    @Test
+    public void replacingMapsDiscardsTheTable() {
+        SieDocument doc = new SieDocument();
+        SieAccount before = doc.getSymbols().getAccount("1910");
+        doc.setKONTO(new HashMap<>());
+        SieAccount after = doc.getSymbols().getAccount("1910");
+        assertNotSame(before, after);
+        assertSame(after, doc.getKONTO().get("1910"));
+    }
+
+    private static SieDataItem item(String line, SieDocument doc) {
+        return new SieDataItem(line, new SieDocumentReader(), doc);
+    }
+
+    private static String describe(List<SieObject> objects) {
+        if (objects == null) return "null";
+        StringBuilder sb = new StringBuilder();
+        for (SieObject o : objects) {
+            sb.append(o.getDimension().getNumber()).append('=').append(o.getNumber()).append('/').append(o.getName()).append(' ');
+        }
+        return sb.toString();
+    }
+
+    private static ByteBuffer buffer(String content) {
+        return ByteBuffer.wrap(Encoding.getBytes(content));
+    }
+}
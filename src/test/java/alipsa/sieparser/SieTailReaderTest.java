@@ -0,0 +1,108 @@
+package alipsa.sieparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SieTailReaderTest {
+
+    @Test
+    public void pollReturnsOnlyAppendedVouchers(@TempDir Path tempDir) throws IOException {
+        SieGenerator generator = new SieGenerator();
+        generator.setVouchers(30);
+        SieDocument doc = generator.generate();
+        List<SieVoucher> vouchers = new ArrayList<>(doc.getVER());
+        doc.getVER().clear();
+        Path file = tempDir.resolve("growing.se");
+        new SieDocumentWriter(doc).write(file.toString());
+
+        SieTailReader tail = new SieDocumentReader().openTail(file.toString());
+        assertEquals(0, tail.getOffset());
+        assertTrue(tail.poll().isEmpty());
+        assertEquals(Files.size(file), tail.getOffset());
+        assertEquals(doc.getKONTO().size(), tail.getDocument().getKONTO().size());
+        assertTrue(tail.poll().isEmpty());
+
+        append(file, doc, vouchers.subList(0, 10));
+        assertNumbers(vouchers.subList(0, 10), tail.poll());
+
+        byte[] next = encode(doc, vouchers.subList(10, 11));
+        int split = new String(next, Encoding.getCharset()).indexOf("#TRANS") + 3;
+        appendBytes(file, next, 0, split);
+        assertTrue(tail.poll().isEmpty());
+        long partialOffset = tail.getOffset();
+        assertTrue(partialOffset < Files.size(file));
+        appendBytes(file, next, split, next.length - split);
+        List<SieVoucher> completed = tail.poll();
+        assertNumbers(vouchers.subList(10, 11), completed);
+        assertEquals(vouchers.get(10).getRows().size(), completed.get(0).getRows().size());
+        assertSame(tail.getDocument().getKONTO().get(completed.get(0).getRows().get(0).getAccount().getNumber()),
+            completed.get(0).getRows().get(0).getAccount());
+
+        append(file, doc, vouchers.subList(11, 30));
+        assertNumbers(vouchers.subList(11, 30), tail.poll());
+        assertEquals(Files.size(file), tail.getOffset());
+    }
+
+    @Test
+    public void stateCarriesOverBetweenPolls(@TempDir Path tempDir) throws IOException {
+        SieGenerator generator = new SieGenerator();
+        generator.setVouchers(3);
+        SieDocument doc = generator.generate();
+        List<SieVoucher> vouchers = new ArrayList<>(doc.getVER());
+        doc.getVER().clear();
+        Path file = tempDir.resolve("growing.se");
+        new SieDocumentWriter(doc).write(file.toString());
+
+        SieDocumentReader reader = new SieDocumentReader();
+        SieTailReader tail = reader.openTail(file.toString());
+        append(file, doc, List.of(vouchers.get(2)));
+        assertEquals(1, tail.poll().size());
+        append(file, doc, List.of(vouchers.get(0)));
+        assertEquals(1, tail.poll().size());
+        assertTrue(reader.getValidationWarnings().stream()
+            .anyMatch(w -> w.getMessage().contains("not in ascending order")), reader.getValidationWarnings().toString());
+
+        vouchers.get(1).getRows().get(0).setAmount(new java.math.BigDecimal("0.01"));
+        append(file, doc, List.of(vouchers.get(1)));
+        assertThrows(SieVoucherMismatchException.class, tail::poll);
+
+        Files.write(file, new byte[0]);
+        assertThrows(SieParseException.class, tail::poll);
+    }
+
+    private static void assertNumbers(List<SieVoucher> expected, List<SieVoucher> actual) {
+        List<String> e = new ArrayList<>();
+        for (SieVoucher v : expected) e.add(v.getSeries() + v.getNumber());
+        List<String> a = new ArrayList<>();
+        for (SieVoucher v : actual) a.add(v.getSeries() + v.getNumber());
+        assertEquals(e, a);
+    }
+
+    private static byte[] encode(SieDocument doc, List<SieVoucher> vouchers) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SieDocumentWriter(doc).addVouchers(out, vouchers);
+        return out.toByteArray();
+    }
+
+    private static void append(Path file, SieDocument doc, List<SieVoucher> vouchers) throws IOException {
+        byte[] bytes = encode(doc, vouchers);
+        appendBytes(file, bytes, 0, bytes.length);
+    }
+
+    private static void appendBytes(Path file, byte[] bytes, int from, int length) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.APPEND)) {
+            out.write(bytes, from, length);
+        }
+    }
+}
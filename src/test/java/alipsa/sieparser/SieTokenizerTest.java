@@ -0,0 +1,140 @@
+package alipsa.sieparser;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for SieTokenizer, verifying that it splits fields exactly like SieDataItem.
+ */
+public class SieTokenizerTest {
+
+    @Test
+    public void splitsRecordsAndFields() {
+        SieTokenizer t = tokenizer("#FLAGGA 0\n#KONTO 1910 \"Kassa\"\n");
+        assertTrue(t.next());
+        assertEquals("#FLAGGA", t.getItemType());
+        assertEquals(List.of("0"), t.getFields());
+        assertTrue(t.next());
+        assertEquals("#KONTO", t.getItemType());
+        assertEquals(2, t.getFieldCount());
+        assertEquals("1910", t.getField(0));
+        assertEquals("Kassa", t.getField(1));
+        assertFalse(t.next());
+    }
+
+    @Test
+    public void knownItemTypesAreSharedConstants() {
+        SieTokenizer t = tokenizer("#TRANS 1910 {} 100\n#CUSTOM x\n");
+        assertTrue(t.next());
+        assertSame(SIE.TRANS, t.getItemType());
+        assertTrue(t.isItemType(SIE.TRANS));
+        assertFalse(t.isItemType(SIE.VER));
+        assertTrue(t.next());
+        assertEquals("#CUSTOM", t.getItemType());
+    }
+
+    @Test
+    public void handlesAllLineTerminators() {
+        SieTokenizer t = tokenizer("#A 1\r\n#B 2\r#C 3\n\n#D 4");
+        String[] expected = {"#A", "#B", "#C", "", "#D"};
+        for (String type : expected) {
+            assertTrue(t.next());
+            assertEquals(type, t.getItemType());
+        }
+        assertFalse(t.next());
+    }
+
+    @Test
+    public void incompleteLastLineIsHeldBackUntilEndOfInput() {
+        SieTokenizer t = tokenizer("#A 1\n#B 2");
+        t.setEndOfInput(false);
+        assertTrue(t.next());
+        assertFalse(t.next(), "Unterminated line should not be returned before the end of input");
+        assertEquals(5, t.position());
+        t.setEndOfInput(true);
+        assertTrue(t.next());
+        assertEquals("#B", t.getItemType());
+    }
+
+    @Test
+    public void matchesSieDataItemForEdgeCases() {
+        String[] lines = {
+            "#TRANS 1910 {1 \"100\" 6 \"P1\"} 500 20200101 \"Text\"",
+            "#TRANS 1910 {} 500 20200101 \"\"",
+            "#KONTO 1910 \"Name with \\\"quotes\\\"\"",
+            "#KONTO 1910 \"Path\\ntest\"",
+            "#VER A 1 20200101 \"\" 20200101 \"User\"",
+            "#KONTO\t1910\t\"Kassa\"",
+            "#KSUMMA",
+            "#GEN 20080101 \"\"",
+            "   #FNAMN   \"  Padded name  \"   ",
+            "#PROGRAM \"a\"\"b\" x\"y\" \"\"\"\" end",
+            "#TRANS 1910 { 1  \"a b\" } -1.50",
+            "{",
+            "}",
+            "",
+            "#FNAMN \"Blåbärssoppa\""
+        };
+        for (String line : lines) {
+            SieDataItem expected = new SieDataItem(line, null, null);
+            SieTokenizer t = tokenizer(line + "\n");
+            assertTrue(t.next());
+            assertEquals(expected.getItemType(), t.getItemType(), line);
+            assertEquals(expected.getData(), t.getFields(), line);
+            assertEquals(line, t.getLine());
+        }
+    }
+
+    @Test
+    public void matchesSieDataItemForSampleFiles() throws IOException {
+        URL url = Thread.currentThread().getContextClassLoader().getResource("samples");
+        assertNotNull(url);
+        for (File f : new File(url.getFile()).listFiles()) {
+            if (!f.isFile()) continue;
+            byte[] content = Files.readAllBytes(f.toPath());
+            List<String> lines = Files.readAllLines(f.toPath(), Encoding.getCharset());
+            SieTokenizer t = new SieTokenizer(ByteBuffer.wrap(content));
+            for (String line : lines) {
+                assertTrue(t.next(), f.getName());
+                SieDataItem expected = new SieDataItem(line, null, null);
+                assertEquals(expected.getItemType(), t.getItemType(), f.getName() + ": " + line);
+                assertEquals(expected.getData(), t.getFields(), f.getName() + ": " + line);
+            }
+            assertFalse(t.next(), f.getName());
+        }
+    }
+
+    @Test
+    public void intFieldsParsedFromBytes() {
+        SieTokenizer t = tokenizer("#RAR -1 20230101 x \"12\" +5\n");
+        assertTrue(t.next());
+        assertEquals(Integer.valueOf(-1), t.getIntNull(0));
+        assertEquals(Integer.valueOf(20230101), t.getIntNull(1));
+        assertNull(t.getIntNull(2));
+        assertEquals(Integer.valueOf(12), t.getIntNull(3));
+        assertEquals(Integer.valueOf(5), t.getIntNull(4));
+        assertNull(t.getIntNull(5));
+    }
+
+    @Test
+    public void doesNotMoveBufferPosition() {
+        ByteBuffer buffer = ByteBuffer.wrap(Encoding.getBytes("#FLAGGA 0\n"));
+        SieTokenizer t = new SieTokenizer(buffer);
+        while (t.next()) {
+            t.getFields();
+        }
+        assertEquals(0, buffer.position());
+    }
+
+    private static SieTokenizer tokenizer(String content) {
+        return new SieTokenizer(ByteBuffer.wrap(Encoding.getBytes(content)));
+    }
+}
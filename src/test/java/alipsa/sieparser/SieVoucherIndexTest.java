@@ -0,0 +1,107 @@
+package alipsa.sieparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SieVoucherIndexTest {
+
+    @Test
+    public void indexedVouchersMatchFullRead(@TempDir Path tempDir) throws IOException {
+        Path file = generate(tempDir, 400);
+        SieDocument full = new SieDocumentReader().readDocument(file.toString());
+        SieVoucherIndex index = SieVoucherIndex.build(file, 4096);
+        assertEquals(SieVoucherIndex.build(file).getEntries().toString(), index.getEntries().toString());
+
+        assertEquals(full.getVER().size(), index.getEntries().size());
+        String content = Files.readString(file, Encoding.getCharset());
+        assertEquals(content.indexOf("#VER"), index.getHeaderLength());
+        for (int i = 0; i < full.getVER().size(); i++) {
+            SieVoucher expected = full.getVER().get(i);
+            SieVoucherIndex.Entry entry = index.getEntries().get(i);
+            assertEquals(expected.getSeries(), entry.getSeries());
+            assertEquals(expected.getNumber(), entry.getNumber());
+            assertEquals(expected.getVoucherDate(), entry.getDate());
+            assertSame(entry, index.find(entry.getSeries(), entry.getNumber()));
+        }
+
+        SieDocumentReader reader = new SieDocumentReader();
+        for (int i : new int[]{0, 1, 199, 399}) {
+            SieVoucher expected = full.getVER().get(i);
+            SieVoucher actual = reader.readVoucher(file.toString(), index, expected.getSeries(), expected.getNumber());
+            assertEquals(expected.getText(), actual.getText());
+            assertEquals(expected.getRows().size(), actual.getRows().size());
+            for (int r = 0; r < expected.getRows().size(); r++) {
+                SieVoucherRow e = expected.getRows().get(r);
+                SieVoucherRow a = actual.getRows().get(r);
+                assertEquals(e.getAccount().getNumber(), a.getAccount().getNumber());
+                assertEquals(e.getAccount().getName(), a.getAccount().getName());
+                assertEquals(e.getAmount(), a.getAmount());
+            }
+        }
+        assertNull(reader.readVoucher(file.toString(), index, "NO", "SUCH"));
+    }
+
+    @Test
+    public void dateRangeReadsOnlyThoseVouchers(@TempDir Path tempDir) throws IOException {
+        Path file = generate(tempDir, 300);
+        SieDocument full = new SieDocumentReader().readDocument(file.toString());
+        SieVoucherIndex index = SieVoucherIndex.build(file);
+        LocalDate from = LocalDate.of(2024, 3, 1);
+        LocalDate to = LocalDate.of(2024, 4, 30);
+        long expected = full.getVER().stream()
+            .filter(v -> !v.getVoucherDate().isBefore(from) && !v.getVoucherDate().isAfter(to)).count();
+
+        SieDocumentReader reader = new SieDocumentReader();
+        SieDocument doc = reader.readVouchers(file.toString(), index, from, to);
+        assertTrue(expected > 0);
+        assertEquals(expected, doc.getVER().size());
+        assertTrue(doc.getVER().stream().allMatch(v -> !v.getVoucherDate().isBefore(from) && !v.getVoucherDate().isAfter(to)));
+        assertEquals(full.getKONTO().size(), doc.getKONTO().size());
+        assertTrue(reader.getValidationExceptions().isEmpty(), reader.getValidationExceptions().toString());
+    }
+
+    @Test
+    public void sidecarFileIsReusedUntilTheFileChanges(@TempDir Path tempDir) throws IOException {
+        Path file = generate(tempDir, 50);
+        SieVoucherIndex built = SieVoucherIndex.load(file);
+        Path sidecar = SieVoucherIndex.sidecar(file);
+        assertTrue(Files.exists(sidecar));
+        SieVoucherIndex read = SieVoucherIndex.read(sidecar);
+        assertEquals(built.getEntries().toString(), read.getEntries().toString());
+        assertEquals(built.getHeaderLength(), read.getHeaderLength());
+        assertEquals(built.getEntries().get(7).getDate(), read.getEntries().get(7).getDate());
+        assertTrue(read.matches(file));
+
+        SieGenerator generator = new SieGenerator();
+        generator.setVouchers(60);
+        generator.write(file);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2000));
+        assertFalse(read.matches(file));
+        SieDocumentReader reader = new SieDocumentReader();
+        List<SieVoucherIndex.Entry> stale = read.getEntries();
+        assertThrows(SieParseException.class, () -> reader.readVouchers(file.toString(), read, stale));
+        assertEquals(60, SieVoucherIndex.load(file).getEntries().size());
+        assertEquals(60, SieVoucherIndex.read(sidecar).getEntries().size());
+
+        Files.writeString(sidecar, "not an index");
+        assertThrows(SieParseException.class, () -> SieVoucherIndex.read(sidecar));
+        assertEquals(60, SieVoucherIndex.load(file).getEntries().size());
+    }
+
+    private static Path generate(Path dir, int vouchers) throws IOException {
+        SieGenerator generator = new SieGenerator();
+        generator.setVouchers(vouchers);
+        Path file = dir.resolve("vouchers.se");
+        generator.write(file);
+        return file;
+    }
+}
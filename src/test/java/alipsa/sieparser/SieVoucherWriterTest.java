@@ -0,0 +1,59 @@
+package alipsa.sieparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SieVoucherWriterTest {
+
+    @Test
+    public void streamedVouchersMatchWholeDocument() throws IOException {
+        SieDocument doc = new SieGenerator().generate();
+        WriteOptions options = new WriteOptions();
+        options.setWriteKSUMMA(true);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new SieDocumentWriter(doc, options).write(expected);
+
+        List<SieVoucher> vouchers = new ArrayList<>(doc.getVER());
+        doc.getVER().clear();
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        try (SieVoucherWriter writer = new SieDocumentWriter(doc, options).openVouchers(actual)) {
+            writer.write(vouchers.get(0));
+            writer.writeAll(vouchers.subList(1, 500).iterator());
+            writer.writeAll(vouchers.subList(500, vouchers.size()).stream());
+            assertEquals(vouchers.size(), writer.getCount());
+        }
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+
+        SieDocumentReader reader = new SieDocumentReader();
+        SieDocument readBack = reader.readDocument(ByteBuffer.wrap(actual.toByteArray()));
+        assertTrue(reader.getValidationExceptions().isEmpty(), reader.getValidationExceptions().toString());
+        assertEquals(vouchers.size(), readBack.getVER().size());
+    }
+
+    @Test
+    public void documentVouchersAreWrittenFirst(@TempDir Path tempDir) throws IOException {
+        SieGenerator generator = new SieGenerator();
+        generator.setVouchers(3);
+        SieDocument doc = generator.generate();
+        SieVoucher last = doc.getVER().remove(2);
+        Path file = tempDir.resolve("streamed.se");
+
+        SieVoucherWriter writer = new SieDocumentWriter(doc).openVouchers(file.toString());
+        writer.write(last);
+        writer.close();
+        writer.close();
+        assertThrows(IllegalStateException.class, () -> writer.write(last));
+
+        SieDocument readBack = new SieDocumentReader().readDocument(file.toString());
+        assertEquals(List.of("1", "2", "3"), readBack.getVER().stream().map(SieVoucher::getNumber).toList());
+    }
+}
@@ -46,6 +46,16 @@ public class TestEncoding {
         }
     }
 
+    @Test
+    public void encodeMatchesCharset() {
+        for (char c = 0; c < Character.MIN_SURROGATE; c++) {
+            assertEquals(Encoding.getBytes(String.valueOf(c))[0], Encoding.encode(c), "char " + (int) c);
+        }
+        for (char c = Character.MAX_SURROGATE + 1; c != 0; c++) {
+            assertEquals(Encoding.getBytes(String.valueOf(c))[0], Encoding.encode(c), "char " + (int) c);
+        }
+    }
+
     @Test
     public void encodingsTest() throws IOException {
         String text="Nu är det så att åäö behöver encodas rätt!";
@@ -26,6 +26,7 @@ SOFTWARE.
 package alipsa.sieparser;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -63,21 +64,6 @@ public class TestSieDocument {
     @ParameterizedTest(name = "{0}")
     @MethodSource("sampleFiles")
     public void verifySampleFile(File sourceFile) throws IOException {
-        switch (sourceFile.getName()) {
-            case "37_Norstedts Bokslut SIE 1.se":
-            case "38_Bokslut Norstedts SIE 4E.se":
-            case "39_Norstedts Bokslut SIE 4I.si":
-            case "40_Norstedts Revision SIE 1.SE":
-            case "41_sie1.se":
-            case "42_sie2.se":
-            case "43_sie3.se":
-            case "44_sie4.se":
-                // skip: invalid checksum
-                return;
-            default:
-                break;
-        }
-
         boolean ignoreOMFATTN = false;
         switch (sourceFile.getName()) {
             case "2_BL0001_typ3.SE":
@@ -109,16 +95,6 @@ public class TestSieDocument {
                 case "1_BL0001_typ2.SE":
                     verifyDocument(sourceFile, outFile, true);
                     break;
-                case "37_Norstedts Bokslut SIE 1.se":
-                case "38_Bokslut Norstedts SIE 4E.se":
-                case "39_Norstedts Bokslut SIE 4I.si":
-                case "40_Norstedts Revision SIE 1.SE":
-                case "41_sie1.se":
-                case "42_sie2.se":
-                case "43_sie3.se":
-                case "44_sie4.se":
-                    // skip it, invalid checksum
-                    break;
                 case "52_periodsaldo_ovnbolag.se":
                 case "53_objektsaldo_ovnbolag.se":
                     verifyDocument(sourceFile, outFile, true);
@@ -136,7 +112,13 @@ public class TestSieDocument {
         SieDocument doc = readDocument(sourceFile.getAbsolutePath(), ignoreOMFATTN);
         writeDocument(doc, outFile.getAbsolutePath());
         assertTrue(outFile.exists(), "SIE file not found at " + outFile.getAbsolutePath());
-        compareDocs(doc, readDocument(outFile.getAbsolutePath(), ignoreOMFATTN));
+        SieDocument written = readDocument(outFile.getAbsolutePath(), ignoreOMFATTN);
+        // The written file has a checksum of its own formatting, it was verified when read back
+        if (doc.getKSUMMA() != 0) {
+            assertNotEquals(0, written.getKSUMMA());
+            written.setKSUMMA(doc.getKSUMMA());
+        }
+        compareDocs(doc, written);
     }
 
     private void testSieVersion(File file, int sieVersion) {
@@ -174,7 +156,10 @@ public class TestSieDocument {
 
     private void writeDocument(SieDocument doc, String toFileName) {
         try {
-            SieDocumentWriter writer = new SieDocumentWriter(doc);
+            // Files with #KSUMMA are written with a checksum, which is verified when read back
+            WriteOptions options = new WriteOptions();
+            options.setWriteKSUMMA(doc.getKSUMMA() != 0);
+            SieDocumentWriter writer = new SieDocumentWriter(doc, options);
             writer.write(toFileName);
         } catch (Exception e) {
             e.printStackTrace();
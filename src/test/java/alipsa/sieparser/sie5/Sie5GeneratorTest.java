@@ -0,0 +1,68 @@
+package alipsa.sieparser.sie5;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Sie5GeneratorTest {
+
+    @Test
+    void generatedDocumentReadsBackWithoutWarnings() {
+        Sie5Generator generator = generator();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        generator.writeDocument(baos);
+
+        Sie5DocumentReader reader = new Sie5DocumentReader();
+        reader.setVerifySignatures(false);
+        reader.setStrictValidation(true);
+        Sie5Document doc = reader.readDocument(new ByteArrayInputStream(baos.toByteArray()));
+
+        assertTrue(reader.getValidationWarnings().isEmpty(), reader.getValidationWarnings().toString());
+        assertEquals(40, doc.getAccounts().size());
+        assertEquals(3, doc.getDimensions().size());
+        assertEquals(5, doc.getDimensions().get(0).getObjects().size());
+        assertEquals(500, doc.getJournals().get(0).getJournalEntries().size());
+        assertEquals(3, doc.getJournals().get(0).getJournalEntries().get(0).getLedgerEntries().size());
+        assertFalse(doc.getAccounts().get(0).getOpeningBalances().isEmpty());
+    }
+
+    @Test
+    void generatedEntryReadsBack() {
+        Sie5Generator generator = generator();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        generator.writeEntry(baos);
+
+        Sie5Entry entry = new Sie5DocumentReader().readEntry(new ByteArrayInputStream(baos.toByteArray()));
+        assertEquals(40, entry.getAccounts().size());
+        assertEquals(500, entry.getJournals().get(0).getJournalEntries().size());
+        for (JournalEntryEntry je : entry.getJournals().get(0).getJournalEntries()) {
+            assertEquals(0, je.getLedgerEntries().stream()
+                .map(LedgerEntryEntry::getAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add).signum());
+        }
+    }
+
+    @Test
+    void sameSeedGivesSameOutput() {
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        generator().writeEntry(first);
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        generator().writeEntry(second);
+        assertArrayEquals(first.toByteArray(), second.toByteArray());
+    }
+
+    private static Sie5Generator generator() {
+        Sie5Generator generator = new Sie5Generator();
+        generator.setAccounts(40);
+        generator.setDimensions(3);
+        generator.setObjectsPerDimension(5);
+        generator.setVouchers(500);
+        generator.setRowsPerVoucher(3);
+        generator.setPeriodBalanceDensity(0.5);
+        return generator;
+    }
+}
@@ -0,0 +1,461 @@
+package alipsa.sieparser;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic but valid SIE 1-4 documents of configurable size for load, scale and benchmark tests.
+ *
+ * <p>The output is fully determined by the settings and the seed: two generators with the same settings
+ * produce byte identical files. The header (company, booking years, accounts, dimensions and balances)
+ * and the vouchers are drawn from separate random sequences, so {@link #generate()} and
+ * {@link #write(OutputStream)} produce the same content. {@link #write(OutputStream)} generates each voucher
+ * just before it is written by a {@link SieVoucherWriter}, which keeps memory use independent of the voucher
+ * count.</p>
+ *
+ * <p>Which records are produced depends on the {@link Format}: SIE 1 holds year balances, SIE 2 adds
+ * period balances, SIE 3 adds dimensions, objects and object balances, SIE 4E adds vouchers, and
+ * SIE 4I holds accounts, dimensions and vouchers only.</p>
+ */
+public class SieGenerator {
+
+    /** The kind of SIE file to generate. */
+    public enum Format {
+        /** SIE 1: year end balances. */
+        SIE1(1),
+        /** SIE 2: period balances. */
+        SIE2(2),
+        /** SIE 3: object balances. */
+        SIE3(3),
+        /** SIE 4E: export of balances and vouchers. */
+        SIE4E(4),
+        /** SIE 4I: import of vouchers. */
+        SIE4I(4);
+
+        private final int sieType;
+
+        Format(int sieType) {
+            this.sieType = sieType;
+        }
+
+        /**
+         * Returns the #SIETYP value written for this format.
+         * @return the SIE type number (1-4)
+         */
+        public int getSieType() {
+            return sieType;
+        }
+    }
+
+    /** The first day of booking year 0. */
+    public static final LocalDate START = LocalDate.of(2024, 1, 1);
+
+    private static final String[] DIMENSION_NUMBERS = {"1", "2", "6", "7", "8", "9"};
+
+    private long seed = 42;
+    private Format format = Format.SIE4E;
+    private int accounts = 100;
+    private int dimensions = 2;
+    private int objectsPerDimension = 20;
+    private int vouchers = 1000;
+    private int rowsPerVoucher = 4;
+    private double periodBalanceDensity = 0.25;
+
+    /**
+     * Creates a generator with the default settings: a SIE 4E file with 100 accounts, 2 dimensions
+     * of 20 objects each and 1000 vouchers of 4 rows.
+     */
+    public SieGenerator() {}
+
+    /**
+     * Creates a generator for the given format with the default sizes.
+     * @param format the kind of SIE file to generate
+     */
+    public SieGenerator(Format format) {
+        setFormat(format);
+    }
+
+    /**
+     * Creates the complete document in memory.
+     * @return the generated document
+     */
+    public SieDocument generate() {
+        SieDocument doc = generateHeader();
+        if (hasVouchers()) {
+            vouchers(doc, new Random(seed + 1)).forEachRemaining(doc.getVER()::add);
+        }
+        return doc;
+    }
+
+    /**
+     * Creates the document without vouchers, i.e. everything that {@link #write(OutputStream)} writes
+     * before the first #VER.
+     * @return the generated document without vouchers
+     */
+    public SieDocument generateHeader() {
+        Random random = new Random(seed);
+        SieDocument doc = new SieDocument();
+        doc.setSIETYP(format.getSieType());
+        doc.setFLAGGA(0);
+        doc.getPROGRAM().add("SieGenerator");
+        doc.getPROGRAM().add("1.0");
+        doc.setFORMAT("PC8");
+        doc.setGEN_DATE(START);
+        doc.setGEN_NAMN("generator");
+        doc.getFNAMN().setName("Generator AB");
+        doc.getFNAMN().setOrgIdentifier("556000-0000");
+        if (format.getSieType() > 1 && format != Format.SIE4I) {
+            doc.setOMFATTN(START.plusYears(1).minusDays(1));
+        }
+        int years = format == Format.SIE4I ? 1 : 2;
+        for (int i = 0; i < years; i++) {
+            SieBookingYear rar = new SieBookingYear();
+            rar.setId(-i);
+            rar.setStart(START.minusYears(i));
+            rar.setEnd(START.minusYears(i - 1).minusDays(1));
+            doc.getRars().put(-i, rar);
+        }
+        addAccounts(doc);
+        if (format.getSieType() >= 3) {
+            addObjects(doc);
+        }
+        if (format != Format.SIE4I) {
+            addBalances(doc, random);
+        }
+        return doc;
+    }
+
+    /**
+     * Writes the generated document to a stream. Vouchers are generated one at a time as they are written.
+     * @param out the stream to write to, it is flushed but not closed
+     * @throws IOException if writing fails
+     */
+    public void write(OutputStream out) throws IOException {
+        SieDocument doc = generateHeader();
+        SieDocumentWriter writer = new SieDocumentWriter(doc);
+        try (SieVoucherWriter voucherWriter = writer.openVouchers(out)) {
+            if (hasVouchers()) voucherWriter.writeAll(vouchers(doc, new Random(seed + 1)));
+        }
+    }
+
+    /**
+     * Writes the generated document to a file.
+     * @param file the file to write, it is created or replaced
+     * @throws IOException if writing fails
+     */
+    public void write(Path file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            write(out);
+        }
+    }
+
+    /**
+     * Writes the generated document to a new temporary file.
+     * @return the path of the temporary file
+     * @throws IOException if writing fails
+     */
+    public Path writeTempFile() throws IOException {
+        Path file = Files.createTempFile("sieparser-" + format.name().toLowerCase() + "-", ".se");
+        write(file);
+        return file;
+    }
+
+    private boolean hasVouchers() {
+        return format.getSieType() == 4;
+    }
+
+    private void addAccounts(SieDocument doc) {
+        int step = Math.max(1, 8000 / Math.max(1, accounts));
+        for (int i = 0; i < accounts; i++) {
+            String number = String.valueOf(1000 + i * step);
+            SieAccount account = new SieAccount(number, "Konto " + number);
+            account.setType(accountType(number));
+            doc.getKONTO().put(number, account);
+        }
+    }
+
+    private static String accountType(String number) {
+        switch (number.charAt(0)) {
+            case '1': return "T";
+            case '2': return "S";
+            case '3': return "I";
+            default: return "K";
+        }
+    }
+
+    private static boolean isBalanceAccount(SieAccount account) {
+        return "T".equals(account.getType()) || "S".equals(account.getType());
+    }
+
+    private void addObjects(SieDocument doc) {
+        for (int d = 0; d < dimensions; d++) {
+            String number = d < DIMENSION_NUMBERS.length
+                ? DIMENSION_NUMBERS[d]
+                : String.valueOf(20 + d - DIMENSION_NUMBERS.length);
+            SieDimension dim = doc.getDIM().get(number);
+            if (dim == null) {
+                dim = new SieDimension(number, "Dimension " + number);
+                doc.getDIM().put(number, dim);
+            }
+            for (int o = 0; o < objectsPerDimension; o++) {
+                String objectNumber = String.valueOf(100 + o);
+                dim.getObjects().put(objectNumber, new SieObject(dim, objectNumber, "Objekt " + objectNumber));
+            }
+        }
+    }
+
+    private void addBalances(SieDocument doc, Random random) {
+        List<SieObject> objects = objects(doc);
+        for (SieAccount account : doc.getKONTO().values()) {
+            for (int year = 0; year >= -1; year--) {
+                if (isBalanceAccount(account)) {
+                    BigDecimal ib = amount(random);
+                    doc.getIB().add(periodValue(SIE.IB, account, year, 0, ib, null));
+                    doc.getUB().add(periodValue(SIE.UB, account, year, 0, ib.add(amount(random)), null));
+                } else {
+                    doc.getRES().add(periodValue(SIE.RES, account, year, 0, amount(random), null));
+                }
+                if (format.getSieType() >= 3 && !objects.isEmpty() && random.nextDouble() < periodBalanceDensity) {
+                    SieObject object = objects.get(random.nextInt(objects.size()));
+                    BigDecimal oib = amount(random);
+                    doc.getOIB().add(periodValue(SIE.OIB, account, year, 0, oib, List.of(object)));
+                    doc.getOUB().add(periodValue(SIE.OUB, account, year, 0, oib.add(amount(random)), List.of(object)));
+                }
+            }
+            if (format.getSieType() < 2) continue;
+            for (int month = 1; month <= 12; month++) {
+                int period = START.getYear() * 100 + month;
+                if (random.nextDouble() < periodBalanceDensity) {
+                    doc.getPSALDO().add(periodValue(SIE.PSALDO, account, 0, period, amount(random), null));
+                    if (format.getSieType() >= 3 && !objects.isEmpty()) {
+                        SieObject object = objects.get(random.nextInt(objects.size()));
+                        doc.getPSALDO().add(periodValue(SIE.PSALDO, account, 0, period, amount(random), List.of(object)));
+                    }
+                }
+                if (random.nextDouble() < periodBalanceDensity / 2) {
+                    doc.getPBUDGET().add(periodValue(SIE.PBUDGET, account, 0, period, amount(random), null));
+                }
+            }
+        }
+    }
+
+    private static SiePeriodValue periodValue(String token, SieAccount account, int year, int period,
+                                              BigDecimal amount, List<SieObject> objects) {
+        SiePeriodValue v = new SiePeriodValue();
+        v.setToken(token);
+        v.setAccount(account);
+        v.setYearNr(year);
+        v.setPeriod(period);
+        v.setAmount(amount);
+        v.setQuantity(BigDecimal.ZERO);
+        v.setObjects(objects);
+        return v;
+    }
+
+    private Iterator<SieVoucher> vouchers(SieDocument doc, Random random) {
+        List<SieAccount> accountList = new ArrayList<>(doc.getKONTO().values());
+        List<List<SieObject>> objectsByDimension = new ArrayList<>();
+        for (SieDimension dim : doc.getDIM().values()) {
+            if (!dim.getObjects().isEmpty()) objectsByDimension.add(new ArrayList<>(dim.getObjects().values()));
+        }
+        return new Iterator<>() {
+            private int n = 1;
+
+            @Override
+            public boolean hasNext() {
+                return n <= vouchers;
+            }
+
+            @Override
+            public SieVoucher next() {
+                return voucher(n++, random, accountList, objectsByDimension);
+            }
+        };
+    }
+
+    private SieVoucher voucher(int n, Random random, List<SieAccount> accountList,
+                               List<List<SieObject>> objectsByDimension) {
+        SieVoucher v = new SieVoucher();
+        v.setSeries("A");
+        v.setNumber(String.valueOf(n));
+        v.setVoucherDate(START.plusDays(n % 365));
+        v.setText("Verifikation " + n);
+        v.setCreatedBy("");
+        v.setToken(SIE.VER);
+        BigDecimal sum = BigDecimal.ZERO;
+        for (int r = 0; r < rowsPerVoucher; r++) {
+            BigDecimal amount;
+            if (r < rowsPerVoucher - 1) {
+                amount = random.nextBoolean() ? amount(random) : amount(random).negate();
+                sum = sum.add(amount);
+            } else {
+                amount = sum.negate();
+            }
+            SieVoucherRow row = new SieVoucherRow();
+            row.setAccount(accountList.get(random.nextInt(accountList.size())));
+            List<SieObject> rowObjects = new ArrayList<>();
+            for (List<SieObject> dimObjects : objectsByDimension) {
+                if (random.nextBoolean()) rowObjects.add(dimObjects.get(random.nextInt(dimObjects.size())));
+            }
+            row.setObjects(rowObjects.isEmpty() ? null : rowObjects);
+            row.setAmount(amount);
+            row.setRowDate(v.getVoucherDate());
+            row.setText("Rad " + r);
+            row.setCreatedBy("");
+            row.setToken(SIE.TRANS);
+            v.getRows().add(row);
+        }
+        return v;
+    }
+
+    private static List<SieObject> objects(SieDocument doc) {
+        List<SieObject> objects = new ArrayList<>();
+        for (SieDimension dim : doc.getDIM().values()) {
+            objects.addAll(dim.getObjects().values());
+        }
+        return objects;
+    }
+
+    private static BigDecimal amount(Random random) {
+        return BigDecimal.valueOf(1 + random.nextInt(10_000_000), 2);
+    }
+
+    /**
+     * Gets the seed of the random sequences.
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Sets the seed of the random sequences. The same seed and settings always give the same output.
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Gets the kind of SIE file to generate.
+     * @return the format
+     */
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Sets the kind of SIE file to generate.
+     * @param format the format
+     */
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+
+    /**
+     * Gets the number of accounts.
+     * @return the number of accounts
+     */
+    public int getAccounts() {
+        return accounts;
+    }
+
+    /**
+     * Sets the number of accounts. Account numbers are spread evenly from 1000 and up.
+     * @param accounts the number of accounts, at least 1
+     */
+    public void setAccounts(int accounts) {
+        this.accounts = accounts;
+    }
+
+    /**
+     * Gets the number of dimensions that get objects (SIE 3 and 4 only).
+     * @return the number of dimensions
+     */
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Sets the number of dimensions that get objects (SIE 3 and 4 only). The standard dimensions
+     * 1, 2, 6, 7, 8 and 9 are used first, further dimensions are numbered from 20.
+     * @param dimensions the number of dimensions
+     */
+    public void setDimensions(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    /**
+     * Gets the number of objects in each dimension.
+     * @return the number of objects per dimension
+     */
+    public int getObjectsPerDimension() {
+        return objectsPerDimension;
+    }
+
+    /**
+     * Sets the number of objects in each dimension.
+     * @param objectsPerDimension the number of objects per dimension
+     */
+    public void setObjectsPerDimension(int objectsPerDimension) {
+        this.objectsPerDimension = objectsPerDimension;
+    }
+
+    /**
+     * Gets the number of vouchers (SIE 4 only).
+     * @return the number of vouchers
+     */
+    public int getVouchers() {
+        return vouchers;
+    }
+
+    /**
+     * Sets the number of vouchers (SIE 4 only).
+     * @param vouchers the number of vouchers
+     */
+    public void setVouchers(int vouchers) {
+        this.vouchers = vouchers;
+    }
+
+    /**
+     * Gets the number of #TRANS rows in each voucher.
+     * @return the number of rows per voucher
+     */
+    public int getRowsPerVoucher() {
+        return rowsPerVoucher;
+    }
+
+    /**
+     * Sets the number of #TRANS rows in each voucher. The last row balances the voucher.
+     * @param rowsPerVoucher the number of rows per voucher, at least 1
+     */
+    public void setRowsPerVoucher(int rowsPerVoucher) {
+        this.rowsPerVoucher = rowsPerVoucher;
+    }
+
+    /**
+     * Gets the share of account and month combinations that get a #PSALDO.
+     * @return the period balance density between 0 and 1
+     */
+    public double getPeriodBalanceDensity() {
+        return periodBalanceDensity;
+    }
+
+    /**
+     * Sets the share of account and month combinations that get a #PSALDO (SIE 2 and up). Half as many
+     * get a #PBUDGET, and the same share of accounts get an #OIB and #OUB per year (SIE 3 and up).
+     * @param periodBalanceDensity the period balance density between 0 and 1
+     */
+    public void setPeriodBalanceDensity(double periodBalanceDensity) {
+        this.periodBalanceDensity = periodBalanceDensity;
+    }
+}
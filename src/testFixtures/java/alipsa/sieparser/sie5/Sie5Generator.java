@@ -0,0 +1,441 @@
+package alipsa.sieparser.sie5;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic SIE 5 full documents ({@link Sie5Document}) and entry documents ({@link Sie5Entry})
+ * of configurable size for load, scale and benchmark tests.
+ *
+ * <p>The output is fully determined by the settings and the seed. Full documents are written without a
+ * signature, so read them with signature verification turned off.</p>
+ */
+public class Sie5Generator {
+
+    /** The first month of the primary fiscal year. */
+    public static final YearMonth START = YearMonth.of(2024, 1);
+
+    private long seed = 42;
+    private int accounts = 100;
+    private int dimensions = 2;
+    private int objectsPerDimension = 20;
+    private int vouchers = 1000;
+    private int rowsPerVoucher = 4;
+    private double periodBalanceDensity = 0.25;
+
+    /**
+     * Creates a generator with the default settings: 100 accounts, 2 dimensions of 20 objects each
+     * and 1000 journal entries of 4 ledger entries.
+     */
+    public Sie5Generator() {}
+
+    /**
+     * Creates a full document with fiscal years, accounts with balances, dimensions and one journal.
+     * @return the generated document
+     */
+    public Sie5Document generateDocument() {
+        Random random = new Random(seed);
+        Sie5Document doc = new Sie5Document();
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setSoftwareProduct(softwareProduct());
+        fileInfo.setFileCreation(fileCreation());
+        Company company = new Company();
+        company.setOrganizationId("556000-0000");
+        company.setName("Generator AB");
+        fileInfo.setCompany(company);
+        List<FiscalYear> fiscalYears = new ArrayList<>();
+        for (int i = 1; i >= 0; i--) {
+            FiscalYear fy = new FiscalYear();
+            fy.setStart(START.minusYears(i));
+            fy.setEnd(START.minusYears(i - 1).minusMonths(1));
+            fy.setPrimary(i == 0);
+            fiscalYears.add(fy);
+        }
+        fileInfo.setFiscalYears(fiscalYears);
+        AccountingCurrency currency = new AccountingCurrency();
+        currency.setCurrency("SEK");
+        fileInfo.setAccountingCurrency(currency);
+        doc.setFileInfo(fileInfo);
+
+        List<Account> accountList = new ArrayList<>();
+        for (String id : accountIds()) {
+            Account account = new Account();
+            account.setId(id);
+            account.setName("Konto " + id);
+            account.setType(accountType(id));
+            if (isBalanceAccount(account.getType())) {
+                addBalances(account, random);
+            }
+            accountList.add(account);
+        }
+        doc.setAccounts(accountList);
+
+        List<Dimension> dimensionList = new ArrayList<>();
+        for (int d = 1; d <= dimensions; d++) {
+            Dimension dimension = new Dimension();
+            dimension.setId(d);
+            dimension.setName("Dimension " + d);
+            dimension.setObjects(dimensionObjects());
+            dimensionList.add(dimension);
+        }
+        doc.setDimensions(dimensionList);
+
+        Random voucherRandom = new Random(seed + 1);
+        Journal journal = new Journal();
+        journal.setId("A");
+        journal.setName("Verifikationer");
+        List<JournalEntry> entries = new ArrayList<>(vouchers);
+        for (int n = 1; n <= vouchers; n++) {
+            JournalEntry je = new JournalEntry();
+            je.setId(BigInteger.valueOf(n));
+            je.setJournalDate(journalDate(n));
+            je.setText("Verifikation " + n);
+            EntryInfo info = new EntryInfo();
+            info.setDate(je.getJournalDate());
+            info.setBy("generator");
+            je.setEntryInfo(info);
+            for (Row row : rows(voucherRandom, accountList.size())) {
+                LedgerEntry le = new LedgerEntry();
+                le.setAccountId(accountList.get(row.account).getId());
+                le.setAmount(row.amount);
+                le.setObjectReferences(row.objects);
+                je.getLedgerEntries().add(le);
+            }
+            entries.add(je);
+        }
+        journal.setJournalEntries(entries);
+        doc.setJournals(List.of(journal));
+        return doc;
+    }
+
+    /**
+     * Creates an entry (import) document with accounts, dimensions and one journal.
+     * @return the generated entry document
+     */
+    public Sie5Entry generateEntry() {
+        Sie5Entry entry = new Sie5Entry();
+        FileInfoEntry fileInfo = new FileInfoEntry();
+        fileInfo.setSoftwareProduct(softwareProduct());
+        fileInfo.setFileCreation(fileCreation());
+        CompanyEntry company = new CompanyEntry();
+        company.setOrganizationId("556000-0000");
+        company.setName("Generator AB");
+        fileInfo.setCompany(company);
+        entry.setFileInfo(fileInfo);
+
+        List<AccountEntry> accountList = new ArrayList<>();
+        for (String id : accountIds()) {
+            AccountEntry account = new AccountEntry();
+            account.setId(id);
+            account.setName("Konto " + id);
+            account.setType(accountType(id));
+            accountList.add(account);
+        }
+        entry.setAccounts(accountList);
+
+        List<DimensionEntry> dimensionList = new ArrayList<>();
+        for (int d = 1; d <= dimensions; d++) {
+            DimensionEntry dimension = new DimensionEntry();
+            dimension.setId(String.valueOf(d));
+            dimension.setName("Dimension " + d);
+            dimension.setObjects(dimensionObjects());
+            dimensionList.add(dimension);
+        }
+        entry.setDimensions(dimensionList);
+
+        Random voucherRandom = new Random(seed + 1);
+        JournalEntry2 journal = new JournalEntry2();
+        journal.setId("A");
+        List<JournalEntryEntry> entries = new ArrayList<>(vouchers);
+        for (int n = 1; n <= vouchers; n++) {
+            JournalEntryEntry je = new JournalEntryEntry();
+            je.setId(BigInteger.valueOf(n));
+            je.setJournalDate(journalDate(n));
+            je.setText("Verifikation " + n);
+            for (Row row : rows(voucherRandom, accountList.size())) {
+                LedgerEntryEntry le = new LedgerEntryEntry();
+                le.setAccountId(accountList.get(row.account).getId());
+                le.setAmount(row.amount);
+                le.setObjectReferences(row.objects);
+                je.getLedgerEntries().add(le);
+            }
+            entries.add(je);
+        }
+        journal.setJournalEntries(entries);
+        entry.setJournals(List.of(journal));
+        return entry;
+    }
+
+    /**
+     * Writes a generated full document, without signature, to a stream.
+     * @param out the stream to write to
+     */
+    public void writeDocument(OutputStream out) {
+        Sie5DocumentWriter writer = new Sie5DocumentWriter();
+        writer.setRequireSignatureForFullDocuments(false);
+        writer.write(generateDocument(), out);
+    }
+
+    /**
+     * Writes a generated full document, without signature, to a file.
+     * @param file the file to write, it is created or replaced
+     * @throws IOException if writing fails
+     */
+    public void writeDocument(Path file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            writeDocument(out);
+        }
+    }
+
+    /**
+     * Writes a generated entry document to a stream.
+     * @param out the stream to write to
+     */
+    public void writeEntry(OutputStream out) {
+        new Sie5DocumentWriter().writeEntry(generateEntry(), out);
+    }
+
+    /**
+     * Writes a generated entry document to a file.
+     * @param file the file to write, it is created or replaced
+     * @throws IOException if writing fails
+     */
+    public void writeEntry(Path file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            writeEntry(out);
+        }
+    }
+
+    private static SoftwareProduct softwareProduct() {
+        SoftwareProduct product = new SoftwareProduct();
+        product.setName("SieGenerator");
+        product.setVersion("1.0");
+        return product;
+    }
+
+    private static FileCreation fileCreation() {
+        FileCreation creation = new FileCreation();
+        creation.setTime(OffsetDateTime.of(START.atDay(1).atStartOfDay(), ZoneOffset.UTC));
+        creation.setBy("generator");
+        return creation;
+    }
+
+    private List<String> accountIds() {
+        int step = Math.max(1, 8000 / Math.max(1, accounts));
+        List<String> ids = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) {
+            ids.add(String.valueOf(1000 + i * step));
+        }
+        return ids;
+    }
+
+    private static AccountTypeValue accountType(String id) {
+        switch (id.charAt(0)) {
+            case '1': return AccountTypeValue.ASSET;
+            case '2': return AccountTypeValue.LIABILITY;
+            case '3': return AccountTypeValue.INCOME;
+            default: return AccountTypeValue.COST;
+        }
+    }
+
+    private static boolean isBalanceAccount(AccountTypeValue type) {
+        return type == AccountTypeValue.ASSET || type == AccountTypeValue.LIABILITY;
+    }
+
+    private void addBalances(Account account, Random random) {
+        for (int i = 1; i >= 0; i--) {
+            YearMonth first = START.minusYears(i);
+            AccountBalance.Opening opening = new AccountBalance.Opening();
+            opening.setMonth(first);
+            opening.setAmount(amount(random));
+            account.getBalancesAndBudgets().add(opening);
+            for (int month = 0; month < 11; month++) {
+                if (random.nextDouble() < periodBalanceDensity) {
+                    account.getBalancesAndBudgets().add(closing(first.plusMonths(month), random));
+                }
+            }
+            account.getBalancesAndBudgets().add(closing(first.plusMonths(11), random));
+        }
+    }
+
+    private static AccountBalance.Closing closing(YearMonth month, Random random) {
+        AccountBalance.Closing closing = new AccountBalance.Closing();
+        closing.setMonth(month);
+        closing.setAmount(amount(random));
+        return closing;
+    }
+
+    private List<DimensionObject> dimensionObjects() {
+        List<DimensionObject> objects = new ArrayList<>(objectsPerDimension);
+        for (int o = 0; o < objectsPerDimension; o++) {
+            DimensionObject object = new DimensionObject();
+            object.setId(String.valueOf(100 + o));
+            object.setName("Objekt " + object.getId());
+            objects.add(object);
+        }
+        return objects;
+    }
+
+    private static LocalDate journalDate(int n) {
+        return START.atDay(1).plusDays(n % 365);
+    }
+
+    private List<Row> rows(Random random, int accountCount) {
+        List<Row> rows = new ArrayList<>(rowsPerVoucher);
+        BigDecimal sum = BigDecimal.ZERO;
+        for (int r = 0; r < rowsPerVoucher; r++) {
+            Row row = new Row();
+            if (r < rowsPerVoucher - 1) {
+                row.amount = random.nextBoolean() ? amount(random) : amount(random).negate();
+                sum = sum.add(row.amount);
+            } else {
+                row.amount = sum.negate();
+            }
+            row.account = random.nextInt(accountCount);
+            for (int d = 1; d <= dimensions && objectsPerDimension > 0; d++) {
+                if (random.nextBoolean()) {
+                    ObjectReference ref = new ObjectReference();
+                    ref.setDimId(String.valueOf(d));
+                    ref.setObjectId(String.valueOf(100 + random.nextInt(objectsPerDimension)));
+                    row.objects.add(ref);
+                }
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static BigDecimal amount(Random random) {
+        return BigDecimal.valueOf(1 + random.nextInt(10_000_000), 2);
+    }
+
+    private static final class Row {
+        int account;
+        BigDecimal amount;
+        List<ObjectReference> objects = new ArrayList<>();
+    }
+
+    /**
+     * Gets the seed of the random sequences.
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Sets the seed of the random sequences. The same seed and settings always give the same output.
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Gets the number of accounts.
+     * @return the number of accounts
+     */
+    public int getAccounts() {
+        return accounts;
+    }
+
+    /**
+     * Sets the number of accounts. Account ids are spread evenly from 1000 and up.
+     * @param accounts the number of accounts, at least 1
+     */
+    public void setAccounts(int accounts) {
+        this.accounts = accounts;
+    }
+
+    /**
+     * Gets the number of dimensions.
+     * @return the number of dimensions
+     */
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Sets the number of dimensions, numbered from 1.
+     * @param dimensions the number of dimensions
+     */
+    public void setDimensions(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    /**
+     * Gets the number of objects in each dimension.
+     * @return the number of objects per dimension
+     */
+    public int getObjectsPerDimension() {
+        return objectsPerDimension;
+    }
+
+    /**
+     * Sets the number of objects in each dimension.
+     * @param objectsPerDimension the number of objects per dimension
+     */
+    public void setObjectsPerDimension(int objectsPerDimension) {
+        this.objectsPerDimension = objectsPerDimension;
+    }
+
+    /**
+     * Gets the number of journal entries.
+     * @return the number of journal entries
+     */
+    public int getVouchers() {
+        return vouchers;
+    }
+
+    /**
+     * Sets the number of journal entries.
+     * @param vouchers the number of journal entries
+     */
+    public void setVouchers(int vouchers) {
+        this.vouchers = vouchers;
+    }
+
+    /**
+     * Gets the number of ledger entries in each journal entry.
+     * @return the number of ledger entries per journal entry
+     */
+    public int getRowsPerVoucher() {
+        return rowsPerVoucher;
+    }
+
+    /**
+     * Sets the number of ledger entries in each journal entry. The last ledger entry balances the journal entry.
+     * @param rowsPerVoucher the number of ledger entries per journal entry, at least 1
+     */
+    public void setRowsPerVoucher(int rowsPerVoucher) {
+        this.rowsPerVoucher = rowsPerVoucher;
+    }
+
+    /**
+     * Gets the share of months that get a closing balance in addition to the year end.
+     * @return the period balance density between 0 and 1
+     */
+    public double getPeriodBalanceDensity() {
+        return periodBalanceDensity;
+    }
+
+    /**
+     * Sets the share of months that get a closing balance in addition to the year end (full documents only).
+     * @param periodBalanceDensity the period balance density between 0 and 1
+     */
+    public void setPeriodBalanceDensity(double periodBalanceDensity) {
+        this.periodBalanceDensity = periodBalanceDensity;
+    }
+}